@@ -0,0 +1,112 @@
+package org.fundresearch.analyser;
+
+import org.fundresearch.enums.NumericMode;
+import org.fundresearch.models.BenchmarkReturns;
+import org.fundresearch.models.Fund;
+import org.fundresearch.models.Performance;
+import org.fundresearch.models.ReturnSeriesStore;
+import org.fundresearch.util.AppUtil;
+import org.fundresearch.util.IOUtil;
+import org.fundresearch.util.ReportWriter;
+import org.fundresearch.util.UniverseGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stage by stage cost of {@link FundAnalyser#generateMonthlyOutPerformance(String, String)}:
+ * parse, join, per-month rank and write, for several universe sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class FundAnalyserJmh {
+
+    private static final long SEED = 20170202L;
+
+    @Param({"100", "1000", "10000"})
+    public int funds;
+
+    @Param({"10"})
+    public int years;
+
+    @Param({"DECIMAL", "FIXED_POINT"})
+    public NumericMode numericMode;
+
+    private Path dir;
+    private FundAnalyser analyser;
+    private Map<String, Fund> fundMap;
+    private ReturnSeriesStore fundReturns;
+    private BenchmarkReturns benchmarkReturns;
+    private Map<Date, List<Performance>> joined;
+    private Map<Date, List<Performance>> unranked;
+    private List<Performance> ranked;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("fund-research-jmh");
+        new UniverseGenerator(funds, Math.max(1, funds / 25), years, SEED).generate(dir);
+
+        AnalyserOptions options = new AnalyserOptions();
+        options.setNumericMode(numericMode);
+        analyser = new FundAnalyser(path("fund.csv"), path("benchmark.csv"),
+                path("fundReturnSeries.csv"), path("benchReturnSeries.csv"), options);
+
+        fundMap = analyser.extractFundData(path("fund.csv"));
+        fundReturns = analyser.extractFundReturnsData(path("fundReturnSeries.csv"));
+        benchmarkReturns = analyser.extractBenchmarkReturnsData(path("benchReturnSeries.csv"));
+        joined = analyser.calculateExcessAndPerformance(fundReturns, benchmarkReturns, new LinkedHashMap<>(fundMap));
+        ranked = analyser.rankMonthlyPerformance(copy(joined));
+    }
+
+    @Setup(Level.Invocation)
+    public void unrank() {
+        unranked = copy(joined);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        IOUtil.deleteRecursively(dir);
+    }
+
+    @Benchmark
+    public ReturnSeriesStore parseFundReturns() {
+        return analyser.extractFundReturnsData(path("fundReturnSeries.csv"));
+    }
+
+    @Benchmark
+    public Map<Date, List<Performance>> join() {
+        return analyser.calculateExcessAndPerformance(fundReturns, benchmarkReturns, new LinkedHashMap<>(fundMap));
+    }
+
+    @Benchmark
+    public List<Performance> rank() {
+        return analyser.rankMonthlyPerformance(unranked);
+    }
+
+    @Benchmark
+    public long write() {
+        // straight to the writer, AppUtil.openReport prints the report path on every call
+        try (ReportWriter writer = new ReportWriter(path(AppUtil.REPORT_FILE))) {
+            writer.write(ranked);
+            return writer.position();
+        }
+    }
+
+    private String path(String fileName) {
+        return dir.resolve(fileName).toString();
+    }
+
+    private static Map<Date, List<Performance>> copy(Map<Date, List<Performance>> monthly) {
+        Map<Date, List<Performance>> copy = new TreeMap<>(Comparator.reverseOrder());
+        monthly.forEach((date, performances) -> copy.put(date, new ArrayList<>(performances)));
+        return copy;
+    }
+}
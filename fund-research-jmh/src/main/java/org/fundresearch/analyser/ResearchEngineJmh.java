@@ -0,0 +1,83 @@
+package org.fundresearch.analyser;
+
+import org.fundresearch.enums.NumericMode;
+import org.fundresearch.models.Performance;
+import org.fundresearch.util.IOUtil;
+import org.fundresearch.util.UniverseGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Query latency of a loaded {@link ResearchEngine}, from several threads at once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Threads(4)
+public class ResearchEngineJmh {
+
+    private static final long SEED = 20170202L;
+
+    @Param({"1000", "10000"})
+    public int funds;
+
+    @Param({"10"})
+    public int years;
+
+    @Param({"FIXED_POINT"})
+    public NumericMode numericMode;
+
+    private Path dir;
+    private ResearchEngine engine;
+    private List<Date> months;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("fund-research-jmh");
+        new UniverseGenerator(funds, Math.max(1, funds / 25), years, SEED).generate(dir);
+
+        AnalyserOptions options = new AnalyserOptions();
+        options.setNumericMode(numericMode);
+        engine = new FundAnalyser(path(UniverseGenerator.FUND_FILE), path(UniverseGenerator.BENCHMARK_FILE),
+                path(UniverseGenerator.FUND_RETURN_FILE), path(UniverseGenerator.BENCHMARK_RETURN_FILE), options)
+                .loadResearchEngine();
+        months = engine.months();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        IOUtil.deleteRecursively(dir);
+    }
+
+    @Benchmark
+    public int rankOf() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return engine.rankOf("fund" + random.nextInt(funds), months.get(random.nextInt(months.size())));
+    }
+
+    @Benchmark
+    public List<Performance> topOfBenchmark() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return engine.top("bm" + random.nextInt(Math.max(1, funds / 25)), months.get(random.nextInt(months.size())), 10);
+    }
+
+    @Benchmark
+    public List<Performance> outPerformersInQuarter() {
+        int month = ThreadLocalRandom.current().nextInt(months.size() - 2);
+        return engine.outPerformers(months.get(month + 2), months.get(month));
+    }
+
+    private String path(String fileName) {
+        return dir.resolve(fileName).toString();
+    }
+}
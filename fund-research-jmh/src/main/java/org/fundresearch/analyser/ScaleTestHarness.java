@@ -0,0 +1,207 @@
+package org.fundresearch.analyser;
+
+import org.fundresearch.enums.NumericMode;
+import org.fundresearch.enums.Partitioning;
+import org.fundresearch.util.Arguments;
+import org.fundresearch.util.UniverseGenerator;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+/**
+ * Runs {@link FundAnalyser} against a generated universe and records
+ * wall time, fund return rows per second and peak heap.<br>
+ * Input files are generated by {@link UniverseGenerator} unless the directory
+ * already holds them, so repeated runs measure the analyser only. e.g.
+ * <pre>
+ * java -cp fund-research-jmh/target/benchmarks.jar org.fundresearch.analyser.ScaleTestHarness \
+ *      --dir=/tmp/universe --funds=30000 --benchmarks=400 --years=30 \
+ *      --numericMode=FIXED_POINT --rankingParallelism=8 --parseParallelism=8 --runs=3 --results=scale.csv
+ * </pre>
+ * Results are printed, and appended as one CSV line per run to --results when given.
+ * With --rolling the rolling window report is generated instead of the monthly report.
+ * With --partitions=MONTH or YEAR the monthly report is partitioned, written by
+ * --writeParallelism threads.
+ * With --metrics the {@link AnalysisMetrics} of the run are printed and written as JSON
+ * to that path.
+ */
+public final class ScaleTestHarness {
+
+    private static final String REPORT_FILE = "monthlyOutPerformance.csv";
+    private static final String ROLLING_REPORT_FILE = "rollingOutPerformance.csv";
+    private static final String RESULT_HEADER =
+            "funds,benchmarks,years,numericMode,rankingParallelism,fundReturnRows,wallMillis,rowsPerSecond,peakHeapBytes\n";
+
+    private ScaleTestHarness() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        Arguments arguments = new Arguments(args);
+        Path dir = Paths.get(arguments.get("dir", "universe"));
+        UniverseGenerator generator = UniverseGenerator.fromArguments(arguments);
+
+        if (arguments.getBoolean("regenerate") || !Files.exists(dir.resolve(UniverseGenerator.FUND_RETURN_FILE))) {
+            System.out.println("Generating " + dir + " " + generator.generate(dir));
+        }
+        long rows = countLines(dir.resolve(UniverseGenerator.FUND_RETURN_FILE));
+
+        AnalyserOptions options = new AnalyserOptions();
+        options.setNumericMode(NumericMode.valueOf(arguments.get("numericMode", NumericMode.DECIMAL.name())));
+        options.setRankingParallelism(arguments.getInt("rankingParallelism", 1));
+        options.setParseParallelism(arguments.getInt("parseParallelism", 1));
+        options.setTopN(arguments.getInt("topN", 0));
+        options.setIncremental(arguments.getBoolean("incremental"));
+        options.setSnapshots(arguments.getBoolean("snapshots"));
+        options.setPipelined(arguments.getBoolean("pipelined"));
+        options.setWriteParallelism(arguments.getInt("writeParallelism", 1));
+        String partitions = arguments.get("partitions", null);
+        Partitioning partitioning = partitions == null ? null : Partitioning.valueOf(partitions);
+
+        Path output = Files.createDirectories(dir.resolve("report"));
+        for (int run = 0; run < arguments.getInt("runs", 1); run++) {
+            Result result = run(dir, output, options, rows, arguments.getBoolean("rolling"), partitioning);
+            String line = String.format(Locale.ROOT, "%d,%d,%d,%s,%d,%d,%d,%.0f,%d%n",
+                    arguments.getInt("funds", 1000), arguments.getInt("benchmarks", 40), arguments.getInt("years", 10),
+                    options.getNumericMode(), options.getRankingParallelism(),
+                    rows, result.wallMillis, result.rowsPerSecond(), result.peakHeapBytes);
+            System.out.print("\n" + RESULT_HEADER + line);
+            appendResult(arguments.get("results", null), line);
+
+            String metricsPath = arguments.get("metrics", null);
+            if (metricsPath != null) {
+                System.out.println(result.getMetrics().toJson());
+                result.getMetrics().writeJson(metricsPath);
+            }
+        }
+    }
+
+    /**
+     * Runs the analyser once.
+     *
+     * @param dir     - directory of the input files
+     * @param output  - directory of the report
+     * @param options - analyser options
+     * @param rows    - fund return rows in the input
+     * @return measurements of the run
+     */
+    public static Result run(Path dir, Path output, AnalyserOptions options, long rows) {
+        return run(dir, output, options, rows, false);
+    }
+
+    /**
+     * Runs the analyser once.
+     *
+     * @param dir     - directory of the input files
+     * @param output  - directory of the report
+     * @param options - analyser options
+     * @param rows    - fund return rows in the input
+     * @param rolling - true for the rolling window report, false for the monthly report
+     * @return measurements of the run
+     */
+    public static Result run(Path dir, Path output, AnalyserOptions options, long rows, boolean rolling) {
+        return run(dir, output, options, rows, rolling, null);
+    }
+
+    /**
+     * Runs the analyser once.
+     *
+     * @param dir          - directory of the input files
+     * @param output       - directory of the report
+     * @param options      - analyser options
+     * @param rows         - fund return rows in the input
+     * @param rolling      - true for the rolling window report, false for the monthly report
+     * @param partitioning - partitions of the monthly report, null for one report file
+     * @return measurements of the run
+     */
+    public static Result run(Path dir, Path output, AnalyserOptions options, long rows, boolean rolling,
+                             Partitioning partitioning) {
+        FundAnalyser analyser = new FundAnalyser(
+                dir.resolve(UniverseGenerator.FUND_FILE).toString(),
+                dir.resolve(UniverseGenerator.BENCHMARK_FILE).toString(),
+                dir.resolve(UniverseGenerator.FUND_RETURN_FILE).toString(),
+                dir.resolve(UniverseGenerator.BENCHMARK_RETURN_FILE).toString(),
+                options);
+
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+            if (pool.getType() == MemoryType.HEAP) pool.resetPeakUsage();
+
+        long start = System.nanoTime();
+        AnalysisMetrics metrics;
+        if (rolling) metrics = analyser.generateRollingOutPerformance(output.toString(), ROLLING_REPORT_FILE);
+        else if (partitioning != null)
+            metrics = analyser.generatePartitionedOutPerformance(output.toString(), REPORT_FILE, partitioning);
+        else metrics = analyser.generateMonthlyOutPerformance(output.toString(), REPORT_FILE);
+        long wallNanos = System.nanoTime() - start;
+
+        long peakHeap = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+            if (pool.getType() == MemoryType.HEAP) peakHeap += pool.getPeakUsage().getUsed();
+
+        return new Result(rows, wallNanos / 1000000, peakHeap, metrics);
+    }
+
+    private static long countLines(Path file) throws IOException {
+        try (Stream<String> lines = Files.lines(file)) {
+            return lines.filter(line -> line.trim().length() > 0).count();
+        }
+    }
+
+    private static void appendResult(String resultsPath, String line) throws IOException {
+        if (resultsPath == null) return;
+        Path results = Paths.get(resultsPath);
+        if (!Files.exists(results))
+            Files.write(results, RESULT_HEADER.getBytes(StandardCharsets.UTF_8));
+        Files.write(results, line.getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Measurements of one run.
+     */
+    public static final class Result {
+
+        private final long rows;
+        private final long wallMillis;
+        private final long peakHeapBytes;
+        private final AnalysisMetrics metrics;
+
+        public Result(long rows, long wallMillis, long peakHeapBytes) {
+            this(rows, wallMillis, peakHeapBytes, null);
+        }
+
+        public Result(long rows, long wallMillis, long peakHeapBytes, AnalysisMetrics metrics) {
+            this.rows = rows;
+            this.wallMillis = wallMillis;
+            this.peakHeapBytes = peakHeapBytes;
+            this.metrics = metrics;
+        }
+
+        public long getWallMillis() {
+            return wallMillis;
+        }
+
+        public long getPeakHeapBytes() {
+            return peakHeapBytes;
+        }
+
+        /**
+         * @return metrics of the run
+         */
+        public AnalysisMetrics getMetrics() {
+            return metrics;
+        }
+
+        public double rowsPerSecond() {
+            return wallMillis == 0 ? rows * 1000d : rows * 1000d / wallMillis;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package org.fundresearch.util;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Date parsing throughput of {@link AppUtil#toDate(String)} and {@link DateCodec}.<br>
+ * Parses a column of rows dates cycling through the month ends of a number of years.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AppUtilJmh {
+
+    @Param({"1", "10", "30"})
+    public int years;
+
+    @Param({"1000", "100000"})
+    public int rows;
+
+    private String[] column;
+
+    @Setup
+    public void setUp() {
+        String[] dates = new UniverseGenerator(1, 1, years, 0).monthEnds();
+        column = new String[rows];
+        for (int i = 0; i < rows; i++) column[i] = new String(dates[i % dates.length]);
+    }
+
+    @Benchmark
+    public void toDate(Blackhole blackhole) {
+        for (String date : column) blackhole.consume(AppUtil.toDate(date));
+    }
+
+    @Benchmark
+    public void dateKey(Blackhole blackhole) {
+        for (String date : column) blackhole.consume(DateCodec.key(date));
+    }
+}
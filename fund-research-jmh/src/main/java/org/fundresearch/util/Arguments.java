@@ -0,0 +1,47 @@
+package org.fundresearch.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Command line arguments of the form {@code --name=value}, or {@code --name} for true.
+ */
+public final class Arguments {
+
+    private final Map<String, String> values = new LinkedHashMap<>();
+
+    public Arguments(String... args) {
+        for (String arg : args) {
+            if (!arg.startsWith("--"))
+                throw new IllegalArgumentException("Invalid argument, expected --name=value: " + arg);
+            int equals = arg.indexOf('=');
+            if (equals < 0) values.put(arg.substring(2), "true");
+            else values.put(arg.substring(2, equals), arg.substring(equals + 1));
+        }
+    }
+
+    public String get(String name, String defaultValue) {
+        return values.getOrDefault(name, defaultValue);
+    }
+
+    public int getInt(String name, int defaultValue) {
+        return values.containsKey(name) ? Integer.parseInt(values.get(name)) : defaultValue;
+    }
+
+    public long getLong(String name, long defaultValue) {
+        return values.containsKey(name) ? Long.parseLong(values.get(name)) : defaultValue;
+    }
+
+    public double getDouble(String name, double defaultValue) {
+        return values.containsKey(name) ? Double.parseDouble(values.get(name)) : defaultValue;
+    }
+
+    public boolean getBoolean(String name) {
+        return Boolean.parseBoolean(values.getOrDefault(name, "false"));
+    }
+
+    @Override
+    public String toString() {
+        return values.toString();
+    }
+}
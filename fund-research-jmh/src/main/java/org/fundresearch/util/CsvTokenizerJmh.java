@@ -0,0 +1,82 @@
+package org.fundresearch.util;
+
+import org.fundresearch.enums.ReturnIndices;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Row tokenizing cost of a fund return series, as done by the extract stages.<br>
+ * {@link #split(Blackhole)} is the line.split(...) approach the tokenizer replaced,
+ * kept as a baseline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CsvTokenizerJmh {
+
+    private static final long SEED = 20170202L;
+
+    @Param({"100", "1000", "10000"})
+    public int funds;
+
+    @Param({"10"})
+    public int years;
+
+    private byte[] content;
+
+    @Setup
+    public void setUp() {
+        content = new UniverseGenerator(funds, 4, years, SEED).fundReturnCsv().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public void tokenizeDecimal(Blackhole blackhole) throws IOException {
+        try (CsvTokenizer row = new CsvTokenizer(new ByteArrayInputStream(content))) {
+            while (row.nextRow()) {
+                if (row.fieldCount() != 3) continue;
+                blackhole.consume(row.code(ReturnIndices.CODE.index()));
+                blackhole.consume(row.dateKey(ReturnIndices.DATE.index()));
+                blackhole.consume(row.decimal(ReturnIndices.RETURNS.index()));
+            }
+        }
+    }
+
+    @Benchmark
+    public void tokenizeFixedPoint(Blackhole blackhole) throws IOException {
+        try (CsvTokenizer row = new CsvTokenizer(new ByteArrayInputStream(content))) {
+            while (row.nextRow()) {
+                if (row.fieldCount() != 3) continue;
+                blackhole.consume(row.code(ReturnIndices.CODE.index()));
+                blackhole.consume(row.dateKey(ReturnIndices.DATE.index()));
+                blackhole.consume(row.fixedPoint(ReturnIndices.RETURNS.index()));
+            }
+        }
+    }
+
+    @Benchmark
+    public void split(Blackhole blackhole) throws IOException {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new ByteArrayInputStream(content), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().length() == 0) continue;
+                String[] split = line.split(AppUtil.LINE_SEPARATOR);
+                if (split.length != 3) continue;
+                blackhole.consume(split[ReturnIndices.CODE.index()].trim());
+                blackhole.consume(AppUtil.toDate(split[ReturnIndices.DATE.index()]));
+                blackhole.consume(new BigDecimal(split[ReturnIndices.RETURNS.index()]));
+            }
+        }
+    }
+}
@@ -0,0 +1,310 @@
+package org.fundresearch.util;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.Random;
+
+/**
+ * Deterministic, seeded generator of the four analyser input files.<br>
+ * <ul>
+ * <li>fund.csv - funds spread round robin over the benchmarks</li>
+ * <li>benchmark.csv - benchmark codes and names</li>
+ * <li>fundReturnSeries.csv - one return per fund per month end</li>
+ * <li>benchReturnSeries.csv - one return per benchmark per month end</li>
+ * </ul>
+ * The same sizes and seed always produce the same bytes. Optional rates add
+ * holes (missing months), duplicated rows and malformed rows (wrong number of
+ * fields) to the return files.<br>
+ * It can be run from the command line, e.g.
+ * {@code UniverseGenerator --dir=/tmp/universe --funds=30000 --benchmarks=400 --years=30}
+ *
+ * @see org.fundresearch.analyser.ScaleTestHarness
+ */
+public final class UniverseGenerator {
+
+    public static final String FUND_FILE = "fund.csv";
+    public static final String BENCHMARK_FILE = "benchmark.csv";
+    public static final String FUND_RETURN_FILE = "fundReturnSeries.csv";
+    public static final String BENCHMARK_RETURN_FILE = "benchReturnSeries.csv";
+
+    private static final int LAST_YEAR = 2016;
+
+    private final int funds;
+    private final int benchmarks;
+    private final int years;
+    private final long seed;
+
+    private double holeRate;
+    private double duplicateRate;
+    private double malformedRate;
+
+    /**
+     * @param funds      - number of funds
+     * @param benchmarks - number of benchmarks
+     * @param years      - years of monthly history, ending in December 2016
+     * @param seed       - random seed
+     */
+    public UniverseGenerator(int funds, int benchmarks, int years, long seed) {
+        if (funds < 1) throw new IllegalArgumentException("Invalid number of funds: " + funds);
+        if (benchmarks < 1) throw new IllegalArgumentException("Invalid number of benchmarks: " + benchmarks);
+        if (years < 1) throw new IllegalArgumentException("Invalid number of years: " + years);
+
+        this.funds = funds;
+        this.benchmarks = benchmarks;
+        this.years = years;
+        this.seed = seed;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Arguments arguments = new Arguments(args);
+        UniverseGenerator generator = fromArguments(arguments);
+        Stats stats = generator.generate(Paths.get(arguments.get("dir", "universe")));
+        System.out.println(stats);
+    }
+
+    /**
+     * Builds a generator from --funds, --benchmarks, --years, --seed,
+     * --holes, --duplicates and --malformed arguments.
+     *
+     * @param arguments - command line arguments
+     * @return generator
+     */
+    public static UniverseGenerator fromArguments(Arguments arguments) {
+        UniverseGenerator generator = new UniverseGenerator(
+                arguments.getInt("funds", 1000),
+                arguments.getInt("benchmarks", 40),
+                arguments.getInt("years", 10),
+                arguments.getLong("seed", 20170202L));
+        generator.setHoleRate(arguments.getDouble("holes", 0));
+        generator.setDuplicateRate(arguments.getDouble("duplicates", 0));
+        generator.setMalformedRate(arguments.getDouble("malformed", 0));
+        return generator;
+    }
+
+    /**
+     * @param holeRate - probability of a monthly return being left out
+     */
+    public void setHoleRate(double holeRate) {
+        this.holeRate = rate(holeRate);
+    }
+
+    /**
+     * @param duplicateRate - probability of a return row being written twice
+     */
+    public void setDuplicateRate(double duplicateRate) {
+        this.duplicateRate = rate(duplicateRate);
+    }
+
+    /**
+     * @param malformedRate - probability of a malformed row being written before a return row
+     */
+    public void setMalformedRate(double malformedRate) {
+        this.malformedRate = rate(malformedRate);
+    }
+
+    /**
+     * Writes the four input files into a directory, creating it if needed.
+     *
+     * @param dir - destination directory
+     * @return counts of what was written
+     * @throws IOException if a file cannot be written
+     */
+    public Stats generate(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        Stats stats = new Stats();
+
+        try (Writer writer = newWriter(dir.resolve(FUND_FILE))) {
+            writeFunds(writer);
+        }
+        try (Writer writer = newWriter(dir.resolve(BENCHMARK_FILE))) {
+            writeBenchmarks(writer);
+        }
+        try (Writer writer = newWriter(dir.resolve(FUND_RETURN_FILE))) {
+            stats.fundReturns = writeFundReturns(writer);
+        }
+        try (Writer writer = newWriter(dir.resolve(BENCHMARK_RETURN_FILE))) {
+            stats.benchmarkReturns = writeBenchmarkReturns(writer);
+        }
+        return stats;
+    }
+
+    /**
+     * @return month end dates in dd/MM/yyyy format, oldest first
+     */
+    public String[] monthEnds() {
+        String[] dates = new String[years * 12];
+        Calendar calendar = new GregorianCalendar(LAST_YEAR - years + 1, Calendar.JANUARY, 1);
+        for (int i = 0; i < dates.length; i++) {
+            calendar.set(Calendar.DATE, calendar.getActualMaximum(Calendar.DATE));
+            dates[i] = DateCodec.format(calendar.getTime());
+            calendar.set(Calendar.DATE, 1);
+            calendar.add(Calendar.MONTH, 1);
+        }
+        return dates;
+    }
+
+    public void writeFunds(Writer writer) throws IOException {
+        for (int f = 0; f < funds; f++)
+            writer.append("fund").append(Integer.toString(f))
+                    .append(",fund").append(Integer.toString(f)).append("name")
+                    .append(",bm").append(Integer.toString(f % benchmarks)).append('\n');
+    }
+
+    public void writeBenchmarks(Writer writer) throws IOException {
+        for (int b = 0; b < benchmarks; b++)
+            writer.append("bm").append(Integer.toString(b))
+                    .append(",bench").append(Integer.toString(b)).append("name\n");
+    }
+
+    /**
+     * @param writer - destination of the fund return rows
+     * @return counts of what was written
+     * @throws IOException if writing fails
+     */
+    public RowStats writeFundReturns(Writer writer) throws IOException {
+        return writeReturns(writer, "fund", funds, new Random(seed));
+    }
+
+    /**
+     * @param writer - destination of the benchmark return rows
+     * @return counts of what was written
+     * @throws IOException if writing fails
+     */
+    public RowStats writeBenchmarkReturns(Writer writer) throws IOException {
+        return writeReturns(writer, "bm", benchmarks, new Random(seed + 1));
+    }
+
+    /**
+     * @return fund return rows as a String, for in-memory benchmarks
+     */
+    public String fundReturnCsv() {
+        StringWriter writer = new StringWriter();
+        try {
+            writeFundReturns(writer);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return writer.toString();
+    }
+
+    private RowStats writeReturns(Writer writer, String prefix, int codes, Random random) throws IOException {
+        String[] dates = monthEnds();
+        RowStats stats = new RowStats();
+        StringBuilder row = new StringBuilder(48);
+
+        for (int c = 0; c < codes; c++) {
+            for (String date : dates) {
+                if (malformedRate > 0 && random.nextDouble() < malformedRate) {
+                    writer.append(malformedRow(random, prefix + c, date));
+                    stats.malformed++;
+                }
+                if (holeRate > 0 && random.nextDouble() < holeRate) {
+                    stats.holes++;
+                    continue;
+                }
+
+                row.setLength(0);
+                row.append(prefix).append(c).append(',').append(date).append(',');
+                FixedPoint.appendTo(row, Math.round(random.nextGaussian() * 2000000), 6).append('\n');
+                writer.append(row);
+                stats.rows++;
+
+                if (duplicateRate > 0 && random.nextDouble() < duplicateRate) {
+                    writer.append(row);
+                    stats.duplicates++;
+                }
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * @return a row with too few or too many fields, which the analyser counts as malformed.
+     * Blank lines are skipped without being counted, and a bad date fails the run.
+     */
+    private static String malformedRow(Random random, String code, String date) {
+        return random.nextBoolean() ? code + "," + date + "\n" : code + "," + date + ",0.1,extra\n";
+    }
+
+    private static Writer newWriter(Path path) throws IOException {
+        return new BufferedWriter(Files.newBufferedWriter(path, StandardCharsets.UTF_8), 1 << 16);
+    }
+
+    private static double rate(double rate) {
+        if (rate < 0 || rate > 1) throw new IllegalArgumentException("Invalid rate: " + rate);
+        return rate;
+    }
+
+    /**
+     * Counts of the rows written to one return file.
+     */
+    public static final class RowStats {
+
+        private long rows;
+        private long holes;
+        private long duplicates;
+        private long malformed;
+
+        /**
+         * @return valid return rows, duplicates excluded
+         */
+        public long getRows() {
+            return rows;
+        }
+
+        public long getHoles() {
+            return holes;
+        }
+
+        public long getDuplicates() {
+            return duplicates;
+        }
+
+        public long getMalformed() {
+            return malformed;
+        }
+
+        @Override
+        public String toString() {
+            return "RowStats{" +
+                    "rows=" + rows +
+                    ", holes=" + holes +
+                    ", duplicates=" + duplicates +
+                    ", malformed=" + malformed +
+                    '}';
+        }
+    }
+
+    /**
+     * Counts of the rows written by {@link #generate(Path)}.
+     */
+    public static final class Stats {
+
+        private RowStats fundReturns;
+        private RowStats benchmarkReturns;
+
+        public RowStats getFundReturns() {
+            return fundReturns;
+        }
+
+        public RowStats getBenchmarkReturns() {
+            return benchmarkReturns;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{" +
+                    "fundReturns=" + fundReturns +
+                    ", benchmarkReturns=" + benchmarkReturns +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package org.fundresearch.analyser;
+
+import org.fundresearch.enums.NumericMode;
+import org.fundresearch.enums.Partitioning;
+import org.fundresearch.util.DateCodec;
+
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * Options of a {@link FundAnalyser} run.<br>
+ * A default instance reproduces the original behaviour and report.
+ *
+ * @author aditya
+ * @see FundAnalyser
+ */
+public class AnalyserOptions {
+
+    private NumericMode numericMode = NumericMode.DECIMAL;
+    private int rankingParallelism = 1;
+    private int parseParallelism = 1;
+    private int writeParallelism = 1;
+    private int topN;
+    private boolean incremental;
+    private boolean snapshots;
+    private boolean pipelined;
+    private int[] rollingWindows = {3, 6, 12, 36};
+    private BenchmarkReturnCache benchmarkReturnCache;
+    // date keys (yyyyMMdd), inclusive
+    private int fromDateKey;
+    private int toDateKey = Integer.MAX_VALUE;
+
+    public AnalyserOptions() {
+    }
+
+    public NumericMode getNumericMode() {
+        return numericMode;
+    }
+
+    /**
+     * @param numericMode - arithmetic used for returns and excess. <b>Default: DECIMAL</b>
+     */
+    public void setNumericMode(NumericMode numericMode) {
+        if (numericMode == null) throw new IllegalArgumentException("Invalid numeric mode: " + numericMode);
+        this.numericMode = numericMode;
+    }
+
+    public int getRankingParallelism() {
+        return rankingParallelism;
+    }
+
+    /**
+     * @param rankingParallelism - number of threads ranking months in parallel,
+     *                           1 ranks on the caller thread. <b>Default: 1</b>
+     */
+    public void setRankingParallelism(int rankingParallelism) {
+        if (rankingParallelism < 1)
+            throw new IllegalArgumentException("Invalid ranking parallelism: " + rankingParallelism);
+        this.rankingParallelism = rankingParallelism;
+    }
+
+    public int getParseParallelism() {
+        return parseParallelism;
+    }
+
+    /**
+     * @param parseParallelism - number of threads parsing chunks of the fund return file,
+     *                         1 parses it on the caller thread. <b>Default: 1</b>
+     */
+    public void setParseParallelism(int parseParallelism) {
+        if (parseParallelism < 1)
+            throw new IllegalArgumentException("Invalid parse parallelism: " + parseParallelism);
+        this.parseParallelism = parseParallelism;
+    }
+
+    public int getWriteParallelism() {
+        return writeParallelism;
+    }
+
+    /**
+     * @param writeParallelism - number of threads writing the files of a partitioned report,
+     *                         1 writes them on the caller thread. <b>Default: 1</b>
+     * @see FundAnalyser#generatePartitionedOutPerformance(String, String, Partitioning)
+     */
+    public void setWriteParallelism(int writeParallelism) {
+        if (writeParallelism < 1)
+            throw new IllegalArgumentException("Invalid write parallelism: " + writeParallelism);
+        this.writeParallelism = writeParallelism;
+    }
+
+    public int getTopN() {
+        return topN;
+    }
+
+    /**
+     * @param topN - number of best and of worst ranked funds reported per month,
+     *             0 reports every fund. <b>Default: 0</b>
+     */
+    public void setTopN(int topN) {
+        if (topN < 0) throw new IllegalArgumentException("Invalid top N: " + topN);
+        this.topN = topN;
+    }
+
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    /**
+     * @param incremental - true to keep a state file next to the report and, when only
+     *                    new months were appended to the return files, parse and rank
+     *                    only those months and merge them into the existing report.
+     *                    <b>Default: false</b>
+     */
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    public boolean isSnapshots() {
+        return snapshots;
+    }
+
+    /**
+     * @param snapshots - true to write a binary snapshot next to the fund and return files
+     *                  after parsing them, and to load it instead of parsing while the file
+     *                  keeps the same size, modified time and checksum. <b>Default: false</b>
+     */
+    public void setSnapshots(boolean snapshots) {
+        this.snapshots = snapshots;
+    }
+
+    public boolean isPipelined() {
+        return pipelined;
+    }
+
+    /**
+     * @param pipelined - true to parse the input files at the same time, and to write every
+     *                  month of the report while older months are still being joined and
+     *                  ranked, instead of running one stage after another. The report is
+     *                  the same. <b>Default: false</b>
+     */
+    public void setPipelined(boolean pipelined) {
+        this.pipelined = pipelined;
+    }
+
+    public int[] getRollingWindows() {
+        return rollingWindows.clone();
+    }
+
+    /**
+     * @param rollingWindows - window lengths in months of the rolling report, in ascending
+     *                       order. <b>Default: 3, 6, 12, 36</b>
+     * @see FundAnalyser#generateRollingOutPerformance(String, String)
+     */
+    public void setRollingWindows(int... rollingWindows) {
+        if (rollingWindows == null || rollingWindows.length == 0)
+            throw new IllegalArgumentException("Invalid rolling windows: " + Arrays.toString(rollingWindows));
+        for (int i = 0; i < rollingWindows.length; i++)
+            if (rollingWindows[i] < 1 || (i > 0 && rollingWindows[i] <= rollingWindows[i - 1]))
+                throw new IllegalArgumentException("Invalid rolling windows: " + Arrays.toString(rollingWindows));
+        this.rollingWindows = rollingWindows.clone();
+    }
+
+    public BenchmarkReturnCache getBenchmarkReturnCache() {
+        return benchmarkReturnCache;
+    }
+
+    /**
+     * @param benchmarkReturnCache - cache of parsed benchmark return files, e.g.
+     *                             {@link BenchmarkReturnCache#shared()}, or null to parse the
+     *                             benchmark files on every run. A run answered from the cache
+     *                             records no benchmark parse in its metrics. <b>Default: null</b>
+     */
+    public void setBenchmarkReturnCache(BenchmarkReturnCache benchmarkReturnCache) {
+        this.benchmarkReturnCache = benchmarkReturnCache;
+    }
+
+    /**
+     * @return first date of the date range, null if the range has no lower bound
+     */
+    public Date getFromDate() {
+        return fromDateKey == 0 ? null : new Date(DateCodec.toDate(fromDateKey).getTime());
+    }
+
+    /**
+     * @return last date of the date range, null if the range has no upper bound
+     */
+    public Date getToDate() {
+        return toDateKey == Integer.MAX_VALUE ? null : new Date(DateCodec.toDate(toDateKey).getTime());
+    }
+
+    /**
+     * Limits every report to the returns dated within a range, e.g. the last 12 or 36 months.
+     * Return file rows are skipped as soon as their date is read, before their code and
+     * return are parsed, so a run costs the rows in the range rather than the full history.
+     * Skipped rows are counted as {@link AnalysisMetrics.DropReason#OUT_OF_DATE_RANGE}.<br>
+     * Snapshots are not used with a range, they hold whole files. Benchmark returns of a
+     * {@link #setBenchmarkReturnCache(BenchmarkReturnCache) cache} are parsed whole, so
+     * analyses of other ranges share them. The incremental mode does not support a range.
+     *
+     * @param from - first date of the range, inclusive, or null for no lower bound
+     * @param to   - last date of the range, inclusive, or null for no upper bound.
+     *             <b>Default: no range</b>
+     */
+    public void setDateRange(Date from, Date to) {
+        int fromKey = from == null ? 0 : DateCodec.key(from);
+        int toKey = to == null ? Integer.MAX_VALUE : DateCodec.key(to);
+        if (fromKey > toKey)
+            throw new IllegalArgumentException("Invalid date range: " + from + " - " + to);
+        this.fromDateKey = fromKey;
+        this.toDateKey = toKey;
+    }
+
+    /**
+     * @return true if the date range has a lower or an upper bound
+     */
+    boolean hasDateRange() {
+        return fromDateKey != 0 || toDateKey != Integer.MAX_VALUE;
+    }
+
+    /**
+     * @param dateKey - date key (yyyyMMdd)
+     * @return true if the date is within the date range
+     */
+    boolean isInDateRange(int dateKey) {
+        return dateKey >= fromDateKey && dateKey <= toDateKey;
+    }
+
+    @Override
+    public String toString() {
+        return "AnalyserOptions{" +
+                "numericMode=" + numericMode +
+                ", rankingParallelism=" + rankingParallelism +
+                ", parseParallelism=" + parseParallelism +
+                ", writeParallelism=" + writeParallelism +
+                ", topN=" + topN +
+                ", incremental=" + incremental +
+                ", snapshots=" + snapshots +
+                ", pipelined=" + pipelined +
+                ", rollingWindows=" + Arrays.toString(rollingWindows) +
+                ", benchmarkReturnCache=" + benchmarkReturnCache +
+                ", dateRange=" + (fromDateKey == 0 ? "" : DateCodec.format(fromDateKey)) + "-"
+                + (toDateKey == Integer.MAX_VALUE ? "" : DateCodec.format(toDateKey)) +
+                '}';
+    }
+}
@@ -0,0 +1,293 @@
+package org.fundresearch.analyser;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Metrics of one monthly report run, returned by
+ * {@link FundAnalyser#generateMonthlyOutPerformance(String, String)}.<br>
+ * It holds
+ * <ul>
+ * <li>wall time of the run and time spent in each {@link Stage}</li>
+ * <li>rows and bytes read by {@link Input} file, rows and bytes written to the report</li>
+ * <li>rows dropped by {@link DropReason}</li>
+ * <li>peak sizes of the collections retained by the run, by {@link Peak}</li>
+ * </ul>
+ * Counters may be updated from several threads, e.g. while the inputs of a pipelined
+ * run are parsed at the same time. Stage times are then summed over the threads,
+ * so they can add up to more than the wall time.
+ *
+ * @author aditya
+ * @see #toJson()
+ */
+public final class AnalysisMetrics {
+
+    /**
+     * Stages of a run.
+     */
+    public enum Stage {
+        /**
+         * Reading and tokenizing the input files, one streaming pass,
+         * or loading them from snapshots
+         */
+        PARSE,
+        /**
+         * Joining fund returns with benchmark returns, incl. top N selection
+         */
+        JOIN,
+        /**
+         * Sorting and ranking the months
+         */
+        RANK,
+        /**
+         * Writing the report, incl. month blocks copied by an incremental run
+         */
+        WRITE
+    }
+
+    /**
+     * Reasons a row does not make it into the report.
+     */
+    public enum DropReason {
+        /**
+         * Fund file row without 3 fields
+         */
+        MALFORMED_FUND,
+        /**
+         * Benchmark file row without 2 fields
+         */
+        MALFORMED_BENCHMARK,
+        /**
+         * Fund return file row without 3 fields
+         */
+        MALFORMED_FUND_RETURN,
+        /**
+         * Benchmark return file row without 3 fields
+         */
+        MALFORMED_BENCHMARK_RETURN,
+        /**
+         * Return file row dated outside the date range, see {@link AnalyserOptions#setDateRange}
+         */
+        OUT_OF_DATE_RANGE,
+        /**
+         * Fund return of a fund missing from the fund file
+         */
+        UNKNOWN_FUND,
+        /**
+         * Fund return without a return of the fund's benchmark for the same date
+         */
+        MISSING_BENCHMARK_RETURN,
+        /**
+         * Joined fund return neither in the top nor in the bottom N of its month
+         */
+        BELOW_TOP_N
+    }
+
+    /**
+     * Input files of a run.
+     */
+    public enum Input {
+        FUND(DropReason.MALFORMED_FUND),
+        BENCHMARK(DropReason.MALFORMED_BENCHMARK),
+        FUND_RETURN(DropReason.MALFORMED_FUND_RETURN),
+        BENCHMARK_RETURN(DropReason.MALFORMED_BENCHMARK_RETURN);
+
+        private final DropReason malformed;
+
+        Input(DropReason malformed) {
+            this.malformed = malformed;
+        }
+
+        /**
+         * @return reason of a row of this file with the wrong number of fields
+         */
+        public DropReason malformed() {
+            return malformed;
+        }
+    }
+
+    /**
+     * Collections retained by a run.
+     */
+    public enum Peak {
+        /**
+         * Funds of the fund file
+         */
+        FUNDS,
+        /**
+         * Rows of the fund return store
+         */
+        FUND_RETURN_ROWS,
+        /**
+         * Rows of the benchmark return store
+         */
+        BENCHMARK_RETURN_ROWS,
+        /**
+         * Joined performance rows held at the same time
+         */
+        JOINED_ROWS
+    }
+
+    private final AtomicLongArray stageNanos = new AtomicLongArray(Stage.values().length);
+    private final AtomicLongArray rowsIn = new AtomicLongArray(Input.values().length);
+    private final AtomicLongArray bytesRead = new AtomicLongArray(Input.values().length);
+    private final AtomicLongArray dropped = new AtomicLongArray(DropReason.values().length);
+    private final AtomicLongArray peaks = new AtomicLongArray(Peak.values().length);
+    private final AtomicLong rowsOut = new AtomicLong();
+    private volatile long wallNanos;
+    private volatile long bytesWritten;
+
+    /**
+     * @param stage - stage of the run
+     * @param nanos - time spent in the stage
+     */
+    public void addNanos(Stage stage, long nanos) {
+        stageNanos.addAndGet(stage.ordinal(), nanos);
+    }
+
+    /**
+     * @return time spent in a stage, summed over threads, in nanoseconds
+     */
+    public long getNanos(Stage stage) {
+        return stageNanos.get(stage.ordinal());
+    }
+
+    public long getWallNanos() {
+        return wallNanos;
+    }
+
+    public void setWallNanos(long wallNanos) {
+        this.wallNanos = wallNanos;
+    }
+
+    /**
+     * @param input - input file
+     * @param rows  - rows read from the file, dropped rows included
+     * @param bytes - bytes read from the file
+     */
+    public void addRead(Input input, long rows, long bytes) {
+        rowsIn.addAndGet(input.ordinal(), rows);
+        bytesRead.addAndGet(input.ordinal(), bytes);
+    }
+
+    /**
+     * @return rows read from an input file, dropped rows included
+     */
+    public long getRowsIn(Input input) {
+        return rowsIn.get(input.ordinal());
+    }
+
+    /**
+     * @return bytes read from an input file
+     */
+    public long getBytesRead(Input input) {
+        return bytesRead.get(input.ordinal());
+    }
+
+    /**
+     * @param reason - reason of the drop
+     * @param rows   - dropped rows
+     */
+    public void addDropped(DropReason reason, long rows) {
+        dropped.addAndGet(reason.ordinal(), rows);
+    }
+
+    /**
+     * @return rows dropped for a reason
+     */
+    public long getDropped(DropReason reason) {
+        return dropped.get(reason.ordinal());
+    }
+
+    /**
+     * Records a size of a retained collection, keeping the largest one.
+     *
+     * @param peak - retained collection
+     * @param size - current size of the collection
+     */
+    public void updatePeak(Peak peak, long size) {
+        peaks.accumulateAndGet(peak.ordinal(), size, Math::max);
+    }
+
+    /**
+     * @return largest recorded size of a retained collection
+     */
+    public long getPeak(Peak peak) {
+        return peaks.get(peak.ordinal());
+    }
+
+    /**
+     * @param rows - performance rows written to the report
+     */
+    public void addRowsOut(long rows) {
+        rowsOut.addAndGet(rows);
+    }
+
+    /**
+     * @return performance rows written to the report by this run. Rows of month blocks
+     * copied by an incremental run are not counted.
+     */
+    public long getRowsOut() {
+        return rowsOut.get();
+    }
+
+    /**
+     * @return length of the written report, header included
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    public void setBytesWritten(long bytesWritten) {
+        this.bytesWritten = bytesWritten;
+    }
+
+    /**
+     * @return the metrics as one JSON object, times in nanoseconds, e.g.<br>
+     * {@code {"wallNanos":1200,"stageNanos":{"PARSE":800,...},"rowsIn":{"FUND":10,...},
+     * "bytesRead":{...},"rowsOut":25,"bytesWritten":2048,"droppedRows":{...},"peakSizes":{...}}}
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder(512);
+        json.append("{\"wallNanos\":").append(wallNanos);
+        appendObject(json.append(",\"stageNanos\":"), Stage.values(), stageNanos);
+        appendObject(json.append(",\"rowsIn\":"), Input.values(), rowsIn);
+        appendObject(json.append(",\"bytesRead\":"), Input.values(), bytesRead);
+        json.append(",\"rowsOut\":").append(rowsOut.get());
+        json.append(",\"bytesWritten\":").append(bytesWritten);
+        appendObject(json.append(",\"droppedRows\":"), DropReason.values(), dropped);
+        appendObject(json.append(",\"peakSizes\":"), Peak.values(), peaks);
+        return json.append('}').toString();
+    }
+
+    /**
+     * Writes {@link #toJson()} to a file, replacing it.
+     *
+     * @param filePath - path of the JSON file
+     */
+    public void writeJson(String filePath) {
+        try {
+            Files.write(Paths.get(filePath), toJson().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Unable to write file " + filePath, e);
+        }
+    }
+
+    private static void appendObject(StringBuilder json, Enum<?>[] keys, AtomicLongArray values) {
+        json.append('{');
+        for (int i = 0; i < keys.length; i++) {
+            if (i > 0) json.append(',');
+            json.append('"').append(keys[i].name()).append("\":").append(values.get(i));
+        }
+        json.append('}');
+    }
+
+    @Override
+    public String toString() {
+        return "AnalysisMetrics" + toJson();
+    }
+}
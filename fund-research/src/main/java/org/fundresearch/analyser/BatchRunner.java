@@ -0,0 +1,141 @@
+package org.fundresearch.analyser;
+
+import org.fundresearch.models.BenchmarkReturns;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generates the monthly out performance report of many universes on a fixed number of
+ * threads, see {@link FundAnalyser#generateMonthlyOutPerformance(String, String)}.<br>
+ * Every distinct pair of benchmark file and benchmark return file is parsed once per run,
+ * by the first universe that needs it, while the other universes of that pair wait for it.
+ * The parsed {@link BenchmarkReturns} are read only, so they are shared by all of them.<br>
+ * A universe that fails does not stop the others, its failure is kept in the
+ * {@link BatchSummary}. When a shared benchmark file cannot be parsed, every universe
+ * using it fails with the same failure.
+ *
+ * @author aditya
+ * @see Universe
+ * @see BatchSummary
+ */
+public final class BatchRunner {
+
+    private final AnalyserOptions options;
+    private final int threads;
+
+    /**
+     * @param options - options of every analysis
+     * @param threads - number of universes analysed at the same time
+     */
+    public BatchRunner(AnalyserOptions options, int threads) {
+        if (options == null) throw new IllegalArgumentException("Invalid options: " + options);
+        if (threads < 1) throw new IllegalArgumentException("Invalid number of threads: " + threads);
+
+        this.options = options;
+        this.threads = threads;
+    }
+
+    /**
+     * Runs every universe and waits for all of them.
+     *
+     * @param universes - universes to analyse
+     * @return outcome of every universe, in the given order
+     */
+    public BatchSummary run(List<Universe> universes) {
+        if (universes == null) throw new IllegalArgumentException("Invalid universes: " + universes);
+
+        long start = System.nanoTime();
+        ConcurrentMap<String, CompletableFuture<BenchmarkReturns>> benchmarks = new ConcurrentHashMap<>();
+        AtomicInteger benchmarkParses = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, universes.size())));
+        try {
+            List<Future<BatchSummary.Outcome>> runs = new ArrayList<>(universes.size());
+            for (Universe universe : universes)
+                runs.add(executor.submit(() -> run(universe, benchmarks, benchmarkParses)));
+
+            List<BatchSummary.Outcome> outcomes = new ArrayList<>(universes.size());
+            for (Future<BatchSummary.Outcome> run : runs) outcomes.add(run.get());
+            return new BatchSummary(outcomes, benchmarkParses.get(), System.nanoTime() - start);
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while running universes", e);
+        } catch (ExecutionException e) {
+            // runs catch their own failures
+            throw new IllegalStateException("Unable to run universes", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private BatchSummary.Outcome run(Universe universe,
+                                     ConcurrentMap<String, CompletableFuture<BenchmarkReturns>> benchmarks,
+                                     AtomicInteger benchmarkParses) {
+        try {
+            FundAnalyser analyser = new FundAnalyser(universe.getFundCsvPath(), universe.getBenchmarkCsvPath(),
+                    universe.getFundReturnCsvPath(), universe.getBenchmarkReturnCsvPath(), options);
+
+            BenchmarkReturns benchmarkReturns = benchmarkReturnsOf(analyser, universe, benchmarks, benchmarkParses);
+            AnalysisMetrics metrics = analyser.generateMonthlyOutPerformance(universe.getDestinationDirectoryPath(),
+                    universe.getOutputFileName(), benchmarkReturns);
+            return new BatchSummary.Outcome(universe, metrics, null);
+
+        } catch (RuntimeException e) {
+            return new BatchSummary.Outcome(universe, null, e);
+        }
+    }
+
+    /**
+     * @return benchmark returns of the universe, parsed by this thread if no other universe parsed them yet
+     */
+    private static BenchmarkReturns benchmarkReturnsOf(
+            FundAnalyser analyser, Universe universe,
+            ConcurrentMap<String, CompletableFuture<BenchmarkReturns>> benchmarks, AtomicInteger benchmarkParses) {
+        String key = keyOf(universe.getBenchmarkCsvPath()) + '|' + keyOf(universe.getBenchmarkReturnCsvPath());
+
+        CompletableFuture<BenchmarkReturns> parsed = new CompletableFuture<>();
+        CompletableFuture<BenchmarkReturns> previous = benchmarks.putIfAbsent(key, parsed);
+        if (previous == null) {
+            benchmarkParses.incrementAndGet();
+            try {
+                parsed.complete(analyser.loadBenchmarkReturns(new AnalysisMetrics()));
+            } catch (RuntimeException | Error e) {
+                // the universes waiting for it fail too
+                parsed.completeExceptionally(e);
+            }
+        } else {
+            parsed = previous;
+        }
+
+        try {
+            return parsed.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw e;
+        }
+    }
+
+    private static String keyOf(String filePath) {
+        return filePath == null ? "" : Paths.get(filePath).toAbsolutePath().normalize().toString();
+    }
+
+    @Override
+    public String toString() {
+        return "BatchRunner{" +
+                "options=" + options +
+                ", threads=" + threads +
+                '}';
+    }
+}
@@ -0,0 +1,120 @@
+package org.fundresearch.analyser;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of every universe of a {@link BatchRunner} run, in the order the universes
+ * were given.
+ *
+ * @author aditya
+ * @see BatchRunner
+ */
+public final class BatchSummary {
+
+    private final List<Outcome> outcomes;
+    private final int benchmarkParses;
+    private final long wallNanos;
+
+    BatchSummary(List<Outcome> outcomes, int benchmarkParses, long wallNanos) {
+        this.outcomes = Collections.unmodifiableList(new ArrayList<>(outcomes));
+        this.benchmarkParses = benchmarkParses;
+        this.wallNanos = wallNanos;
+    }
+
+    /**
+     * @return outcome of every universe, in the order the universes were given
+     */
+    public List<Outcome> getOutcomes() {
+        return outcomes;
+    }
+
+    /**
+     * @return number of universes whose report was written
+     */
+    public int getSucceeded() {
+        int succeeded = 0;
+        for (Outcome outcome : outcomes) if (outcome.isSucceeded()) succeeded++;
+        return succeeded;
+    }
+
+    /**
+     * @return outcomes of the universes that failed
+     */
+    public List<Outcome> getFailures() {
+        List<Outcome> failures = new ArrayList<>();
+        for (Outcome outcome : outcomes) if (!outcome.isSucceeded()) failures.add(outcome);
+        return failures;
+    }
+
+    /**
+     * @return number of distinct benchmark files parsed for the batch
+     */
+    public int getBenchmarkParses() {
+        return benchmarkParses;
+    }
+
+    public long getWallNanos() {
+        return wallNanos;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder summary = new StringBuilder("BatchSummary{")
+                .append("universes=").append(outcomes.size())
+                .append(", succeeded=").append(getSucceeded())
+                .append(", failed=").append(outcomes.size() - getSucceeded())
+                .append(", benchmarkParses=").append(benchmarkParses)
+                .append(", wallMillis=").append(wallNanos / 1000000);
+        for (Outcome failure : getFailures())
+            summary.append(", ").append(failure.getUniverse().getName()).append(": ").append(failure.getFailure());
+        return summary.append('}').toString();
+    }
+
+    /**
+     * Report metrics of a universe, or why it failed.
+     */
+    public static final class Outcome {
+
+        private final Universe universe;
+        private final AnalysisMetrics metrics;
+        private final RuntimeException failure;
+
+        Outcome(Universe universe, AnalysisMetrics metrics, RuntimeException failure) {
+            this.universe = universe;
+            this.metrics = metrics;
+            this.failure = failure;
+        }
+
+        public Universe getUniverse() {
+            return universe;
+        }
+
+        public boolean isSucceeded() {
+            return failure == null;
+        }
+
+        /**
+         * @return metrics of the run, without the parsing of the shared benchmark files, null if it failed
+         */
+        public AnalysisMetrics getMetrics() {
+            return metrics;
+        }
+
+        /**
+         * @return failure of the run, null if it succeeded
+         */
+        public RuntimeException getFailure() {
+            return failure;
+        }
+
+        @Override
+        public String toString() {
+            return "Outcome{" +
+                    "universe=" + universe.getName() +
+                    (failure == null ? ", metrics=" + metrics : ", failure=" + failure) +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package org.fundresearch.analyser;
+
+import org.fundresearch.enums.NumericMode;
+import org.fundresearch.models.BenchmarkReturns;
+import org.fundresearch.util.AppUtil;
+import org.fundresearch.util.FileFingerprint;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * Size bounded LRU cache of parsed benchmark return files, shared by the analysers of
+ * a process, see {@link AnalyserOptions#setBenchmarkReturnCache(BenchmarkReturnCache)}.<br>
+ * Entries are keyed by the absolute path of the benchmark return file and the numeric
+ * mode, and hold the {@link FileFingerprint} the file had when it was parsed. An entry is
+ * used only while the file keeps that fingerprint, a changed file is parsed again. Size and
+ * last modified time are compared first, the checksum, which reads the whole file, is
+ * computed only when both match the entry, or once by the parse of a new entry.
+ * The benchmark file only gives benchmarks their ids, it does not change the joins, so
+ * it is not part of the key.<br>
+ * Every entry is charged an estimate of its heap size, see {@link #weightOf(BenchmarkReturns)}.
+ * When the cache is over its capacity, the least recently used entries are evicted.
+ * Entries larger than the capacity are not cached.<br>
+ * Instances are thread safe. Analysers asking for the same file with the same size and
+ * last modified time at the same time wait for one parse, which runs on the thread that
+ * asked first, outside the cache lock. A failed parse is not cached, every waiting analyser
+ * gets its failure.
+ *
+ * @author aditya
+ * @see BenchmarkReturns
+ */
+public final class BenchmarkReturnCache {
+
+    /**
+     * Capacity of the {@link #shared()} cache in bytes
+     */
+    public static final long DEFAULT_CAPACITY = 64L << 20;
+
+    private static final int ENTRY_OVERHEAD = 256;
+    private static final int FIXED_POINT_ROW_BYTES = 48;
+    private static final int DECIMAL_ROW_BYTES = 96;
+    private static final int CODE_BYTES = 96;
+
+    private static volatile BenchmarkReturnCache shared;
+
+    private final long capacity;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Loading> loading = new HashMap<>();
+    private long size;
+    private long hits;
+    private long misses;
+    private long loads;
+    private long evictions;
+
+    /**
+     * @param capacity - capacity in bytes, of the estimated heap size of the entries
+     */
+    public BenchmarkReturnCache(long capacity) {
+        if (capacity < 0) throw new IllegalArgumentException("Invalid cache capacity: " + capacity);
+        this.capacity = capacity;
+    }
+
+    /**
+     * @return the process wide cache of {@link #DEFAULT_CAPACITY} bytes, created on first use
+     */
+    public static BenchmarkReturnCache shared() {
+        BenchmarkReturnCache cache = shared;
+        if (cache == null) {
+            synchronized (BenchmarkReturnCache.class) {
+                cache = shared;
+                if (cache == null) shared = cache = new BenchmarkReturnCache(DEFAULT_CAPACITY);
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Returns the cached benchmark returns of a file, or parses them with the loader.
+     *
+     * @param filePath    - path of the benchmark return csv file
+     * @param numericMode - numeric mode of the returns
+     * @param loader      - parses the file, on the calling thread
+     * @return benchmark returns of the file as it is now
+     */
+    BenchmarkReturns get(String filePath, NumericMode numericMode, Supplier<BenchmarkReturns> loader) {
+
+        // nothing to key a missing file by
+        if (!AppUtil.isFileValid(filePath)) return loader.get();
+
+        long size, lastModified;
+        Path path = Paths.get(filePath);
+        try {
+            size = Files.size(path);
+            lastModified = Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Unable to read file " + filePath, e);
+        }
+
+        String key = path.toAbsolutePath().normalize() + "|" + numericMode;
+        boolean candidate;
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            candidate = entry != null && entry.fingerprint.getSize() == size
+                    && entry.fingerprint.getLastModified() == lastModified;
+        }
+        // a file rewritten within the resolution of the last modified time keeps its size and time
+        FileFingerprint fingerprint = candidate ? FileFingerprint.of(filePath, size, lastModified) : null;
+
+        Loading load;
+        boolean leader = false;
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.fingerprint.equals(fingerprint)) {
+                hits++;
+                return entry.benchmarkReturns;
+            }
+            misses++;
+
+            load = loading.get(key);
+            if (load == null || load.size != size || load.lastModified != lastModified) {
+                load = new Loading(size, lastModified);
+                loading.put(key, load);
+                loads++;
+                leader = true;
+            }
+        }
+
+        if (leader) load(key, load, filePath, loader);
+
+        try {
+            return load.future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error) throw (Error) e.getCause();
+            throw e;
+        }
+    }
+
+    private void load(String key, Loading load, String filePath, Supplier<BenchmarkReturns> loader) {
+        FileFingerprint fingerprint;
+        BenchmarkReturns benchmarkReturns;
+        try {
+            // taken before parsing, so a file changed meanwhile does not match the entry later
+            fingerprint = FileFingerprint.of(filePath, load.size, load.lastModified);
+            benchmarkReturns = loader.get();
+        } catch (RuntimeException | Error e) {
+            synchronized (this) {
+                loading.remove(key, load);
+            }
+            load.future.completeExceptionally(e);
+            return;
+        }
+
+        synchronized (this) {
+            loading.remove(key, load);
+            put(key, new Entry(fingerprint, benchmarkReturns));
+        }
+        load.future.complete(benchmarkReturns);
+    }
+
+    /**
+     * Caches an entry, evicting the least recently used entries over the capacity.
+     */
+    private void put(String key, Entry entry) {
+        Entry previous = entries.remove(key);
+        if (previous != null) size -= previous.weight;
+        if (entry.weight > capacity) return;
+
+        entries.put(key, entry);
+        size += entry.weight;
+
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (size > capacity) {
+            size -= eldest.next().weight;
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Estimated heap size of parsed benchmark returns: the store columns, the key map and
+     * the BigDecimal of every row in decimal mode, and the codes.
+     *
+     * @param benchmarkReturns - parsed benchmark returns
+     * @return estimate in bytes
+     */
+    static long weightOf(BenchmarkReturns benchmarkReturns) {
+        long rowBytes = benchmarkReturns.getStore().isFixedPoint() ? FIXED_POINT_ROW_BYTES : DECIMAL_ROW_BYTES;
+        return ENTRY_OVERHEAD + benchmarkReturns.getStore().size() * rowBytes
+                + (long) benchmarkReturns.getStore().codeCount() * CODE_BYTES;
+    }
+
+    /**
+     * Drops every entry. Parses running now still complete for their callers.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        size = 0;
+    }
+
+    /**
+     * @return estimated heap size of the entries in bytes
+     */
+    public synchronized long size() {
+        return size;
+    }
+
+    /**
+     * @return requests answered from an entry
+     */
+    public synchronized long hits() {
+        return hits;
+    }
+
+    /**
+     * @return requests not answered from an entry, they started or waited for a parse
+     */
+    public synchronized long misses() {
+        return misses;
+    }
+
+    /**
+     * @return parses started, fewer than the misses when requests waited for the same parse
+     */
+    public synchronized long loads() {
+        return loads;
+    }
+
+    /**
+     * @return entries evicted over the capacity
+     */
+    public synchronized long evictions() {
+        return evictions;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "BenchmarkReturnCache{" +
+                "capacity=" + capacity +
+                ", size=" + size +
+                ", entries=" + entries.size() +
+                ", hits=" + hits +
+                ", misses=" + misses +
+                ", loads=" + loads +
+                ", evictions=" + evictions +
+                '}';
+    }
+
+    /**
+     * Parsed file and the fingerprint it was parsed at.
+     */
+    private static final class Entry {
+
+        private final FileFingerprint fingerprint;
+        private final BenchmarkReturns benchmarkReturns;
+        private final long weight;
+
+        private Entry(FileFingerprint fingerprint, BenchmarkReturns benchmarkReturns) {
+            this.fingerprint = fingerprint;
+            this.benchmarkReturns = benchmarkReturns;
+            this.weight = weightOf(benchmarkReturns);
+        }
+    }
+
+    /**
+     * Parse in progress, waited for by the requests of the same size and last modified time.
+     */
+    private static final class Loading {
+
+        private final long size;
+        private final long lastModified;
+        private final CompletableFuture<BenchmarkReturns> future = new CompletableFuture<>();
+
+        private Loading(long size, long lastModified) {
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+    }
+}
@@ -2,16 +2,47 @@ package org.fundresearch.analyser;
 
 import org.fundresearch.enums.BenchmarkIndices;
 import org.fundresearch.enums.FundIndices;
+import org.fundresearch.enums.NumericMode;
+import org.fundresearch.enums.Partitioning;
 import org.fundresearch.enums.ReturnIndices;
-import org.fundresearch.enums.ReturnsType;
 import org.fundresearch.models.Benchmark;
+import org.fundresearch.models.BenchmarkReturns;
 import org.fundresearch.models.Fund;
 import org.fundresearch.models.Performance;
+import org.fundresearch.models.ReturnSeriesStore;
+import org.fundresearch.models.RollingPerformance;
 import org.fundresearch.models.Returns;
 import org.fundresearch.util.AppUtil;
+import org.fundresearch.util.BinaryReportReader;
+import org.fundresearch.util.BinaryReportWriter;
+import org.fundresearch.util.CodeDictionary;
+import org.fundresearch.util.CsvTokenizer;
+import org.fundresearch.util.DateCodec;
+import org.fundresearch.util.FileFingerprint;
+import org.fundresearch.util.FixedPoint;
+import org.fundresearch.util.ReportWriter;
+import org.fundresearch.util.SnapshotFile;
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 /**
  * It has one parameterize constructor which takes 4 files path.<br>
@@ -26,6 +57,8 @@ import java.util.*;
  * <li>Calculate Excess</li>
  * <li>Calculate Performance</li>
  * <li>Generate monthly performance</li>
+ * <li>Generate rolling window performance</li>
+ * <li>Load a research engine for repeated queries</li>
  * </ul>
  *
  * @author aditya
@@ -39,10 +72,26 @@ import java.util.*;
  */
 public class FundAnalyser {
 
+    private static final String ROLLING_REPORT_FILE = "rollingOutPerformance.csv";
+    private static final String BINARY_REPORT_FILE = "monthlyOutPerformance.frb";
+    /**
+     * Threads of a pipelined run: three parsers and the month producer.
+     */
+    private static final int PIPELINE_THREADS = 4;
+    /**
+     * Ranked months a pipelined run queues for the writer.
+     */
+    private static final int PIPELINE_CAPACITY = 8;
+    /**
+     * Marks the end of the ranked months of a pipelined run, compared by identity.
+     */
+    private static final List<Performance> END_OF_MONTHS = new ArrayList<>(0);
+
     private String fundCsvPath;
     private String benchmarkCsvPath;
     private String fundReturnCsvPath;
     private String benchmarkReturnCsvPath;
+    private AnalyserOptions options;
 
     /**
      * Parameterize constructor
@@ -60,10 +109,29 @@ public class FundAnalyser {
      */
     public FundAnalyser(String fundCsvPath, String benchmarkCsvPath,
                         String fundReturnCsvPath, String benchmarkReturnCsvPath) {
+        this(fundCsvPath, benchmarkCsvPath, fundReturnCsvPath, benchmarkReturnCsvPath, new AnalyserOptions());
+    }
+
+    /**
+     * Parameterize constructor with user defined options.
+     *
+     * @param fundCsvPath            - path of a fund csv file
+     * @param benchmarkCsvPath       - path of a benchmark csv file
+     * @param fundReturnCsvPath      - path of a fund return csv file
+     * @param benchmarkReturnCsvPath - path of a benchmark return csv file
+     * @param options                - options of the analysis
+     * @see AnalyserOptions
+     */
+    public FundAnalyser(String fundCsvPath, String benchmarkCsvPath,
+                        String fundReturnCsvPath, String benchmarkReturnCsvPath,
+                        AnalyserOptions options) {
+        if (options == null) throw new IllegalArgumentException("Invalid options: " + options);
+
         this.fundCsvPath = fundCsvPath;
         this.benchmarkCsvPath = benchmarkCsvPath;
         this.fundReturnCsvPath = fundReturnCsvPath;
         this.benchmarkReturnCsvPath = benchmarkReturnCsvPath;
+        this.options = options;
     }
 
     /**
@@ -75,13 +143,309 @@ public class FundAnalyser {
      * @param destinationDirectoryPath - A directory path where the report file should be store.
      * @param outputFileName           - (optional) Either null or the user defined file name
      *                                 for the output report. <b>Default: monthlyOutPerformance.csv</b>
+     * @return metrics of the run: stage times, rows and bytes in and out, dropped rows and peak sizes
      * @see AppUtil
      * @see Fund
      * @see Benchmark
      * @see Returns
      * @see Performance
+     * @see AnalysisMetrics
+     */
+    public AnalysisMetrics generateMonthlyOutPerformance(String destinationDirectoryPath, String outputFileName) {
+
+        return generateMonthlyOutPerformance(destinationDirectoryPath, outputFileName, null);
+    }
+
+    /**
+     * Same as {@link #generateMonthlyOutPerformance(String, String)}, joining the fund returns
+     * with benchmark returns parsed before, e.g. shared by the universes of a {@link BatchRunner}.
+     * An incremental append parses the benchmark files itself.
+     *
+     * @param destinationDirectoryPath - A directory path where the report file should be store.
+     * @param outputFileName           - (optional) Either null or the user defined file name
+     *                                 for the output report. <b>Default: monthlyOutPerformance.csv</b>
+     * @param sharedBenchmarkReturns   - benchmark returns of this analyser's benchmark files,
+     *                                 or null to parse them
+     * @return metrics of the run, without the parsing of shared benchmark returns
+     * @see #loadBenchmarkReturns(AnalysisMetrics)
+     */
+    AnalysisMetrics generateMonthlyOutPerformance(String destinationDirectoryPath, String outputFileName,
+                                                  BenchmarkReturns sharedBenchmarkReturns) {
+
+        long start = System.nanoTime();
+
+        if (!AppUtil.isFileValid(destinationDirectoryPath))
+            throw new IllegalArgumentException("Directory path not exists: " + destinationDirectoryPath);
+
+        if (!AppUtil.isValidFileName(outputFileName))
+            throw new IllegalArgumentException("Not a valid CSV file name: " + outputFileName);
+
+        if (options.isIncremental() && options.hasDateRange())
+            throw new IllegalStateException("Date range is not supported in incremental mode");
+
+        if (options.isIncremental()) {
+            // the metrics of an append that gives up are not mixed with the full run
+            AnalysisMetrics appended = new AnalysisMetrics();
+            String reportPath = AppUtil.getReportPath(destinationDirectoryPath, outputFileName);
+            if (appendMonthlyOutPerformance(reportPath, appended)) {
+                appended.setWallNanos(System.nanoTime() - start);
+                return appended;
+            }
+        }
+
+        AnalysisMetrics metrics = new AnalysisMetrics();
+
+        // inputs are fingerprinted before they are read
+        ReportState state = options.isIncremental() ? newReportState() : null;
+
+        if (options.isPipelined()) {
+            pipelineMonthlyOutPerformance(destinationDirectoryPath, outputFileName, sharedBenchmarkReturns, state,
+                    metrics);
+            if (state != null)
+                state.save(AppUtil.getReportPath(destinationDirectoryPath, outputFileName));
+            metrics.setWallNanos(System.nanoTime() - start);
+            return metrics;
+        }
+
+        Map<String, Fund> fundMap = extractFundData(fundCsvPath, metrics);
+
+        // fund return rows are parsed straight into the code ids of the fund and benchmark files
+        ReturnSeriesStore fundReturnsData = extractFundReturnsData(fundReturnCsvPath, fundCodesOf(fundMap), metrics);
+
+        BenchmarkReturns benchmarkReturnsData =
+                sharedBenchmarkReturns != null ? sharedBenchmarkReturns : loadBenchmarkReturns(metrics);
+
+        Map<Date, List<Performance>> excessAndPerformance =
+                calculateExcessAndPerformance(fundReturnsData, benchmarkReturnsData, fundMap, metrics);
+
+        // each month is written as soon as it is ranked
+        try (ReportWriter writer = AppUtil.openReport(destinationDirectoryPath, outputFileName)) {
+            if (state == null) {
+                rankMonthlyPerformance(excessAndPerformance, writer::write, metrics);
+            } else {
+                for (int month = 0; month < fundReturnsData.monthCount(); month++)
+                    state.addFundReturnMonth(fundReturnsData.monthKey(month));
+                state.setHeaderLength(writer.position());
+                rankMonthlyPerformance(excessAndPerformance,
+                        performances -> writeMonth(writer, performances, state), metrics);
+                state.setReportLength(writer.position());
+            }
+            metrics.setBytesWritten(writer.position());
+        }
+
+        if (state != null)
+            state.save(AppUtil.getReportPath(destinationDirectoryPath, outputFileName));
+
+        AppUtil.cleanupMap(excessAndPerformance);
+
+        metrics.setWallNanos(System.nanoTime() - start);
+        return metrics;
+    }
+
+    /**
+     * Pipelined full run, see {@link AnalyserOptions#setPipelined(boolean)}.<br>
+     * The fund file, the fund return file and the benchmark files are parsed at the same
+     * time on a dedicated thread pool. Once all three are parsed, a producer thread joins
+     * and ranks the months newest first and hands them to the calling thread through a
+     * bounded queue, so the first month is written while older months are still being
+     * joined and at most {@link #PIPELINE_CAPACITY} ranked months wait in memory.<br>
+     * A failure of any stage is rethrown on the calling thread. The report may then be
+     * left incomplete.
+     *
+     * @param destinationDirectoryPath - A directory path where the report file should be store.
+     * @param outputFileName           - (optional) Either null or the user defined file name
+     * @param sharedBenchmarkReturns   - benchmark returns parsed before, or null to parse them
+     * @param state                    - state to fill in incremental mode, else null
+     * @param metrics                  - metrics of the run
+     */
+    private void pipelineMonthlyOutPerformance(String destinationDirectoryPath, String outputFileName,
+                                               BenchmarkReturns sharedBenchmarkReturns, ReportState state,
+                                               AnalysisMetrics metrics) {
+
+        ExecutorService executor = Executors.newFixedThreadPool(PIPELINE_THREADS);
+        BlockingQueue<List<Performance>> rankedMonths = new ArrayBlockingQueue<>(PIPELINE_CAPACITY);
+        // joined rows not written yet
+        AtomicLong pendingRows = new AtomicLong();
+        try {
+            // the fund return file is not waiting for the fund file, so its codes get their own ids
+            CompletableFuture<Map<String, Fund>> fundMap =
+                    CompletableFuture.supplyAsync(() -> extractFundData(fundCsvPath, metrics), executor);
+            CompletableFuture<ReturnSeriesStore> fundReturnsData = CompletableFuture.supplyAsync(() ->
+                    extractFundReturnsData(fundReturnCsvPath, new CodeDictionary(), metrics), executor);
+            CompletableFuture<BenchmarkReturns> benchmarkReturnsData = sharedBenchmarkReturns != null
+                    ? CompletableFuture.completedFuture(sharedBenchmarkReturns)
+                    : CompletableFuture.supplyAsync(() -> loadBenchmarkReturns(metrics), executor);
+
+            CompletableFuture<Void> producer = CompletableFuture.runAsync(() -> {
+                try {
+                    ReturnSeriesStore fundReturns = fundReturnsData.join();
+                    BenchmarkReturns benchmarkReturns = benchmarkReturnsData.join();
+                    Map<String, Fund> funds = fundMap.join();
+
+                    // ranking and waiting for the writer are not join time
+                    long[] handedOver = {0};
+                    long start = System.nanoTime();
+                    calculateExcessAndPerformance(fundReturns, benchmarkReturns, funds, metrics,
+                            (date, performances) -> {
+                                long ranked = System.nanoTime();
+                                // top and bottom N months are ranked while they are joined
+                                if (options.getTopN() == 0) rank(performances);
+                                metrics.addNanos(AnalysisMetrics.Stage.RANK, System.nanoTime() - ranked);
+                                metrics.updatePeak(AnalysisMetrics.Peak.JOINED_ROWS,
+                                        pendingRows.addAndGet(performances.size()));
+                                put(rankedMonths, performances);
+                                handedOver[0] += System.nanoTime() - ranked;
+                            });
+                    metrics.addNanos(AnalysisMetrics.Stage.JOIN, System.nanoTime() - start - handedOver[0]);
+                } finally {
+                    try {
+                        rankedMonths.put(END_OF_MONTHS);
+                    } catch (InterruptedException e) {
+                        // the writer gave up
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }, executor);
+
+            try (ReportWriter writer = AppUtil.openReport(destinationDirectoryPath, outputFileName)) {
+                if (state != null) state.setHeaderLength(writer.position());
+
+                Consumer<List<Performance>> write = measured(performances -> {
+                    if (state == null) writer.write(performances);
+                    else writeMonth(writer, performances, state);
+                }, metrics);
+
+                for (List<Performance> performances = take(rankedMonths); performances != END_OF_MONTHS;
+                     performances = take(rankedMonths)) {
+                    write.accept(performances);
+                    pendingRows.addAndGet(-performances.size());
+                }
+                producer.join();
+
+                if (state != null) {
+                    ReturnSeriesStore fundReturns = fundReturnsData.join();
+                    for (int month = 0; month < fundReturns.monthCount(); month++)
+                        state.addFundReturnMonth(fundReturns.monthKey(month));
+                    state.setReportLength(writer.position());
+                }
+                metrics.setBytesWritten(writer.position());
+            }
+        } catch (CompletionException e) {
+            throw failureOf(e, "Unable to generate monthly performance");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @return first failure of a stage, as it was thrown
+     */
+    private static RuntimeException failureOf(CompletionException e, String message) {
+        Throwable cause = e;
+        while (cause instanceof CompletionException && cause.getCause() != null) cause = cause.getCause();
+        if (cause instanceof RuntimeException) return (RuntimeException) cause;
+        if (cause instanceof Error) throw (Error) cause;
+        return new IllegalStateException(message, cause);
+    }
+
+    private static void put(BlockingQueue<List<Performance>> queue, List<Performance> performances) {
+        try {
+            queue.put(performances);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while queueing ranked months", e);
+        }
+    }
+
+    private static List<Performance> take(BlockingQueue<List<Performance>> queue) {
+        try {
+            return queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for ranked months", e);
+        }
+    }
+
+    /**
+     * Generates the monthly out performance report in the columnar binary format of
+     * {@link BinaryReportWriter}: the same rows as
+     * {@link #generateMonthlyOutPerformance(String, String)}, with fund names stored once,
+     * excess and return as fixed-point hundredths, and an index of the offset of every
+     * month, so that {@link BinaryReportReader} loads any month without reading the others.<br>
+     * Top N mode applies. Incremental and pipelined modes do not, the report is always
+     * written in full.
+     *
+     * @param destinationDirectoryPath - A directory path where the report file should be store.
+     * @param outputFileName           - (optional) Either null or the user defined file name
+     *                                 for the output report. <b>Default: monthlyOutPerformance.frb</b>
+     * @return metrics of the run
+     * @see BinaryReportReader
+     */
+    public AnalysisMetrics generateBinaryOutPerformance(String destinationDirectoryPath, String outputFileName) {
+
+        long start = System.nanoTime();
+
+        if (!AppUtil.isFileValid(destinationDirectoryPath))
+            throw new IllegalArgumentException("Directory path not exists: " + destinationDirectoryPath);
+
+        if (outputFileName != null && outputFileName.trim().isEmpty())
+            throw new IllegalArgumentException("Not a valid file name: " + outputFileName);
+
+        AnalysisMetrics metrics = new AnalysisMetrics();
+
+        Map<String, Fund> fundMap = extractFundData(fundCsvPath, metrics);
+
+        ReturnSeriesStore fundReturnsData = extractFundReturnsData(fundReturnCsvPath, fundCodesOf(fundMap), metrics);
+
+        BenchmarkReturns benchmarkReturnsData = loadBenchmarkReturns(metrics);
+
+        Map<Date, List<Performance>> excessAndPerformance =
+                calculateExcessAndPerformance(fundReturnsData, benchmarkReturnsData, fundMap, metrics);
+
+        // buildPath only knows csv file names
+        String filePath = Paths.get(destinationDirectoryPath,
+                outputFileName == null ? BINARY_REPORT_FILE : outputFileName).toString();
+        System.out.printf("Writing to %s", filePath);
+
+        // each month is written as soon as it is ranked, the footer when the writer is closed
+        try (BinaryReportWriter writer = new BinaryReportWriter(filePath)) {
+            rankMonthlyPerformance(excessAndPerformance, writer::write, metrics);
+        }
+        metrics.setBytesWritten(lengthOf(filePath));
+
+        AppUtil.cleanupMap(excessAndPerformance);
+
+        metrics.setWallNanos(System.nanoTime() - start);
+        return metrics;
+    }
+
+    /**
+     * Generates the monthly out performance report as one file per month or per year
+     * ({@link Partitioning}) under the destination directory, plus a manifest, so that a
+     * reader opens only the partitions it needs.<br>
+     * Every partition is a complete report of its months, header included, named after
+     * the report file, e.g. {@code monthlyOutPerformance-2016-06.csv}. Months are ranked
+     * as in {@link #generateMonthlyOutPerformance(String, String)}, and each partition is
+     * handed to one of {@link AnalyserOptions#setWriteParallelism(int)} threads as soon as
+     * its last month is ranked, so partitions are written at the same time.<br>
+     * The manifest, e.g. {@code monthlyOutPerformance.manifest.csv}, lists file name, first
+     * and last date, rows and bytes of every partition, newest first. It is replaced only
+     * once every partition is written. Partition files of an earlier run that are not in
+     * the manifest are left as they are.<br>
+     * Top N mode applies. Incremental and pipelined modes do not.
+     *
+     * @param destinationDirectoryPath - A directory path where the report files should be store.
+     * @param outputFileName           - (optional) Either null or the user defined file name
+     *                                 the partitions are named after. <b>Default: monthlyOutPerformance.csv</b>
+     * @param partitioning             - months of a partition
+     * @return metrics of the run. The write stage is the time the calling thread spent
+     * writing or waiting for the partitions.
+     * @see Partitioning
      */
-    public void generateMonthlyOutPerformance(String destinationDirectoryPath, String outputFileName) {
+    public AnalysisMetrics generatePartitionedOutPerformance(String destinationDirectoryPath, String outputFileName,
+                                                           Partitioning partitioning) {
+
+        long start = System.nanoTime();
 
         if (!AppUtil.isFileValid(destinationDirectoryPath))
             throw new IllegalArgumentException("Directory path not exists: " + destinationDirectoryPath);
@@ -89,82 +453,676 @@ public class FundAnalyser {
         if (!AppUtil.isValidFileName(outputFileName))
             throw new IllegalArgumentException("Not a valid CSV file name: " + outputFileName);
 
-        Map<String, Fund> fundMap =
-                extractFundData(AppUtil.readFileLines(fundCsvPath));
+        if (partitioning == null) throw new IllegalArgumentException("Invalid partitioning: " + partitioning);
+
+        AnalysisMetrics metrics = new AnalysisMetrics();
 
-        List<Returns> fundReturnsData =
-                extractFundReturnsData(AppUtil.readFileLines(fundReturnCsvPath));
+        Map<String, Fund> fundMap = extractFundData(fundCsvPath, metrics);
 
-        Map<Date, Returns> benchmarkReturnsData =
-                extractBenchmarkReturnsData(AppUtil.readFileLines(benchmarkReturnCsvPath));
+        ReturnSeriesStore fundReturnsData = extractFundReturnsData(fundReturnCsvPath, fundCodesOf(fundMap), metrics);
+
+        BenchmarkReturns benchmarkReturnsData = loadBenchmarkReturns(metrics);
 
         Map<Date, List<Performance>> excessAndPerformance =
-                calculateExcessAndPerformance(fundReturnsData, benchmarkReturnsData, fundMap);
+                calculateExcessAndPerformance(fundReturnsData, benchmarkReturnsData, fundMap, metrics);
 
-        List<Performance> performanceList = new ArrayList<>();
+        String reportFile = outputFileName == null ? AppUtil.REPORT_FILE : outputFileName;
+        String baseName = reportFile.substring(0, reportFile.lastIndexOf(".csv"));
+        Path directory = Paths.get(destinationDirectoryPath);
+        Path manifestPath = directory.resolve(baseName + ".manifest.csv");
+        System.out.printf("Writing to %s", manifestPath);
 
-        excessAndPerformance
-                .entrySet()
-                .stream()
-                .forEach(e -> {
+        int parallelism = options.getWriteParallelism();
+        ExecutorService executor = parallelism > 1 ? Executors.newFixedThreadPool(parallelism) : null;
+        try {
+            PartitionWriter writer = new PartitionWriter(directory, baseName, partitioning, executor);
+            rankMonthlyPerformance(excessAndPerformance, writer, metrics);
 
-                    // Sort by rank
-                    List<Performance> value = e.getValue();
-                    value.sort((o1, o2) -> o2.getReturns().compareTo(o1.getReturns()));
+            long waiting = System.nanoTime();
+            List<String> partitions = writer.finish();
+            PartitionWriter.writeManifest(manifestPath, partitions);
+            metrics.addNanos(AnalysisMetrics.Stage.WRITE, System.nanoTime() - waiting);
 
-                    final int[] rank = {1};
-                    value.forEach(p -> p.setRank(rank[0]++));
+            metrics.setBytesWritten(writer.bytesWritten() + lengthOf(manifestPath.toString()));
 
-                    performanceList.addAll(value);
-                });
+        } catch (CompletionException e) {
+            throw failureOf(e, "Unable to write partitioned monthly performance");
+        } finally {
+            if (executor != null) executor.shutdownNow();
+        }
 
         AppUtil.cleanupMap(excessAndPerformance);
-        // write to a file
-        AppUtil.writeToFile(performanceList, destinationDirectoryPath, outputFileName);
+
+        metrics.setWallNanos(System.nanoTime() - start);
+        return metrics;
+    }
+
+    /**
+     * Generates the rolling window report: for every month, window length
+     * ({@link AnalyserOptions#setRollingWindows(int...)}) and fund, the sum of the
+     * monthly excess over the window, and the number of months in the window the fund
+     * out and under performed its benchmark. Funds are ranked per month and window by
+     * that excess sum in descending order.<br>
+     * A window covers the month and the months before it in the fund return file.
+     * A fund is reported in a window only with a joined return in every month of it.<br>
+     * The returns are scanned once, newest month first, with sliding accumulators per
+     * fund, see {@link RollingExcess}, and every line is written as soon as its month
+     * and window are ranked.
+     *
+     * @param destinationDirectoryPath - A directory path where the report file should be store.
+     * @param outputFileName           - (optional) Either null or the user defined file name
+     *                                 for the output report. <b>Default: rollingOutPerformance.csv</b>
+     * @return metrics of the run. Sliding the windows is the join stage, rows out are report lines.
+     * @see RollingPerformance
+     */
+    public AnalysisMetrics generateRollingOutPerformance(String destinationDirectoryPath, String outputFileName) {
+
+        long start = System.nanoTime();
+
+        if (!AppUtil.isFileValid(destinationDirectoryPath))
+            throw new IllegalArgumentException("Directory path not exists: " + destinationDirectoryPath);
+
+        if (!AppUtil.isValidFileName(outputFileName))
+            throw new IllegalArgumentException("Not a valid CSV file name: " + outputFileName);
+
+        AnalysisMetrics metrics = new AnalysisMetrics();
+
+        Map<String, Fund> fundMap = extractFundData(fundCsvPath, metrics);
+
+        ReturnSeriesStore fundReturns = extractFundReturnsData(fundReturnCsvPath, fundCodesOf(fundMap), metrics);
+
+        BenchmarkReturns benchmarkReturns = loadBenchmarkReturns(metrics);
+
+        String[] fundNames = fundNamesOf(fundReturns, fundMap);
+
+        int[] windows = options.getRollingWindows();
+        RollingExcess rolling = new RollingExcess(fundReturns, windows,
+                monthlyExcessOf(fundReturns, benchmarkReturns, fundMap, metrics));
+
+        String filePath = AppUtil.buildPath(destinationDirectoryPath,
+                outputFileName == null ? ROLLING_REPORT_FILE : outputFileName);
+        System.out.printf("Writing to %s", filePath);
+
+        // one bean is refilled for every line, lines are written as they are ranked
+        RollingPerformance line = new RollingPerformance();
+        try (ReportWriter writer = new ReportWriter(filePath, ReportWriter.Layout.ROLLING)) {
+            long sliding = System.nanoTime();
+            while (rolling.next()) {
+                metrics.addNanos(AnalysisMetrics.Stage.JOIN, System.nanoTime() - sliding);
+                line.setDate(DateCodec.toDate(fundReturns.monthKey(rolling.month())));
+                for (int w = 0; w < windows.length; w++) {
+                    long ranking = System.nanoTime();
+                    int ranked = rolling.rank(w);
+                    long writing = System.nanoTime();
+                    metrics.addNanos(AnalysisMetrics.Stage.RANK, writing - ranking);
+                    line.setWindow(windows[w]);
+                    for (int i = 0; i < ranked; i++) {
+                        int codeId = rolling.rankedCodeId(i);
+                        line.setFundName(fundNames[codeId]);
+                        line.setScaledExcess(rolling.excess(w, codeId));
+                        line.setOutPerformedMonths(rolling.outPerformedMonths(w, codeId));
+                        line.setUnderPerformedMonths(rolling.underPerformedMonths(w, codeId));
+                        line.setRank(i + 1);
+                        writer.write(line);
+                    }
+                    metrics.addNanos(AnalysisMetrics.Stage.WRITE, System.nanoTime() - writing);
+                    metrics.addRowsOut(ranked);
+                }
+                sliding = System.nanoTime();
+            }
+            metrics.setBytesWritten(writer.position());
+        }
+
+        metrics.setWallNanos(System.nanoTime() - start);
+        return metrics;
+    }
+
+    /**
+     * Parses the benchmark file and the benchmark return file of this analyser, or takes
+     * them from the {@link AnalyserOptions#getBenchmarkReturnCache()} while the benchmark
+     * return file is unchanged.
+     *
+     * @param metrics - metrics of the run, the parse is not recorded when it comes from the cache
+     * @return benchmark returns, read only and shareable between analysers of the same numeric mode
+     */
+    BenchmarkReturns loadBenchmarkReturns(AnalysisMetrics metrics) {
+
+        BenchmarkReturnCache cache = options.getBenchmarkReturnCache();
+        if (cache != null)
+            return cache.get(benchmarkReturnCsvPath, options.getNumericMode(), () -> parseBenchmarkReturns(metrics));
+        return parseBenchmarkReturns(metrics);
+    }
+
+    private BenchmarkReturns parseBenchmarkReturns(AnalysisMetrics metrics) {
+
+        return extractBenchmarkReturnsData(benchmarkReturnCsvPath, extractBenchmarkCodes(benchmarkCsvPath, metrics),
+                metrics);
+    }
+
+    /**
+     * Loads the input files into a {@link ResearchEngine}, which answers queries on the
+     * joined and ranked returns of every month from memory, from many threads.<br>
+     * The engine holds every joined return of the monthly report, top N mode does not apply.
+     *
+     * @return an immutable research engine of the input files
+     * @see ResearchEngine
+     */
+    public ResearchEngine loadResearchEngine() {
+
+        return loadResearchEngine(new AnalysisMetrics());
+    }
+
+    /**
+     * Same as {@link #loadResearchEngine()}, recording metrics of the load.
+     *
+     * @param metrics - metrics of the load, joining and ranking the months is the join stage
+     * @return an immutable research engine of the input files
+     */
+    ResearchEngine loadResearchEngine(AnalysisMetrics metrics) {
+
+        long start = System.nanoTime();
+
+        Map<String, Fund> fundMap = extractFundData(fundCsvPath, metrics);
+
+        ReturnSeriesStore fundReturns = extractFundReturnsData(fundReturnCsvPath, fundCodesOf(fundMap), metrics);
+
+        BenchmarkReturns benchmarkReturns = loadBenchmarkReturns(metrics);
+
+        long joining = System.nanoTime();
+        ResearchEngine engine = new ResearchEngine(fundReturns, fundMap, isFixedPoint(),
+                monthlyExcessOf(fundReturns, benchmarkReturns, fundMap, metrics), row -> isFixedPoint()
+                ? FixedPoint.roundToTwoScale(fundReturns.value(row))
+                : AppUtil.roundToTwoScale(fundReturns.decimal(row)).unscaledValue().longValueExact());
+        metrics.addNanos(AnalysisMetrics.Stage.JOIN, System.nanoTime() - joining);
+
+        metrics.setWallNanos(System.nanoTime() - start);
+        return engine;
+    }
+
+    /**
+     * @param fundReturns      - a sealed store of fund returns
+     * @param benchmarkReturns - benchmark returns keyed by (benchmark code, date)
+     * @param fundMap          - a map of fund objects
+     * @param metrics          - metrics of the run, rows without an excess are dropped as in the monthly report
+     * @return two scale excess of a fund return row over the return of the fund's
+     * benchmark for the same date, same as the monthly report. It must be asked once per row.
+     */
+    private RollingExcess.MonthlyExcess monthlyExcessOf(ReturnSeriesStore fundReturns,
+                                                        BenchmarkReturns benchmarkReturns,
+                                                        Map<String, Fund> fundMap,
+                                                        AnalysisMetrics metrics) {
+
+        String[] fundNames = fundNamesOf(fundReturns, fundMap);
+        int[] benchmarkIds = benchmarkIdsOf(fundReturns, benchmarkReturns, fundMap);
+        ReturnSeriesStore benchmarkStore = benchmarkReturns.getStore();
+
+        return row -> {
+            int codeId = fundReturns.codeId(row);
+            if (fundNames[codeId] == null) {
+                metrics.addDropped(AnalysisMetrics.DropReason.UNKNOWN_FUND, 1);
+                return RollingExcess.MonthlyExcess.NONE;
+            }
+
+            int benchmarkRow = benchmarkReturns.row(benchmarkIds[codeId], fundReturns.dateKey(row));
+            if (benchmarkRow < 0) {
+                metrics.addDropped(AnalysisMetrics.DropReason.MISSING_BENCHMARK_RETURN, 1);
+                return RollingExcess.MonthlyExcess.NONE;
+            }
+
+            if (isFixedPoint())
+                return calculateExcess(fundReturns.value(row), benchmarkStore.value(benchmarkRow));
+            return calculateExcess(fundReturns.decimal(row), benchmarkStore.decimal(benchmarkRow))
+                    .unscaledValue().longValueExact();
+        };
+    }
+
+    /**
+     * Incremental run, see {@link AnalyserOptions#setIncremental(boolean)}.<br>
+     * It uses the state saved by the previous run next to the report. When the fund file
+     * is unchanged and rows were only appended to the return files, it parses only the
+     * appended fund returns, joins and ranks their months, and merges them into the report
+     * in date order. Month blocks of the previous report are copied as they are.<br>
+     * It gives up, leaving the report untouched, when there is no usable state, the options
+     * changed, the report or an input was modified, or appended rows belong to a month
+     * that was already read, as that month would need the rows of the previous run.
+     *
+     * @param reportPath - path of the report file
+     * @return true if the report was brought up to date, false if a full run is needed
+     * @see ReportState
+     */
+    boolean appendMonthlyOutPerformance(String reportPath) {
+
+        return appendMonthlyOutPerformance(reportPath, new AnalysisMetrics());
+    }
+
+    /**
+     * Same as {@link #appendMonthlyOutPerformance(String)}, recording metrics of the run.
+     *
+     * @param reportPath - path of the report file
+     * @param metrics    - metrics of the run
+     * @return true if the report was brought up to date, false if a full run is needed
+     */
+    private boolean appendMonthlyOutPerformance(String reportPath, AnalysisMetrics metrics) {
+
+        ReportState previous = ReportState.load(ReportState.pathOf(reportPath));
+
+        if (previous == null || !previous.hasSameOptions(options) || !previous.isReportIntact(reportPath)
+                || !previous.getFundFile().isSameAs(fundCsvPath)
+                || !previous.getFundReturnFile().isPrefixOf(fundReturnCsvPath)
+                || !previous.getBenchmarkReturnFile().isPrefixOf(benchmarkReturnCsvPath))
+            return false;
+
+        ReportState state = newReportState();
+        state.addFundReturnMonths(previous);
+
+        Map<String, Fund> fundMap = extractFundData(fundCsvPath, metrics);
+
+        long parseStart = System.nanoTime();
+        ReturnSeriesStore fundReturnsData = readReturnSeries(fundReturnCsvPath, previous.getFundReturnFile().getLength(),
+                fundCodesOf(fundMap), AnalysisMetrics.Input.FUND_RETURN, metrics).seal();
+        metrics.updatePeak(AnalysisMetrics.Peak.FUND_RETURN_ROWS, fundReturnsData.size());
+        for (int month = 0; month < fundReturnsData.monthCount(); month++) {
+            if (previous.hasFundReturnMonth(fundReturnsData.monthKey(month))) return false;
+            state.addFundReturnMonth(fundReturnsData.monthKey(month));
+        }
+
+        // an appended benchmark return of a month read before would change that month
+        boolean[] restated = {false};
+        AppUtil.readFileRows(benchmarkReturnCsvPath, previous.getBenchmarkReturnFile().getLength(), row -> {
+            if (row.fieldCount() == 3 && previous.hasFundReturnMonth(row.dateKey(ReturnIndices.DATE.index())))
+                restated[0] = true;
+        });
+        metrics.addNanos(AnalysisMetrics.Stage.PARSE, System.nanoTime() - parseStart);
+        if (restated[0]) return false;
+
+        Map<Date, List<Performance>> excessAndPerformance =
+                calculateExcessAndPerformance(fundReturnsData, loadBenchmarkReturns(metrics), fundMap, metrics);
+
+        Path report = Paths.get(reportPath);
+        Path tempReport = report.resolveSibling(report.getFileName() + ".tmp");
+        System.out.printf("Appending %d months to %s", excessAndPerformance.size(), reportPath);
+
+        try (FileChannel previousReport = FileChannel.open(report, StandardOpenOption.READ);
+             ReportWriter writer = new ReportWriter(tempReport.toString())) {
+
+            state.setHeaderLength(writer.position());
+
+            // previous and new months are merged in descending date order
+            Deque<Map.Entry<Integer, long[]>> previousMonths = new ArrayDeque<>(previous.getReportMonths().entrySet());
+            rankMonthlyPerformance(excessAndPerformance, performances -> {
+                int dateKey = DateCodec.key(performances.get(0).getDate());
+                while (!previousMonths.isEmpty() && previousMonths.peekFirst().getKey() > dateKey)
+                    copyMonth(writer, previousReport, previousMonths.pollFirst(), state);
+                writeMonth(writer, performances, state);
+            }, metrics);
+
+            long copyStart = System.nanoTime();
+            while (!previousMonths.isEmpty())
+                copyMonth(writer, previousReport, previousMonths.pollFirst(), state);
+            metrics.addNanos(AnalysisMetrics.Stage.WRITE, System.nanoTime() - copyStart);
+
+            state.setReportLength(writer.position());
+            metrics.setBytesWritten(writer.position());
+
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Unable to write file " + reportPath, e);
+        }
+
+        try {
+            ReportState.moveReplacing(tempReport, report);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Unable to write file " + reportPath, e);
+        }
+        state.save(reportPath);
+
+        AppUtil.cleanupMap(excessAndPerformance);
+        return true;
+    }
+
+    /**
+     * @return a state of the current input files, without months
+     */
+    private ReportState newReportState() {
+        return new ReportState(options, ReportState.Source.of(fundCsvPath),
+                ReportState.Source.of(fundReturnCsvPath), ReportState.Source.of(benchmarkReturnCsvPath));
     }
 
     /**
-     * It iterates fund return list, from each fund it retrieves date.<br>
-     * Using this date it retrieves corresponding Benchmark from
-     * already populated benchmark return map.<br>
-     * It calculates excess and out performance.<br>
+     * Writes one ranked month and records its block in the state.
+     */
+    private static void writeMonth(ReportWriter writer, List<Performance> performances, ReportState state) {
+        long offset = writer.position();
+        writer.write(performances);
+        state.addReportMonth(DateCodec.key(performances.get(0).getDate()), offset, writer.position() - offset);
+    }
+
+    /**
+     * @return the consumer of ranked months, recording its time as write time
+     * and the months as rows out
+     */
+    private static Consumer<List<Performance>> measured(Consumer<List<Performance>> rankedMonths,
+                                                        AnalysisMetrics metrics) {
+        return performances -> {
+            long start = System.nanoTime();
+            rankedMonths.accept(performances);
+            metrics.addNanos(AnalysisMetrics.Stage.WRITE, System.nanoTime() - start);
+            metrics.addRowsOut(performances.size());
+        };
+    }
+
+    /**
+     * Copies one month block of the previous report and records it in the state.
+     */
+    private static void copyMonth(ReportWriter writer, FileChannel previousReport, Map.Entry<Integer, long[]> month,
+                                  ReportState state) {
+        long offset = writer.position();
+        long[] block = month.getValue();
+        writer.transfer(previousReport, block[0], block[1]);
+        state.addReportMonth(month.getKey(), offset, block[1]);
+    }
+
+    /**
+     * Ranks every month and flattens the months in map order.
+     *
+     * @param monthlyPerformance - monthly performance map, sorted by date in descending order
+     * @return ranked performance of all months
+     * @see #rankMonthlyPerformance(Map, Consumer)
+     */
+    List<Performance> rankMonthlyPerformance(Map<Date, List<Performance>> monthlyPerformance) {
+
+        int size = 0;
+        for (List<Performance> month : monthlyPerformance.values()) size += month.size();
+
+        List<Performance> performanceList = new ArrayList<>(size);
+        rankMonthlyPerformance(monthlyPerformance, performanceList::addAll);
+        return performanceList;
+    }
+
+    /**
+     * Ranks every month and hands each ranked month to the consumer in map order,
+     * as soon as that month and all months before it are ranked.<br>
+     * Months do not depend on each other, so with a ranking parallelism above 1
+     * they are ranked on a dedicated {@link ForkJoinPool}, while the calling thread
+     * consumes them in order. The output order is the same as ranking them one
+     * after another.
+     *
+     * @param monthlyPerformance - monthly performance map, sorted by date in descending order
+     * @param rankedMonths       - consumer of the ranked months, invoked on the calling thread
+     * @see AnalyserOptions#setRankingParallelism(int)
+     */
+    void rankMonthlyPerformance(Map<Date, List<Performance>> monthlyPerformance,
+                                Consumer<List<Performance>> rankedMonths) {
+
+        Collection<List<Performance>> months = monthlyPerformance.values();
+        int parallelism = options.getRankingParallelism();
+
+        // top and bottom N months are ranked while they are joined
+        if (options.getTopN() > 0) {
+            months.forEach(rankedMonths);
+            return;
+        }
+
+        if (parallelism <= 1 || months.size() <= 1) {
+            for (List<Performance> month : months) {
+                rank(month);
+                rankedMonths.accept(month);
+            }
+            return;
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<ForkJoinTask<List<Performance>>> tasks = new ArrayList<>(months.size());
+            for (List<Performance> month : months)
+                tasks.add(pool.submit(() -> rank(month), month));
+
+            for (ForkJoinTask<List<Performance>> task : tasks)
+                rankedMonths.accept(task.get());
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while ranking", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Unable to rank monthly performance", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Same as {@link #rankMonthlyPerformance(Map, Consumer)}, recording the consumer as the
+     * write stage, the rest as the rank stage.
+     *
+     * @param monthlyPerformance - monthly performance map, sorted by date in descending order
+     * @param rankedMonths       - consumer of the ranked months, invoked on the calling thread
+     * @param metrics            - metrics of the run
+     */
+    private void rankMonthlyPerformance(Map<Date, List<Performance>> monthlyPerformance,
+                                        Consumer<List<Performance>> rankedMonths, AnalysisMetrics metrics) {
+
+        long written = metrics.getNanos(AnalysisMetrics.Stage.WRITE);
+        long start = System.nanoTime();
+        rankMonthlyPerformance(monthlyPerformance, measured(rankedMonths, metrics));
+        metrics.addNanos(AnalysisMetrics.Stage.RANK, System.nanoTime() - start
+                - (metrics.getNanos(AnalysisMetrics.Stage.WRITE) - written));
+    }
+
+    /**
+     * Sorts the performance of one month by returns in descending order
+     * and assigns ranks starting from 1. Equal returns keep their order.
+     *
+     * @param monthPerformance - performance of one month
+     */
+    private void rank(List<Performance> monthPerformance) {
+
+        if (isFixedPoint())
+            monthPerformance.sort((o1, o2) -> Long.compare(o2.getScaledReturns(), o1.getScaledReturns()));
+        else
+            monthPerformance.sort((o1, o2) -> o2.getReturns().compareTo(o1.getReturns()));
+
+        int rank = 1;
+        for (Performance performance : monthPerformance) performance.setRank(rank++);
+    }
+
+    /**
+     * It scans the fund return store month by month, newest first.<br>
+     * Each fund return is joined with the return of the fund's own benchmark
+     * ({@link Fund#getBenchmarkCode()}) for the same date, using the composite
+     * key lookup of {@link BenchmarkReturns}. Returns without a matching
+     * benchmark return are skipped.<br>
+     * It calculates excess and out performance for the contiguous rows of that month.<br>
+     * In top N mode ({@link AnalyserOptions#setTopN(int)}) only the best and worst N
+     * joined rows of a month are kept, in bounded heaps, and they are ranked here,
+     * so no month is fully materialised nor sorted.<br>
      * Populates these values into monthly performance tree map sorted
      * based on date (key) in descending order.
      *
-     * @param fundReturns      - a list of fund return objects
-     * @param benchmarkReturns - a map of benchmark return objects
+     * @param fundReturns      - a sealed store of fund returns
+     * @param benchmarkReturns - benchmark returns keyed by (benchmark code, date)
      * @param fundMap          - a map of fund objects
      * @return a monthly performance {@link Map}
      */
-    private Map<Date, List<Performance>> calculateExcessAndPerformance(List<Returns> fundReturns,
-                                                                       Map<Date, Returns> benchmarkReturns,
-                                                                       Map<String, Fund> fundMap) {
+    Map<Date, List<Performance>> calculateExcessAndPerformance(ReturnSeriesStore fundReturns,
+                                                               BenchmarkReturns benchmarkReturns,
+                                                               Map<String, Fund> fundMap) {
+
+        return calculateExcessAndPerformance(fundReturns, benchmarkReturns, fundMap, new AnalysisMetrics());
+    }
+
+    /**
+     * Same as {@link #calculateExcessAndPerformance(ReturnSeriesStore, BenchmarkReturns, Map)},
+     * recording the join stage, its dropped rows and the joined rows.
+     *
+     * @param fundReturns      - a sealed store of fund returns
+     * @param benchmarkReturns - benchmark returns keyed by (benchmark code, date)
+     * @param fundMap          - a map of fund objects
+     * @param metrics          - metrics of the run
+     * @return a monthly performance {@link Map}
+     */
+    private Map<Date, List<Performance>> calculateExcessAndPerformance(ReturnSeriesStore fundReturns,
+                                                                       BenchmarkReturns benchmarkReturns,
+                                                                       Map<String, Fund> fundMap,
+                                                                       AnalysisMetrics metrics) {
 
         // Tree map with descending order Lambda expressions
         Map<Date, List<Performance>> monthlyPerformanceMap = new TreeMap<>((o1, o2) -> o2.compareTo(o1));
 
-        fundReturns.forEach(fundReturn -> {
-            Date fundReturnDate = fundReturn.getDate();
-            Returns benchmarkReturn = benchmarkReturns.get(fundReturnDate);
-            if (benchmarkReturn == null) return;
-            BigDecimal excess = calculateExcess(fundReturn.getReturns(), benchmarkReturn.getReturns());
-            String performance = calculatePerformance(excess);
-            String fundName = fundMap.get(fundReturn.getCode()).getName();
+        long start = System.nanoTime();
+        long[] joined = {0};
+        calculateExcessAndPerformance(fundReturns, benchmarkReturns, fundMap, metrics, (date, performances) -> {
+            monthlyPerformanceMap.put(date, performances);
+            joined[0] += performances.size();
+        });
+        metrics.addNanos(AnalysisMetrics.Stage.JOIN, System.nanoTime() - start);
+        metrics.updatePeak(AnalysisMetrics.Peak.JOINED_ROWS, joined[0]);
+
+        return monthlyPerformanceMap;
+    }
+
+    /**
+     * Streaming variant of {@link #calculateExcessAndPerformance(ReturnSeriesStore, BenchmarkReturns, Map)}.
+     * Each month with joined returns is handed over as soon as it is joined, newest first.
+     *
+     * @param fundReturns      - a sealed store of fund returns
+     * @param benchmarkReturns - benchmark returns keyed by (benchmark code, date)
+     * @param fundMap          - a map of fund objects
+     * @param metrics          - metrics of the run, rows that are not joined are counted as dropped
+     * @param joinedMonths     - consumer of the date and performance of every month
+     */
+    void calculateExcessAndPerformance(ReturnSeriesStore fundReturns, BenchmarkReturns benchmarkReturns,
+                                       Map<String, Fund> fundMap, AnalysisMetrics metrics,
+                                       BiConsumer<Date, List<Performance>> joinedMonths) {
+
+        // Fund names and benchmark ids by code id, so the row loop does no String lookup
+        String[] fundNames = fundNamesOf(fundReturns, fundMap);
+        int[] benchmarkIds = benchmarkIdsOf(fundReturns, benchmarkReturns, fundMap);
+
+        TopBottomSelector selector = options.getTopN() > 0
+                ? new TopBottomSelector(fundReturns, options.getTopN()) : null;
+
+        long unknownFunds = 0, missingBenchmarkReturns = 0, belowTopN = 0;
+        for (int month = 0; month < fundReturns.monthCount(); month++) {
+            int dateKey = fundReturns.monthKey(month);
+            Date fundReturnDate = DateCodec.toDate(dateKey);
 
-            if (!monthlyPerformanceMap.containsKey(fundReturnDate) || monthlyPerformanceMap.get(fundReturnDate) == null) {
-                monthlyPerformanceMap.put(fundReturnDate, new ArrayList<>());
+            int start = fundReturns.monthStart(month), end = fundReturns.monthEnd(month);
+            List<Performance> performances;
+
+            if (selector == null) {
+                performances = new ArrayList<>(end - start);
+                for (int row = start; row < end; row++) {
+                    int codeId = fundReturns.codeId(row);
+                    // return of a fund missing from the fund file
+                    if (fundNames[codeId] == null) {
+                        unknownFunds++;
+                        continue;
+                    }
+
+                    int benchmarkRow = benchmarkReturns.row(benchmarkIds[codeId], dateKey);
+                    if (benchmarkRow < 0) {
+                        missingBenchmarkReturns++;
+                        continue;
+                    }
+
+                    performances.add(newPerformance(fundReturns, row, benchmarkReturns.getStore(), benchmarkRow,
+                            fundNames[codeId], fundReturnDate, 0));
+                }
+            } else {
+                selector.reset();
+                int offered = 0;
+                for (int row = start; row < end; row++) {
+                    int codeId = fundReturns.codeId(row);
+                    if (fundNames[codeId] == null) {
+                        unknownFunds++;
+                    } else if (benchmarkReturns.row(benchmarkIds[codeId], dateKey) < 0) {
+                        missingBenchmarkReturns++;
+                    } else {
+                        selector.offer(row);
+                        offered++;
+                    }
+                }
+
+                int selected = selector.select();
+                belowTopN += offered - selected;
+                performances = new ArrayList<>(selected);
+                for (int i = 0; i < selected; i++) {
+                    int row = selector.row(i);
+                    int codeId = fundReturns.codeId(row);
+                    performances.add(newPerformance(fundReturns, row, benchmarkReturns.getStore(),
+                            benchmarkReturns.row(benchmarkIds[codeId], dateKey),
+                            fundNames[codeId], fundReturnDate, selector.rank(i)));
+                }
             }
-            monthlyPerformanceMap
-                    .get(fundReturnDate)
-                    .add(new Performance(fundName, fundReturnDate, excess, performance, AppUtil.roundToTwoScale(fundReturn.getReturns()), 0));
-        });
 
-        AppUtil.cleanupCollections(fundReturns);
-        AppUtil.cleanupMap(benchmarkReturns);
+            if (!performances.isEmpty())
+                joinedMonths.accept(fundReturnDate, performances);
+        }
+
+        metrics.addDropped(AnalysisMetrics.DropReason.UNKNOWN_FUND, unknownFunds);
+        metrics.addDropped(AnalysisMetrics.DropReason.MISSING_BENCHMARK_RETURN, missingBenchmarkReturns);
+        metrics.addDropped(AnalysisMetrics.DropReason.BELOW_TOP_N, belowTopN);
+
         AppUtil.cleanupMap(fundMap);
+    }
 
+    /**
+     * @param fundReturns - a store of fund returns
+     * @param fundMap     - a map of fund objects
+     * @return fund names by code id of the store, null for codes missing from the fund file
+     */
+    private static String[] fundNamesOf(ReturnSeriesStore fundReturns, Map<String, Fund> fundMap) {
 
-        return monthlyPerformanceMap;
+        String[] fundNames = new String[fundReturns.codeCount()];
+        for (int codeId = 0; codeId < fundNames.length; codeId++) {
+            Fund fund = fundMap.get(fundReturns.code(codeId));
+            fundNames[codeId] = fund == null ? null : fund.getName();
+        }
+        return fundNames;
+    }
+
+    /**
+     * @param fundReturns      - a store of fund returns
+     * @param benchmarkReturns - benchmark returns keyed by (benchmark code, date)
+     * @param fundMap          - a map of fund objects
+     * @return benchmark ids by fund code id of the store, -1 for funds without a known benchmark
+     */
+    private static int[] benchmarkIdsOf(ReturnSeriesStore fundReturns, BenchmarkReturns benchmarkReturns,
+                                        Map<String, Fund> fundMap) {
+
+        int[] benchmarkIds = new int[fundReturns.codeCount()];
+        for (int codeId = 0; codeId < benchmarkIds.length; codeId++) {
+            Fund fund = fundMap.get(fundReturns.code(codeId));
+            benchmarkIds[codeId] = fund == null ? -1 : benchmarkReturns.benchmarkIdOf(fund.getBenchmarkCode());
+        }
+        return benchmarkIds;
+    }
+
+    /**
+     * Calculates excess and performance of one joined fund return.
+     *
+     * @param fundReturns    - a sealed store of fund returns
+     * @param row            - row of the fund return
+     * @param benchmarkStore - store of benchmark returns
+     * @param benchmarkRow   - row of the fund's benchmark return for the same date
+     * @param fundName       - name of the fund
+     * @param date           - date of the returns
+     * @param rank           - rank, or 0 if not ranked yet
+     * @return performance of the fund for the date
+     */
+    private Performance newPerformance(ReturnSeriesStore fundReturns, int row,
+                                       ReturnSeriesStore benchmarkStore, int benchmarkRow,
+                                       String fundName, Date date, int rank) {
+        if (isFixedPoint()) {
+            long fundReturn = fundReturns.value(row);
+            long excess = calculateExcess(fundReturn, benchmarkStore.value(benchmarkRow));
+            return new Performance(fundName, date, excess, calculatePerformance(excess),
+                    FixedPoint.roundToTwoScale(fundReturn), rank);
+        }
+
+        BigDecimal fundReturn = fundReturns.decimal(row);
+        BigDecimal excess = calculateExcess(fundReturn, benchmarkStore.decimal(benchmarkRow));
+        return new Performance(fundName, date, excess, calculatePerformance(excess),
+                AppUtil.roundToTwoScale(fundReturn), rank);
     }
 
     /**
@@ -181,6 +1139,43 @@ public class FundAnalyser {
         return AppUtil.roundToTwoScale(excess);
     }
 
+    /**
+     * Fixed-point variant of {@link #calculateExcess(BigDecimal, BigDecimal)}.
+     *
+     * @param fundReturn      - Fund return at {@link FixedPoint#SCALE}
+     * @param benchmarkReturn - Benchmark return at {@link FixedPoint#SCALE}
+     * @return Two scale calculates excess value, in hundredths
+     */
+    private long calculateExcess(long fundReturn, long benchmarkReturn) {
+
+        return FixedPoint.roundToTwoScale(fundReturn - benchmarkReturn);
+    }
+
+    /**
+     * Fixed-point variant of {@link #calculatePerformance(BigDecimal)}.
+     *
+     * @param excess - calculated excess value, in hundredths
+     * @return same classification as the decimal variant
+     */
+    private String calculatePerformance(long excess) {
+
+        long integerPart = FixedPoint.integerPart(excess, FixedPoint.TWO_SCALE);
+
+        if (integerPart <= -1) return "Under Performed";
+
+        if (integerPart >= 1) return "Out Performed";
+
+        return " ";
+    }
+
+    /**
+     * @return true if returns are held as scaled long values
+     * @see NumericMode#FIXED_POINT
+     */
+    private boolean isFixedPoint() {
+        return options.getNumericMode() == NumericMode.FIXED_POINT;
+    }
+
     /**
      * It calculates the performance values based on the calculated excess.<br>
      *
@@ -201,112 +1196,365 @@ public class FundAnalyser {
     /**
      * It extracts the benchmark data from each line and creates an object {@link Benchmark}
      * Each line contains comma separated following fields<br>
-     * | Benchmark Code | Benchmark Name |
+     * | Benchmark Code | Benchmark Name |<br>
+     * Rows are tokenized as they are streamed from the file, no line Strings are created.
      *
-     * @param fileLines - lines read from benchmark csv file
+     * @param filePath - path of the benchmark csv file
      * @return A set of benchmark objects
      */
-    private Set<Benchmark> extractBenchmarkData(List<String> fileLines) {
+    private Set<Benchmark> extractBenchmarkData(String filePath) {
 
         final Set<Benchmark> set = new LinkedHashSet<>(0);
 
-        fileLines.forEach(line -> {
+        AppUtil.readFileRows(filePath, row -> {
 
-            String[] split = line.split(AppUtil.LINE_SEPARATOR);
-            if (split.length == 2)
-                set.add(new Benchmark(split[BenchmarkIndices.CODE.index()].trim(),
-                        split[BenchmarkIndices.NAME.index()].trim()));
+            if (row.fieldCount() == 2)
+                set.add(new Benchmark(row.code(BenchmarkIndices.CODE.index()),
+                        row.text(BenchmarkIndices.NAME.index())));
         });
 
-        // Clean up the list of read lines from file to free resources.
-        // Thus can be reuse.
-        AppUtil.cleanupCollections(fileLines);
-
         return set;
     }
 
+    /**
+     * It extracts the benchmark codes into a {@link CodeDictionary}, in file order.<br>
+     * | Benchmark Code | Benchmark Name |<br>
+     * Codes are looked up straight from the read buffer, names are not read.
+     *
+     * @param filePath - path of the benchmark csv file
+     * @return dictionary of the benchmark codes
+     */
+    CodeDictionary extractBenchmarkCodes(String filePath) {
+
+        return extractBenchmarkCodes(filePath, new AnalysisMetrics());
+    }
+
+    /**
+     * Same as {@link #extractBenchmarkCodes(String)}, recording the rows read and dropped.
+     *
+     * @param filePath - path of the benchmark csv file
+     * @param metrics  - metrics of the run
+     * @return dictionary of the benchmark codes
+     */
+    private CodeDictionary extractBenchmarkCodes(String filePath, AnalysisMetrics metrics) {
+
+        long start = System.nanoTime();
+        final CodeDictionary codes = new CodeDictionary();
+        // rows, malformed rows
+        final long[] rows = {0, 0};
+
+        AppUtil.readFileRows(filePath, row -> {
+
+            rows[0]++;
+            if (row.fieldCount() == 2)
+                row.codeId(BenchmarkIndices.CODE.index(), codes);
+            else
+                rows[1]++;
+        });
+
+        metrics.addRead(AnalysisMetrics.Input.BENCHMARK, rows[0], lengthOf(filePath));
+        metrics.addDropped(AnalysisMetrics.DropReason.MALFORMED_BENCHMARK, rows[1]);
+        metrics.addNanos(AnalysisMetrics.Stage.PARSE, System.nanoTime() - start);
+        return codes;
+    }
+
+    /**
+     * @param fundMap - a map of fund objects where key=fundCode
+     * @return dictionary of the fund codes, in fund file order
+     */
+    static CodeDictionary fundCodesOf(Map<String, Fund> fundMap) {
+
+        CodeDictionary codes = new CodeDictionary(fundMap.size());
+        for (String code : fundMap.keySet()) codes.add(code);
+        return codes;
+    }
+
     /**
      * It extracts the fund data from each line and creates an object {@link Benchmark}
      * Each line contains comma separated following fields<br>
-     * | Fund Code | Fund Name | Benchmark Code |
+     * | Fund Code | Fund Name | Benchmark Code |<br>
+     * Rows are tokenized as they are streamed from the file, no line Strings are created.
      *
-     * @param fileLines - lines read from fund csv file
+     * @param filePath - path of the fund csv file
      * @return A map of fund objects where key=fundCode, value=fundObject
      */
-    private Map<String, Fund> extractFundData(List<String> fileLines) {
+    Map<String, Fund> extractFundData(String filePath) {
+
+        return extractFundData(filePath, new AnalysisMetrics());
+    }
+
+    /**
+     * Same as {@link #extractFundData(String)}, recording the parse stage and the rows read.
+     *
+     * @param filePath - path of the fund csv file
+     * @param metrics  - metrics of the run
+     * @return A map of fund objects where key=fundCode, value=fundObject
+     */
+    private Map<String, Fund> extractFundData(String filePath, AnalysisMetrics metrics) {
+
+        long start = System.nanoTime();
+        Map<String, Fund> map = null;
+        FileFingerprint fingerprint = null;
+        if (options.isSnapshots()) {
+            fingerprint = FileFingerprint.of(filePath);
+            map = SnapshotFile.readFunds(filePath, fingerprint);
+            if (map != null) metrics.addRead(AnalysisMetrics.Input.FUND, map.size(), lengthOf(filePath));
+        }
+        if (map == null) {
+            map = parseFundData(filePath, metrics);
+            if (fingerprint != null) SnapshotFile.writeFunds(filePath, fingerprint, map);
+        }
+
+        metrics.updatePeak(AnalysisMetrics.Peak.FUNDS, map.size());
+        metrics.addNanos(AnalysisMetrics.Stage.PARSE, System.nanoTime() - start);
+        return map;
+    }
+
+    /**
+     * Parses the fund csv file, see {@link #extractFundData(String)}.
+     *
+     * @param filePath - path of the fund csv file
+     * @param metrics  - metrics of the run
+     * @return A map of fund objects where key=fundCode, value=fundObject
+     */
+    private Map<String, Fund> parseFundData(String filePath, AnalysisMetrics metrics) {
 
         final Map<String, Fund> map = new LinkedHashMap<>(0);
+        // rows, malformed rows
+        final long[] rows = {0, 0};
 
-        fileLines.forEach(line -> {
+        AppUtil.readFileRows(filePath, row -> {
 
-            String[] split = line.split(AppUtil.LINE_SEPARATOR);
-            if (split.length == 3)
-                map.put(split[FundIndices.CODE.index()].trim(),
-                        new Fund(split[FundIndices.CODE.index()].trim(),
-                                split[FundIndices.NAME.index()].trim(),
-                                split[FundIndices.BENCHMARK_CODE.index()].trim()));
+            rows[0]++;
+            if (row.fieldCount() == 3) {
+                String code = row.code(FundIndices.CODE.index());
+                map.put(code, new Fund(code,
+                        row.text(FundIndices.NAME.index()),
+                        row.code(FundIndices.BENCHMARK_CODE.index())));
+            } else {
+                rows[1]++;
+            }
         });
 
-        // Clean up the list of read lines from file to free resources.
-        // Thus can be reuse.
-        AppUtil.cleanupCollections(fileLines);
-
+        metrics.addRead(AnalysisMetrics.Input.FUND, rows[0], lengthOf(filePath));
+        metrics.addDropped(AnalysisMetrics.DropReason.MALFORMED_FUND, rows[1]);
         return map;
     }
 
     /**
-     * It extracts the returns data of Fund from each line and creates an object {@link Returns}
+     * It extracts the returns data of Fund from each line into a columnar {@link ReturnSeriesStore}
      * Each line contains comma separated following fields<br>
-     * | Code | Date | Return |
+     * | Code | Date | Return |<br>
+     * Rows are tokenized as they are streamed from the file, so only the parsed columns are retained.
      *
-     * @param returnLines - lines read from fund csv file
-     * @return A list of Fund Returns objects. This list is sorted by date in descending order.
+     * @param filePath - path of the fund return csv file
+     * @return A sealed store of Fund returns. Rows are sorted by date in descending order.
      */
-    private List<Returns> extractFundReturnsData(List<String> returnLines) {
-        final List<Returns> list = new ArrayList<>();
+    ReturnSeriesStore extractFundReturnsData(String filePath) {
 
-        returnLines.forEach(line -> {
-            String[] split = line.split(AppUtil.LINE_SEPARATOR);
+        return extractFundReturnsData(filePath, new CodeDictionary());
+    }
 
-            if (split.length == 3)
-                list.add(new Returns(ReturnsType.FUND,
-                        split[ReturnIndices.CODE.index()],
-                        AppUtil.toDate(split[ReturnIndices.DATE.index()]),
-                        new BigDecimal(split[ReturnIndices.RETURNS.index()])));
-        });
+    /**
+     * Same as {@link #extractFundReturnsData(String)}, with the fund codes
+     * encoded as ids of a given dictionary, e.g. one built from the fund file.
+     *
+     * @param filePath - path of the fund return csv file
+     * @param codes    - dictionary of fund codes, codes missing from it are added
+     * @return A sealed store of Fund returns. Rows are sorted by date in descending order.
+     */
+    ReturnSeriesStore extractFundReturnsData(String filePath, CodeDictionary codes) {
 
-        AppUtil.cleanupCollections(returnLines);
-        Comparator<Returns> byDateDesc = (d1, d2) -> d2.getDate().compareTo(d1.getDate());
-        Collections.sort(list, byDateDesc);
+        return extractFundReturnsData(filePath, codes, new AnalysisMetrics());
+    }
 
-        return list;
+    /**
+     * Same as {@link #extractFundReturnsData(String, CodeDictionary)}, recording the parse
+     * stage, the rows read and dropped and the rows retained.
+     *
+     * @param filePath - path of the fund return csv file
+     * @param codes    - dictionary of fund codes, codes missing from it are added
+     * @param metrics  - metrics of the run
+     * @return A sealed store of Fund returns. Rows are sorted by date in descending order.
+     */
+    private ReturnSeriesStore extractFundReturnsData(String filePath, CodeDictionary codes, AnalysisMetrics metrics) {
+
+        long start = System.nanoTime();
+        ReturnSeriesStore store = readReturnSeries(filePath, codes, AnalysisMetrics.Input.FUND_RETURN, metrics).seal();
+        metrics.updatePeak(AnalysisMetrics.Peak.FUND_RETURN_ROWS, store.size());
+        metrics.addNanos(AnalysisMetrics.Stage.PARSE, System.nanoTime() - start);
+        return store;
     }
 
     /**
-     * It extracts the returns data of Benchmark from each line and creates an object {@link Returns}
+     * Streams the rows of a return series file into a columnar store.
      * Each line contains comma separated following fields<br>
-     * | Code | Date | Return |
+     * | Code | Date | Return |<br>
+     * With snapshots enabled, the store is loaded from the snapshot of the file
+     * while it matches, else it is parsed and a new snapshot is written.
+     *
+     * A store loaded from a snapshot has its own code dictionary.
      *
-     * @param returnLines - lines read from fund csv file
-     * @return A map of Benchmark Returns objects
+     * @param filePath - path of a fund or benchmark return csv file
+     * @param codes    - dictionary of the codes
+     * @param input    - which return file it is
+     * @param metrics  - metrics of the run
+     * @return A store of the returns, sealed if it comes from or went into a snapshot
+     * @see AnalyserOptions#setSnapshots(boolean)
      */
-    private Map<Date, Returns> extractBenchmarkReturnsData(List<String> returnLines) {
-        final Map<Date, Returns> map = new TreeMap<>((o1, o2) -> o2.compareTo(o1));
+    private ReturnSeriesStore readReturnSeries(String filePath, CodeDictionary codes,
+                                               AnalysisMetrics.Input input, AnalysisMetrics metrics) {
 
-        returnLines.forEach(line -> {
-            String[] split = line.split(AppUtil.LINE_SEPARATOR);
+        // a snapshot holds the whole file
+        if (!options.isSnapshots() || options.hasDateRange())
+            return readReturnSeries(filePath, 0, codes, input, metrics);
 
-            if (split.length == 3) {
-                Date date = AppUtil.toDate(split[ReturnIndices.DATE.index()]);
-                map.put(date,
-                        new Returns(ReturnsType.BENCHMARK,
-                                split[ReturnIndices.CODE.index()],
-                                date,
-                                new BigDecimal(split[ReturnIndices.RETURNS.index()])));
-            }
-        });
-        AppUtil.cleanupCollections(returnLines);
-        return map;
+        // taken before parsing, so a file changed meanwhile does not match the snapshot later
+        FileFingerprint fingerprint = FileFingerprint.of(filePath);
+        ReturnSeriesStore store = SnapshotFile.readReturnSeries(filePath, fingerprint, options.getNumericMode());
+        if (store == null) {
+            store = readReturnSeries(filePath, 0, codes, input, metrics).seal();
+            SnapshotFile.writeReturnSeries(filePath, fingerprint, store);
+        } else {
+            metrics.addRead(input, store.size(), lengthOf(filePath));
+        }
+        return store;
+    }
+
+    /**
+     * Streams the rows of a return series file from a byte offset into a columnar store.
+     * A whole file is parsed in memory mapped chunks on several threads when the parse
+     * parallelism is more than 1, and the chunk stores are merged in file order.
+     *
+     * @param filePath - path of a fund or benchmark return csv file
+     * @param offset   - byte offset of the first row to read
+     * @param codes    - dictionary of the codes, codes missing from it are added
+     * @param input    - which return file it is
+     * @param metrics  - metrics of the run
+     * @return An unsealed store of the returns, in file order
+     * @see AnalyserOptions#setParseParallelism(int)
+     */
+    private ReturnSeriesStore readReturnSeries(String filePath, long offset, CodeDictionary codes,
+                                               AnalysisMetrics.Input input, AnalysisMetrics metrics) {
+
+        long size = lengthOf(filePath);
+        // a file is read by one run at a time, so the malformed rows counted meanwhile are its own
+        AnalysisMetrics.DropReason malformed = input.malformed();
+        long malformedBefore = metrics.getDropped(malformed);
+        // benchmark returns of a cache are parsed whole, they are shared by analyses of other ranges
+        boolean ranged = options.hasDateRange()
+                && (input == AnalysisMetrics.Input.FUND_RETURN || options.getBenchmarkReturnCache() == null);
+        LongAdder outOfRange = new LongAdder();
+        ReturnSeriesStore store;
+
+        if (offset == 0 && options.getParseParallelism() > 1) {
+            int parallelism = options.getParseParallelism();
+            // a few chunks per thread evens out uneven chunks, but no chunk below 1MB
+            int chunks = (int) Math.min(parallelism * 4L, Math.max(1, size >> 20));
+
+            List<ReturnSeriesStore> parts = AppUtil.readFileChunks(filePath, chunks, parallelism,
+                    () -> new ReturnSeriesStore(options.getNumericMode()), (part, row) -> {
+                        if (!addReturnRow(part, row, ranged, outOfRange)) metrics.addDropped(malformed, 1);
+                    });
+
+            int rows = 0;
+            for (ReturnSeriesStore part : parts) rows += part.size();
+            store = new ReturnSeriesStore(options.getNumericMode(), Math.max(rows, 1), codes);
+            for (ReturnSeriesStore part : parts) store.addAll(part);
+        } else {
+            final ReturnSeriesStore target = new ReturnSeriesStore(options.getNumericMode(), codes);
+            AppUtil.readFileRows(filePath, offset, row -> {
+                if (!addReturnRow(target, row, ranged, outOfRange)) metrics.addDropped(malformed, 1);
+            });
+            store = target;
+        }
+
+        metrics.addDropped(AnalysisMetrics.DropReason.OUT_OF_DATE_RANGE, outOfRange.sum());
+        metrics.addRead(input, store.size() + metrics.getDropped(malformed) - malformedBefore + outOfRange.sum(),
+                Math.max(size - offset, 0));
+        return store;
+    }
+
+    /**
+     * Adds a | Code | Date | Return | row to a store, skipping rows of other lengths.
+     * With a date range, the date is read first and a row outside the range is counted
+     * and skipped without parsing its code or return.
+     *
+     * @param ranged     - true to skip the rows outside the date range of the options
+     * @param outOfRange - count of the rows skipped outside the date range
+     * @return false if the row was skipped as malformed
+     */
+    private boolean addReturnRow(ReturnSeriesStore store, CsvTokenizer row, boolean ranged, LongAdder outOfRange) {
+
+        if (row.fieldCount() != 3) return false;
+
+        int dateKey = row.dateKey(ReturnIndices.DATE.index());
+        if (ranged && !options.isInDateRange(dateKey)) {
+            outOfRange.increment();
+            return true;
+        }
+
+        int codeId = row.codeId(ReturnIndices.CODE.index(), store.getCodes());
+        if (isFixedPoint())
+            store.add(codeId, dateKey, row.fixedPoint(ReturnIndices.RETURNS.index()));
+        else
+            store.add(codeId, dateKey, row.decimal(ReturnIndices.RETURNS.index()));
+        return true;
+    }
+
+    /**
+     * @param filePath - path of an input file, may be null
+     * @return length of the file, 0 if there is none
+     */
+    private static long lengthOf(String filePath) {
+        return filePath == null ? 0 : Paths.get(filePath).toFile().length();
+    }
+
+    /**
+     * It extracts the returns data of Benchmark from each line into {@link BenchmarkReturns}
+     * Each line contains comma separated following fields<br>
+     * | Code | Date | Return |<br>
+     * Rows are tokenized as they are streamed from the file, so only the parsed columns are retained.
+     *
+     * @param filePath - path of the benchmark return csv file
+     * @return Benchmark returns keyed by (benchmark code, date)
+     */
+    BenchmarkReturns extractBenchmarkReturnsData(String filePath) {
+
+        return extractBenchmarkReturnsData(filePath, new CodeDictionary());
+    }
+
+    /**
+     * Same as {@link #extractBenchmarkReturnsData(String)}, with the benchmark codes
+     * encoded as ids of a given dictionary, e.g. one built from the benchmark file.
+     *
+     * @param filePath - path of the benchmark return csv file
+     * @param codes    - dictionary of benchmark codes, codes missing from it are added
+     * @return Benchmark returns keyed by (benchmark code, date)
+     */
+    BenchmarkReturns extractBenchmarkReturnsData(String filePath, CodeDictionary codes) {
+
+        return extractBenchmarkReturnsData(filePath, codes, new AnalysisMetrics());
+    }
+
+    /**
+     * Same as {@link #extractBenchmarkReturnsData(String, CodeDictionary)}, recording the parse
+     * stage, the rows read and dropped and the rows retained.
+     *
+     * @param filePath - path of the benchmark return csv file
+     * @param codes    - dictionary of benchmark codes, codes missing from it are added
+     * @param metrics  - metrics of the run
+     * @return Benchmark returns keyed by (benchmark code, date)
+     */
+    private BenchmarkReturns extractBenchmarkReturnsData(String filePath, CodeDictionary codes,
+                                                         AnalysisMetrics metrics) {
+
+        long start = System.nanoTime();
+        BenchmarkReturns benchmarkReturns = new BenchmarkReturns(
+                readReturnSeries(filePath, codes, AnalysisMetrics.Input.BENCHMARK_RETURN, metrics));
+        metrics.updatePeak(AnalysisMetrics.Peak.BENCHMARK_RETURN_ROWS, benchmarkReturns.getStore().size());
+        metrics.addNanos(AnalysisMetrics.Stage.PARSE, System.nanoTime() - start);
+        return benchmarkReturns;
     }
 
 }
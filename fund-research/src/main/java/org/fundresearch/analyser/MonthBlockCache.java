@@ -0,0 +1,104 @@
+package org.fundresearch.analyser;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Size bounded LRU cache of rendered report month blocks, keyed by month and filter.<br>
+ * A block is charged its length plus {@link #ENTRY_OVERHEAD}, so empty blocks of
+ * filters without rows are bounded too. When the cache is over its capacity, the least
+ * recently used blocks are evicted. Blocks larger than the capacity are not cached.<br>
+ * Instances are thread safe. Blocks are rendered outside the cache, so two requests
+ * missing the same block at the same time both render it.
+ *
+ * @author aditya
+ * @see ReportServer
+ */
+final class MonthBlockCache {
+
+    /**
+     * Bytes charged for the key and the map entry of a block
+     */
+    static final int ENTRY_OVERHEAD = 64;
+
+    private final long capacity;
+    private final LinkedHashMap<String, byte[]> blocks = new LinkedHashMap<>(16, 0.75f, true);
+    private long size;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param capacity - capacity in bytes
+     */
+    MonthBlockCache(long capacity) {
+        if (capacity < 0) throw new IllegalArgumentException("Invalid cache capacity: " + capacity);
+        this.capacity = capacity;
+    }
+
+    /**
+     * @param key - month and filter of the block
+     * @return cached block, or null on a miss
+     */
+    synchronized byte[] get(String key) {
+        byte[] block = blocks.get(key);
+        if (block == null) misses++;
+        else hits++;
+        return block;
+    }
+
+    /**
+     * Caches a block, evicting the least recently used blocks over the capacity.
+     *
+     * @param key   - month and filter of the block
+     * @param block - rendered block
+     */
+    synchronized void put(String key, byte[] block) {
+        long charge = charge(block);
+        if (charge > capacity) return;
+
+        byte[] previous = blocks.put(key, block);
+        if (previous != null) size -= charge(previous);
+        size += charge;
+
+        Iterator<Map.Entry<String, byte[]>> eldest = blocks.entrySet().iterator();
+        while (size > capacity) {
+            size -= charge(eldest.next().getValue());
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    private static long charge(byte[] block) {
+        return block.length + ENTRY_OVERHEAD;
+    }
+
+    synchronized long size() {
+        return size;
+    }
+
+    synchronized long hits() {
+        return hits;
+    }
+
+    synchronized long misses() {
+        return misses;
+    }
+
+    synchronized long evictions() {
+        return evictions;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "MonthBlockCache{" +
+                "capacity=" + capacity +
+                ", size=" + size +
+                ", blocks=" + blocks.size() +
+                ", hits=" + hits +
+                ", misses=" + misses +
+                ", evictions=" + evictions +
+                '}';
+    }
+}
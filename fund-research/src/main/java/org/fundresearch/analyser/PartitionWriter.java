@@ -0,0 +1,157 @@
+package org.fundresearch.analyser;
+
+import org.fundresearch.enums.Partitioning;
+import org.fundresearch.models.Performance;
+import org.fundresearch.util.DateCodec;
+import org.fundresearch.util.ReportWriter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Writer of a partitioned monthly out performance report.<br>
+ * Ranked months are handed over in report order, newest first, so the months of a
+ * partition arrive one after another. A partition is written as soon as the first month
+ * of the next partition arrives, or on {@link #finish()}, on the executor when there is
+ * one, else on the calling thread. Every partition is a complete report of its months,
+ * header included.<br>
+ * The manifest lists file name, first and last date, rows and bytes of every partition.
+ *
+ * @author aditya
+ * @see FundAnalyser#generatePartitionedOutPerformance(String, String, Partitioning)
+ */
+final class PartitionWriter implements Consumer<List<Performance>> {
+
+    static final String MANIFEST_HEADER = "Partition,FirstDate,LastDate,Rows,Bytes";
+
+    private final Path directory;
+    private final String baseName;
+    private final Partitioning partitioning;
+    private final ExecutorService executor;
+    private final List<CompletableFuture<String>> partitions = new ArrayList<>();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private List<List<Performance>> months = new ArrayList<>();
+    private String fileName;
+
+    /**
+     * @param directory    - directory of the partition files
+     * @param baseName     - report file name without the .csv extension
+     * @param partitioning - months of a partition
+     * @param executor     - executor writing the partitions, null to write them on the calling thread
+     */
+    PartitionWriter(Path directory, String baseName, Partitioning partitioning, ExecutorService executor) {
+        this.directory = directory;
+        this.baseName = baseName;
+        this.partitioning = partitioning;
+        this.executor = executor;
+    }
+
+    /**
+     * @param performances - ranked performances of one month
+     */
+    @Override
+    public void accept(List<Performance> performances) {
+        if (performances.isEmpty()) return;
+
+        String name = fileNameOf(DateCodec.key(performances.get(0).getDate()));
+        if (!name.equals(fileName)) {
+            submit();
+            fileName = name;
+        }
+        months.add(performances);
+    }
+
+    /**
+     * Writes the last partition and waits for every partition to be written.
+     *
+     * @return manifest lines of the partitions, in report order
+     * @throws java.util.concurrent.CompletionException if a partition could not be written
+     */
+    List<String> finish() {
+        submit();
+
+        List<String> lines = new ArrayList<>(partitions.size());
+        for (CompletableFuture<String> partition : partitions) lines.add(partition.join());
+        return lines;
+    }
+
+    /**
+     * @return bytes of the partitions written so far
+     */
+    long bytesWritten() {
+        return bytesWritten.get();
+    }
+
+    /**
+     * Writes the manifest into a temporary file and moves it over the previous manifest,
+     * so a reader sees the previous manifest or this one, never a partial one.
+     *
+     * @param manifestPath - path of the manifest
+     * @param lines        - manifest lines of the partitions
+     */
+    static void writeManifest(Path manifestPath, List<String> lines) {
+        StringBuilder manifest = new StringBuilder(MANIFEST_HEADER).append('\n');
+        for (String line : lines) manifest.append(line).append('\n');
+
+        Path tempPath = manifestPath.resolveSibling(manifestPath.getFileName() + ".tmp");
+        try {
+            Files.write(tempPath, manifest.toString().getBytes(StandardCharsets.UTF_8));
+            try {
+                Files.move(tempPath, manifestPath, StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempPath, manifestPath, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Unable to write file " + manifestPath, e);
+        }
+    }
+
+    private void submit() {
+        if (months.isEmpty()) return;
+
+        List<List<Performance>> partition = months;
+        String name = fileName;
+        months = new ArrayList<>();
+
+        Supplier<String> write = () -> write(name, partition);
+        partitions.add(executor == null
+                ? CompletableFuture.completedFuture(write.get())
+                : CompletableFuture.supplyAsync(write, executor));
+    }
+
+    /**
+     * @return manifest line of the partition
+     */
+    private String write(String name, List<List<Performance>> partition) {
+        long rows, bytes;
+        try (ReportWriter writer = new ReportWriter(directory.resolve(name).toString())) {
+            for (List<Performance> month : partition) writer.write(month);
+            rows = writer.getRows();
+            bytes = writer.position();
+        }
+        bytesWritten.addAndGet(bytes);
+
+        // months are newest first
+        Performance newest = partition.get(0).get(0);
+        Performance oldest = partition.get(partition.size() - 1).get(0);
+        return name + "," + DateCodec.format(oldest.getDate()) + "," + DateCodec.format(newest.getDate())
+                + "," + rows + "," + bytes;
+    }
+
+    private String fileNameOf(int dateKey) {
+        if (partitioning == Partitioning.YEAR) return String.format("%s-%04d.csv", baseName, DateCodec.year(dateKey));
+        return String.format("%s-%04d-%02d.csv", baseName, DateCodec.year(dateKey), DateCodec.month(dateKey));
+    }
+}
@@ -0,0 +1,256 @@
+package org.fundresearch.analyser;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.fundresearch.models.Performance;
+import org.fundresearch.util.DateCodec;
+import org.fundresearch.util.ReportWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves the monthly out performance report of a {@link ResearchEngine} over HTTP,
+ * with the JDK built-in {@link HttpServer}.<br>
+ * {@code GET /report} answers the report lines, in the same format and order as the
+ * report file, for these optional query parameters
+ * <ul>
+ * <li>from, to - first and last date, dd/MM/yyyy, inclusive. <b>Default: all months</b></li>
+ * <li>fund - code of a fund, only its lines</li>
+ * <li>benchmark - code of a benchmark as in the fund file, only the lines of its funds</li>
+ * </ul>
+ * e.g. {@code /report?from=01/07/2016&to=30/09/2016&benchmark=bm2}. Ranks are the
+ * ranks of the month among all funds, as in the report file.<br>
+ * The rendered lines of a month and filter are kept in a {@link MonthBlockCache}, so a
+ * repeated request copies cached blocks. The response is streamed chunked, month by month.
+ * Invalid parameters are answered with status 400 and the reason.
+ *
+ * @author aditya
+ * @see FundAnalyser#loadResearchEngine()
+ */
+public final class ReportServer implements Closeable {
+
+    /**
+     * Path of the report
+     */
+    public static final String CONTEXT = "/report";
+
+    private static final int BLOCK_BUFFER_SIZE = 16 * 1024;
+    private static final String CONTENT_TYPE = "text/plain; charset=UTF-8";
+    private static final byte[] HEADER = render(null, true);
+
+    private final ResearchEngine engine;
+    private final MonthBlockCache cache;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /**
+     * Binds the server, {@link #start()} starts serving.
+     *
+     * @param engine        - loaded research engine
+     * @param port          - port to listen on, 0 for any free port
+     * @param cacheCapacity - capacity of the month block cache in bytes
+     * @param threads       - number of request threads
+     */
+    public ReportServer(ResearchEngine engine, int port, long cacheCapacity, int threads) {
+        if (engine == null) throw new IllegalArgumentException("Invalid engine");
+        if (port < 0 || port > 65535) throw new IllegalArgumentException("Invalid port: " + port);
+        if (threads < 1) throw new IllegalArgumentException("Invalid number of threads: " + threads);
+
+        this.engine = engine;
+        this.cache = new MonthBlockCache(cacheCapacity);
+        try {
+            this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Unable to listen on port " + port, e);
+        }
+        this.executor = Executors.newFixedThreadPool(threads);
+        server.setExecutor(executor);
+        server.createContext(CONTEXT, this::handle);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * @return port the server listens on
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * @return month blocks served from the cache
+     */
+    public long getCacheHits() {
+        return cache.hits();
+    }
+
+    /**
+     * @return month blocks rendered for a request
+     */
+    public long getCacheMisses() {
+        return cache.misses();
+    }
+
+    /**
+     * Stops serving, without waiting for open requests.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!CONTEXT.equals(exchange.getRequestURI().getPath())) {
+                send(exchange, 404, "Not found: " + exchange.getRequestURI().getPath());
+                return;
+            }
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                send(exchange, 405, "Method not allowed: " + exchange.getRequestMethod());
+                return;
+            }
+
+            Filter filter;
+            try {
+                filter = new Filter(parameters(exchange.getRequestURI().getRawQuery()));
+            } catch (IllegalArgumentException e) {
+                send(exchange, 400, e.getMessage());
+                return;
+            }
+
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            // length 0 streams the body chunked
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(HEADER);
+                for (Date month : engine.months()) {
+                    int key = DateCodec.key(month);
+                    if (key >= filter.from && key <= filter.to) body.write(block(month, key, filter));
+                }
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * @return rendered lines of a month and filter, from the cache if they are there
+     */
+    private byte[] block(Date month, int key, Filter filter) {
+        String cacheKey = filter.cacheKey(key);
+        byte[] block = cache.get(cacheKey);
+        if (block != null) return block;
+
+        List<Performance> performances;
+        if (filter.fund != null) performances = engine.performancesOf(filter.fund, month);
+        else if (filter.benchmark != null) performances = engine.top(filter.benchmark, month, Integer.MAX_VALUE);
+        else performances = engine.top(month, Integer.MAX_VALUE);
+
+        block = render(performances, false);
+        cache.put(cacheKey, block);
+        return block;
+    }
+
+    /**
+     * @return report lines rendered by {@link ReportWriter}, with or without the header
+     */
+    private static byte[] render(List<Performance> performances, boolean header) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(performances == null ? 256 : performances.size() * 100);
+        try (ReportWriter writer = new ReportWriter(Channels.newChannel(out), BLOCK_BUFFER_SIZE,
+                ReportWriter.Layout.MONTHLY, header)) {
+            if (performances != null) writer.write(performances);
+        }
+        return out.toByteArray();
+    }
+
+    private static void send(HttpExchange exchange, int status, String message) throws IOException {
+        byte[] bytes = (message + "\n").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream body = exchange.getResponseBody()) {
+            body.write(bytes);
+        }
+    }
+
+    private static Map<String, String> parameters(String rawQuery) {
+        Map<String, String> parameters = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) return parameters;
+
+        for (String pair : rawQuery.split("&")) {
+            if (pair.isEmpty()) continue;
+            int equals = pair.indexOf('=');
+            String name = decode(equals < 0 ? pair : pair.substring(0, equals));
+            String value = equals < 0 ? "" : decode(pair.substring(equals + 1));
+            if (parameters.put(name, value) != null)
+                throw new IllegalArgumentException("Repeated parameter: " + name);
+        }
+        return parameters;
+    }
+
+    private static String decode(String text) {
+        try {
+            return URLDecoder.decode(text, "UTF-8");
+        } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid query: " + text);
+        }
+    }
+
+    /**
+     * Date range and fund or benchmark of a request.
+     */
+    private static final class Filter {
+
+        private final int from;
+        private final int to;
+        private final String fund;
+        private final String benchmark;
+
+        private Filter(Map<String, String> parameters) {
+            for (String name : parameters.keySet())
+                if (!name.equals("from") && !name.equals("to") && !name.equals("fund") && !name.equals("benchmark"))
+                    throw new IllegalArgumentException("Unknown parameter: " + name);
+
+            from = parameters.containsKey("from") ? DateCodec.key(parameters.get("from")) : Integer.MIN_VALUE;
+            to = parameters.containsKey("to") ? DateCodec.key(parameters.get("to")) : Integer.MAX_VALUE;
+            fund = parameters.get("fund");
+            benchmark = parameters.get("benchmark");
+
+            if (from > to) throw new IllegalArgumentException("Invalid date range: " + parameters.get("from")
+                    + " after " + parameters.get("to"));
+            if (fund != null && benchmark != null)
+                throw new IllegalArgumentException("Either a fund or a benchmark, not both");
+        }
+
+        private String cacheKey(int month) {
+            if (fund != null) return month + "|fund=" + fund;
+            if (benchmark != null) return month + "|benchmark=" + benchmark;
+            return Integer.toString(month);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ReportServer{" +
+                "port=" + getPort() +
+                ", engine=" + engine +
+                ", cache=" + cache +
+                '}';
+    }
+}
@@ -0,0 +1,347 @@
+package org.fundresearch.analyser;
+
+import org.fundresearch.enums.NumericMode;
+import org.fundresearch.util.AppUtil;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * What an incremental run needs to know about the previous run, persisted
+ * next to the report as {@code <report>.state} in {@link Properties} format.
+ * <ul>
+ * <li>options that change the report content - numeric mode and top N</li>
+ * <li>input files - path, processed length and CRC32 checksum of the processed bytes</li>
+ * <li>fund return months - every date read from the fund return file</li>
+ * <li>report months - byte offset and length of every month block of the report</li>
+ * <li>report length and CRC32 checksum - to notice a report changed after the state was saved,
+ * as month blocks are copied from it by offset</li>
+ * </ul>
+ *
+ * @author aditya
+ * @see AnalyserOptions#setIncremental(boolean)
+ */
+final class ReportState {
+
+    private static final String VERSION = "2";
+    private static final String STATE_SUFFIX = ".state";
+
+    private NumericMode numericMode;
+    private int topN;
+    private Source fundFile;
+    private Source fundReturnFile;
+    private Source benchmarkReturnFile;
+    private final SortedSet<Integer> fundReturnMonths = new TreeSet<>();
+    private final SortedMap<Integer, long[]> reportMonths = new TreeMap<>(Comparator.reverseOrder());
+    private long headerLength;
+    private long reportLength;
+    private long reportChecksum;
+
+    /**
+     * @param options             - options of the run
+     * @param fundFile            - fund file, expected to be unchanged by the next run
+     * @param fundReturnFile      - fund return file, may be appended to before the next run
+     * @param benchmarkReturnFile - benchmark return file, may be appended to before the next run
+     */
+    ReportState(AnalyserOptions options, Source fundFile, Source fundReturnFile, Source benchmarkReturnFile) {
+        this.numericMode = options.getNumericMode();
+        this.topN = options.getTopN();
+        this.fundFile = fundFile;
+        this.fundReturnFile = fundReturnFile;
+        this.benchmarkReturnFile = benchmarkReturnFile;
+    }
+
+    private ReportState() {
+    }
+
+    /**
+     * @param reportPath - path of the report
+     * @return path of the state of the report
+     */
+    static Path pathOf(String reportPath) {
+        return Paths.get(reportPath + STATE_SUFFIX);
+    }
+
+    /**
+     * Loads a saved state.
+     *
+     * @param statePath - path of the state file
+     * @return the state, or null if there is no usable state
+     */
+    static ReportState load(Path statePath) {
+        if (!Files.exists(statePath)) return null;
+
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(statePath)) {
+            properties.load(in);
+        } catch (IOException e) {
+            return null;
+        }
+        if (!VERSION.equals(properties.getProperty("version"))) return null;
+
+        try {
+            ReportState state = new ReportState();
+            state.numericMode = NumericMode.valueOf(properties.getProperty("numericMode"));
+            state.topN = Integer.parseInt(properties.getProperty("topN"));
+            state.fundFile = Source.load(properties, "fund");
+            state.fundReturnFile = Source.load(properties, "fundReturn");
+            state.benchmarkReturnFile = Source.load(properties, "benchmarkReturn");
+            state.headerLength = Long.parseLong(properties.getProperty("report.header"));
+            state.reportLength = Long.parseLong(properties.getProperty("report.length"));
+            state.reportChecksum = Long.parseLong(properties.getProperty("report.checksum"));
+
+            for (String month : properties.getProperty("fundReturn.months").split(","))
+                if (month.length() > 0) state.fundReturnMonths.add(Integer.valueOf(month));
+
+            for (String name : properties.stringPropertyNames()) {
+                if (!name.startsWith("report.month.")) continue;
+                String[] block = properties.getProperty(name).split(",");
+                state.reportMonths.put(Integer.valueOf(name.substring("report.month.".length())),
+                        new long[]{Long.parseLong(block[0]), Long.parseLong(block[1])});
+            }
+            return state;
+        } catch (RuntimeException e) {
+            // missing or garbled entries
+            return null;
+        }
+    }
+
+    /**
+     * Saves the state next to the report, replacing the file in one move.<br>
+     * The report must be written and closed, its checksum is saved with the state.
+     *
+     * @param reportPath - path of the report
+     */
+    void save(String reportPath) {
+        reportChecksum = AppUtil.checksum(reportPath, reportLength);
+        Path statePath = pathOf(reportPath);
+
+        Properties properties = new Properties();
+        properties.setProperty("version", VERSION);
+        properties.setProperty("numericMode", numericMode.name());
+        properties.setProperty("topN", Integer.toString(topN));
+        fundFile.save(properties, "fund");
+        fundReturnFile.save(properties, "fundReturn");
+        benchmarkReturnFile.save(properties, "benchmarkReturn");
+        properties.setProperty("report.header", Long.toString(headerLength));
+        properties.setProperty("report.length", Long.toString(reportLength));
+        properties.setProperty("report.checksum", Long.toString(reportChecksum));
+
+        StringBuilder months = new StringBuilder();
+        for (Integer month : fundReturnMonths) months.append(months.length() > 0 ? "," : "").append(month);
+        properties.setProperty("fundReturn.months", months.toString());
+
+        reportMonths.forEach((month, block) ->
+                properties.setProperty("report.month." + month, block[0] + "," + block[1]));
+
+        Path tempPath = statePath.resolveSibling(statePath.getFileName() + ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(tempPath)) {
+                properties.store(out, "Fund research incremental report state");
+            }
+            moveReplacing(tempPath, statePath);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Unable to write file " + statePath, e);
+        }
+    }
+
+    /**
+     * @param options - options of the run
+     * @return true if the options produce the same report content
+     */
+    boolean hasSameOptions(AnalyserOptions options) {
+        return numericMode == options.getNumericMode() && topN == options.getTopN();
+    }
+
+    /**
+     * @param reportPath - path of the report
+     * @return true if the report is the one this state describes, same length and same content
+     */
+    boolean isReportIntact(String reportPath) {
+        try {
+            if (Files.size(Paths.get(reportPath)) != reportLength) return false;
+        } catch (IOException e) {
+            return false;
+        }
+        return AppUtil.checksum(reportPath, reportLength) == reportChecksum;
+    }
+
+    Source getFundFile() {
+        return fundFile;
+    }
+
+    Source getFundReturnFile() {
+        return fundReturnFile;
+    }
+
+    Source getBenchmarkReturnFile() {
+        return benchmarkReturnFile;
+    }
+
+    /**
+     * @param dateKey - date key (yyyyMMdd)
+     * @return true if the fund return file had rows of that date
+     */
+    boolean hasFundReturnMonth(int dateKey) {
+        return fundReturnMonths.contains(dateKey);
+    }
+
+    void addFundReturnMonth(int dateKey) {
+        fundReturnMonths.add(dateKey);
+    }
+
+    /**
+     * Adds the fund return months of another state, e.g. the previous run.
+     *
+     * @param previous - previous state
+     */
+    void addFundReturnMonths(ReportState previous) {
+        fundReturnMonths.addAll(previous.fundReturnMonths);
+    }
+
+    /**
+     * @return month blocks of the report by date key, in descending date order,
+     * as {offset, length} pairs
+     */
+    SortedMap<Integer, long[]> getReportMonths() {
+        return reportMonths;
+    }
+
+    void addReportMonth(int dateKey, long offset, long length) {
+        reportMonths.put(dateKey, new long[]{offset, length});
+    }
+
+    void setHeaderLength(long headerLength) {
+        this.headerLength = headerLength;
+    }
+
+    void setReportLength(long reportLength) {
+        this.reportLength = reportLength;
+    }
+
+    /**
+     * Moves a file over another one, atomically where the file system allows it.
+     *
+     * @param source - file to move
+     * @param target - file to replace
+     * @throws IOException if the move fails
+     */
+    static void moveReplacing(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ReportState{" +
+                "numericMode=" + numericMode +
+                ", topN=" + topN +
+                ", fundReturnFile=" + fundReturnFile +
+                ", benchmarkReturnFile=" + benchmarkReturnFile +
+                ", fundReturnMonths=" + fundReturnMonths.size() +
+                ", reportMonths=" + reportMonths.size() +
+                ", reportLength=" + reportLength +
+                ", reportChecksum=" + reportChecksum +
+                '}';
+    }
+
+    /**
+     * An input file as it was read: path, length and checksum of the read bytes.
+     */
+    static final class Source {
+
+        private final String path;
+        private final long length;
+        private final long checksum;
+
+        Source(String path, long length, long checksum) {
+            this.path = path;
+            this.length = length;
+            this.checksum = checksum;
+        }
+
+        /**
+         * @param filePath - path of an input file
+         * @return the whole file as it is now
+         */
+        static Source of(String filePath) {
+            long length = currentLength(filePath);
+            // a missing file never matches, so the next run is a full run
+            return new Source(String.valueOf(filePath), length, length < 0 ? 0 : AppUtil.checksum(filePath, length));
+        }
+
+        long getLength() {
+            return length;
+        }
+
+        /**
+         * @param filePath - path of the input file now
+         * @return true if the file is the same path with the same content
+         */
+        boolean isSameAs(String filePath) {
+            return length >= 0 && path.equals(filePath) && currentLength(filePath) == length
+                    && AppUtil.checksum(filePath, length) == checksum;
+        }
+
+        /**
+         * A file was only appended to if its first bytes are unchanged and the
+         * last read row was complete, so appended bytes start a new row.
+         *
+         * @param filePath - path of the input file now
+         * @return true if the file is the same path with rows appended, or unchanged
+         */
+        boolean isPrefixOf(String filePath) {
+            long current = currentLength(filePath);
+            if (length < 0 || !path.equals(filePath) || current < length) return false;
+            if (current > length && length > 0 && !endsWithNewLine(filePath, length)) return false;
+            return AppUtil.checksum(filePath, length) == checksum;
+        }
+
+        private static long currentLength(String filePath) {
+            if (filePath == null) return -1;
+            try {
+                return Files.size(Paths.get(filePath));
+            } catch (IOException e) {
+                return -1;
+            }
+        }
+
+        private static boolean endsWithNewLine(String filePath, long length) {
+            try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+                ByteBuffer last = ByteBuffer.allocate(1);
+                return channel.read(last, length - 1) == 1 && last.get(0) == '\n';
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+        private static Source load(Properties properties, String prefix) {
+            return new Source(properties.getProperty(prefix + ".path"),
+                    Long.parseLong(properties.getProperty(prefix + ".length")),
+                    Long.parseLong(properties.getProperty(prefix + ".checksum")));
+        }
+
+        private void save(Properties properties, String prefix) {
+            properties.setProperty(prefix + ".path", path);
+            properties.setProperty(prefix + ".length", Long.toString(length));
+            properties.setProperty(prefix + ".checksum", Long.toString(checksum));
+        }
+
+        @Override
+        public String toString() {
+            return "Source{" +
+                    "path='" + path + '\'' +
+                    ", length=" + length +
+                    ", checksum=" + checksum +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,399 @@
+package org.fundresearch.analyser;
+
+import org.fundresearch.models.Fund;
+import org.fundresearch.models.Performance;
+import org.fundresearch.models.ReturnSeriesStore;
+import org.fundresearch.util.CodeDictionary;
+import org.fundresearch.util.DateCodec;
+import org.fundresearch.util.FixedPoint;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Joined and ranked fund returns held in memory to answer many small queries,
+ * e.g. the rank of a fund in a month, the funds that out performed in a quarter
+ * or the top funds of a benchmark, without a report run. Created by
+ * {@link FundAnalyser#loadResearchEngine()}.<br>
+ * Every month holds the same rows, ranks, excess and out performance as the monthly
+ * report. Rows are numbered month by month, newest month first and in rank order
+ * within a month, and kept in flat arrays with these indexes:
+ * <ul>
+ * <li>by month - first row of every month, and its rows in descending excess order</li>
+ * <li>by fund - rows of every fund, in row order</li>
+ * <li>by benchmark - rows of the funds of every benchmark, in row order</li>
+ * </ul>
+ * so a query is a few binary searches plus the rows it returns.<br>
+ * Instances are immutable and thread safe. Queries return new {@link Performance}
+ * beans, in fixed-point or decimal form as the numeric mode of the analyser.
+ *
+ * @author aditya
+ * @see FundAnalyser#generateMonthlyOutPerformance(String, String)
+ */
+public final class ResearchEngine {
+
+    /**
+     * Excess from which a fund out performed, and to which it under performed,
+     * in hundredths. Same truncation as the report.
+     */
+    private static final long PERFORMED = 100;
+
+    private final boolean fixedPoint;
+    private final CodeDictionary funds;
+    private final String[] fundNames;
+    private final CodeDictionary benchmarks;
+
+    // months, newest first, and the first row of every month, monthStart[months] = rows
+    private final int[] monthKeys;
+    private final int[] monthStart;
+
+    private final int[] rowFund;
+    private final long[] rowExcess;
+    private final long[] rowReturn;
+
+    // rows of every month in descending excess order, equal excess in row order
+    private final int[] excessOrder;
+
+    // rows of fund id f are fundRows[fundStart[f]] to fundRows[fundStart[f + 1] - 1]
+    private final int[] fundStart;
+    private final int[] fundRows;
+
+    // rows of benchmark id b are benchmarkRows[benchmarkStart[b]] to benchmarkRows[benchmarkStart[b + 1] - 1]
+    private final int[] benchmarkStart;
+    private final int[] benchmarkRows;
+
+    /**
+     * @param fundReturns   - sealed store of fund returns, its code ids are the fund ids
+     * @param fundMap       - a map of fund objects where key=fundCode
+     * @param fixedPoint    - true if returns are held as scaled long values
+     * @param monthlyExcess - two scale excess of a fund return row, or NONE if it is not joined
+     * @param monthlyReturn - two scale fund return of a fund return row, in hundredths
+     */
+    ResearchEngine(ReturnSeriesStore fundReturns, Map<String, Fund> fundMap, boolean fixedPoint,
+                   RollingExcess.MonthlyExcess monthlyExcess, IntToLongFunction monthlyReturn) {
+
+        this.fixedPoint = fixedPoint;
+        this.funds = fundReturns.getCodes();
+        this.fundNames = new String[funds.size()];
+        this.benchmarks = new CodeDictionary();
+        int[] fundBenchmark = new int[funds.size()];
+        for (int fundId = 0; fundId < fundNames.length; fundId++) {
+            Fund fund = fundMap.get(funds.code(fundId));
+            fundNames[fundId] = fund == null ? null : fund.getName();
+            fundBenchmark[fundId] = fund == null || fund.getBenchmarkCode() == null
+                    ? -1 : benchmarks.add(fund.getBenchmarkCode());
+        }
+
+        // excess of every fund return row, once
+        long[] excessOfRow = new long[fundReturns.size()];
+        int rows = 0;
+        for (int row = 0; row < excessOfRow.length; row++) {
+            excessOfRow[row] = monthlyExcess.of(row);
+            if (excessOfRow[row] != RollingExcess.MonthlyExcess.NONE) rows++;
+        }
+
+        int months = 0;
+        int[] keys = new int[fundReturns.monthCount()];
+        int[] starts = new int[keys.length + 1];
+        rowFund = new int[rows];
+        rowExcess = new long[rows];
+        rowReturn = new long[rows];
+        excessOrder = new int[rows];
+
+        int next = 0;
+        for (int month = 0; month < fundReturns.monthCount(); month++) {
+            List<Integer> joined = new ArrayList<>(fundReturns.monthEnd(month) - fundReturns.monthStart(month));
+            for (int row = fundReturns.monthStart(month); row < fundReturns.monthEnd(month); row++)
+                if (excessOfRow[row] != RollingExcess.MonthlyExcess.NONE) joined.add(row);
+            if (joined.isEmpty()) continue;
+
+            // rank order of the report: two scale return in descending order, stable
+            long[] returns = new long[joined.size()];
+            Integer[] order = new Integer[joined.size()];
+            for (int i = 0; i < order.length; i++) {
+                returns[i] = monthlyReturn.applyAsLong(joined.get(i));
+                order[i] = i;
+            }
+            Arrays.sort(order, (o1, o2) -> Long.compare(returns[o2], returns[o1]));
+
+            keys[months] = fundReturns.monthKey(month);
+            starts[months++] = next;
+            for (Integer i : order) {
+                int row = joined.get(i);
+                rowFund[next] = fundReturns.codeId(row);
+                rowExcess[next] = excessOfRow[row];
+                rowReturn[next++] = returns[i];
+            }
+
+            Integer[] byExcess = new Integer[order.length];
+            for (int i = 0; i < byExcess.length; i++) byExcess[i] = next - order.length + i;
+            Arrays.sort(byExcess, (o1, o2) -> Long.compare(rowExcess[o2], rowExcess[o1]));
+            for (int i = 0; i < byExcess.length; i++) excessOrder[next - order.length + i] = byExcess[i];
+        }
+        starts[months] = next;
+        monthKeys = Arrays.copyOf(keys, months);
+        monthStart = Arrays.copyOf(starts, months + 1);
+
+        fundStart = new int[fundNames.length + 1];
+        fundRows = new int[rows];
+        group(rowFund, fundStart, fundRows);
+
+        int[] rowBenchmark = new int[rows];
+        for (int row = 0; row < rows; row++) rowBenchmark[row] = fundBenchmark[rowFund[row]];
+        benchmarkStart = new int[benchmarks.size() + 1];
+        benchmarkRows = new int[rows];
+        group(rowBenchmark, benchmarkStart, benchmarkRows);
+    }
+
+    /**
+     * Counting sort of the rows by group id, rows of a group stay in row order.
+     * Rows of group id -1 are left out.
+     */
+    private static void group(int[] groupOfRow, int[] groupStart, int[] groupRows) {
+        for (int group : groupOfRow)
+            if (group >= 0) groupStart[group + 1]++;
+        for (int group = 1; group < groupStart.length; group++) groupStart[group] += groupStart[group - 1];
+
+        int[] fill = Arrays.copyOf(groupStart, groupStart.length - 1);
+        for (int row = 0; row < groupOfRow.length; row++)
+            if (groupOfRow[row] >= 0) groupRows[fill[groupOfRow[row]]++] = row;
+    }
+
+    /**
+     * @return dates of the months with joined returns, newest first
+     */
+    public List<Date> months() {
+        List<Date> dates = new ArrayList<>(monthKeys.length);
+        for (int key : monthKeys) dates.add(dateOf(key));
+        return dates;
+    }
+
+    /**
+     * @return number of joined fund returns
+     */
+    public int size() {
+        return rowFund.length;
+    }
+
+    /**
+     * @param fundCode - code of the fund
+     * @param date     - date of the month, as in the report
+     * @return rank of the fund in the month, the best one if it has several returns
+     * for the date, or -1 if it has no joined return for the date
+     */
+    public int rankOf(String fundCode, Date date) {
+        int row = rowOf(fundCode, date);
+        return row < 0 ? -1 : rankOf(row);
+    }
+
+    /**
+     * @param fundCode - code of the fund
+     * @param date     - date of the month, as in the report
+     * @return performance of the fund in the month, the best ranked one if it has several
+     * returns for the date, or null if it has no joined return for the date
+     */
+    public Performance performanceOf(String fundCode, Date date) {
+        int row = rowOf(fundCode, date);
+        return row < 0 ? null : performanceOf(row);
+    }
+
+    /**
+     * @param fundCode - code of the fund
+     * @return performance of the fund in every month, newest first
+     */
+    public List<Performance> performancesOf(String fundCode) {
+        int fundId = funds.idOf(fundCode);
+        if (fundId < 0) return Collections.emptyList();
+
+        List<Performance> performances = new ArrayList<>(fundStart[fundId + 1] - fundStart[fundId]);
+        for (int i = fundStart[fundId]; i < fundStart[fundId + 1]; i++) performances.add(performanceOf(fundRows[i]));
+        return performances;
+    }
+
+    /**
+     * @param fundCode - code of the fund
+     * @param date     - date of the month, as in the report
+     * @return every performance of the fund in the month, in rank order, as the report
+     * has a line for every return of the fund for the date
+     */
+    public List<Performance> performancesOf(String fundCode, Date date) {
+        int fundId = funds.idOf(fundCode);
+        int month = monthOf(date);
+        if (fundId < 0 || month < 0) return Collections.emptyList();
+
+        List<Performance> performances = new ArrayList<>(1);
+        for (int i = lowerBound(fundRows, fundStart[fundId], fundStart[fundId + 1], monthStart[month]);
+             i < fundStart[fundId + 1] && fundRows[i] < monthStart[month + 1]; i++)
+            performances.add(performanceOf(fundRows[i]));
+        return performances;
+    }
+
+    /**
+     * @param date - date of the month, as in the report
+     * @param n    - number of funds
+     * @return best ranked N funds of the month, in rank order
+     */
+    public List<Performance> top(Date date, int n) {
+        if (n < 0) throw new IllegalArgumentException("Invalid number of funds: " + n);
+
+        int month = monthOf(date);
+        if (month < 0) return Collections.emptyList();
+
+        int end = monthStart[month] + Math.min(n, monthStart[month + 1] - monthStart[month]);
+        List<Performance> performances = new ArrayList<>(end - monthStart[month]);
+        for (int row = monthStart[month]; row < end; row++) performances.add(performanceOf(row));
+        return performances;
+    }
+
+    /**
+     * @param benchmarkCode - code of the benchmark, as in the fund file
+     * @param date          - date of the month, as in the report
+     * @param n             - number of funds
+     * @return best ranked N funds of the benchmark in the month, in rank order. Ranks are
+     * the ranks of the month among all funds.
+     */
+    public List<Performance> top(String benchmarkCode, Date date, int n) {
+        if (n < 0) throw new IllegalArgumentException("Invalid number of funds: " + n);
+
+        int benchmarkId = benchmarks.idOf(benchmarkCode);
+        int month = monthOf(date);
+        if (benchmarkId < 0 || month < 0) return Collections.emptyList();
+
+        int from = lowerBound(benchmarkRows, benchmarkStart[benchmarkId], benchmarkStart[benchmarkId + 1],
+                monthStart[month]);
+        List<Performance> performances = new ArrayList<>();
+        for (int i = from; i < benchmarkStart[benchmarkId + 1] && performances.size() < n
+                && benchmarkRows[i] < monthStart[month + 1]; i++)
+            performances.add(performanceOf(benchmarkRows[i]));
+        return performances;
+    }
+
+    /**
+     * @param from - first date, inclusive
+     * @param to   - last date, inclusive
+     * @return funds that out performed in the months between the dates, newest month
+     * first and in descending excess order within a month
+     */
+    public List<Performance> outPerformers(Date from, Date to) {
+        List<Performance> performances = new ArrayList<>();
+        for (int month = firstMonth(to); month < monthKeys.length && monthKeys[month] >= DateCodec.key(from); month++) {
+            for (int i = monthStart[month]; i < monthStart[month + 1] && rowExcess[excessOrder[i]] >= PERFORMED; i++)
+                performances.add(performanceOf(excessOrder[i]));
+        }
+        return performances;
+    }
+
+    /**
+     * @param from - first date, inclusive
+     * @param to   - last date, inclusive
+     * @return funds that under performed in the months between the dates, newest month
+     * first and in ascending excess order within a month
+     */
+    public List<Performance> underPerformers(Date from, Date to) {
+        List<Performance> performances = new ArrayList<>();
+        for (int month = firstMonth(to); month < monthKeys.length && monthKeys[month] >= DateCodec.key(from); month++) {
+            for (int i = monthStart[month + 1] - 1;
+                 i >= monthStart[month] && rowExcess[excessOrder[i]] <= -PERFORMED; i--)
+                performances.add(performanceOf(excessOrder[i]));
+        }
+        return performances;
+    }
+
+    /**
+     * @return row of the best ranked joined return of a fund for a date, or -1
+     */
+    private int rowOf(String fundCode, Date date) {
+        int fundId = funds.idOf(fundCode);
+        int month = monthOf(date);
+        if (fundId < 0 || month < 0) return -1;
+
+        int i = lowerBound(fundRows, fundStart[fundId], fundStart[fundId + 1], monthStart[month]);
+        return i < fundStart[fundId + 1] && fundRows[i] < monthStart[month + 1] ? fundRows[i] : -1;
+    }
+
+    /**
+     * @return month index of a date, or -1 if it has no joined returns
+     */
+    private int monthOf(Date date) {
+        int month = firstMonth(date);
+        return month < monthKeys.length && monthKeys[month] == DateCodec.key(date) ? month : -1;
+    }
+
+    /**
+     * @return index of the newest month not after a date
+     */
+    private int firstMonth(Date date) {
+        int key = DateCodec.key(date);
+        // month keys are in descending order
+        int low = 0, high = monthKeys.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (monthKeys[middle] > key) low = middle + 1;
+            else high = middle;
+        }
+        return low;
+    }
+
+    /**
+     * @return index of the first value of values[from, to) not below a row, to if there is none
+     */
+    private static int lowerBound(int[] values, int from, int to, int row) {
+        while (from < to) {
+            int middle = (from + to) >>> 1;
+            if (values[middle] < row) from = middle + 1;
+            else to = middle;
+        }
+        return from;
+    }
+
+    private int rankOf(int row) {
+        return row - monthStart[monthOfRow(row)] + 1;
+    }
+
+    private int monthOfRow(int row) {
+        // last month starting at or before the row
+        int low = 0, high = monthKeys.length - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (monthStart[middle] <= row) low = middle;
+            else high = middle - 1;
+        }
+        return low;
+    }
+
+    private Performance performanceOf(int row) {
+        int month = monthOfRow(row);
+        Date date = dateOf(monthKeys[month]);
+        int rank = row - monthStart[month] + 1;
+        long excess = rowExcess[row];
+        String outPerformance = excess >= PERFORMED ? "Out Performed" : excess <= -PERFORMED ? "Under Performed" : " ";
+
+        if (fixedPoint)
+            return new Performance(fundNames[rowFund[row]], date, excess, outPerformance, rowReturn[row], rank);
+        return new Performance(fundNames[rowFund[row]], date, FixedPoint.toBigDecimal(excess, FixedPoint.TWO_SCALE),
+                outPerformance, FixedPoint.toBigDecimal(rowReturn[row], FixedPoint.TWO_SCALE), rank);
+    }
+
+    /**
+     * @return a copy of the shared date of a key, so callers may modify it
+     */
+    private static Date dateOf(int key) {
+        return new Date(DateCodec.toDate(key).getTime());
+    }
+
+    @Override
+    public String toString() {
+        return "ResearchEngine{" +
+                "fixedPoint=" + fixedPoint +
+                ", funds=" + funds.size() +
+                ", benchmarks=" + benchmarks.size() +
+                ", months=" + monthKeys.length +
+                ", rows=" + rowFund.length +
+                '}';
+    }
+}
@@ -0,0 +1,248 @@
+package org.fundresearch.analyser;
+
+import org.fundresearch.models.ReturnSeriesStore;
+
+/**
+ * Rolling window excess of every fund, computed in one pass over the months of a
+ * sealed {@link ReturnSeriesStore}, newest month first.<br>
+ * The window of length W at month i holds months i to i + W - 1 of the store, i.e. the
+ * month and the W - 1 months before it. A fund is ranked in a window only when it has a
+ * joined return in every month of the window.<br>
+ * Every window keeps sliding accumulators per fund - excess sum, out and under performed
+ * months and months present. Moving to the next month subtracts the month leaving each
+ * window and adds the month entering it, so the cost is O(rows x windows) whatever
+ * the window lengths. The monthly excess of the last (longest window + 1) months is
+ * kept in a ring, so every row is joined once:
+ * <ul>
+ * <li>ring - excess and out/under class of a fund for a month, by month slot and code id</li>
+ * <li>month funds - code ids with a joined return in a month slot, in row order</li>
+ * </ul>
+ * Instances are not thread safe.
+ *
+ * @author aditya
+ * @see AnalyserOptions#setRollingWindows(int...)
+ */
+final class RollingExcess {
+
+    private final ReturnSeriesStore store;
+    private final int[] windows;
+    private final MonthlyExcess monthlyExcess;
+    private final int months;
+    private final int codes;
+    private final int slots;
+
+    private final long[] ringExcess;
+    private final byte[] ringClass;
+    private final int[] ringMonth;
+    private final int[][] monthFunds;
+    private final int[] monthFundCount;
+
+    private final long[] sums;
+    private final int[] outs;
+    private final int[] unders;
+    private final int[] counts;
+    private final int[] added;
+
+    private int month = -1;
+    private int loaded;
+    private int[] ranked = new int[0];
+    private int[] scratch = new int[0];
+
+    /**
+     * @param store         - sealed store of fund returns
+     * @param windows       - window lengths in months, in ascending order
+     * @param monthlyExcess - two scale excess of a row
+     */
+    RollingExcess(ReturnSeriesStore store, int[] windows, MonthlyExcess monthlyExcess) {
+        this.store = store;
+        this.windows = windows.clone();
+        this.monthlyExcess = monthlyExcess;
+        this.months = store.monthCount();
+        this.codes = store.codeCount();
+        this.slots = Math.min(windows[windows.length - 1] + 1, Math.max(months, 1));
+
+        this.ringExcess = new long[slots * codes];
+        this.ringClass = new byte[slots * codes];
+        this.ringMonth = new int[slots * codes];
+        this.monthFunds = new int[slots][];
+        this.monthFundCount = new int[slots];
+
+        this.sums = new long[windows.length * codes];
+        this.outs = new int[windows.length * codes];
+        this.unders = new int[windows.length * codes];
+        this.counts = new int[windows.length * codes];
+        this.added = new int[windows.length];
+    }
+
+    /**
+     * Moves to the next month, newest first, and slides every window onto it.
+     *
+     * @return false when there are no more months
+     */
+    boolean next() {
+        if (month + 1 >= months) return false;
+        month++;
+
+        for (int w = 0; w < windows.length; w++) {
+            if (month > 0) slide(w, month - 1, -1);
+
+            int last = Math.min(month + windows[w] - 1, months - 1);
+            while (added[w] <= last) {
+                load(added[w]);
+                slide(w, added[w]++, 1);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return current month, as a month index of the store
+     */
+    int month() {
+        return month;
+    }
+
+    /**
+     * Ranks the funds of the current month in a window by excess sum in descending
+     * order. Equal sums keep the row order of the month.
+     *
+     * @param window - index of the window in the window lengths
+     * @return number of ranked funds, 0 if the store has less months than the window
+     * from the current month on
+     */
+    int rank(int window) {
+        if (month + windows[window] > months) return 0;
+
+        int slot = month % slots;
+        int[] funds = monthFunds[slot];
+        int candidates = monthFundCount[slot];
+        if (ranked.length < candidates) {
+            ranked = new int[candidates];
+            scratch = new int[candidates];
+        }
+
+        int count = 0;
+        int base = window * codes;
+        for (int i = 0; i < candidates; i++)
+            if (counts[base + funds[i]] == windows[window]) ranked[count++] = funds[i];
+
+        sort(base, 0, count);
+        return count;
+    }
+
+    /**
+     * @param position - rank - 1, below the count returned by {@link #rank(int)}
+     * @return code id of the fund at the position
+     */
+    int rankedCodeId(int position) {
+        return ranked[position];
+    }
+
+    /**
+     * @return excess sum of a fund in a window, in hundredths
+     */
+    long excess(int window, int codeId) {
+        return sums[window * codes + codeId];
+    }
+
+    /**
+     * @return months of a window in which a fund out performed
+     */
+    int outPerformedMonths(int window, int codeId) {
+        return outs[window * codes + codeId];
+    }
+
+    /**
+     * @return months of a window in which a fund under performed
+     */
+    int underPerformedMonths(int window, int codeId) {
+        return unders[window * codes + codeId];
+    }
+
+    /**
+     * Joins the rows of a month into its ring slot, unless it is already there.
+     * When a fund has several rows in a month, the last one wins.
+     */
+    private void load(int monthIndex) {
+        if (monthIndex < loaded) return;
+
+        int slot = monthIndex % slots;
+        int start = store.monthStart(monthIndex), end = store.monthEnd(monthIndex);
+        if (monthFunds[slot] == null || monthFunds[slot].length < end - start)
+            monthFunds[slot] = new int[end - start];
+
+        int count = 0;
+        for (int row = start; row < end; row++) {
+            long excess = monthlyExcess.of(row);
+            if (excess == MonthlyExcess.NONE) continue;
+
+            int codeId = store.codeId(row);
+            int cell = slot * codes + codeId;
+            if (ringMonth[cell] != monthIndex + 1) {
+                ringMonth[cell] = monthIndex + 1;
+                monthFunds[slot][count++] = codeId;
+            }
+            ringExcess[cell] = excess;
+            // same truncation as the Out / Under Performed classification
+            long integerPart = excess / 100;
+            ringClass[cell] = (byte) (integerPart >= 1 ? 1 : integerPart <= -1 ? -1 : 0);
+        }
+        monthFundCount[slot] = count;
+        loaded = monthIndex + 1;
+    }
+
+    /**
+     * Adds (sign 1) or subtracts (sign -1) a loaded month to the accumulators of a window.
+     */
+    private void slide(int window, int monthIndex, int sign) {
+        int slot = monthIndex % slots;
+        int base = window * codes;
+        int[] funds = monthFunds[slot];
+        for (int i = 0; i < monthFundCount[slot]; i++) {
+            int codeId = funds[i];
+            int cell = slot * codes + codeId;
+            sums[base + codeId] += sign * ringExcess[cell];
+            counts[base + codeId] += sign;
+            if (ringClass[cell] > 0) outs[base + codeId] += sign;
+            else if (ringClass[cell] < 0) unders[base + codeId] += sign;
+        }
+    }
+
+    /**
+     * Merge sort of ranked[from, to) by excess sum in descending order, stable.
+     */
+    private void sort(int base, int from, int to) {
+        if (to - from < 2) return;
+
+        int middle = (from + to) >>> 1;
+        sort(base, from, middle);
+        sort(base, middle, to);
+        if (sums[base + ranked[middle - 1]] >= sums[base + ranked[middle]]) return;
+
+        System.arraycopy(ranked, from, scratch, from, to - from);
+        int left = from, right = middle;
+        for (int i = from; i < to; i++) {
+            if (right >= to || (left < middle && sums[base + scratch[left]] >= sums[base + scratch[right]]))
+                ranked[i] = scratch[left++];
+            else
+                ranked[i] = scratch[right++];
+        }
+    }
+
+    /**
+     * Two scale monthly excess of a fund return row.
+     */
+    interface MonthlyExcess {
+
+        /**
+         * Excess of a row that has no fund or no benchmark return to join with.
+         */
+        long NONE = Long.MIN_VALUE;
+
+        /**
+         * @param row - row of the fund return store
+         * @return excess of the row in hundredths, or {@link #NONE}
+         */
+        long of(int row);
+    }
+}
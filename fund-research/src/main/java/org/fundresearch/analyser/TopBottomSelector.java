@@ -0,0 +1,186 @@
+package org.fundresearch.analyser;
+
+import org.fundresearch.models.ReturnSeriesStore;
+import org.fundresearch.util.AppUtil;
+import org.fundresearch.util.FixedPoint;
+
+import java.util.Arrays;
+
+/**
+ * Selects the best and worst N rows of one month of a {@link ReturnSeriesStore}
+ * without sorting the month.<br>
+ * Rows are ordered the way the full ranking orders them: by return rounded to 2 scale
+ * in descending order, then by row number, so returns equal once rounded keep their
+ * file order. Two bounded binary heaps of row numbers keep the candidates:
+ * <ul>
+ * <li>top - a heap with the worst of the best N rows at its root</li>
+ * <li>bottom - a heap with the best of the worst N rows at its root</li>
+ * </ul>
+ * Memory is O(N) per month whatever the number of rows offered.<br>
+ * Instances are reused month after month through {@link #reset()} and are not thread safe.
+ *
+ * @author aditya
+ * @see AnalyserOptions#setTopN(int)
+ */
+final class TopBottomSelector {
+
+    private final ReturnSeriesStore store;
+    private final int n;
+    private final int[] top;
+    private final int[] bottom;
+    private int topSize;
+    private int bottomSize;
+    private int count;
+
+    private int[] rows = new int[0];
+    private int[] ranks = new int[0];
+    private int selected;
+
+    /**
+     * @param store - sealed store of the offered rows
+     * @param n     - number of best and of worst rows to keep
+     */
+    TopBottomSelector(ReturnSeriesStore store, int n) {
+        if (n < 1) throw new IllegalArgumentException("Invalid top N: " + n);
+
+        this.store = store;
+        this.n = n;
+        this.top = new int[n];
+        this.bottom = new int[n];
+    }
+
+    /**
+     * Forgets the rows of the previous month.
+     */
+    void reset() {
+        topSize = 0;
+        bottomSize = 0;
+        count = 0;
+        selected = 0;
+    }
+
+    /**
+     * Offers a row of the month. Rows must be offered in ascending row order.
+     *
+     * @param row - row number in the store
+     */
+    void offer(int row) {
+        count++;
+
+        if (topSize < n) {
+            top[topSize] = row;
+            siftUp(top, topSize++, 1);
+        } else if (compare(row, top[0]) < 0) {
+            top[0] = row;
+            siftDown(top, topSize, 1);
+        }
+
+        if (bottomSize < n) {
+            bottom[bottomSize] = row;
+            siftUp(bottom, bottomSize++, -1);
+        } else if (compare(row, bottom[0]) > 0) {
+            bottom[0] = row;
+            siftDown(bottom, bottomSize, -1);
+        }
+    }
+
+    /**
+     * Orders the kept rows by rank and assigns their ranks. Rows that are both
+     * among the best and the worst N are selected once.
+     *
+     * @return number of selected rows, see {@link #row(int)} and {@link #rank(int)}
+     */
+    int select() {
+        if (rows.length < topSize + bottomSize) {
+            rows = new int[topSize + bottomSize];
+            ranks = new int[topSize + bottomSize];
+        }
+
+        // popping a max heap yields the worst first, so fill from the back
+        int best = topSize;
+        for (int i = best - 1; i >= 0; i--) {
+            rows[i] = top[0];
+            ranks[i] = i + 1;
+            top[0] = top[--topSize];
+            siftDown(top, topSize, 1);
+        }
+
+        // popping a min heap yields the best first; the first worst rank is count - size + 1
+        int worst = bottomSize;
+        selected = best;
+        for (int i = 0; i < worst; i++) {
+            int rank = count - worst + 1 + i;
+            if (rank > best) {
+                rows[selected] = bottom[0];
+                ranks[selected++] = rank;
+            }
+            bottom[0] = bottom[--bottomSize];
+            siftDown(bottom, bottomSize, -1);
+        }
+        return selected;
+    }
+
+    /**
+     * @return number of rows offered since the last reset
+     */
+    int count() {
+        return count;
+    }
+
+    int row(int index) {
+        return rows[index];
+    }
+
+    int rank(int index) {
+        return ranks[index];
+    }
+
+    /**
+     * @return negative if row a ranks before row b, by the rounded returns the full ranking sorts on
+     */
+    private int compare(int a, int b) {
+        int byReturn = store.isFixedPoint()
+                ? Long.compare(FixedPoint.roundToTwoScale(store.value(b)), FixedPoint.roundToTwoScale(store.value(a)))
+                : AppUtil.roundToTwoScale(store.decimal(b)).compareTo(AppUtil.roundToTwoScale(store.decimal(a)));
+        return byReturn != 0 ? byReturn : Integer.compare(a, b);
+    }
+
+    /**
+     * @param sign - 1 keeps the row ranked last at the root, -1 the row ranked first
+     */
+    private void siftUp(int[] heap, int index, int sign) {
+        int row = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (sign * compare(row, heap[parent]) <= 0) break;
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = row;
+    }
+
+    private void siftDown(int[] heap, int size, int sign) {
+        if (size == 0) return;
+        int index = 0, row = heap[0];
+        int half = size >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            int right = child + 1;
+            if (right < size && sign * compare(heap[right], heap[child]) > 0) child = right;
+            if (sign * compare(row, heap[child]) >= 0) break;
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = row;
+    }
+
+    @Override
+    public String toString() {
+        return "TopBottomSelector{" +
+                "n=" + n +
+                ", count=" + count +
+                ", selected=" + selected +
+                ", rows=" + Arrays.toString(Arrays.copyOf(rows, selected)) +
+                '}';
+    }
+}
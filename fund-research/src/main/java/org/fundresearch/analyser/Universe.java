@@ -0,0 +1,83 @@
+package org.fundresearch.analyser;
+
+/**
+ * Input files and report destination of one client universe of a {@link BatchRunner}.<br>
+ * Universes usually have their own fund and fund return files and share the benchmark files.
+ *
+ * @author aditya
+ * @see BatchRunner
+ */
+public final class Universe {
+
+    private final String name;
+    private final String fundCsvPath;
+    private final String benchmarkCsvPath;
+    private final String fundReturnCsvPath;
+    private final String benchmarkReturnCsvPath;
+    private final String destinationDirectoryPath;
+    private final String outputFileName;
+
+    /**
+     * @param name                     - name of the universe in the batch summary
+     * @param fundCsvPath              - path of a fund csv file
+     * @param benchmarkCsvPath         - path of a benchmark csv file - (optional: can be null)
+     * @param fundReturnCsvPath        - path of a fund return csv file
+     * @param benchmarkReturnCsvPath   - path of a benchmark return csv file
+     * @param destinationDirectoryPath - A directory path where the report file should be store.
+     * @param outputFileName           - (optional) Either null or the user defined file name
+     *                                 for the output report. <b>Default: monthlyOutPerformance.csv</b>
+     */
+    public Universe(String name, String fundCsvPath, String benchmarkCsvPath, String fundReturnCsvPath,
+                    String benchmarkReturnCsvPath, String destinationDirectoryPath, String outputFileName) {
+        if (name == null) throw new IllegalArgumentException("Invalid universe name: " + name);
+
+        this.name = name;
+        this.fundCsvPath = fundCsvPath;
+        this.benchmarkCsvPath = benchmarkCsvPath;
+        this.fundReturnCsvPath = fundReturnCsvPath;
+        this.benchmarkReturnCsvPath = benchmarkReturnCsvPath;
+        this.destinationDirectoryPath = destinationDirectoryPath;
+        this.outputFileName = outputFileName;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getFundCsvPath() {
+        return fundCsvPath;
+    }
+
+    public String getBenchmarkCsvPath() {
+        return benchmarkCsvPath;
+    }
+
+    public String getFundReturnCsvPath() {
+        return fundReturnCsvPath;
+    }
+
+    public String getBenchmarkReturnCsvPath() {
+        return benchmarkReturnCsvPath;
+    }
+
+    public String getDestinationDirectoryPath() {
+        return destinationDirectoryPath;
+    }
+
+    public String getOutputFileName() {
+        return outputFileName;
+    }
+
+    @Override
+    public String toString() {
+        return "Universe{" +
+                "name='" + name + '\'' +
+                ", fundCsvPath='" + fundCsvPath + '\'' +
+                ", benchmarkCsvPath='" + benchmarkCsvPath + '\'' +
+                ", fundReturnCsvPath='" + fundReturnCsvPath + '\'' +
+                ", benchmarkReturnCsvPath='" + benchmarkReturnCsvPath + '\'' +
+                ", destinationDirectoryPath='" + destinationDirectoryPath + '\'' +
+                ", outputFileName='" + outputFileName + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,12 @@
+package org.fundresearch.enums;
+
+/**
+ * Arithmetic used for returns, excess and rounding.
+ * <ul>
+ * <li>DECIMAL - {@link java.math.BigDecimal} values (default)</li>
+ * <li>FIXED_POINT - scaled {@code long} values, see {@link org.fundresearch.util.FixedPoint}</li>
+ * </ul>
+ */
+public enum NumericMode {
+    DECIMAL, FIXED_POINT
+}
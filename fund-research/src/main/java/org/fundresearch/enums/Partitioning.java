@@ -0,0 +1,12 @@
+package org.fundresearch.enums;
+
+/**
+ * Files of a partitioned monthly out performance report.
+ * <ul>
+ * <li>MONTH - one file per month, {@code <report>-yyyy-MM.csv}</li>
+ * <li>YEAR - one file per year, {@code <report>-yyyy.csv}</li>
+ * </ul>
+ */
+public enum Partitioning {
+    MONTH, YEAR
+}
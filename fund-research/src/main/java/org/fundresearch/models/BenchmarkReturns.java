@@ -0,0 +1,73 @@
+package org.fundresearch.models;
+
+import org.fundresearch.util.LongIntHashMap;
+
+/**
+ * Benchmark return series joined on a composite (benchmark, date) key.<br>
+ * Rows are held in a {@link ReturnSeriesStore}, and a {@link LongIntHashMap}
+ * maps {@code (benchmark code id, date key)} to the row number, so a fund
+ * return is matched with the return of its own benchmark for the same date
+ * in O(1). When a benchmark has several rows for a date, the last one read wins.<br>
+ * Instances are read only and can be shared between threads.
+ *
+ * @author aditya
+ * @see ReturnSeriesStore
+ * @see Fund#getBenchmarkCode()
+ */
+public final class BenchmarkReturns {
+
+    private final ReturnSeriesStore store;
+    private final LongIntHashMap rowsByKey;
+
+    /**
+     * @param store - benchmark return rows, sealed by this constructor if it is not already
+     */
+    public BenchmarkReturns(ReturnSeriesStore store) {
+        if (store == null) throw new IllegalArgumentException("Invalid benchmark return store");
+
+        this.store = store.seal();
+        this.rowsByKey = new LongIntHashMap(store.size());
+        for (int row = 0; row < store.size(); row++)
+            rowsByKey.put(LongIntHashMap.compositeKey(store.codeId(row), store.dateKey(row)), row);
+    }
+
+    /**
+     * @return rows of all benchmarks
+     */
+    public ReturnSeriesStore getStore() {
+        return store;
+    }
+
+    /**
+     * @param benchmarkCode - benchmark code
+     * @return dense id of the benchmark, or -1 if it is unknown
+     */
+    public int benchmarkIdOf(String benchmarkCode) {
+        return benchmarkCode == null ? -1 : store.codeIdOf(benchmarkCode);
+    }
+
+    /**
+     * @param benchmarkId - dense id of the benchmark
+     * @param dateKey     - date key (yyyyMMdd)
+     * @return row number of the benchmark return in {@link #getStore()}, or -1 if there is none
+     */
+    public int row(int benchmarkId, int dateKey) {
+        if (benchmarkId < 0) return -1;
+        return rowsByKey.get(LongIntHashMap.compositeKey(benchmarkId, dateKey), -1);
+    }
+
+    /**
+     * @return number of distinct (benchmark, date) pairs
+     */
+    public int size() {
+        return rowsByKey.size();
+    }
+
+    @Override
+    public String toString() {
+        return "BenchmarkReturns{" +
+                "store=" + store +
+                ", keys=" + rowsByKey.size() +
+                '}';
+    }
+}
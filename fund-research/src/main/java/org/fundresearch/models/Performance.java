@@ -4,7 +4,9 @@ import java.math.BigDecimal;
 import java.util.Date;
 
 /**
- * Performance data model bean.
+ * Performance data model bean.<br>
+ * In fixed-point mode excess and returns are null, scaledExcess and
+ * scaledReturns hold the values in hundredths (two scale).
  */
 public class Performance {
 
@@ -14,6 +16,8 @@ public class Performance {
     private String outPerformanceText;
     private BigDecimal returns;
     private Integer rank;
+    private long scaledExcess;
+    private long scaledReturns;
 
     public Performance() {
     }
@@ -27,6 +31,15 @@ public class Performance {
         this.rank = rank;
     }
 
+    public Performance(String fundName, Date date, long scaledExcess, String outPerformanceText, long scaledReturns, Integer rank) {
+        this.fundName = fundName;
+        this.date = date;
+        this.scaledExcess = scaledExcess;
+        this.outPerformanceText = outPerformanceText;
+        this.scaledReturns = scaledReturns;
+        this.rank = rank;
+    }
+
     public String getFundName() {
         return fundName;
     }
@@ -67,6 +80,22 @@ public class Performance {
         this.returns = returns;
     }
 
+    public long getScaledExcess() {
+        return scaledExcess;
+    }
+
+    public void setScaledExcess(long scaledExcess) {
+        this.scaledExcess = scaledExcess;
+    }
+
+    public long getScaledReturns() {
+        return scaledReturns;
+    }
+
+    public void setScaledReturns(long scaledReturns) {
+        this.scaledReturns = scaledReturns;
+    }
+
     public Integer getRank() {
         return rank;
     }
@@ -82,12 +111,14 @@ public class Performance {
 
         Performance that = (Performance) o;
 
+        if (scaledExcess != that.scaledExcess) return false;
+        if (scaledReturns != that.scaledReturns) return false;
         if (!fundName.equals(that.fundName)) return false;
         if (!date.equals(that.date)) return false;
-        if (!excess.equals(that.excess)) return false;
+        if (excess != null ? !excess.equals(that.excess) : that.excess != null) return false;
         if (outPerformanceText != null ? !outPerformanceText.equals(that.outPerformanceText) : that.outPerformanceText != null)
             return false;
-        if (!returns.equals(that.returns)) return false;
+        if (returns != null ? !returns.equals(that.returns) : that.returns != null) return false;
         return rank != null ? rank.equals(that.rank) : that.rank == null;
 
     }
@@ -96,10 +127,12 @@ public class Performance {
     public int hashCode() {
         int result = fundName.hashCode();
         result = 31 * result + date.hashCode();
-        result = 31 * result + excess.hashCode();
+        result = 31 * result + (excess != null ? excess.hashCode() : 0);
         result = 31 * result + (outPerformanceText != null ? outPerformanceText.hashCode() : 0);
-        result = 31 * result + returns.hashCode();
+        result = 31 * result + (returns != null ? returns.hashCode() : 0);
         result = 31 * result + (rank != null ? rank.hashCode() : 0);
+        result = 31 * result + Long.hashCode(scaledExcess);
+        result = 31 * result + Long.hashCode(scaledReturns);
         return result;
     }
 
@@ -112,6 +145,8 @@ public class Performance {
                 ", outPerformanceText='" + outPerformanceText + '\'' +
                 ", returns=" + returns +
                 ", rank=" + rank +
+                ", scaledExcess=" + scaledExcess +
+                ", scaledReturns=" + scaledReturns +
                 '}';
     }
 }
@@ -0,0 +1,488 @@
+package org.fundresearch.models;
+
+import org.fundresearch.enums.NumericMode;
+import org.fundresearch.util.CodeDictionary;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Columnar store of a return series.<br>
+ * Every row is held in primitive columns instead of a {@link Returns} object:
+ * <ul>
+ * <li>code id - dense int id of the fund (or benchmark) code in the {@link CodeDictionary}
+ * of the store, see {@link #code(int)}</li>
+ * <li>date key - yyyyMMdd int, see {@link org.fundresearch.util.DateCodec}</li>
+ * <li>value - scaled long in fixed-point mode, {@link BigDecimal} in decimal mode</li>
+ * </ul>
+ * Rows are appended with one of the add methods and then {@link #seal()}ed, which
+ * sorts them by date in descending order (file order is kept within a date) and
+ * builds two offset indexes:
+ * <ul>
+ * <li>by month - rows of a date are contiguous, see {@link #monthStart(int)}</li>
+ * <li>by code - row numbers of a code in date descending order, see {@link #codeStart(int)}</li>
+ * </ul>
+ * A dictionary can be shared with the code that resolves the ids, e.g. one built from the
+ * fund file, so rows can be appended by code id without creating or hashing a String.<br>
+ * A sealed store is read only and can be shared between threads.
+ *
+ * @author aditya
+ * @see Returns
+ */
+public final class ReturnSeriesStore {
+
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    private final boolean fixedPoint;
+
+    private int[] codeIds;
+    private int[] dateKeys;
+    private long[] values;
+    private BigDecimal[] decimals;
+    private int size;
+
+    private final CodeDictionary codes;
+    private String lastCode;
+    private int lastCodeId = -1;
+
+    private boolean sealed;
+    private int[] monthKeys;
+    private int[] monthOffsets;
+    private int[] codeOffsets;
+    private int[] codeRows;
+
+    /**
+     * @param numericMode - decides whether values are scaled longs or decimals
+     */
+    public ReturnSeriesStore(NumericMode numericMode) {
+        this(numericMode, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param numericMode - decides whether values are scaled longs or decimals
+     * @param codes       - dictionary of the code ids, may already hold codes
+     */
+    public ReturnSeriesStore(NumericMode numericMode, CodeDictionary codes) {
+        this(numericMode, DEFAULT_CAPACITY, codes);
+    }
+
+    /**
+     * @param numericMode - decides whether values are scaled longs or decimals
+     * @param capacity    - expected number of rows
+     */
+    public ReturnSeriesStore(NumericMode numericMode, int capacity) {
+        this(numericMode, capacity, new CodeDictionary());
+    }
+
+    /**
+     * @param numericMode - decides whether values are scaled longs or decimals
+     * @param capacity    - expected number of rows
+     * @param codes       - dictionary of the code ids, may already hold codes
+     */
+    public ReturnSeriesStore(NumericMode numericMode, int capacity, CodeDictionary codes) {
+        if (numericMode == null) throw new IllegalArgumentException("Invalid numeric mode: " + numericMode);
+        if (codes == null) throw new IllegalArgumentException("Invalid code dictionary");
+
+        this.codes = codes;
+        this.fixedPoint = numericMode == NumericMode.FIXED_POINT;
+        int initial = Math.max(capacity, 16);
+        this.codeIds = new int[initial];
+        this.dateKeys = new int[initial];
+        if (fixedPoint) this.values = new long[initial];
+        else this.decimals = new BigDecimal[initial];
+    }
+
+    /**
+     * Creates a sealed store over existing columns, e.g. columns loaded from a snapshot.
+     * The columns are used as they are, not copied.
+     *
+     * @param numericMode - decides whether values are scaled longs or decimals
+     * @param codes       - codes by dense code id
+     * @param codeIds     - code id column
+     * @param dateKeys    - date key column
+     * @param values      - scaled value column in fixed-point mode, else null
+     * @param decimals    - decimal value column in decimal mode, else null
+     * @return a sealed store
+     */
+    public static ReturnSeriesStore of(NumericMode numericMode, List<String> codes, int[] codeIds, int[] dateKeys,
+                                       long[] values, BigDecimal[] decimals) {
+        ReturnSeriesStore store = new ReturnSeriesStore(numericMode, 0);
+        if (codeIds.length != dateKeys.length
+                || (store.fixedPoint ? values == null || values.length != codeIds.length
+                : decimals == null || decimals.length != codeIds.length))
+            throw new IllegalArgumentException("Invalid columns of " + codeIds.length + " rows");
+
+        for (String code : codes) store.codes.add(code);
+        if (store.codes.size() != codes.size()) throw new IllegalArgumentException("Duplicate codes");
+        for (int codeId : codeIds)
+            if (codeId < 0 || codeId >= codes.size()) throw new IllegalArgumentException("Invalid code id: " + codeId);
+
+        store.codeIds = codeIds;
+        store.dateKeys = dateKeys;
+        store.values = values;
+        store.decimals = decimals;
+        store.size = codeIds.length;
+        return store.seal();
+    }
+
+    /**
+     * Appends a fixed-point row.
+     *
+     * @param code    - fund or benchmark code
+     * @param dateKey - date key (yyyyMMdd)
+     * @param value   - scaled return value
+     */
+    public void add(String code, int dateKey, long value) {
+        if (!fixedPoint) throw new IllegalStateException("Store holds decimal values");
+        int row = nextRow(code, dateKey);
+        values[row] = value;
+    }
+
+    /**
+     * Appends a decimal row.
+     *
+     * @param code    - fund or benchmark code
+     * @param dateKey - date key (yyyyMMdd)
+     * @param value   - decimal return value
+     */
+    public void add(String code, int dateKey, BigDecimal value) {
+        if (fixedPoint) throw new IllegalStateException("Store holds fixed-point values");
+        int row = nextRow(code, dateKey);
+        decimals[row] = value;
+    }
+
+    /**
+     * Appends a fixed-point row by code id.
+     *
+     * @param codeId  - dense id of the code in {@link #getCodes()}
+     * @param dateKey - date key (yyyyMMdd)
+     * @param value   - scaled return value
+     */
+    public void add(int codeId, int dateKey, long value) {
+        if (!fixedPoint) throw new IllegalStateException("Store holds decimal values");
+        int row = nextRow(codeId, dateKey);
+        values[row] = value;
+    }
+
+    /**
+     * Appends a decimal row by code id.
+     *
+     * @param codeId  - dense id of the code in {@link #getCodes()}
+     * @param dateKey - date key (yyyyMMdd)
+     * @param value   - decimal return value
+     */
+    public void add(int codeId, int dateKey, BigDecimal value) {
+        if (fixedPoint) throw new IllegalStateException("Store holds fixed-point values");
+        int row = nextRow(codeId, dateKey);
+        decimals[row] = value;
+    }
+
+    /**
+     * Appends all rows of another store after the rows of this one, in their order,
+     * e.g. to merge stores parsed from consecutive chunks of a file.
+     *
+     * @param other - store of the same numeric mode
+     */
+    public void addAll(ReturnSeriesStore other) {
+        if (sealed) throw new IllegalStateException("Store is sealed");
+        if (other.fixedPoint != fixedPoint) throw new IllegalArgumentException("Stores of different numeric modes");
+
+        // code ids of the other store in this store, one lookup per code
+        int[] ids = new int[other.codes.size()];
+        for (int id = 0; id < ids.length; id++) ids[id] = other.codes == codes ? id : internCode(other.codes.code(id));
+
+        int required = size + other.size;
+        if (required > dateKeys.length) {
+            int capacity = Math.max(required, dateKeys.length * 2);
+            codeIds = Arrays.copyOf(codeIds, capacity);
+            dateKeys = Arrays.copyOf(dateKeys, capacity);
+            if (fixedPoint) values = Arrays.copyOf(values, capacity);
+            else decimals = Arrays.copyOf(decimals, capacity);
+        }
+
+        for (int row = 0; row < other.size; row++) codeIds[size + row] = ids[other.codeIds[row]];
+        System.arraycopy(other.dateKeys, 0, dateKeys, size, other.size);
+        if (fixedPoint) System.arraycopy(other.values, 0, values, size, other.size);
+        else System.arraycopy(other.decimals, 0, decimals, size, other.size);
+        size = required;
+    }
+
+    /**
+     * Sorts rows by date in descending order and builds the month and code indexes.
+     * No row can be added afterwards.
+     *
+     * @return this store
+     */
+    public ReturnSeriesStore seal() {
+        if (sealed) return this;
+
+        sortByDateDescending();
+        buildMonthIndex();
+        buildCodeIndex();
+        sealed = true;
+        return this;
+    }
+
+    public boolean isFixedPoint() {
+        return fixedPoint;
+    }
+
+    /**
+     * @return number of rows
+     */
+    public int size() {
+        return size;
+    }
+
+    public int codeId(int row) {
+        return codeIds[row];
+    }
+
+    public int dateKey(int row) {
+        return dateKeys[row];
+    }
+
+    /**
+     * @param row - row number
+     * @return scaled value of a fixed-point row
+     */
+    public long value(int row) {
+        return values[row];
+    }
+
+    /**
+     * @param row - row number
+     * @return value of a decimal row
+     */
+    public BigDecimal decimal(int row) {
+        return decimals[row];
+    }
+
+    /**
+     * @return dictionary of the code ids
+     */
+    public CodeDictionary getCodes() {
+        return codes;
+    }
+
+    /**
+     * @return number of distinct codes, codes without rows included
+     */
+    public int codeCount() {
+        return codes.size();
+    }
+
+    /**
+     * @param codeId - dense code id
+     * @return code of the id
+     */
+    public String code(int codeId) {
+        return codes.code(codeId);
+    }
+
+    /**
+     * @param code - fund or benchmark code
+     * @return dense id of the code, or -1 if it is not in the dictionary of the store
+     */
+    public int codeIdOf(String code) {
+        return codes.idOf(code);
+    }
+
+    /**
+     * @return number of distinct dates, in descending order
+     */
+    public int monthCount() {
+        checkSealed();
+        return monthKeys.length;
+    }
+
+    public int monthKey(int month) {
+        return monthKeys[month];
+    }
+
+    /**
+     * @param month - month index
+     * @return first row of the month
+     */
+    public int monthStart(int month) {
+        return monthOffsets[month];
+    }
+
+    /**
+     * @param month - month index
+     * @return row after the last row of the month
+     */
+    public int monthEnd(int month) {
+        return monthOffsets[month + 1];
+    }
+
+    /**
+     * @param dateKey - date key (yyyyMMdd)
+     * @return month index of the date, or -1 if there is no row of that date
+     */
+    public int monthOf(int dateKey) {
+        checkSealed();
+        // month keys are descending
+        int low = 0, high = monthKeys.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int key = monthKeys[mid];
+            if (key == dateKey) return mid;
+            if (key > dateKey) low = mid + 1;
+            else high = mid - 1;
+        }
+        return -1;
+    }
+
+    /**
+     * @param codeId - dense code id
+     * @return first position of the code in {@link #codeRow(int)}
+     */
+    public int codeStart(int codeId) {
+        checkSealed();
+        // codes added to a shared dictionary after sealing have no rows
+        return codeOffsets[Math.min(codeId, codeOffsets.length - 1)];
+    }
+
+    /**
+     * @param codeId - dense code id
+     * @return position after the last position of the code in {@link #codeRow(int)}
+     */
+    public int codeEnd(int codeId) {
+        checkSealed();
+        return codeOffsets[Math.min(codeId + 1, codeOffsets.length - 1)];
+    }
+
+    /**
+     * @param position - position in the code index
+     * @return row number at the position
+     */
+    public int codeRow(int position) {
+        return codeRows[position];
+    }
+
+    private int nextRow(String code, int dateKey) {
+        if (sealed) throw new IllegalStateException("Store is sealed");
+
+        if (size == dateKeys.length) grow();
+
+        codeIds[size] = internCode(code);
+        dateKeys[size] = dateKey;
+        return size++;
+    }
+
+    private int nextRow(int codeId, int dateKey) {
+        if (sealed) throw new IllegalStateException("Store is sealed");
+        if (codeId < 0 || codeId >= codes.size()) throw new IllegalArgumentException("Invalid code id: " + codeId);
+
+        if (size == dateKeys.length) grow();
+
+        codeIds[size] = codeId;
+        dateKeys[size] = dateKey;
+        return size++;
+    }
+
+    private int internCode(String code) {
+        // rows usually come grouped by code
+        if (code == lastCode || code.equals(lastCode)) return lastCodeId;
+
+        int id = codes.add(code);
+        lastCode = code;
+        lastCodeId = id;
+        return id;
+    }
+
+    private void grow() {
+        int capacity = dateKeys.length * 2;
+        codeIds = Arrays.copyOf(codeIds, capacity);
+        dateKeys = Arrays.copyOf(dateKeys, capacity);
+        if (fixedPoint) values = Arrays.copyOf(values, capacity);
+        else decimals = Arrays.copyOf(decimals, capacity);
+    }
+
+    private void sortByDateDescending() {
+
+        // e.g. rows of a snapshot, which was written sealed
+        boolean sorted = true;
+        for (int row = 1; row < size && sorted; row++) sorted = dateKeys[row - 1] >= dateKeys[row];
+        if (sorted) {
+            trimToSize();
+            return;
+        }
+
+        // descending date, then ascending row number, packed into one primitive key
+        long[] order = new long[size];
+        for (int row = 0; row < size; row++)
+            order[row] = ((long) (Integer.MAX_VALUE - dateKeys[row]) << 32) | row;
+        Arrays.sort(order);
+
+        int[] sortedCodeIds = new int[size];
+        int[] sortedDateKeys = new int[size];
+        long[] sortedValues = fixedPoint ? new long[size] : null;
+        BigDecimal[] sortedDecimals = fixedPoint ? null : new BigDecimal[size];
+
+        for (int i = 0; i < size; i++) {
+            int row = (int) order[i];
+            sortedCodeIds[i] = codeIds[row];
+            sortedDateKeys[i] = dateKeys[row];
+            if (fixedPoint) sortedValues[i] = values[row];
+            else sortedDecimals[i] = decimals[row];
+        }
+
+        codeIds = sortedCodeIds;
+        dateKeys = sortedDateKeys;
+        values = sortedValues;
+        decimals = sortedDecimals;
+    }
+
+    private void trimToSize() {
+        if (dateKeys.length == size) return;
+        codeIds = Arrays.copyOf(codeIds, size);
+        dateKeys = Arrays.copyOf(dateKeys, size);
+        if (fixedPoint) values = Arrays.copyOf(values, size);
+        else decimals = Arrays.copyOf(decimals, size);
+    }
+
+    private void buildMonthIndex() {
+        int months = 0;
+        for (int row = 0; row < size; row++)
+            if (row == 0 || dateKeys[row] != dateKeys[row - 1]) months++;
+
+        monthKeys = new int[months];
+        monthOffsets = new int[months + 1];
+        int month = -1;
+        for (int row = 0; row < size; row++) {
+            if (row == 0 || dateKeys[row] != dateKeys[row - 1]) {
+                monthKeys[++month] = dateKeys[row];
+                monthOffsets[month] = row;
+            }
+        }
+        monthOffsets[months] = size;
+    }
+
+    private void buildCodeIndex() {
+        int codeCount = codes.size();
+        codeOffsets = new int[codeCount + 1];
+        for (int row = 0; row < size; row++) codeOffsets[codeIds[row] + 1]++;
+        for (int id = 0; id < codeCount; id++) codeOffsets[id + 1] += codeOffsets[id];
+
+        int[] next = Arrays.copyOf(codeOffsets, codeCount);
+        codeRows = new int[size];
+        for (int row = 0; row < size; row++) codeRows[next[codeIds[row]]++] = row;
+    }
+
+    private void checkSealed() {
+        if (!sealed) throw new IllegalStateException("Store is not sealed");
+    }
+
+    @Override
+    public String toString() {
+        return "ReturnSeriesStore{" +
+                "fixedPoint=" + fixedPoint +
+                ", size=" + size +
+                ", codes=" + codes.size() +
+                ", months=" + (sealed ? monthKeys.length : -1) +
+                '}';
+    }
+}
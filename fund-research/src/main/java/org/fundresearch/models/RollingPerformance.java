@@ -0,0 +1,131 @@
+package org.fundresearch.models;
+
+import java.util.Date;
+
+/**
+ * Rolling window performance data model bean.<br>
+ * Excess is the sum of the two scale monthly excess of the months in the window,
+ * in hundredths. Out and under performed are the number of those months the fund
+ * out or under performed its benchmark.
+ */
+public class RollingPerformance {
+
+    private String fundName;
+    private Date date;
+    private int window;
+    private long scaledExcess;
+    private int outPerformedMonths;
+    private int underPerformedMonths;
+    private Integer rank;
+
+    public RollingPerformance() {
+    }
+
+    public RollingPerformance(String fundName, Date date, int window, long scaledExcess,
+                              int outPerformedMonths, int underPerformedMonths, Integer rank) {
+        this.fundName = fundName;
+        this.date = date;
+        this.window = window;
+        this.scaledExcess = scaledExcess;
+        this.outPerformedMonths = outPerformedMonths;
+        this.underPerformedMonths = underPerformedMonths;
+        this.rank = rank;
+    }
+
+    public String getFundName() {
+        return fundName;
+    }
+
+    public void setFundName(String fundName) {
+        this.fundName = fundName;
+    }
+
+    public Date getDate() {
+        return date;
+    }
+
+    public void setDate(Date date) {
+        this.date = date;
+    }
+
+    public int getWindow() {
+        return window;
+    }
+
+    public void setWindow(int window) {
+        this.window = window;
+    }
+
+    public long getScaledExcess() {
+        return scaledExcess;
+    }
+
+    public void setScaledExcess(long scaledExcess) {
+        this.scaledExcess = scaledExcess;
+    }
+
+    public int getOutPerformedMonths() {
+        return outPerformedMonths;
+    }
+
+    public void setOutPerformedMonths(int outPerformedMonths) {
+        this.outPerformedMonths = outPerformedMonths;
+    }
+
+    public int getUnderPerformedMonths() {
+        return underPerformedMonths;
+    }
+
+    public void setUnderPerformedMonths(int underPerformedMonths) {
+        this.underPerformedMonths = underPerformedMonths;
+    }
+
+    public Integer getRank() {
+        return rank;
+    }
+
+    public void setRank(Integer rank) {
+        this.rank = rank;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        RollingPerformance that = (RollingPerformance) o;
+
+        if (window != that.window) return false;
+        if (scaledExcess != that.scaledExcess) return false;
+        if (outPerformedMonths != that.outPerformedMonths) return false;
+        if (underPerformedMonths != that.underPerformedMonths) return false;
+        if (!fundName.equals(that.fundName)) return false;
+        if (!date.equals(that.date)) return false;
+        return rank != null ? rank.equals(that.rank) : that.rank == null;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = fundName.hashCode();
+        result = 31 * result + date.hashCode();
+        result = 31 * result + window;
+        result = 31 * result + Long.hashCode(scaledExcess);
+        result = 31 * result + outPerformedMonths;
+        result = 31 * result + underPerformedMonths;
+        result = 31 * result + (rank != null ? rank.hashCode() : 0);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "RollingPerformance{" +
+                "fundName='" + fundName + '\'' +
+                ", date=" + date +
+                ", window=" + window +
+                ", scaledExcess=" + scaledExcess +
+                ", outPerformedMonths=" + outPerformedMonths +
+                ", underPerformedMonths=" + underPerformedMonths +
+                ", rank=" + rank +
+                '}';
+    }
+}
@@ -3,17 +3,25 @@ package org.fundresearch.util;
 import org.fundresearch.analyser.FundAnalyser;
 import org.fundresearch.models.Performance;
 
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Paths;
-import java.text.ParseException;
+import java.nio.file.StandardOpenOption;
 import java.text.SimpleDateFormat;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
+import java.util.zip.CRC32;
 
 /**
  * This class provides utility functions for IO operations, conversions and formatting,
@@ -30,15 +38,23 @@ public final class AppUtil {
      * Line separater character found in each line of input file.
      */
     public static final String LINE_SEPARATOR = ",";
+    /**
+     * Default file name of the monthly out performance report
+     */
+    public static final String REPORT_FILE = "monthlyOutPerformance.csv";
     /**
      * This is a default date firmat fr displaying date. (dd/MM/yyyy)
      */
-    private static final String DEFAULT_DATE_FORMAT = "dd/MM/yyyy";
+    private static final String DEFAULT_DATE_FORMAT = DateCodec.DATE_FORMAT;
+    /**
+     * This will be used to format a date in a user defined pattern.
+     * One instance per thread, as {@link SimpleDateFormat} is not thread safe.
+     */
+    private static final ThreadLocal<SimpleDateFormat> SDF = ThreadLocal.withInitial(SimpleDateFormat::new);
     /**
-     * This will be used to parse or format a date.
+     * Largest chunk of a file mapped at once.
      */
-    private static final SimpleDateFormat SDF = new SimpleDateFormat();
-    private static final String OUTPUT_FORMAT = "%1$15s %2$15s %3$15s %4$20s %5$15s %6$15s";
+    private static final long MAX_CHUNK_SIZE = Integer.MAX_VALUE;
 
     /**
      * Private constructor to prevent creating
@@ -51,18 +67,14 @@ public final class AppUtil {
 
     /**
      * Tries to parse an input string to {@link Date} type.
+     * Parsing is thread safe and memoized by {@link DateCodec}.
      *
      * @param dateStr - string representation of a date
      * @return Date parsed using an input, else null
      */
     public static Date toDate(String dateStr) {
 
-        try {
-            SDF.applyPattern(DEFAULT_DATE_FORMAT);
-            return SDF.parse(dateStr);
-        } catch (ParseException e) {
-            throw new IllegalArgumentException("Unable to parse to date " + dateStr, e);
-        }
+        return new Date(DateCodec.toDate(DateCodec.key(dateStr)).getTime());
     }
 
     /**
@@ -114,18 +126,12 @@ public final class AppUtil {
         if (pattern == null || pattern.length() == 0)
             throw new IllegalArgumentException("Invalid pattern: " + pattern);
 
-        SDF.applyPattern(pattern);
-        return SDF.format(input);
-    }
+        if (DEFAULT_DATE_FORMAT.equals(pattern))
+            return DateCodec.format(input);
 
-    private static String getHeaders() {
-        String headers = String.format(OUTPUT_FORMAT, "FundName", "Date", "Excess"
-                , "OutPerformance", "Return", "Rank");
-        headers += "\n";
-        headers += String.format(OUTPUT_FORMAT, "------------", "-----------", "----------"
-                , "---------------", "----------", "--------");
-        headers += "\n";
-        return headers;
+        SimpleDateFormat sdf = SDF.get();
+        sdf.applyPattern(pattern);
+        return sdf.format(input);
     }
 
 // IO utilities //
@@ -158,87 +164,279 @@ public final class AppUtil {
      */
     public static List<String> readFileLines(String filePath) {
 
-        List<String> lineList = new ArrayList<>(0);
+        final List<String> lineList = new ArrayList<>(0);
+        readFileLines(filePath, lineList::add);
+        return lineList;
+    }
+
+    /**
+     * Streaming variant of {@link #readFileLines(String)}.<br>
+     * It reads the given filePath lazily and hands every non blank line
+     * to the consumer as soon as it is read, thus the lines are never
+     * collected in memory. Peak memory depends on what the consumer retains.
+     *
+     * @param filePath     - a path of the file to be read.
+     * @param lineConsumer - consumer invoked once per non blank line, in file order
+     */
+    public static void readFileLines(String filePath, Consumer<String> lineConsumer) {
 
         if (!isFileValid(filePath)) {
             System.out.printf("%s not exists.\n", filePath);
-            return lineList;
+            return;
         }
 
         try (Stream<String> streams = Files.lines(Paths.get(filePath))) {
 
-            lineList = streams
-                    .filter(line -> line.trim().length() > 0)
-                    .collect(Collectors.toList());
+            streams.filter(line -> line.trim().length() > 0)
+                    .forEach(lineConsumer);
 
-        } catch (IOException e) {
+        } catch (IOException | UncheckedIOException e) {
             throw new IllegalArgumentException("Unable to read file " + filePath, e);
         }
-        return lineList;
     }
 
 
     /**
-     * It converts an object list into list of strings.
-     * Using Java 8 IO feature, it writes content into a file.
-     * If the directory is null or does not exists, it throws runtime exception.
+     * Tokenizing variant of {@link #readFileLines(String, Consumer)}.<br>
+     * It streams the given filePath through one reusable {@link CsvTokenizer}
+     * and hands the tokenizer to the consumer once per non blank row.
+     * No line Strings are created, fields are read straight from the tokenizer.
      *
-     * @param list     - a list of {@link Performance} objects to be write
-     * @param dirPath  - Destination directory path to write a file
-     * @param fileName - (optional) Either null or the user defined file name
-     *                 for the output report
+     * @param filePath    - a path of the file to be read.
+     * @param rowConsumer - consumer invoked once per non blank row, in file order
      */
-    public static void writeToFile(List<Performance> list, String dirPath, String fileName) {
+    public static void readFileRows(String filePath, Consumer<CsvTokenizer> rowConsumer) {
 
-        if (!isFileValid(dirPath))
-            throw new IllegalArgumentException("Invalid directory path: " + dirPath);
+        if (!isFileValid(filePath)) {
+            System.out.printf("%s not exists.\n", filePath);
+            return;
+        }
 
-        String filePath = dirPath + File.separator + "monthlyOutPerformance.csv";
-        System.out.printf("Writing to %s", filePath);
+        try (CsvTokenizer tokenizer = CsvTokenizer.open(filePath)) {
 
-        final StringBuilder sb = new StringBuilder();
+            while (tokenizer.nextRow())
+                rowConsumer.accept(tokenizer);
 
-        List<String> linesToWrite = list.stream()
-                .map(performance -> {
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Unable to read file " + filePath, e);
+        }
+    }
+
+    /**
+     * Offset variant of {@link #readFileRows(String, Consumer)}.<br>
+     * It streams the rows of the given filePath from a byte offset to the end of the file,
+     * e.g. the rows appended since the file was last read.
+     *
+     * @param filePath    - a path of the file to be read.
+     * @param offset      - byte offset of the first row, at the start of a row
+     * @param rowConsumer - consumer invoked once per non blank row, in file order
+     */
+    public static void readFileRows(String filePath, long offset, Consumer<CsvTokenizer> rowConsumer) {
 
-                    sb.delete(0, sb.length());
+        if (!isFileValid(filePath)) {
+            System.out.printf("%s not exists.\n", filePath);
+            return;
+        }
+
+        try (CsvTokenizer tokenizer = CsvTokenizer.open(filePath, offset)) {
 
-                    sb.append(String.format(OUTPUT_FORMAT
-                            , performance.getFundName()
-                            , getDefaultFormattedDate(performance.getDate())
-                            , roundToTwoScale(performance.getExcess()).toString()
-                            , performance.getOutPerformanceText()
-                            , roundToTwoScale(performance.getReturns()).toString()
-                            , performance.getRank().toString()));
+            while (tokenizer.nextRow())
+                rowConsumer.accept(tokenizer);
+
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Unable to read file " + filePath, e);
+        }
+    }
+
+    /**
+     * Parallel variant of {@link #readFileRows(String, Consumer)}.<br>
+     * It memory maps the given filePath, splits it into chunks that start right after a
+     * new line, and reads every chunk through its own {@link CsvTokenizer} on a dedicated
+     * {@link ForkJoinPool}. Each chunk gets a partial result from the factory, and its rows
+     * are consumed into that result in file order.
+     *
+     * @param filePath    - a path of the file to be read.
+     * @param chunks      - number of chunks to split the file into, more when a chunk
+     *                    would exceed the 2GB mapping limit
+     * @param parallelism - number of threads reading chunks
+     * @param chunkFactory - creates the partial result of a chunk
+     * @param rowConsumer  - consumer invoked once per non blank row with the partial result
+     *                     of its chunk, from several threads at once
+     * @param <T>         - type of the partial results
+     * @return partial results in file order, empty if the file does not exist
+     */
+    public static <T> List<T> readFileChunks(String filePath, int chunks, int parallelism,
+                                             Supplier<T> chunkFactory, BiConsumer<T, CsvTokenizer> rowConsumer) {
+
+        if (chunks < 1) throw new IllegalArgumentException("Invalid number of chunks: " + chunks);
+        if (parallelism < 1) throw new IllegalArgumentException("Invalid parallelism: " + parallelism);
+
+        if (!isFileValid(filePath)) {
+            System.out.printf("%s not exists.\n", filePath);
+            return new ArrayList<>(0);
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+
+            long[] boundaries = chunkBoundaries(channel, chunks);
+
+            List<ForkJoinTask<T>> tasks = new ArrayList<>(boundaries.length - 1);
+            for (int i = 0; i + 1 < boundaries.length; i++) {
+                long start = boundaries[i], end = boundaries[i + 1];
+                tasks.add(pool.submit(() -> {
+                    ByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+                    T result = chunkFactory.get();
+                    try (CsvTokenizer tokenizer = new CsvTokenizer(chunk)) {
+                        while (tokenizer.nextRow())
+                            rowConsumer.accept(result, tokenizer);
+                    }
+                    return result;
+                }));
+            }
 
-//                    sb.append(performance.getFundName()); sb.append("\t");
-//                    sb.append(getDefaultFormattedDate(performance.getDate())); sb.append("\t");
-//                    sb.append(roundToTwoScale(performance.getExcess())); sb.append("\t");
-//                    sb.append(performance.getOutPerformanceText()); sb.append("\t");
-//                    sb.append(roundToTwoScale(performance.getReturns())); sb.append("\t");
-//                    sb.append(performance.getRank().intValue());
-                    sb.append("\n");
-                    return sb.toString();
-                })
-                .collect(Collectors.toList());
+            List<T> results = new ArrayList<>(tasks.size());
+            for (ForkJoinTask<T> task : tasks) results.add(task.get());
+            return results;
 
-        // Headers
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Unable to read file " + filePath, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while reading " + filePath, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new IllegalArgumentException("Unable to read file " + filePath, e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
 
-        linesToWrite.add(0, getHeaders());
+    /**
+     * Splits a file into about equal chunks, moving every boundary to the start of the next row.
+     *
+     * @return chunk start offsets followed by the file size, empty chunks removed
+     */
+    private static long[] chunkBoundaries(FileChannel channel, int chunks) throws IOException {
+
+        long size = channel.size();
+        // a mapped chunk is limited to 2GB
+        long count = Math.max(chunks, (size + MAX_CHUNK_SIZE - 1) / MAX_CHUNK_SIZE);
+        ByteBuffer probe = ByteBuffer.allocate(1 << 13);
+
+        long[] boundaries = new long[(int) count + 1];
+        int n = 0;
+        boundaries[n++] = 0;
+        for (long i = 1; i < count; i++) {
+            long nominal = Math.max(boundaries[n - 1], size / count * i);
+            long boundary = nextRowStart(channel, nominal, size, probe);
+            if (boundary > boundaries[n - 1] && boundary < size) boundaries[n++] = boundary;
+        }
+        boundaries[n++] = size;
+        return Arrays.copyOf(boundaries, n);
+    }
 
-        try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(filePath))) {
+    /**
+     * @return position of the first row starting at or after the given position
+     */
+    private static long nextRowStart(FileChannel channel, long position, long size, ByteBuffer probe)
+            throws IOException {
+
+        if (position == 0) return 0;
+
+        long next = position - 1;
+        while (next < size) {
+            probe.clear();
+            int read = channel.read(probe, next);
+            if (read <= 0) break;
+            for (int i = 0; i < read; i++)
+                if (probe.get(i) == '\n') return next + i + 1;
+            next += read;
+        }
+        return size;
+    }
 
-            linesToWrite.forEach(line -> {
-                try {
-                    writer.write(line);
-                } catch (IOException e) {
-                    throw new IllegalArgumentException("Error: unable to write " + line, e);
-                }
-            });
+    /**
+     * It calculates the CRC32 checksum of the first bytes of a file.
+     *
+     * @param filePath - a path of the file to be read.
+     * @param length   - number of bytes to checksum, from the start of the file
+     * @return CRC32 checksum of the bytes
+     */
+    public static long checksum(String filePath, long length) {
+
+        CRC32 crc = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+
+            long remaining = length;
+            while (remaining > 0) {
+                buffer.clear();
+                if (remaining < buffer.capacity()) buffer.limit((int) remaining);
+                int read = channel.read(buffer);
+                if (read < 0) throw new IllegalArgumentException("File shorter than " + length + " bytes: " + filePath);
+                buffer.flip();
+                crc.update(buffer.array(), 0, read);
+                remaining -= read;
+            }
 
         } catch (IOException e) {
-            throw new IllegalArgumentException("Unable to write file " + filePath, e);
+            throw new IllegalArgumentException("Unable to read file " + filePath, e);
         }
+        return crc.getValue();
+    }
+
+    /**
+     * It writes the performance list into the report file, line by line,
+     * through a {@link ReportWriter}.
+     * If the directory is null or does not exists, it throws runtime exception.
+     *
+     * @param list     - a list of {@link Performance} objects to be write
+     * @param dirPath  - Destination directory path to write a file
+     * @param fileName - (optional) Either null or the user defined file name
+     *                 for the output report
+     */
+    public static void writeToFile(List<Performance> list, String dirPath, String fileName) {
+
+        try (ReportWriter writer = openReport(dirPath, fileName)) {
+            writer.write(list);
+        }
+    }
+
+    /**
+     * Opens a streaming {@link ReportWriter} of the report file and writes the headers.
+     * Caller writes the rows as they become available and closes the writer.
+     * If the directory is null or does not exists, it throws runtime exception.
+     *
+     * @param dirPath  - Destination directory path to write a file
+     * @param fileName - (optional) Either null or the user defined file name
+     *                 for the output report
+     * @return an open report writer
+     */
+    public static ReportWriter openReport(String dirPath, String fileName) {
+
+        String filePath = getReportPath(dirPath, fileName);
+        System.out.printf("Writing to %s", filePath);
+
+        return new ReportWriter(filePath);
+    }
+
+    /**
+     * It builds the path of the report file in the destination directory.
+     * If the directory is null or does not exists, it throws runtime exception.
+     *
+     * @param dirPath  - Destination directory path of the report
+     * @param fileName - (optional) Either null or the user defined file name
+     *                 for the output report. <b>Default: monthlyOutPerformance.csv</b>
+     * @return path of the report file
+     */
+    public static String getReportPath(String dirPath, String fileName) {
+
+        if (!isFileValid(dirPath))
+            throw new IllegalArgumentException("Invalid directory path: " + dirPath);
+
+        return dirPath + File.separator + (fileName == null ? REPORT_FILE : fileName);
     }
 
 // Validation utilities //
@@ -0,0 +1,209 @@
+package org.fundresearch.util;
+
+import org.fundresearch.models.Performance;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reader of a binary report written by {@link BinaryReportWriter}.<br>
+ * Opening the report reads only its footer: the fund names and the offset of every month.
+ * {@link #read(Date)} then reads the block of one month with a single positional read,
+ * so a month is loaded without reading the months before it.
+ * <p>
+ * Instances are thread safe.
+ *
+ * @author aditya
+ * @see BinaryReportWriter
+ */
+public final class BinaryReportReader implements Closeable {
+
+    private static final String[] OUT_PERFORMANCE_TEXTS = {" ", "Out Performed", "Under Performed"};
+
+    private final Path path;
+    private final FileChannel channel;
+    private final String[] names;
+    private final int[] monthKeys;
+    private final long[] monthOffsets;
+    private final int[] monthRows;
+    private final Map<Integer, Integer> monthsByKey = new HashMap<>();
+    private final long rows;
+
+    /**
+     * Opens a binary report and reads its footer.
+     *
+     * @param filePath - path of the binary report file
+     */
+    public BinaryReportReader(String filePath) {
+        if (filePath == null) throw new IllegalArgumentException("Invalid file path: " + filePath);
+
+        this.path = Paths.get(filePath);
+        try {
+            this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Unable to read file " + filePath, e);
+        }
+        try {
+            long size = channel.size();
+            if (size < BinaryReportWriter.HEADER_BYTES + BinaryReportWriter.TRAILER_BYTES) throw invalid();
+
+            ByteBuffer header = read(0, BinaryReportWriter.HEADER_BYTES);
+            if (header.getInt() != BinaryReportWriter.MAGIC || header.getInt() != BinaryReportWriter.VERSION)
+                throw invalid();
+
+            ByteBuffer trailer = read(size - BinaryReportWriter.TRAILER_BYTES, BinaryReportWriter.TRAILER_BYTES);
+            long footer = trailer.getLong();
+            if (trailer.getInt() != BinaryReportWriter.MAGIC || footer < BinaryReportWriter.HEADER_BYTES
+                    || footer > size - BinaryReportWriter.TRAILER_BYTES) throw invalid();
+
+            ByteBuffer buffer = read(footer, (int) (size - BinaryReportWriter.TRAILER_BYTES - footer));
+            names = new String[count(buffer, 4)];
+            for (int i = 0; i < names.length; i++) {
+                byte[] bytes = new byte[count(buffer, 1)];
+                buffer.get(bytes);
+                names[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+
+            int months = count(buffer, BinaryReportWriter.MONTH_INDEX_BYTES);
+            monthKeys = new int[months];
+            monthOffsets = new long[months];
+            monthRows = new int[months];
+            long total = 0;
+            for (int month = 0; month < months; month++) {
+                monthKeys[month] = buffer.getInt();
+                monthOffsets[month] = buffer.getLong();
+                monthRows[month] = buffer.getInt();
+                if (monthOffsets[month] < BinaryReportWriter.HEADER_BYTES || monthRows[month] < 0
+                        || monthOffsets[month] + 4 + (long) monthRows[month] * BinaryReportWriter.ROW_BYTES > footer)
+                    throw invalid();
+                monthsByKey.put(monthKeys[month], month);
+                total += monthRows[month];
+            }
+            rows = total;
+
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            close();
+            if (e instanceof IllegalArgumentException) throw (IllegalArgumentException) e;
+            throw new IllegalArgumentException("Unable to read file " + filePath, e);
+        }
+    }
+
+    /**
+     * @return months of the report, in the order they were written, as dates the caller may modify
+     */
+    public List<Date> months() {
+        List<Date> months = new ArrayList<>(monthKeys.length);
+        for (int monthKey : monthKeys) months.add(dateOf(monthKey));
+        return months;
+    }
+
+    /**
+     * @return number of rows of all months
+     */
+    public long size() {
+        return rows;
+    }
+
+    /**
+     * Reads the rows of one month. Excess and return are fixed-point, in hundredths.
+     *
+     * @param date - date of the month, as in the report
+     * @return ranked performances of the month, in report order, empty if the report does not have the month
+     */
+    public List<Performance> read(Date date) {
+        Integer month = monthsByKey.get(DateCodec.key(date));
+        if (month == null) return Collections.emptyList();
+
+        int count = monthRows[month];
+        try {
+            ByteBuffer block = read(monthOffsets[month], 4 + count * BinaryReportWriter.ROW_BYTES);
+            if (block.getInt() != count) throw invalid();
+
+            int[] nameIds = new int[count];
+            long[] excess = new long[count];
+            long[] returns = new long[count];
+            int[] ranks = new int[count];
+            block.asIntBuffer().get(nameIds);
+            block.position(block.position() + count * 4);
+            block.asLongBuffer().get(excess);
+            block.position(block.position() + count * 8);
+            block.asLongBuffer().get(returns);
+            block.position(block.position() + count * 8);
+            block.asIntBuffer().get(ranks);
+            block.position(block.position() + count * 4);
+
+            List<Performance> performances = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                byte outPerformance = block.get();
+                if (nameIds[i] < 0 || nameIds[i] >= names.length || outPerformance < 0
+                        || outPerformance >= OUT_PERFORMANCE_TEXTS.length) throw invalid();
+                performances.add(new Performance(names[nameIds[i]], dateOf(monthKeys[month]), excess[i],
+                        OUT_PERFORMANCE_TEXTS[outPerformance], returns[i], ranks[i]));
+            }
+            return performances;
+
+        } catch (IOException | BufferUnderflowException e) {
+            throw new IllegalArgumentException("Unable to read file " + path, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Unable to close file " + path, e);
+        }
+    }
+
+    private ByteBuffer read(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) throw invalid();
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * @return a copy of the shared date of {@link DateCodec#toDate(int)}
+     */
+    private static Date dateOf(int key) {
+        return new Date(DateCodec.toDate(key).getTime());
+    }
+
+    /**
+     * @return a count read from the buffer, checked against the bytes left
+     */
+    private static int count(ByteBuffer buffer, int bytesEach) {
+        int count = buffer.getInt();
+        if (count < 0 || (long) count * bytesEach > buffer.remaining()) throw new BufferUnderflowException();
+        return count;
+    }
+
+    private IllegalArgumentException invalid() {
+        return new IllegalArgumentException("Not a binary report: " + path);
+    }
+
+    @Override
+    public String toString() {
+        return "BinaryReportReader{" +
+                "path=" + path +
+                ", months=" + monthKeys.length +
+                ", rows=" + rows +
+                '}';
+    }
+}
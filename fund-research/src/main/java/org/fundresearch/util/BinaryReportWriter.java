@@ -0,0 +1,243 @@
+package org.fundresearch.util;
+
+import org.fundresearch.models.Performance;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Streaming writer of the monthly out performance report in a columnar binary format,
+ * read back by {@link BinaryReportReader}.<br>
+ * The file holds, big endian
+ * <ul>
+ * <li>header - magic and version</li>
+ * <li>one block per month, in the order written - row count, then the fund name id (int),
+ * excess (long), return (long), rank (int) and out performance (byte) columns of the rows.
+ * Excess and return are in hundredths, rounded as in the text report. Out performance is
+ * {@link #NEITHER}, {@link #OUT_PERFORMED} or {@link #UNDER_PERFORMED}.</li>
+ * <li>footer - the fund names by id, then date key, offset and row count of every month</li>
+ * <li>trailer - offset of the footer and magic</li>
+ * </ul>
+ * A month is written as one block as soon as it is handed over, only the names and the
+ * month index are held until the writer is closed. A row takes 25 bytes, about a quarter
+ * of a text report line.
+ * <p>
+ * Instances are not thread safe.
+ *
+ * @author aditya
+ * @see BinaryReportReader
+ */
+public final class BinaryReportWriter implements Closeable {
+
+    static final int MAGIC = 0x46524252; // FRBR
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 8;
+    static final int TRAILER_BYTES = 12;
+    static final int ROW_BYTES = 4 + 8 + 8 + 4 + 1;
+    static final int MONTH_INDEX_BYTES = 4 + 8 + 4;
+
+    static final byte NEITHER = 0;
+    static final byte OUT_PERFORMED = 1;
+    static final byte UNDER_PERFORMED = 2;
+
+    private static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final Map<String, Integer> nameIds = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+    private final Set<Integer> dateKeys = new HashSet<>();
+    private final List<long[]> months = new ArrayList<>();
+    private long flushed;
+    private long rows;
+
+    /**
+     * Opens the report file, replacing an existing one, and writes the header.
+     *
+     * @param filePath - path of the report file
+     */
+    public BinaryReportWriter(String filePath) {
+        this(filePath, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param filePath   - path of the report file
+     * @param bufferSize - size of the write buffer in bytes
+     */
+    public BinaryReportWriter(String filePath, int bufferSize) {
+        if (filePath == null) throw new IllegalArgumentException("Invalid file path: " + filePath);
+        if (bufferSize < 256) throw new IllegalArgumentException("Invalid buffer size: " + bufferSize);
+
+        this.path = Paths.get(filePath);
+        this.buffer = ByteBuffer.allocate(bufferSize);
+        try {
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Unable to write file " + filePath, e);
+        }
+        ensure(HEADER_BYTES);
+        buffer.putInt(MAGIC).putInt(VERSION);
+    }
+
+    /**
+     * Writes the ranked performances of one month as one block.
+     *
+     * @param performances - ranked performances of one month, in report order
+     */
+    public void write(List<Performance> performances) {
+        if (performances.isEmpty()) return;
+
+        int dateKey = DateCodec.key(performances.get(0).getDate());
+        if (!dateKeys.add(dateKey))
+            throw new IllegalArgumentException("Month written twice: " + DateCodec.format(dateKey));
+
+        int count = performances.size();
+        int[] nameColumn = new int[count];
+        long[] excessColumn = new long[count];
+        long[] returnColumn = new long[count];
+        for (int i = 0; i < count; i++) {
+            Performance performance = performances.get(i);
+            if (DateCodec.key(performance.getDate()) != dateKey)
+                throw new IllegalArgumentException("Not one month: " + DateCodec.format(dateKey) + " and "
+                        + DateCodec.format(performance.getDate()));
+            nameColumn[i] = nameIdOf(performance.getFundName());
+            excessColumn[i] = twoScale(performance.getExcess(), performance.getScaledExcess());
+            returnColumn[i] = twoScale(performance.getReturns(), performance.getScaledReturns());
+        }
+
+        months.add(new long[]{dateKey, position(), count});
+
+        ensure(4);
+        buffer.putInt(count);
+        for (int nameId : nameColumn) {
+            ensure(4);
+            buffer.putInt(nameId);
+        }
+        for (long excess : excessColumn) {
+            ensure(8);
+            buffer.putLong(excess);
+        }
+        for (long value : returnColumn) {
+            ensure(8);
+            buffer.putLong(value);
+        }
+        for (Performance performance : performances) {
+            ensure(4);
+            buffer.putInt(performance.getRank() == null ? 0 : performance.getRank());
+        }
+        for (Performance performance : performances) {
+            ensure(1);
+            buffer.put(outPerformanceOf(performance.getOutPerformanceText()));
+        }
+        rows += count;
+    }
+
+    /**
+     * @return number of bytes written so far
+     */
+    public long position() {
+        return flushed + buffer.position();
+    }
+
+    /**
+     * @return number of rows written
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * Writes the footer and the trailer and closes the file.
+     */
+    @Override
+    public void close() {
+        try {
+            try {
+                long footer = position();
+                ensure(4);
+                buffer.putInt(names.size());
+                for (String name : names) {
+                    byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+                    ensure(4 + bytes.length);
+                    buffer.putInt(bytes.length).put(bytes);
+                }
+                ensure(4);
+                buffer.putInt(months.size());
+                for (long[] month : months) {
+                    ensure(MONTH_INDEX_BYTES);
+                    buffer.putInt((int) month[0]).putLong(month[1]).putInt((int) month[2]);
+                }
+                ensure(TRAILER_BYTES);
+                buffer.putLong(footer).putInt(MAGIC);
+                flush();
+            } finally {
+                channel.close();
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Unable to write file " + path, e);
+        }
+    }
+
+    private int nameIdOf(String name) {
+        if (name == null) throw new IllegalArgumentException("Invalid fund name: " + name);
+
+        Integer id = nameIds.get(name);
+        if (id == null) {
+            id = names.size();
+            nameIds.put(name, id);
+            names.add(name);
+        }
+        return id;
+    }
+
+    /**
+     * @return value in hundredths, rounded as {@link AppUtil#roundToTwoScale(BigDecimal)}
+     */
+    private static long twoScale(BigDecimal decimal, long scaled) {
+        if (decimal == null) return scaled;
+        try {
+            return AppUtil.roundToTwoScale(decimal).unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Value does not fit the binary report: " + decimal, e);
+        }
+    }
+
+    private static byte outPerformanceOf(String text) {
+        if ("Out Performed".equals(text)) return OUT_PERFORMED;
+        if ("Under Performed".equals(text)) return UNDER_PERFORMED;
+        return NEITHER;
+    }
+
+    private void ensure(int bytes) {
+        if (buffer.remaining() >= bytes) return;
+        try {
+            flush();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Unable to write file " + path, e);
+        }
+        if (buffer.remaining() < bytes)
+            throw new IllegalArgumentException("Report value longer than the write buffer: " + bytes + " bytes");
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        flushed += buffer.remaining();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+}
@@ -0,0 +1,167 @@
+package org.fundresearch.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Dictionary of fund or benchmark codes to dense int ids, in the order the codes were added.<br>
+ * Codes are keyed by their UTF-8 bytes in an open addressing table, so a code can be
+ * looked up straight from a read buffer, see {@link CsvTokenizer#codeId(int, CodeDictionary)},
+ * and its String is created only once, when the code is added.<br>
+ * Instances are not thread safe while codes are added; once filled they can be read
+ * from many threads.
+ *
+ * @author aditya
+ * @see org.fundresearch.models.ReturnSeriesStore
+ */
+public final class CodeDictionary {
+
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    // slot to code id + 1, 0 marks an empty slot
+    private int[] slots;
+    private int[] hashes;
+    private byte[][] codeBytes;
+    private String[] codes;
+    private int size;
+
+    public CodeDictionary() {
+        this(16);
+    }
+
+    /**
+     * @param expectedSize - expected number of codes
+     */
+    public CodeDictionary(int expectedSize) {
+        if (expectedSize < 0) throw new IllegalArgumentException("Invalid size: " + expectedSize);
+
+        int capacity = 16;
+        while (capacity < MAX_CAPACITY && capacity < expectedSize * 2) capacity <<= 1;
+        slots = new int[capacity];
+        hashes = new int[Math.max(expectedSize, 8)];
+        codeBytes = new byte[hashes.length][];
+        codes = new String[hashes.length];
+    }
+
+    /**
+     * Adds a code unless it is already there.
+     *
+     * @param code - fund or benchmark code
+     * @return dense id of the code
+     */
+    public int add(String code) {
+        if (code == null) throw new IllegalArgumentException("Invalid code: " + code);
+
+        byte[] bytes = code.getBytes(StandardCharsets.UTF_8);
+        int id = idOf(bytes, 0, bytes.length);
+        return id >= 0 ? id : insert(bytes, 0, bytes.length, code);
+    }
+
+    /**
+     * Adds the code held in a byte range unless it is already there.
+     *
+     * @param bytes - UTF-8 bytes
+     * @param start - index of the first byte of the code
+     * @param end   - index after the last byte of the code
+     * @return dense id of the code
+     */
+    public int add(byte[] bytes, int start, int end) {
+        int id = idOf(bytes, start, end);
+        return id >= 0 ? id : insert(bytes, start, end, null);
+    }
+
+    /**
+     * @param code - fund or benchmark code
+     * @return dense id of the code, or -1 if it was never added
+     */
+    public int idOf(String code) {
+        if (code == null) return -1;
+        byte[] bytes = code.getBytes(StandardCharsets.UTF_8);
+        return idOf(bytes, 0, bytes.length);
+    }
+
+    /**
+     * @param bytes - UTF-8 bytes
+     * @param start - index of the first byte of the code
+     * @param end   - index after the last byte of the code
+     * @return dense id of the code, or -1 if it was never added
+     */
+    public int idOf(byte[] bytes, int start, int end) {
+        int hash = hash(bytes, start, end);
+        int mask = slots.length - 1;
+        for (int slot = hash & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            int id = slots[slot] - 1;
+            if (hashes[id] == hash && rangeEquals(codeBytes[id], bytes, start, end)) return id;
+        }
+        return -1;
+    }
+
+    /**
+     * @param id - dense code id
+     * @return code of the id
+     */
+    public String code(int id) {
+        if (id < 0 || id >= size) throw new IndexOutOfBoundsException("Code id " + id + " of " + size);
+        return codes[id];
+    }
+
+    /**
+     * @return number of codes
+     */
+    public int size() {
+        return size;
+    }
+
+    private int insert(byte[] bytes, int start, int end, String code) {
+        if (size == codes.length) {
+            int capacity = codes.length * 2;
+            hashes = Arrays.copyOf(hashes, capacity);
+            codeBytes = Arrays.copyOf(codeBytes, capacity);
+            codes = Arrays.copyOf(codes, capacity);
+        }
+
+        int id = size++;
+        hashes[id] = hash(bytes, start, end);
+        codeBytes[id] = Arrays.copyOfRange(bytes, start, end);
+        codes[id] = code != null ? code : new String(bytes, start, end - start, StandardCharsets.UTF_8);
+
+        if (size * 2 > slots.length) rehash();
+        else place(id);
+        return id;
+    }
+
+    private void place(int id) {
+        int mask = slots.length - 1;
+        int slot = hashes[id] & mask;
+        while (slots[slot] != 0) slot = (slot + 1) & mask;
+        slots[slot] = id + 1;
+    }
+
+    private void rehash() {
+        if (slots.length == MAX_CAPACITY) throw new IllegalStateException("Too many codes: " + size);
+
+        slots = new int[slots.length * 2];
+        for (int id = 0; id < size; id++) place(id);
+    }
+
+    private static int hash(byte[] bytes, int start, int end) {
+        int hash = 1;
+        for (int i = start; i < end; i++) hash = 31 * hash + bytes[i];
+        // spread the high bits, codes often differ only in their last bytes
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean rangeEquals(byte[] candidate, byte[] bytes, int start, int end) {
+        if (candidate.length != end - start) return false;
+        for (int i = 0; i < candidate.length; i++)
+            if (candidate[i] != bytes[start + i]) return false;
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "CodeDictionary{" +
+                "size=" + size +
+                '}';
+    }
+}
@@ -0,0 +1,381 @@
+package org.fundresearch.util;
+
+import org.fundresearch.enums.BenchmarkIndices;
+import org.fundresearch.enums.FundIndices;
+import org.fundresearch.enums.ReturnIndices;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * Reusable comma separated row tokenizer.<br>
+ * It reads raw bytes into one buffer and records the boundaries of every
+ * field of the current row, instead of creating a line {@link String}
+ * and splitting it. Fields are converted only when they are asked for,
+ * directly from the buffer.
+ * <ul>
+ * <li>{@link #code(int)} - trimmed code, one String instance per distinct code</li>
+ * <li>{@link #codeId(int, CodeDictionary)} - dense id of a trimmed code</li>
+ * <li>{@link #dateKey(int)} / {@link #date(int)} - dd/MM/yyyy date, see {@link DateCodec}</li>
+ * <li>{@link #decimal(int)} / {@link #fixedPoint(int)} - decimal return</li>
+ * <li>{@link #text(int)} - trimmed free text, e.g. names</li>
+ * </ul>
+ * Blank rows are skipped and trailing empty fields are not counted, same as
+ * {@code line.split(AppUtil.LINE_SEPARATOR)} does, so the column layouts of
+ * {@link FundIndices}, {@link ReturnIndices} and {@link BenchmarkIndices} apply unchanged.<br>
+ * Instances are not thread safe.
+ *
+ * @author aditya
+ * @see AppUtil#readFileRows(String, java.util.function.Consumer)
+ */
+public final class CsvTokenizer implements Closeable {
+
+    private static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+    private static final byte SEPARATOR = (byte) AppUtil.LINE_SEPARATOR.charAt(0);
+
+    private final InputStream in;
+    private byte[] buf;
+    private int pos;
+    private int limit;
+    private boolean eof;
+
+    private int[] fieldStart = new int[4];
+    private int[] fieldEnd = new int[4];
+    private int fieldCount;
+
+    private char[] scratch = new char[32];
+
+    // codes seen so far, so a code is decoded once
+    private final CodeDictionary codes = new CodeDictionary(64);
+
+    /**
+     * Creates a tokenizer over an input stream.
+     * The stream is closed together with this tokenizer.
+     *
+     * @param in - stream of comma separated rows
+     */
+    public CsvTokenizer(InputStream in) {
+        this(in, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates a tokenizer over an input stream with a user defined buffer size.
+     * The buffer grows when a single row does not fit into it.
+     *
+     * @param in         - stream of comma separated rows
+     * @param bufferSize - initial buffer size in bytes
+     */
+    public CsvTokenizer(InputStream in, int bufferSize) {
+        if (in == null) throw new IllegalArgumentException("Invalid input stream");
+        if (bufferSize <= 0) throw new IllegalArgumentException("Invalid buffer size: " + bufferSize);
+        this.in = in;
+        this.buf = new byte[bufferSize];
+    }
+
+    /**
+     * Creates a tokenizer over the remaining bytes of a buffer, e.g. a memory mapped
+     * chunk of a file. The buffer position is advanced as rows are read.
+     *
+     * @param buffer - buffer of comma separated rows
+     */
+    public CsvTokenizer(ByteBuffer buffer) {
+        this(new ByteBufferInputStream(buffer), DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Opens a tokenizer on the given file.
+     *
+     * @param filePath - a path of the file to be read
+     * @return a tokenizer positioned before the first row
+     * @throws IOException if the file cannot be opened
+     */
+    public static CsvTokenizer open(String filePath) throws IOException {
+        return new CsvTokenizer(Files.newInputStream(Paths.get(filePath)));
+    }
+
+    /**
+     * Opens a tokenizer on the given file, starting at a byte offset.
+     * The offset should be the start of a row, e.g. the length of a previously read file.
+     *
+     * @param filePath - a path of the file to be read
+     * @param offset   - byte offset of the first row to read
+     * @return a tokenizer positioned before the row at the offset
+     * @throws IOException if the file cannot be opened
+     */
+    public static CsvTokenizer open(String filePath, long offset) throws IOException {
+        if (offset < 0) throw new IllegalArgumentException("Invalid offset: " + offset);
+
+        FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ);
+        try {
+            channel.position(offset);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return new CsvTokenizer(Channels.newInputStream(channel));
+    }
+
+    /**
+     * Advances to the next non blank row.
+     *
+     * @return true if a row is available, false at the end of input
+     * @throws IOException if reading fails
+     */
+    public boolean nextRow() throws IOException {
+
+        while (true) {
+            int newLine = indexOf((byte) '\n', pos, limit);
+
+            if (newLine < 0 && !eof) {
+                fill();
+                continue;
+            }
+
+            if (newLine < 0 && pos == limit) return false;
+
+            int start = pos;
+            int end = newLine < 0 ? limit : newLine;
+            pos = newLine < 0 ? limit : newLine + 1;
+
+            if (end > start && buf[end - 1] == '\r') end--;
+
+            if (!isBlank(start, end)) {
+                split(start, end);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @return number of fields of the current row, trailing empty fields excluded
+     */
+    public int fieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * Returns the trimmed field as a code. Equal codes return the same
+     * String instance, so a code is decoded only the first time it is seen.
+     *
+     * @param index - field index
+     * @return code of the field
+     */
+    public String code(int index) {
+        int start = trimmedStart(index);
+        int end = trimmedEnd(index, start);
+        return codes.code(codes.add(buf, start, end));
+    }
+
+    /**
+     * Returns the dense id of the trimmed field in a code dictionary, adding
+     * the code if it is new. No String is created for a known code.
+     *
+     * @param index      - field index
+     * @param dictionary - code dictionary
+     * @return dense id of the code of the field
+     */
+    public int codeId(int index, CodeDictionary dictionary) {
+        int start = trimmedStart(index);
+        int end = trimmedEnd(index, start);
+        return dictionary.add(buf, start, end);
+    }
+
+    /**
+     * @param index - field index
+     * @return trimmed field as a new String
+     */
+    public String text(int index) {
+        int start = trimmedStart(index);
+        int end = trimmedEnd(index, start);
+        return new String(buf, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parses a dd/MM/yyyy field straight from the buffer.
+     *
+     * @param index - field index
+     * @return shared date of the field, must not be modified
+     * @see DateCodec#toDate(int)
+     */
+    public Date date(int index) {
+        return DateCodec.toDate(dateKey(index));
+    }
+
+    /**
+     * Parses a dd/MM/yyyy field straight from the buffer into a date key.
+     * Out of range day or month values roll over, same as a lenient
+     * {@link java.text.SimpleDateFormat} does.
+     *
+     * @param index - field index
+     * @return date key (yyyyMMdd) of the field
+     * @see DateCodec#key(int, int, int)
+     */
+    public int dateKey(int index) {
+        int start = trimmedStart(index);
+        int end = trimmedEnd(index, start);
+
+        int i = start;
+        int day = 0, month = 0, year = 0, digits;
+
+        for (digits = 0; i < end && isDigit(buf[i]); i++, digits++) day = day * 10 + (buf[i] - '0');
+        if (digits == 0 || i == end || buf[i++] != '/') throw invalidDate(start, end);
+
+        for (digits = 0; i < end && isDigit(buf[i]); i++, digits++) month = month * 10 + (buf[i] - '0');
+        if (digits == 0 || i == end || buf[i++] != '/') throw invalidDate(start, end);
+
+        for (digits = 0; i < end && isDigit(buf[i]); i++, digits++) year = year * 10 + (buf[i] - '0');
+        if (digits == 0) throw invalidDate(start, end);
+
+        return DateCodec.key(day, month, year);
+    }
+
+    /**
+     * Parses a decimal field straight from the buffer.
+     *
+     * @param index - field index
+     * @return decimal value of the field
+     * @throws NumberFormatException if the field is not a valid decimal
+     */
+    public BigDecimal decimal(int index) {
+        int start = trimmedStart(index);
+        int end = trimmedEnd(index, start);
+        int len = end - start;
+
+        if (scratch.length < len) scratch = new char[len];
+        for (int i = 0; i < len; i++) scratch[i] = (char) buf[start + i];
+
+        return new BigDecimal(scratch, 0, len);
+    }
+
+    /**
+     * Parses a decimal field straight from the buffer into a fixed-point value.
+     *
+     * @param index - field index
+     * @return value of the field at {@link FixedPoint#SCALE}
+     * @throws NumberFormatException if the field is not a valid decimal or cannot be held exactly
+     */
+    public long fixedPoint(int index) {
+        int start = trimmedStart(index);
+        int end = trimmedEnd(index, start);
+        return FixedPoint.parse(buf, start, end - start);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private void fill() throws IOException {
+
+        if (pos > 0) {
+            System.arraycopy(buf, pos, buf, 0, limit - pos);
+            limit -= pos;
+            pos = 0;
+        }
+        if (limit == buf.length) buf = Arrays.copyOf(buf, buf.length * 2);
+
+        int read = in.read(buf, limit, buf.length - limit);
+        if (read < 0) eof = true;
+        else limit += read;
+    }
+
+    private void split(int start, int end) {
+
+        fieldCount = 0;
+        int fieldBegin = start;
+        for (int i = start; i <= end; i++) {
+            if (i == end || buf[i] == SEPARATOR) {
+                if (fieldCount == fieldStart.length) {
+                    fieldStart = Arrays.copyOf(fieldStart, fieldCount * 2);
+                    fieldEnd = Arrays.copyOf(fieldEnd, fieldCount * 2);
+                }
+                fieldStart[fieldCount] = fieldBegin;
+                fieldEnd[fieldCount] = i;
+                fieldCount++;
+                fieldBegin = i + 1;
+            }
+        }
+
+        // String.split drops trailing empty fields
+        while (fieldCount > 0 && fieldStart[fieldCount - 1] == fieldEnd[fieldCount - 1]) fieldCount--;
+    }
+
+    private int trimmedStart(int index) {
+        if (index < 0 || index >= fieldCount)
+            throw new IndexOutOfBoundsException("Field " + index + " of " + fieldCount);
+
+        int start = fieldStart[index];
+        while (start < fieldEnd[index] && (buf[start] & 0xff) <= ' ') start++;
+        return start;
+    }
+
+    private int trimmedEnd(int index, int start) {
+        int end = fieldEnd[index];
+        while (end > start && (buf[end - 1] & 0xff) <= ' ') end--;
+        return end;
+    }
+
+    private boolean isBlank(int start, int end) {
+        for (int i = start; i < end; i++)
+            if ((buf[i] & 0xff) > ' ') return false;
+        return true;
+    }
+
+    private int indexOf(byte b, int from, int to) {
+        for (int i = from; i < to; i++)
+            if (buf[i] == b) return i;
+        return -1;
+    }
+
+    private IllegalArgumentException invalidDate(int start, int end) {
+        return new IllegalArgumentException("Unable to parse to date "
+                + new String(buf, start, end - start, StandardCharsets.UTF_8));
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    /**
+     * Input stream view of a byte buffer.
+     */
+    private static final class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            if (buffer == null) throw new IllegalArgumentException("Invalid buffer");
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) return 0;
+            if (!buffer.hasRemaining()) return -1;
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package org.fundresearch.util;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Thread safe, memoizing codec for dd/MM/yyyy dates.<br>
+ * Every distinct date is mapped once to a compact int key of the form
+ * {@code yyyyMMdd}, which sorts in the same order as the dates it represents.
+ * The {@link Date} and the formatted text of a key are built the first time
+ * the key is seen and served from a cache afterwards, so parsing and formatting
+ * the same month end dates again is a couple of array reads.<br>
+ * Day and month values out of range roll over, same as a lenient
+ * {@link java.text.SimpleDateFormat} does, e.g. 31/06/2016 is 01/07/2016.<br>
+ * Dates returned by this codec are shared between callers and must not be modified.
+ *
+ * @author aditya
+ * @see AppUtil
+ * @see CsvTokenizer
+ */
+public final class DateCodec {
+
+    /**
+     * The only date format understood by this codec. (dd/MM/yyyy)
+     */
+    public static final String DATE_FORMAT = "dd/MM/yyyy";
+
+    private static final int MAX_YEAR = 9999;
+    private static final int DAYS_PER_YEAR_SLOT = 12 * 31;
+    private static final int MAX_CACHED_TEXTS = 1 << 16;
+
+    // year -> (month, day) slots, a year is allocated the first time it is seen
+    private static final AtomicReferenceArray<AtomicReferenceArray<Entry>> ENTRIES =
+            new AtomicReferenceArray<>(MAX_YEAR + 1);
+    private static final ConcurrentMap<String, Integer> KEYS_BY_TEXT = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<Long, Integer> KEYS_BY_TIME = new ConcurrentHashMap<>();
+
+    private static volatile TimeKey lastTimeKey = new TimeKey(Long.MIN_VALUE, 0);
+
+    /**
+     * Private constructor to prevent creating
+     * instance outside of this class.
+     */
+    private DateCodec() {
+    }
+
+    /**
+     * Parses a dd/MM/yyyy text into a date key.
+     *
+     * @param text - string representation of a date
+     * @return date key (yyyyMMdd)
+     * @throws IllegalArgumentException if the text is not a dd/MM/yyyy date
+     */
+    public static int key(String text) {
+
+        if (text == null) throw new IllegalArgumentException("Unable to parse to date " + text);
+
+        Integer cached = KEYS_BY_TEXT.get(text);
+        if (cached != null) return cached;
+
+        int i = 0, end = text.length();
+        int day = 0, month = 0, year = 0, digits;
+
+        for (digits = 0; i < end && isDigit(text.charAt(i)); i++, digits++)
+            day = day * 10 + (text.charAt(i) - '0');
+        if (digits == 0 || i == end || text.charAt(i++) != '/') throw invalid(text);
+
+        for (digits = 0; i < end && isDigit(text.charAt(i)); i++, digits++)
+            month = month * 10 + (text.charAt(i) - '0');
+        if (digits == 0 || i == end || text.charAt(i++) != '/') throw invalid(text);
+
+        for (digits = 0; i < end && isDigit(text.charAt(i)); i++, digits++)
+            year = year * 10 + (text.charAt(i) - '0');
+        if (digits == 0) throw invalid(text);
+
+        int key = key(day, month, year);
+        if (KEYS_BY_TEXT.size() < MAX_CACHED_TEXTS) KEYS_BY_TEXT.put(text, key);
+        return key;
+    }
+
+    /**
+     * Builds the date key of the given date parts, rolling over out of range values.
+     *
+     * @param day   - day of month
+     * @param month - month of year, 1 based
+     * @param year  - year
+     * @return date key (yyyyMMdd)
+     */
+    public static int key(int day, int month, int year) {
+
+        if (year > 1582 && year <= MAX_YEAR && month >= 1 && month <= 12
+                && day >= 1 && day <= daysInMonth(month, year))
+            return toKey(day, month, year);
+
+        return key(new GregorianCalendar(year, month - 1, day));
+    }
+
+    /**
+     * Returns the date key of the day the given date falls on, in the default time zone.
+     *
+     * @param date - date input
+     * @return date key (yyyyMMdd)
+     */
+    public static int key(Date date) {
+
+        if (date == null) throw new IllegalArgumentException("Invalid input date: " + date);
+
+        long time = date.getTime();
+        TimeKey last = lastTimeKey;
+        if (last.time == time) return last.key;
+
+        Integer cached = KEYS_BY_TIME.get(time);
+        int key;
+        if (cached != null) {
+            key = cached;
+        } else {
+            Calendar calendar = new GregorianCalendar();
+            calendar.setTime(date);
+            key = key(calendar);
+
+            // only day boundaries are worth remembering
+            if (calendar.get(Calendar.HOUR_OF_DAY) == 0 && calendar.get(Calendar.MINUTE) == 0
+                    && calendar.get(Calendar.SECOND) == 0 && calendar.get(Calendar.MILLISECOND) == 0
+                    && KEYS_BY_TIME.size() < MAX_CACHED_TEXTS)
+                KEYS_BY_TIME.put(time, key);
+        }
+        lastTimeKey = new TimeKey(time, key);
+        return key;
+    }
+
+    /**
+     * Returns the shared date of a key, at midnight in the default time zone.
+     *
+     * @param key - date key (yyyyMMdd)
+     * @return date represented by the key, must not be modified
+     */
+    public static Date toDate(int key) {
+        return entry(key).date;
+    }
+
+    /**
+     * Formats a key in dd/MM/yyyy format.
+     *
+     * @param key - date key (yyyyMMdd)
+     * @return formatted date
+     */
+    public static String format(int key) {
+        return entry(key).text;
+    }
+
+    /**
+     * Formats a date in dd/MM/yyyy format.
+     *
+     * @param date - date input
+     * @return formatted date
+     */
+    public static String format(Date date) {
+        return format(key(date));
+    }
+
+    /**
+     * @param key - date key (yyyyMMdd)
+     * @return year part of the key
+     */
+    public static int year(int key) {
+        return key / 10000;
+    }
+
+    /**
+     * @param key - date key (yyyyMMdd)
+     * @return month part of the key, 1 based
+     */
+    public static int month(int key) {
+        return key / 100 % 100;
+    }
+
+    /**
+     * @param key - date key (yyyyMMdd)
+     * @return day part of the key
+     */
+    public static int day(int key) {
+        return key % 100;
+    }
+
+    private static Entry entry(int key) {
+
+        int year = year(key), month = month(key), day = day(key);
+        if (year < 0 || year > MAX_YEAR || month < 1 || month > 12 || day < 1 || day > 31)
+            throw new IllegalArgumentException("Invalid date key: " + key);
+
+        AtomicReferenceArray<Entry> days = ENTRIES.get(year);
+        if (days == null) {
+            ENTRIES.compareAndSet(year, null, new AtomicReferenceArray<>(DAYS_PER_YEAR_SLOT));
+            days = ENTRIES.get(year);
+        }
+
+        int slot = (month - 1) * 31 + day - 1;
+        Entry entry = days.get(slot);
+        if (entry == null) {
+            days.compareAndSet(slot, null, new Entry(key));
+            entry = days.get(slot);
+        }
+        return entry;
+    }
+
+    private static int key(Calendar calendar) {
+        return toKey(calendar.get(Calendar.DATE), calendar.get(Calendar.MONTH) + 1, calendar.get(Calendar.YEAR));
+    }
+
+    private static int toKey(int day, int month, int year) {
+        return year * 10000 + month * 100 + day;
+    }
+
+    private static int daysInMonth(int month, int year) {
+        switch (month) {
+            case 2:
+                return (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static IllegalArgumentException invalid(String text) {
+        return new IllegalArgumentException("Unable to parse to date " + text);
+    }
+
+    /**
+     * Cached date and text of one key.
+     */
+    private static final class Entry {
+
+        private final Date date;
+        private final String text;
+
+        private Entry(int key) {
+            int year = year(key), month = month(key), day = day(key);
+            this.date = new GregorianCalendar(year, month - 1, day).getTime();
+
+            StringBuilder sb = new StringBuilder(10);
+            if (day < 10) sb.append('0');
+            sb.append(day).append('/');
+            if (month < 10) sb.append('0');
+            sb.append(month).append('/');
+            for (int width = 1000; width > 1 && year < width; width /= 10) sb.append('0');
+            sb.append(year);
+            this.text = sb.toString();
+        }
+    }
+
+    /**
+     * Last converted time, read without locking by {@link #key(Date)}.
+     */
+    private static final class TimeKey {
+
+        private final long time;
+        private final int key;
+
+        private TimeKey(long time, int key) {
+            this.time = time;
+            this.key = key;
+        }
+    }
+}
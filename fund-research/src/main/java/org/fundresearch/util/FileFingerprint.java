@@ -0,0 +1,98 @@
+package org.fundresearch.util;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Identity of a file's content: size, last modified time and CRC32 checksum.<br>
+ * Two fingerprints are equal when the file was neither resized, touched nor rewritten
+ * in between, so data derived from the file can be reused.
+ *
+ * @author aditya
+ * @see AppUtil#checksum(String, long)
+ */
+public final class FileFingerprint {
+
+    private final long size;
+    private final long lastModified;
+    private final long checksum;
+
+    public FileFingerprint(long size, long lastModified, long checksum) {
+        this.size = size;
+        this.lastModified = lastModified;
+        this.checksum = checksum;
+    }
+
+    /**
+     * Takes the fingerprint of a file as it is now. It reads the whole file.
+     *
+     * @param filePath - a path of the file
+     * @return fingerprint of the file, or null if the file does not exist
+     */
+    public static FileFingerprint of(String filePath) {
+
+        if (!AppUtil.isFileValid(filePath)) return null;
+
+        Path path = Paths.get(filePath);
+        try {
+            return of(filePath, Files.size(path), Files.getLastModifiedTime(path).toMillis());
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Unable to read file " + filePath, e);
+        }
+    }
+
+    /**
+     * Takes the fingerprint of a file whose size and last modified time were already read.
+     * It reads the whole file, for the checksum.
+     *
+     * @param filePath     - a path of an existing file
+     * @param size         - size of the file
+     * @param lastModified - last modified time of the file in milliseconds
+     * @return fingerprint of the file
+     */
+    public static FileFingerprint of(String filePath, long size, long lastModified) {
+
+        return new FileFingerprint(size, lastModified, AppUtil.checksum(filePath, size));
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public long getChecksum() {
+        return checksum;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        FileFingerprint that = (FileFingerprint) o;
+
+        return size == that.size && lastModified == that.lastModified && checksum == that.checksum;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = (int) (size ^ (size >>> 32));
+        result = 31 * result + (int) (lastModified ^ (lastModified >>> 32));
+        result = 31 * result + (int) (checksum ^ (checksum >>> 32));
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "FileFingerprint{" +
+                "size=" + size +
+                ", lastModified=" + lastModified +
+                ", checksum=" + checksum +
+                '}';
+    }
+}
@@ -0,0 +1,228 @@
+package org.fundresearch.util;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * This class provides fixed-point arithmetic on scaled {@code long} values,
+ * used by {@link org.fundresearch.enums.NumericMode#FIXED_POINT}.<br>
+ * A value {@code v} at scale {@code s} represents {@code v / 10^s}, same as
+ * {@link BigDecimal#valueOf(long, int)}. Returns are parsed at {@link #SCALE},
+ * which holds them exactly, and rounding follows {@link BigDecimal#ROUND_HALF_DOWN}
+ * so results are identical to {@link AppUtil#roundToScale(BigDecimal, int)}.
+ *
+ * @author aditya
+ * @see AppUtil
+ */
+public final class FixedPoint {
+
+    /**
+     * Scale of parsed returns. Inputs with more significant fractional digits are rejected.
+     */
+    public static final int SCALE = 8;
+    /**
+     * Scale of excess and returns in the report.
+     */
+    public static final int TWO_SCALE = 2;
+
+    private static final long[] POWERS_OF_TEN = new long[19];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+    }
+
+    /**
+     * Private constructor to prevent creating
+     * instance outside of this class.
+     */
+    private FixedPoint() {
+    }
+
+    /**
+     * Parses a decimal text into a value at {@link #SCALE}.
+     *
+     * @param text - decimal text, e.g. -1.107845
+     * @return scaled value
+     * @throws NumberFormatException if the text is not a decimal or cannot be held exactly
+     */
+    public static long parse(String text) {
+        if (text == null) throw new NumberFormatException("Invalid decimal value: null");
+        byte[] bytes = text.getBytes(StandardCharsets.ISO_8859_1);
+        return parse(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Parses a decimal held in an ASCII byte range into a value at {@link #SCALE}.
+     * Accepts the same plain and exponent notations as {@link BigDecimal#BigDecimal(String)}.
+     *
+     * @param b      - bytes
+     * @param offset - start of the decimal
+     * @param length - length of the decimal
+     * @return scaled value
+     * @throws NumberFormatException if the range is not a decimal or cannot be held exactly
+     */
+    public static long parse(byte[] b, int offset, int length) {
+
+        int i = offset, end = offset + length;
+        boolean negative = false;
+        if (i < end && (b[i] == '-' || b[i] == '+')) negative = b[i++] == '-';
+
+        long unscaled = 0;
+        int digits = 0, fractionDigits = 0;
+        boolean fraction = false;
+
+        try {
+            for (; i < end; i++) {
+                byte c = b[i];
+                if (c >= '0' && c <= '9') {
+                    unscaled = Math.addExact(Math.multiplyExact(unscaled, 10), c - '0');
+                    digits++;
+                    if (fraction) fractionDigits++;
+                } else if (c == '.' && !fraction) {
+                    fraction = true;
+                } else {
+                    break;
+                }
+            }
+            if (digits == 0) throw invalid(b, offset, length);
+
+            int exponent = 0;
+            if (i < end && (b[i] == 'e' || b[i] == 'E')) {
+                i++;
+                boolean negativeExponent = false;
+                if (i < end && (b[i] == '-' || b[i] == '+')) negativeExponent = b[i++] == '-';
+                if (i == end) throw invalid(b, offset, length);
+                for (; i < end && b[i] >= '0' && b[i] <= '9'; i++) {
+                    exponent = exponent * 10 + (b[i] - '0');
+                    if (exponent > 1000) throw invalid(b, offset, length);
+                }
+                if (negativeExponent) exponent = -exponent;
+            }
+            if (i != end) throw invalid(b, offset, length);
+
+            long value = rescale(unscaled, fractionDigits - exponent, SCALE);
+            return negative ? -value : value;
+
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Decimal out of fixed-point range: "
+                    + new String(b, offset, length, StandardCharsets.ISO_8859_1));
+        }
+    }
+
+    /**
+     * It round-half-down a scaled value into user specified scale.
+     *
+     * @param value     - scaled value
+     * @param fromScale - scale of the value
+     * @param toScale   - required scale, not greater than fromScale
+     * @return value rounded to the required scale
+     */
+    public static long roundHalfDown(long value, int fromScale, int toScale) {
+
+        if (toScale > fromScale)
+            throw new IllegalArgumentException("Invalid scale: " + toScale + " > " + fromScale);
+
+        long divisor = POWERS_OF_TEN[fromScale - toScale];
+        long quotient = value / divisor;
+        long remainder = value % divisor;
+
+        // strictly more than half rounds away from zero, exactly half rounds down
+        if (Math.abs(remainder) > divisor - Math.abs(remainder))
+            quotient += value < 0 ? -1 : 1;
+        return quotient;
+    }
+
+    /**
+     * It round-half-down a value at {@link #SCALE} into 2 scale.
+     *
+     * @param value - value at {@link #SCALE}
+     * @return value rounded to 2 scale
+     */
+    public static long roundToTwoScale(long value) {
+        return roundHalfDown(value, SCALE, TWO_SCALE);
+    }
+
+    /**
+     * Integer part of a scaled value, truncated toward zero same as {@link BigDecimal#intValue()}.
+     *
+     * @param value - scaled value
+     * @param scale - scale of the value
+     * @return integer part
+     */
+    public static long integerPart(long value, int scale) {
+        return value / POWERS_OF_TEN[scale];
+    }
+
+    /**
+     * @param value - scaled value
+     * @param scale - scale of the value
+     * @return decimal equal to the scaled value
+     */
+    public static BigDecimal toBigDecimal(long value, int scale) {
+        return BigDecimal.valueOf(value, scale);
+    }
+
+    /**
+     * Formats a scaled value same as {@link BigDecimal#toPlainString()} of
+     * {@code BigDecimal.valueOf(value, scale)}.
+     *
+     * @param value - scaled value
+     * @param scale - scale of the value
+     * @return formatted value
+     */
+    public static String toString(long value, int scale) {
+        StringBuilder sb = new StringBuilder(24);
+        appendTo(sb, value, scale);
+        return sb.toString();
+    }
+
+    /**
+     * Appends a scaled value same as {@link #toString(long, int)}, without an intermediate String.
+     *
+     * @param sb    - target builder
+     * @param value - scaled value
+     * @param scale - scale of the value
+     * @return the target builder
+     */
+    public static StringBuilder appendTo(StringBuilder sb, long value, int scale) {
+
+        if (value == Long.MIN_VALUE) return sb.append(BigDecimal.valueOf(value, scale).toPlainString());
+
+        if (value < 0) sb.append('-');
+        long abs = Math.abs(value);
+        sb.append(abs / POWERS_OF_TEN[scale]);
+        if (scale > 0) {
+            sb.append('.');
+            long fraction = abs % POWERS_OF_TEN[scale];
+            for (int i = scale - 1; i > 0 && fraction < POWERS_OF_TEN[i]; i--) sb.append('0');
+            sb.append(fraction);
+        }
+        return sb;
+    }
+
+    private static long rescale(long unscaled, int fromScale, int toScale) {
+
+        if (fromScale <= toScale) {
+            int shift = toScale - fromScale;
+            if (shift >= POWERS_OF_TEN.length) {
+                if (unscaled == 0) return 0;
+                throw new ArithmeticException("Overflow");
+            }
+            return Math.multiplyExact(unscaled, POWERS_OF_TEN[shift]);
+        }
+
+        int shift = fromScale - toScale;
+        if (shift >= POWERS_OF_TEN.length) {
+            if (unscaled == 0) return 0;
+            throw new ArithmeticException("Precision");
+        }
+        if (unscaled % POWERS_OF_TEN[shift] != 0) throw new ArithmeticException("Precision");
+        return unscaled / POWERS_OF_TEN[shift];
+    }
+
+    private static NumberFormatException invalid(byte[] b, int offset, int length) {
+        return new NumberFormatException("Invalid decimal value: "
+                + new String(b, offset, length, StandardCharsets.ISO_8859_1));
+    }
+}
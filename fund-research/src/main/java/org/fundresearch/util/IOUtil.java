@@ -3,10 +3,13 @@ package org.fundresearch.util;
 import org.fundresearch.exceptions.ApplicationException;
 
 import java.io.Closeable;
+import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -65,4 +68,17 @@ public final class IOUtil {
             }
         }
     }
+
+    /**
+     * Deletes a file, or a directory with all of its content.
+     *
+     * @param path - file or directory, ignored if null or missing
+     * @throws IOException if a directory cannot be listed
+     */
+    public static void deleteRecursively(Path path) throws IOException {
+        if (path == null || !Files.exists(path)) return;
+        try (Stream<Path> paths = Files.walk(path)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
 }
@@ -0,0 +1,132 @@
+package org.fundresearch.util;
+
+/**
+ * Open addressing hash map from primitive {@code long} keys to {@code int} values.<br>
+ * Keys and values are held in two arrays with linear probing, so a lookup
+ * neither boxes the key nor follows an entry reference. Entries cannot be removed.<br>
+ * Instances are not thread safe while being written; once filled they can be read
+ * from many threads.
+ *
+ * @author aditya
+ */
+public final class LongIntHashMap {
+
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private long[] keys;
+    private int[] values;
+    private boolean[] used;
+    private int size;
+    private int mask;
+
+    public LongIntHashMap() {
+        this(16);
+    }
+
+    /**
+     * @param expectedSize - expected number of entries
+     */
+    public LongIntHashMap(int expectedSize) {
+        if (expectedSize < 0) throw new IllegalArgumentException("Invalid size: " + expectedSize);
+
+        int capacity = 16;
+        while (capacity < MAX_CAPACITY && capacity < expectedSize * 2) capacity <<= 1;
+        allocate(capacity);
+    }
+
+    /**
+     * Associates a value with a key, replacing a previous value.
+     *
+     * @param key   - key
+     * @param value - value
+     */
+    public void put(long key, int value) {
+        int slot = slot(key);
+        if (!used[slot]) {
+            used[slot] = true;
+            keys[slot] = key;
+            if (++size * 2 > keys.length) {
+                values[slot] = value;
+                rehash();
+                return;
+            }
+        }
+        values[slot] = value;
+    }
+
+    /**
+     * @param key          - key
+     * @param missingValue - value returned when the key is absent
+     * @return value of the key, or missingValue
+     */
+    public int get(long key, int missingValue) {
+        int slot = slot(key);
+        return used[slot] ? values[slot] : missingValue;
+    }
+
+    /**
+     * @param key - key
+     * @return true if the key is present
+     */
+    public boolean containsKey(long key) {
+        return used[slot(key)];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Packs two ints into one key, e.g. a code id and a date key.
+     *
+     * @param high - high 32 bits
+     * @param low  - low 32 bits
+     * @return composite key
+     */
+    public static long compositeKey(int high, int low) {
+        return ((long) high << 32) | (low & 0xffffffffL);
+    }
+
+    private int slot(long key) {
+        int slot = mix(key) & mask;
+        while (used[slot] && keys[slot] != key) slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    private void rehash() {
+        if (keys.length == MAX_CAPACITY) throw new IllegalStateException("Map is full");
+
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        boolean[] oldUsed = used;
+        allocate(keys.length * 2);
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (!oldUsed[i]) continue;
+            int slot = slot(oldKeys[i]);
+            used[slot] = true;
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return "LongIntHashMap{" +
+                "size=" + size +
+                ", capacity=" + keys.length +
+                '}';
+    }
+}
@@ -0,0 +1,385 @@
+package org.fundresearch.util;
+
+import org.fundresearch.models.Performance;
+import org.fundresearch.models.RollingPerformance;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streaming writer of the monthly out performance report, or of the rolling
+ * window report, see {@link Layout}.<br>
+ * The header is written when the writer is opened, and each {@link Performance}
+ * row is written as soon as it is handed over, so the report is never held in memory.
+ * Columns are padded by hand into one reusable byte buffer, which is written
+ * through a {@link FileChannel} whenever it fills up, or through any other channel,
+ * e.g. of an HTTP response.<br>
+ * The output is byte for byte the same as formatting every line with
+ * {@code String.format("%1$15s %2$15s %3$15s %4$20s %5$15s %6$15s")} in UTF-8,
+ * and rolling report lines are padded the same way to their own widths.
+ * <p>
+ * Instances are not thread safe.
+ *
+ * @author aditya
+ * @see AppUtil#writeToFile(java.util.List, String, String)
+ */
+public final class ReportWriter implements Closeable {
+
+    private static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+    private static final int MAX_LONG_DIGITS = 20;
+    private static final BigInteger MIN_LONG = BigInteger.valueOf(Long.MIN_VALUE);
+    private static final BigInteger MAX_LONG = BigInteger.valueOf(Long.MAX_VALUE);
+
+    private final Layout layout;
+    private final Path path;
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer;
+    private final byte[] digits = new byte[MAX_LONG_DIGITS];
+    private long rows;
+    private long flushed;
+
+    /**
+     * Opens the report file, replacing an existing one, and writes the header.
+     *
+     * @param filePath - path of the report file
+     */
+    public ReportWriter(String filePath) {
+        this(filePath, DEFAULT_BUFFER_SIZE, Layout.MONTHLY);
+    }
+
+    /**
+     * @param filePath   - path of the report file
+     * @param bufferSize - size of the write buffer in bytes
+     */
+    public ReportWriter(String filePath, int bufferSize) {
+        this(filePath, bufferSize, Layout.MONTHLY);
+    }
+
+    /**
+     * @param filePath - path of the report file
+     * @param layout   - columns of the report
+     */
+    public ReportWriter(String filePath, Layout layout) {
+        this(filePath, DEFAULT_BUFFER_SIZE, layout);
+    }
+
+    /**
+     * @param filePath   - path of the report file
+     * @param bufferSize - size of the write buffer in bytes
+     * @param layout     - columns of the report
+     */
+    public ReportWriter(String filePath, int bufferSize, Layout layout) {
+        if (filePath == null) throw new IllegalArgumentException("Invalid file path: " + filePath);
+        checkArguments(bufferSize, layout);
+
+        this.layout = layout;
+        this.path = Paths.get(filePath);
+        this.buffer = ByteBuffer.allocate(bufferSize);
+        try {
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Unable to write file " + filePath, e);
+        }
+        writeHeader();
+    }
+
+    /**
+     * Writes the report to an open channel instead of a file, e.g. the body of an
+     * HTTP response. The channel is closed with the writer.
+     *
+     * @param channel    - channel to write to
+     * @param bufferSize - size of the write buffer in bytes
+     * @param layout     - columns of the report
+     * @param header     - true to write the header first
+     */
+    public ReportWriter(WritableByteChannel channel, int bufferSize, Layout layout, boolean header) {
+        if (channel == null) throw new IllegalArgumentException("Invalid channel");
+        checkArguments(bufferSize, layout);
+
+        this.layout = layout;
+        this.path = null;
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocate(bufferSize);
+        if (header) writeHeader();
+    }
+
+    private static void checkArguments(int bufferSize, Layout layout) {
+        if (bufferSize < 256) throw new IllegalArgumentException("Invalid buffer size: " + bufferSize);
+        if (layout == null) throw new IllegalArgumentException("Invalid layout");
+    }
+
+    /**
+     * Writes one report line.
+     *
+     * @param performance - ranked performance
+     */
+    public void write(Performance performance) {
+        checkLayout(Layout.MONTHLY);
+        int[] widths = layout.widths;
+
+        text(performance.getFundName(), widths[0]);
+        space();
+        text(DateCodec.format(performance.getDate()), widths[1]);
+        space();
+        twoScale(performance.getExcess(), performance.getScaledExcess(), widths[2]);
+        space();
+        text(performance.getOutPerformanceText(), widths[3]);
+        space();
+        twoScale(performance.getReturns(), performance.getScaledReturns(), widths[4]);
+        space();
+        text(String.valueOf(performance.getRank()), widths[5]);
+        newLine();
+        rows++;
+    }
+
+    /**
+     * Writes one rolling report line.
+     *
+     * @param performance - ranked rolling window performance
+     */
+    public void write(RollingPerformance performance) {
+        checkLayout(Layout.ROLLING);
+        int[] widths = layout.widths;
+
+        text(performance.getFundName(), widths[0]);
+        space();
+        text(DateCodec.format(performance.getDate()), widths[1]);
+        space();
+        text(String.valueOf(performance.getWindow()), widths[2]);
+        space();
+        twoScale(null, performance.getScaledExcess(), widths[3]);
+        space();
+        text(String.valueOf(performance.getOutPerformedMonths()), widths[4]);
+        space();
+        text(String.valueOf(performance.getUnderPerformedMonths()), widths[5]);
+        space();
+        text(String.valueOf(performance.getRank()), widths[6]);
+        newLine();
+        rows++;
+    }
+
+    /**
+     * Writes report lines in iteration order.
+     *
+     * @param performances - ranked performances
+     */
+    public void write(Iterable<Performance> performances) {
+        for (Performance performance : performances) write(performance);
+    }
+
+    /**
+     * Copies bytes of another report as they are, e.g. month blocks of a previous run.
+     *
+     * @param source   - channel of the other report
+     * @param position - position of the first byte to copy
+     * @param count    - number of bytes to copy
+     */
+    public void transfer(FileChannel source, long position, long count) {
+        try {
+            flush();
+            long copied = 0;
+            while (copied < count) {
+                long transferred = source.transferTo(position + copied, count - copied, channel);
+                if (transferred <= 0) throw new IOException("Report ended before " + (position + count) + " bytes");
+                copied += transferred;
+                flushed += transferred;
+            }
+        } catch (IOException e) {
+            throw failure(e);
+        }
+    }
+
+    /**
+     * Copies bytes rendered before as they are, e.g. a cached month block.
+     *
+     * @param bytes - bytes to copy
+     */
+    public void write(byte[] bytes) {
+        try {
+            flush();
+            ByteBuffer source = ByteBuffer.wrap(bytes);
+            while (source.hasRemaining()) channel.write(source);
+            flushed += bytes.length;
+        } catch (IOException e) {
+            throw failure(e);
+        }
+    }
+
+    /**
+     * @return number of bytes written so far, header included
+     */
+    public long position() {
+        return flushed + buffer.position();
+    }
+
+    /**
+     * @return number of report lines written, header excluded
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * Flushes the buffer and closes the file or channel.
+     */
+    @Override
+    public void close() {
+        try {
+            try {
+                flush();
+            } finally {
+                channel.close();
+            }
+        } catch (IOException e) {
+            throw failure(e);
+        }
+    }
+
+    private void writeHeader() {
+        for (String[] header : new String[][]{layout.names, layout.rules}) {
+            for (int i = 0; i < header.length; i++) {
+                if (i > 0) space();
+                text(header[i], layout.widths[i]);
+            }
+            newLine();
+        }
+    }
+
+    private void checkLayout(Layout expected) {
+        if (layout != expected) throw new IllegalStateException("Report layout is " + layout + ", not " + expected);
+    }
+
+    /**
+     * Same as {@code %<width>s}: the text right aligned, padded by its char count.
+     */
+    private void text(String text, int width) {
+        if (text == null) text = "null";
+
+        int length = text.length();
+        // padding, then up to 3 UTF-8 bytes per char
+        ensure(Math.max(width - length, 0) + length * 3);
+        for (int i = length; i < width; i++) buffer.put((byte) ' ');
+
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c >= 0x80) {
+                // rare non ASCII text, let the encoder deal with it
+                buffer.position(buffer.position() - i);
+                buffer.put(text.getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            buffer.put((byte) c);
+        }
+    }
+
+    /**
+     * Two scale value, decimal or fixed-point, formatted same as
+     * {@link AppUtil#roundToTwoScale(BigDecimal)} then {@link BigDecimal#toString()}.
+     */
+    private void twoScale(BigDecimal decimal, long scaled, int width) {
+        if (decimal != null) {
+            BigDecimal rounded = AppUtil.roundToTwoScale(decimal);
+            BigInteger unscaled = rounded.unscaledValue();
+            if (unscaled.compareTo(MIN_LONG) <= 0 || unscaled.compareTo(MAX_LONG) > 0) {
+                text(rounded.toString(), width);
+                return;
+            }
+            scaled = unscaled.longValue();
+        } else if (scaled == Long.MIN_VALUE) {
+            text(FixedPoint.toString(scaled, FixedPoint.TWO_SCALE), width);
+            return;
+        }
+
+        // digits of |scaled| from the right, with the point before the last two
+        long abs = Math.abs(scaled);
+        int count = 0;
+        do {
+            digits[count++] = (byte) ('0' + abs % 10);
+            abs /= 10;
+        } while (abs > 0);
+        while (count < FixedPoint.TWO_SCALE + 1) digits[count++] = '0';
+
+        int length = count + 1 + (scaled < 0 ? 1 : 0);
+        ensure(Math.max(width, length));
+        for (int i = length; i < width; i++) buffer.put((byte) ' ');
+        if (scaled < 0) buffer.put((byte) '-');
+        for (int i = count - 1; i >= 0; i--) {
+            buffer.put(digits[i]);
+            if (i == FixedPoint.TWO_SCALE) buffer.put((byte) '.');
+        }
+    }
+
+    private void space() {
+        ensure(1);
+        buffer.put((byte) ' ');
+    }
+
+    private void newLine() {
+        ensure(1);
+        buffer.put((byte) '\n');
+    }
+
+    private void ensure(int bytes) {
+        if (buffer.remaining() >= bytes) return;
+        try {
+            flush();
+        } catch (IOException e) {
+            throw failure(e);
+        }
+        if (buffer.remaining() < bytes)
+            throw new IllegalArgumentException("Report value longer than the write buffer: " + bytes + " bytes");
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        flushed += buffer.remaining();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+
+    private IllegalArgumentException failure(IOException e) {
+        return new IllegalArgumentException(path == null ? "Unable to write report" : "Unable to write file " + path, e);
+    }
+
+    /**
+     * Columns of a report: header names, header rules and widths.
+     */
+    public enum Layout {
+
+        /**
+         * FundName, Date, Excess, OutPerformance, Return and Rank of every fund and month.
+         */
+        MONTHLY(new String[]{"FundName", "Date", "Excess", "OutPerformance", "Return", "Rank"},
+                new String[]{"------------", "-----------", "----------", "---------------", "----------", "--------"},
+                new int[]{15, 15, 15, 20, 15, 15}),
+
+        /**
+         * FundName, Date, Window, Excess, OutPerformed, UnderPerformed and Rank of every
+         * fund, month and window.
+         */
+        ROLLING(new String[]{"FundName", "Date", "Window", "Excess", "OutPerformed", "UnderPerformed", "Rank"},
+                new String[]{"------------", "-----------", "------", "----------", "------------", "--------------",
+                        "--------"},
+                new int[]{15, 15, 10, 15, 15, 15, 15});
+
+        private final String[] names;
+        private final String[] rules;
+        private final int[] widths;
+
+        Layout(String[] names, String[] rules, int[] widths) {
+            this.names = names;
+            this.rules = rules;
+            this.widths = widths;
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package org.fundresearch.util;
+
+import org.fundresearch.enums.NumericMode;
+import org.fundresearch.models.Fund;
+import org.fundresearch.models.ReturnSeriesStore;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary snapshot of a parsed input file, written next to it as {@code <input>.snapshot}.<br>
+ * A snapshot starts with the {@link FileFingerprint} of the file it was parsed from and
+ * is only used while the file still has that fingerprint. Two kinds are supported:
+ * <ul>
+ * <li>return series - codes, then the code id, date key and value columns of a sealed
+ * {@link ReturnSeriesStore}. Fixed-point values are scaled longs, decimal values are
+ * (unscaled long, int scale) pairs.</li>
+ * <li>funds - code, name and benchmark code of every fund</li>
+ * </ul>
+ * Snapshots are loaded through a memory mapped buffer and the columns are bulk copied
+ * into the store arrays, with no text parsing and no object per row in fixed-point mode.
+ * A stale, foreign or damaged snapshot is ignored, and the caller parses the input instead.
+ *
+ * @author aditya
+ * @see FileFingerprint
+ */
+public final class SnapshotFile {
+
+    private static final String SNAPSHOT_SUFFIX = ".snapshot";
+    private static final int MAGIC = 0x46525353; // FRSS
+    private static final int VERSION = 1;
+    private static final byte RETURN_SERIES = 1;
+    private static final byte FUNDS = 2;
+
+    /**
+     * Private constructor to prevent creating
+     * instance outside of this class.
+     */
+    private SnapshotFile() {
+    }
+
+    /**
+     * @param filePath - path of an input file
+     * @return path of the snapshot of the file
+     */
+    public static Path pathOf(String filePath) {
+        return Paths.get(filePath + SNAPSHOT_SUFFIX);
+    }
+
+    /**
+     * Loads the return series snapshot of an input file.
+     *
+     * @param filePath    - path of a fund or benchmark return csv file
+     * @param fingerprint - fingerprint of the file now
+     * @param numericMode - numeric mode of the store
+     * @return a sealed store, or null if there is no matching snapshot
+     */
+    public static ReturnSeriesStore readReturnSeries(String filePath, FileFingerprint fingerprint,
+                                                     NumericMode numericMode) {
+        ByteBuffer buffer = map(filePath, fingerprint, RETURN_SERIES);
+        if (buffer == null) return null;
+
+        try {
+            if (buffer.get() != numericMode.ordinal()) return null;
+
+            int rows = buffer.getInt();
+            List<String> codes = readStrings(buffer, buffer.getInt());
+            long rowBytes = numericMode == NumericMode.FIXED_POINT ? 16 : 20;
+            if (rows < 0 || rows * rowBytes > buffer.remaining()) return null;
+
+            int[] codeIds = new int[rows];
+            int[] dateKeys = new int[rows];
+            buffer.asIntBuffer().get(codeIds);
+            buffer.position(buffer.position() + rows * 4);
+            buffer.asIntBuffer().get(dateKeys);
+            buffer.position(buffer.position() + rows * 4);
+
+            long[] values = null;
+            BigDecimal[] decimals = null;
+            if (numericMode == NumericMode.FIXED_POINT) {
+                values = new long[rows];
+                buffer.asLongBuffer().get(values);
+            } else {
+                long[] unscaled = new long[rows];
+                int[] scales = new int[rows];
+                buffer.asLongBuffer().get(unscaled);
+                buffer.position(buffer.position() + rows * 8);
+                buffer.asIntBuffer().get(scales);
+                decimals = new BigDecimal[rows];
+                for (int row = 0; row < rows; row++) decimals[row] = BigDecimal.valueOf(unscaled[row], scales[row]);
+            }
+            return ReturnSeriesStore.of(numericMode, codes, codeIds, dateKeys, values, decimals);
+
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            // damaged snapshot
+            return null;
+        }
+    }
+
+    /**
+     * Writes the return series snapshot of an input file.
+     *
+     * @param filePath    - path of the fund or benchmark return csv file
+     * @param fingerprint - fingerprint of the file, taken before it was parsed
+     * @param store       - sealed store parsed from the file
+     * @return true if written, false if a decimal does not fit the snapshot format
+     */
+    public static boolean writeReturnSeries(String filePath, FileFingerprint fingerprint, ReturnSeriesStore store) {
+
+        store.seal();
+        int rows = store.size();
+        if (!store.isFixedPoint())
+            for (int row = 0; row < rows; row++)
+                if (store.decimal(row).unscaledValue().bitLength() > 63) return false;
+
+        return write(filePath, fingerprint, RETURN_SERIES, out -> {
+            out.writeByte(store.isFixedPoint() ? NumericMode.FIXED_POINT.ordinal() : NumericMode.DECIMAL.ordinal());
+            out.writeInt(rows);
+            out.writeInt(store.codeCount());
+            for (int codeId = 0; codeId < store.codeCount(); codeId++) writeString(out, store.code(codeId));
+
+            for (int row = 0; row < rows; row++) out.writeInt(store.codeId(row));
+            for (int row = 0; row < rows; row++) out.writeInt(store.dateKey(row));
+            if (store.isFixedPoint()) {
+                for (int row = 0; row < rows; row++) out.writeLong(store.value(row));
+            } else {
+                for (int row = 0; row < rows; row++) out.writeLong(store.decimal(row).unscaledValue().longValue());
+                for (int row = 0; row < rows; row++) out.writeInt(store.decimal(row).scale());
+            }
+        });
+    }
+
+    /**
+     * Loads the funds snapshot of an input file.
+     *
+     * @param filePath    - path of a fund csv file
+     * @param fingerprint - fingerprint of the file now
+     * @return a map of fund objects where key=fundCode, value=fundObject, or null if there is no matching snapshot
+     */
+    public static Map<String, Fund> readFunds(String filePath, FileFingerprint fingerprint) {
+        ByteBuffer buffer = map(filePath, fingerprint, FUNDS);
+        if (buffer == null) return null;
+
+        try {
+            int count = buffer.getInt();
+            if (count < 0 || count > buffer.remaining()) return null;
+            Map<String, Fund> funds = new LinkedHashMap<>(count * 2);
+            for (int i = 0; i < count; i++) {
+                String code = readString(buffer);
+                funds.put(code, new Fund(code, readString(buffer), readString(buffer)));
+            }
+            return funds;
+
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Writes the funds snapshot of an input file.
+     *
+     * @param filePath    - path of the fund csv file
+     * @param fingerprint - fingerprint of the file, taken before it was parsed
+     * @param funds       - funds parsed from the file
+     * @return true if written
+     */
+    public static boolean writeFunds(String filePath, FileFingerprint fingerprint, Map<String, Fund> funds) {
+
+        return write(filePath, fingerprint, FUNDS, out -> {
+            out.writeInt(funds.size());
+            for (Fund fund : funds.values()) {
+                writeString(out, fund.getCode());
+                writeString(out, fund.getName());
+                writeString(out, fund.getBenchmarkCode());
+            }
+        });
+    }
+
+    /**
+     * Maps a snapshot and checks its header.
+     *
+     * @return the buffer positioned after the header, or null if the snapshot does not match
+     */
+    private static ByteBuffer map(String filePath, FileFingerprint fingerprint, byte kind) {
+        Path snapshotPath = pathOf(filePath);
+        if (fingerprint == null || !Files.exists(snapshotPath)) return null;
+
+        try (FileChannel channel = FileChannel.open(snapshotPath, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION || buffer.get() != kind) return null;
+            FileFingerprint source = new FileFingerprint(buffer.getLong(), buffer.getLong(), buffer.getLong());
+            return fingerprint.equals(source) ? buffer : null;
+
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            // unreadable, truncated or too large to map
+            return null;
+        }
+    }
+
+    /**
+     * Writes a snapshot into a temporary file and moves it over the previous snapshot.
+     * A snapshot that cannot be written is skipped, as it only saves work.
+     */
+    private static boolean write(String filePath, FileFingerprint fingerprint, byte kind, Body body) {
+        if (fingerprint == null) return false;
+
+        Path snapshotPath = pathOf(filePath);
+        Path tempPath = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tempPath), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeByte(kind);
+                out.writeLong(fingerprint.getSize());
+                out.writeLong(fingerprint.getLastModified());
+                out.writeLong(fingerprint.getChecksum());
+                body.write(out);
+            }
+            try {
+                Files.move(tempPath, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempPath, snapshotPath, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return true;
+
+        } catch (IOException e) {
+            System.out.printf("Unable to write snapshot %s: %s\n", snapshotPath, e.getMessage());
+            try {
+                Files.deleteIfExists(tempPath);
+            } catch (IOException ignored) {
+                // nothing left to do
+            }
+            return false;
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) return null;
+        if (length > buffer.remaining()) throw new BufferUnderflowException();
+
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static List<String> readStrings(ByteBuffer buffer, int count) {
+        if (count < 0 || count > buffer.remaining()) throw new BufferUnderflowException();
+
+        List<String> strings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) strings.add(readString(buffer));
+        return strings;
+    }
+
+    /**
+     * Body of a snapshot, after the header.
+     */
+    private interface Body {
+        void write(DataOutputStream out) throws IOException;
+    }
+}
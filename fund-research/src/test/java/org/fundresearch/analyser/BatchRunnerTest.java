@@ -0,0 +1,151 @@
+package org.fundresearch.analyser;
+
+import org.fundresearch.enums.NumericMode;
+import org.fundresearch.util.TestUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.fundresearch.analyser.TestUniverse.runReport;
+import static org.fundresearch.analyser.TestUniverse.writeUniverse;
+import static org.junit.Assert.*;
+
+/**
+ * Batch runner test class.<br>
+ * Client A has 20 funds and client B 30 funds over 4 months. Both are benchmarked against
+ * the benchmark files of client A unless a test says otherwise.
+ */
+public class BatchRunnerTest {
+
+    private Path clientA;
+    private Path clientB;
+    private Path outputDir;
+
+    @Before
+    public void init() throws IOException {
+        clientA = Files.createTempDirectory("fund-research");
+        clientB = Files.createTempDirectory("fund-research");
+        outputDir = Files.createTempDirectory("fund-research");
+        writeUniverse(clientA, 20, 3, 4);
+        writeUniverse(clientB, 30, 3, 4);
+    }
+
+    @After
+    public void cleanUp() throws IOException {
+        TestUtil.deleteRecursively(clientA);
+        TestUtil.deleteRecursively(clientB);
+        TestUtil.deleteRecursively(outputDir);
+    }
+
+    @Test
+    public void testReportsMatchSingleRuns() throws IOException {
+        List<Universe> universes = new ArrayList<>();
+        for (int i = 0; i < 6; i++) universes.add(universe("client" + i, i % 2 == 0 ? clientA : clientB, clientA));
+
+        for (NumericMode numericMode : NumericMode.values()) {
+            AnalyserOptions options = new AnalyserOptions();
+            options.setNumericMode(numericMode);
+            BatchSummary summary = new BatchRunner(options, 3).run(universes);
+
+            assertEquals(6, summary.getSucceeded());
+            String reportA = runReport(clientA, options), reportB = runReport(clientB, options);
+            for (int i = 0; i < 6; i++) {
+                BatchSummary.Outcome outcome = summary.getOutcomes().get(i);
+                // outcomes are in the order of the universes
+                assertEquals("client" + i, outcome.getUniverse().getName());
+                assertEquals(i % 2 == 0 ? 20L * 4 : 30L * 4, outcome.getMetrics().getRowsOut());
+                assertEquals(i % 2 == 0 ? reportA : reportB, report("client" + i));
+            }
+        }
+    }
+
+    @Test
+    public void testBenchmarksAreParsedOncePerFilePair() {
+        List<Universe> universes = new ArrayList<>();
+        for (int i = 0; i < 8; i++)
+            universes.add(universe("client" + i, i % 2 == 0 ? clientA : clientB, i < 4 ? clientA : clientB));
+
+        BatchSummary summary = new BatchRunner(new AnalyserOptions(), 4).run(universes);
+
+        assertEquals(8, summary.getSucceeded());
+        assertEquals(2, summary.getBenchmarkParses());
+    }
+
+    @Test
+    public void testFailedUniverseDoesNotStopTheOthers() throws IOException {
+        List<Universe> universes = new ArrayList<>();
+        for (int i = 0; i < 4; i++) universes.add(universe("client" + i, clientA, clientA));
+        // client2 writes to a directory that does not exist
+        universes.set(2, new Universe("client2", clientA.resolve("fund.csv").toString(),
+                clientA.resolve("benchmark.csv").toString(), clientA.resolve("fundReturnSeries.csv").toString(),
+                clientA.resolve("benchReturnSeries.csv").toString(), outputDir.resolve("missing").toString(),
+                "client2.csv"));
+
+        BatchSummary summary = new BatchRunner(new AnalyserOptions(), 2).run(universes);
+
+        assertEquals(3, summary.getSucceeded());
+        assertEquals(1, summary.getFailures().size());
+        assertEquals("client2", summary.getFailures().get(0).getUniverse().getName());
+        assertTrue(summary.getFailures().get(0).getFailure() instanceof IllegalArgumentException);
+        assertNull(summary.getFailures().get(0).getMetrics());
+        assertEquals(runReport(clientA, new AnalyserOptions()), report("client3"));
+    }
+
+    @Test
+    public void testBrokenBenchmarkFileFailsEveryUniverseUsingIt() throws IOException {
+        // a date that does not parse fails the whole file
+        Path broken = outputDir.resolve("brokenBenchReturnSeries.csv");
+        Files.write(broken, "bm0,31/June/2016,1.5\n".getBytes(StandardCharsets.UTF_8));
+        List<Universe> universes = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            universes.add(new Universe("client" + i, clientA.resolve("fund.csv").toString(),
+                    clientA.resolve("benchmark.csv").toString(), clientA.resolve("fundReturnSeries.csv").toString(),
+                    (i % 3 == 0 ? broken : clientA.resolve("benchReturnSeries.csv")).toString(),
+                    outputDir.toString(), "client" + i + ".csv"));
+        }
+
+        BatchSummary summary = new BatchRunner(new AnalyserOptions(), 3).run(universes);
+
+        assertEquals(4, summary.getSucceeded());
+        assertEquals(2, summary.getFailures().size());
+        assertEquals("client0", summary.getFailures().get(0).getUniverse().getName());
+        assertEquals("client3", summary.getFailures().get(1).getUniverse().getName());
+        // one parse failed for both
+        assertSame(summary.getFailures().get(0).getFailure(), summary.getFailures().get(1).getFailure());
+        assertEquals(2, summary.getBenchmarkParses());
+    }
+
+    @Test
+    public void testEmptyBatch() {
+        BatchSummary summary = new BatchRunner(new AnalyserOptions(), 2).run(Collections.emptyList());
+
+        assertTrue(summary.getOutcomes().isEmpty());
+        assertEquals(0, summary.getBenchmarkParses());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidNumberOfThreads() {
+        new BatchRunner(new AnalyserOptions(), 0);
+    }
+
+    /**
+     * @return universe of the fund files of a client, benchmarked against the benchmark files of another
+     */
+    private Universe universe(String name, Path client, Path benchmarks) {
+        return new Universe(name, client.resolve("fund.csv").toString(), benchmarks.resolve("benchmark.csv").toString(),
+                client.resolve("fundReturnSeries.csv").toString(),
+                benchmarks.resolve("benchReturnSeries.csv").toString(), outputDir.toString(), name + ".csv");
+    }
+
+    private String report(String name) throws IOException {
+        return new String(Files.readAllBytes(outputDir.resolve(name + ".csv")), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,263 @@
+package org.fundresearch.analyser;
+
+import org.fundresearch.enums.NumericMode;
+import org.fundresearch.models.BenchmarkReturns;
+import org.fundresearch.models.ReturnSeriesStore;
+import org.fundresearch.util.TestUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.*;
+
+/**
+ * Benchmark return cache test class.<br>
+ * The cache does not parse files itself, so the loaders count their calls and return
+ * benchmark returns of a given number of rows.
+ */
+public class BenchmarkReturnCacheTest {
+
+    private Path dir;
+    private String filePath;
+    private AtomicInteger parses;
+
+    @Before
+    public void init() throws IOException {
+        dir = Files.createTempDirectory("fund-research");
+        filePath = write("benchReturnSeries.csv", "bm0,28/01/2016,1.5\n");
+        parses = new AtomicInteger();
+    }
+
+    @After
+    public void cleanUp() throws IOException {
+        TestUtil.deleteRecursively(dir);
+    }
+
+    @Test
+    public void testUnchangedFileIsParsedOnce() {
+        BenchmarkReturnCache cache = new BenchmarkReturnCache(BenchmarkReturnCache.DEFAULT_CAPACITY);
+        BenchmarkReturns first = cache.get(filePath, NumericMode.DECIMAL, loader(3));
+
+        assertSame(first, cache.get(filePath, NumericMode.DECIMAL, loader(3)));
+        assertSame(first, cache.get(dir.resolve("../" + dir.getFileName() + "/benchReturnSeries.csv").toString(),
+                NumericMode.DECIMAL, loader(3)));
+        assertEquals(1, parses.get());
+        assertEquals(2L, cache.hits());
+        assertEquals(1L, cache.misses());
+        assertEquals(1L, cache.loads());
+    }
+
+    @Test
+    public void testChangedSizeIsParsedAgain() throws IOException {
+        BenchmarkReturnCache cache = new BenchmarkReturnCache(BenchmarkReturnCache.DEFAULT_CAPACITY);
+        BenchmarkReturns first = cache.get(filePath, NumericMode.DECIMAL, loader(3));
+        FileTime lastModified = Files.getLastModifiedTime(dir.resolve("benchReturnSeries.csv"));
+        write("benchReturnSeries.csv", "bm0,28/01/2016,1.5\nbm0,28/02/2016,2.5\n");
+        Files.setLastModifiedTime(dir.resolve("benchReturnSeries.csv"), lastModified);
+
+        assertNotSame(first, cache.get(filePath, NumericMode.DECIMAL, loader(3)));
+        assertEquals(2, parses.get());
+        assertEquals(0L, cache.hits());
+    }
+
+    @Test
+    public void testChangedLastModifiedTimeIsParsedAgain() throws IOException {
+        BenchmarkReturnCache cache = new BenchmarkReturnCache(BenchmarkReturnCache.DEFAULT_CAPACITY);
+        cache.get(filePath, NumericMode.DECIMAL, loader(3));
+        // same content, touched
+        Path path = dir.resolve("benchReturnSeries.csv");
+        Files.setLastModifiedTime(path, FileTime.fromMillis(Files.getLastModifiedTime(path).toMillis() - 60000));
+
+        cache.get(filePath, NumericMode.DECIMAL, loader(3));
+        cache.get(filePath, NumericMode.DECIMAL, loader(3));
+        assertEquals(2, parses.get());
+        assertEquals(1L, cache.hits());
+    }
+
+    @Test
+    public void testRewriteOfTheSameSizeAndTimeIsFoundByTheChecksum() throws IOException {
+        BenchmarkReturnCache cache = new BenchmarkReturnCache(BenchmarkReturnCache.DEFAULT_CAPACITY);
+        BenchmarkReturns first = cache.get(filePath, NumericMode.DECIMAL, loader(3));
+        Path path = dir.resolve("benchReturnSeries.csv");
+        FileTime lastModified = Files.getLastModifiedTime(path);
+        write("benchReturnSeries.csv", "bm0,28/01/2016,2.5\n");
+        Files.setLastModifiedTime(path, lastModified);
+
+        BenchmarkReturns second = cache.get(filePath, NumericMode.DECIMAL, loader(3));
+        assertNotSame(first, second);
+        assertSame(second, cache.get(filePath, NumericMode.DECIMAL, loader(3)));
+        assertEquals(2, parses.get());
+    }
+
+    @Test
+    public void testNumericModeIsPartOfTheKey() {
+        BenchmarkReturnCache cache = new BenchmarkReturnCache(BenchmarkReturnCache.DEFAULT_CAPACITY);
+        BenchmarkReturns decimal = cache.get(filePath, NumericMode.DECIMAL, loader(3));
+        BenchmarkReturns fixedPoint = cache.get(filePath, NumericMode.FIXED_POINT, loader(3));
+
+        assertNotSame(decimal, fixedPoint);
+        assertSame(decimal, cache.get(filePath, NumericMode.DECIMAL, loader(3)));
+        assertSame(fixedPoint, cache.get(filePath, NumericMode.FIXED_POINT, loader(3)));
+        assertEquals(2L, cache.loads());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEntriesAreEvicted() throws IOException {
+        long weight = BenchmarkReturnCache.weightOf(returns(10));
+        BenchmarkReturnCache cache = new BenchmarkReturnCache(2 * weight);
+        String a = write("a.csv", "a"), b = write("b.csv", "b"), c = write("c.csv", "c");
+        cache.get(a, NumericMode.DECIMAL, loader(10));
+        cache.get(b, NumericMode.DECIMAL, loader(10));
+        // a is now more recently used than b
+        cache.get(a, NumericMode.DECIMAL, loader(10));
+
+        cache.get(c, NumericMode.DECIMAL, loader(10));
+        assertEquals(1L, cache.evictions());
+        assertEquals(2 * weight, cache.size());
+        cache.get(a, NumericMode.DECIMAL, loader(10));
+        cache.get(c, NumericMode.DECIMAL, loader(10));
+        assertEquals(3, parses.get());
+        cache.get(b, NumericMode.DECIMAL, loader(10));
+        assertEquals(4, parses.get());
+        assertEquals(2L, cache.evictions());
+    }
+
+    @Test
+    public void testEntriesLargerThanTheCapacityAreNotCached() throws IOException {
+        BenchmarkReturnCache cache = new BenchmarkReturnCache(BenchmarkReturnCache.weightOf(returns(10)));
+        String small = write("small.csv", "small");
+        cache.get(small, NumericMode.DECIMAL, loader(10));
+
+        cache.get(filePath, NumericMode.DECIMAL, loader(11));
+        cache.get(filePath, NumericMode.DECIMAL, loader(11));
+        assertEquals(3, parses.get());
+        assertEquals(0L, cache.evictions());
+        assertEquals(BenchmarkReturnCache.weightOf(returns(10)), cache.size());
+        cache.get(small, NumericMode.DECIMAL, loader(10));
+        assertEquals(1L, cache.hits());
+    }
+
+    @Test
+    public void testWeightGrowsWithRowsAndCodes() {
+        assertTrue(BenchmarkReturnCache.weightOf(returns(11)) > BenchmarkReturnCache.weightOf(returns(10)));
+        ReturnSeriesStore fixedPoint = new ReturnSeriesStore(NumericMode.FIXED_POINT);
+        for (int row = 0; row < 10; row++) fixedPoint.add("bm" + row, 20160128, row);
+        assertTrue(BenchmarkReturnCache.weightOf(new BenchmarkReturns(fixedPoint))
+                < BenchmarkReturnCache.weightOf(returns(10)));
+    }
+
+    @Test
+    public void testConcurrentRequestsWaitForOneParse() throws Exception {
+        BenchmarkReturnCache cache = new BenchmarkReturnCache(BenchmarkReturnCache.DEFAULT_CAPACITY);
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<BenchmarkReturns>> gets = new ArrayList<>();
+            for (int i = 0; i < 8; i++)
+                gets.add(executor.submit(() -> {
+                    start.await();
+                    return cache.get(filePath, NumericMode.DECIMAL, () -> {
+                        try {
+                            Thread.sleep(100);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        return loader(3).get();
+                    });
+                }));
+            start.countDown();
+
+            BenchmarkReturns first = gets.get(0).get();
+            for (Future<BenchmarkReturns> get : gets) assertSame(first, get.get());
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, parses.get());
+        assertEquals(1L, cache.loads());
+        assertEquals(8L, cache.hits() + cache.misses());
+    }
+
+    @Test
+    public void testFailedParseIsNotCached() {
+        BenchmarkReturnCache cache = new BenchmarkReturnCache(BenchmarkReturnCache.DEFAULT_CAPACITY);
+        try {
+            cache.get(filePath, NumericMode.DECIMAL, () -> {
+                throw new IllegalArgumentException("Unable to parse");
+            });
+            fail("Expected the parse failure");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Unable to parse", e.getMessage());
+        }
+
+        cache.get(filePath, NumericMode.DECIMAL, loader(3));
+        cache.get(filePath, NumericMode.DECIMAL, loader(3));
+        assertEquals(2L, cache.loads());
+        assertEquals(1, parses.get());
+    }
+
+    @Test
+    public void testMissingFileIsNotCached() {
+        BenchmarkReturnCache cache = new BenchmarkReturnCache(BenchmarkReturnCache.DEFAULT_CAPACITY);
+        String missing = dir.resolve("missing.csv").toString();
+        cache.get(missing, NumericMode.DECIMAL, loader(3));
+        cache.get(missing, NumericMode.DECIMAL, loader(3));
+
+        assertEquals(2, parses.get());
+        assertEquals(0L, cache.hits() + cache.misses());
+        assertEquals(0L, cache.size());
+    }
+
+    @Test
+    public void testClearDropsEveryEntry() {
+        BenchmarkReturnCache cache = new BenchmarkReturnCache(BenchmarkReturnCache.DEFAULT_CAPACITY);
+        cache.get(filePath, NumericMode.DECIMAL, loader(3));
+        cache.clear();
+
+        assertEquals(0L, cache.size());
+        cache.get(filePath, NumericMode.DECIMAL, loader(3));
+        assertEquals(2, parses.get());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCapacity() {
+        new BenchmarkReturnCache(-1);
+    }
+
+    /**
+     * @return a loader counting its calls, of benchmark returns of one month and as many benchmarks as rows
+     */
+    private Supplier<BenchmarkReturns> loader(int rows) {
+        return () -> {
+            parses.incrementAndGet();
+            return returns(rows);
+        };
+    }
+
+    private static BenchmarkReturns returns(int rows) {
+        ReturnSeriesStore store = new ReturnSeriesStore(NumericMode.DECIMAL);
+        for (int row = 0; row < rows; row++)
+            store.add("bm" + row, 20160128, BigDecimal.valueOf(row, 2));
+        return new BenchmarkReturns(store);
+    }
+
+    private String write(String fileName, String text) throws IOException {
+        Path path = dir.resolve(fileName);
+        Files.write(path, text.getBytes(StandardCharsets.UTF_8));
+        return path.toString();
+    }
+}
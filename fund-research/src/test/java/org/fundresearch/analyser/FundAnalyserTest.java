@@ -1,11 +1,46 @@
 package org.fundresearch.analyser;
 
+import org.fundresearch.enums.NumericMode;
+import org.fundresearch.enums.Partitioning;
+import org.fundresearch.models.Performance;
 import org.fundresearch.util.AppUtil;
+import org.fundresearch.util.BinaryReportReader;
+import org.fundresearch.util.DateCodec;
+import org.fundresearch.util.ReportWriter;
+import org.fundresearch.util.SnapshotFile;
 import org.fundresearch.util.TestUtil;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import static org.fundresearch.analyser.TestUniverse.REPORT_FILE;
+import static org.fundresearch.analyser.TestUniverse.newAnalyser;
+import static org.fundresearch.analyser.TestUniverse.readReport;
+import static org.fundresearch.analyser.TestUniverse.runReport;
+import static org.fundresearch.analyser.TestUniverse.writeUniverse;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
 /**
  * Fund and Benchmark data analyser test class.
  */
@@ -34,4 +69,605 @@ public class FundAnalyserTest {
         fundAnalyser.generateMonthlyOutPerformance(testDataDir, "monthlyOutPerformance.csv");
     }
 
+    @Test
+    public void testFixedPointReportIsIdentical() throws IOException {
+        AnalyserOptions options = new AnalyserOptions();
+        options.setNumericMode(NumericMode.FIXED_POINT);
+
+        Path inputDir = Paths.get(testDataDir);
+        assertEquals(runReport(inputDir, new AnalyserOptions()), runReport(inputDir, options));
+    }
+
+    @Test
+    public void testParallelRankingReportIsIdentical() throws IOException {
+        AnalyserOptions options = new AnalyserOptions();
+        options.setRankingParallelism(4);
+
+        Path inputDir = Paths.get(testDataDir);
+        assertEquals(runReport(inputDir, new AnalyserOptions()), runReport(inputDir, options));
+    }
+
+    @Test
+    public void testFundsAreJoinedWithTheirOwnBenchmark() throws IOException {
+        String[] lines = runReport(Paths.get(testDataDir), new AnalyserOptions()).split("\n");
+
+        // 2 header lines, then only returns whose date has a return of the fund's benchmark
+        assertEquals(12, lines.length);
+        assertEquals(String.format("%1$15s %2$15s %3$15s %4$20s %5$15s %6$15s",
+                "fund2name", "30/11/2016", "1.45", "Out Performed", "-0.01", "1"), lines[2]);
+        assertEquals(String.format("%1$15s %2$15s %3$15s %4$20s %5$15s %6$15s",
+                "fund1name", "31/07/2015", "-0.74", " ", "-1.47", "1"), lines[11]);
+    }
+
+    @Test
+    public void testIncrementalAppendMatchesFullRun() throws IOException {
+        Path inputDir = Files.createTempDirectory("fund-research");
+        Path outputDir = Files.createTempDirectory("fund-research");
+        try {
+            AnalyserOptions options = new AnalyserOptions();
+            options.setIncremental(true);
+            FundAnalyser analyser = newAnalyser(inputDir, options);
+            String reportPath = outputDir.resolve(REPORT_FILE).toString();
+
+            writeUniverse(inputDir, 30, 3, 2, 4);
+            // no state yet
+            assertFalse(analyser.appendMonthlyOutPerformance(reportPath));
+            analyser.generateMonthlyOutPerformance(outputDir.toString(), REPORT_FILE);
+
+            // a newer and an older month arrive
+            writeUniverse(inputDir, 30, 3, 5, 5);
+            writeUniverse(inputDir, 30, 3, 1, 1);
+            assertTrue(analyser.appendMonthlyOutPerformance(reportPath));
+            assertEquals(runReport(inputDir, new AnalyserOptions()), readReport(outputDir));
+
+            // nothing new
+            assertTrue(analyser.appendMonthlyOutPerformance(reportPath));
+            assertEquals(runReport(inputDir, new AnalyserOptions()), readReport(outputDir));
+
+            // a month already reported gets more rows, so it needs a full run
+            writeUniverse(inputDir, 30, 3, 5, 5);
+            assertFalse(analyser.appendMonthlyOutPerformance(reportPath));
+            analyser.generateMonthlyOutPerformance(outputDir.toString(), REPORT_FILE);
+            assertEquals(runReport(inputDir, new AnalyserOptions()), readReport(outputDir));
+        } finally {
+            TestUtil.deleteRecursively(inputDir);
+            TestUtil.deleteRecursively(outputDir);
+        }
+    }
+
+    @Test
+    public void testIncrementalAppendRejectsReportEditedToTheSameLength() throws IOException {
+        Path inputDir = Files.createTempDirectory("fund-research");
+        Path outputDir = Files.createTempDirectory("fund-research");
+        try {
+            AnalyserOptions options = new AnalyserOptions();
+            options.setIncremental(true);
+            FundAnalyser analyser = newAnalyser(inputDir, options);
+            String reportPath = outputDir.resolve(REPORT_FILE).toString();
+            writeUniverse(inputDir, 30, 3, 1, 3);
+            analyser.generateMonthlyOutPerformance(outputDir.toString(), REPORT_FILE);
+
+            // the last digit of the last line changed, the length is unchanged
+            byte[] bytes = Files.readAllBytes(outputDir.resolve(REPORT_FILE));
+            bytes[bytes.length - 2] = (byte) (bytes[bytes.length - 2] == '9' ? '8' : '9');
+            Files.write(outputDir.resolve(REPORT_FILE), bytes);
+
+            writeUniverse(inputDir, 30, 3, 4, 4);
+            assertFalse(analyser.appendMonthlyOutPerformance(reportPath));
+            // the report is left untouched for a full run
+            assertEquals(new String(bytes, StandardCharsets.UTF_8), readReport(outputDir));
+            analyser.generateMonthlyOutPerformance(outputDir.toString(), REPORT_FILE);
+            assertEquals(runReport(inputDir, new AnalyserOptions()), readReport(outputDir));
+        } finally {
+            TestUtil.deleteRecursively(inputDir);
+            TestUtil.deleteRecursively(outputDir);
+        }
+    }
+
+    @Test
+    public void testSnapshotReportIsIdentical() throws IOException {
+        Path inputDir = Files.createTempDirectory("fund-research");
+        try {
+            writeUniverse(inputDir, 30, 3, 4);
+            for (NumericMode numericMode : NumericMode.values()) {
+                AnalyserOptions options = new AnalyserOptions();
+                options.setNumericMode(numericMode);
+                String expected = runReport(inputDir, options);
+
+                options.setSnapshots(true);
+                // parses and writes the snapshots, then loads them
+                assertEquals(expected, runReport(inputDir, options));
+                assertTrue(Files.exists(inputDir.resolve("fund.csv.snapshot")));
+                assertTrue(Files.exists(inputDir.resolve("fundReturnSeries.csv.snapshot")));
+                assertTrue(Files.exists(inputDir.resolve("benchReturnSeries.csv.snapshot")));
+                assertEquals(expected, runReport(inputDir, options));
+            }
+        } finally {
+            TestUtil.deleteRecursively(inputDir);
+        }
+    }
+
+    @Test
+    public void testParallelParsingReportIsIdentical() throws IOException {
+        Path inputDir = Files.createTempDirectory("fund-research");
+        try {
+            // about 2MB of fund returns, so the file is parsed in more than one chunk
+            writeUniverse(inputDir, 20000, 3, 4);
+            for (NumericMode numericMode : NumericMode.values()) {
+                AnalyserOptions options = new AnalyserOptions();
+                options.setNumericMode(numericMode);
+                String expected = runReport(inputDir, options);
+
+                options.setParseParallelism(4);
+                assertEquals(expected, runReport(inputDir, options));
+            }
+        } finally {
+            TestUtil.deleteRecursively(inputDir);
+        }
+    }
+
+    @Test
+    public void testRollingReportMatchesMonthlyExcess() throws IOException {
+        Path inputDir = Files.createTempDirectory("fund-research");
+        Path outputDir = Files.createTempDirectory("fund-research");
+        try {
+            writeUniverse(inputDir, 25, 3, 12);
+            // holes, so some funds miss windows
+            Path fundReturns = inputDir.resolve("fundReturnSeries.csv");
+            List<String> rows = new ArrayList<>(Files.readAllLines(fundReturns, StandardCharsets.UTF_8));
+            rows.removeIf(row -> row.startsWith("fund3,28/05/") || row.startsWith("fund7,28/12/")
+                    || row.startsWith("fund8,28/01/"));
+            Files.write(fundReturns, rows, StandardCharsets.UTF_8);
+
+            String rolling = null;
+            for (NumericMode numericMode : NumericMode.values()) {
+                AnalyserOptions options = new AnalyserOptions();
+                options.setNumericMode(numericMode);
+                options.setRollingWindows(1, 3, 6, 12);
+                String monthly = runReport(inputDir, options);
+
+                AnalysisMetrics metrics =
+                        newAnalyser(inputDir, options).generateRollingOutPerformance(outputDir.toString(), "rolling.csv");
+                String report = new String(Files.readAllBytes(outputDir.resolve("rolling.csv")), StandardCharsets.UTF_8);
+
+                assertTrue(report.split("\n").length > 500);
+                // header of 2 lines
+                assertEquals(report.split("\n").length - 2L, metrics.getRowsOut());
+                assertEquals(Files.size(outputDir.resolve("rolling.csv")), metrics.getBytesWritten());
+                assertEquals(25L * 12 - 3, metrics.getRowsIn(AnalysisMetrics.Input.FUND_RETURN));
+                assertTrue(metrics.getWallNanos() > 0);
+                assertEquals(expectedRollingReport(monthly, options.getRollingWindows()), report);
+                if (rolling != null) assertEquals(rolling, report);
+                rolling = report;
+            }
+        } finally {
+            TestUtil.deleteRecursively(inputDir);
+            TestUtil.deleteRecursively(outputDir);
+        }
+    }
+
+    @Test
+    public void testPipelinedReportIsIdentical() throws IOException {
+        Path inputDir = Files.createTempDirectory("fund-research");
+        Path outputDir = Files.createTempDirectory("fund-research");
+        try {
+            writeUniverse(inputDir, 300, 4, 2, 12);
+            for (NumericMode numericMode : NumericMode.values()) {
+                for (int topN : new int[]{0, 5}) {
+                    AnalyserOptions options = new AnalyserOptions();
+                    options.setNumericMode(numericMode);
+                    options.setTopN(topN);
+                    String expected = runReport(inputDir, options);
+
+                    options.setPipelined(true);
+                    assertEquals(expected, runReport(inputDir, options));
+                }
+            }
+
+            // a pipelined run saves the state of an incremental run
+            AnalyserOptions options = new AnalyserOptions();
+            options.setIncremental(true);
+            options.setPipelined(true);
+            newAnalyser(inputDir, options).generateMonthlyOutPerformance(outputDir.toString(), REPORT_FILE);
+            writeUniverse(inputDir, 300, 4, 1, 1);
+            assertTrue(newAnalyser(inputDir, options).appendMonthlyOutPerformance(
+                    outputDir.resolve(REPORT_FILE).toString()));
+            assertEquals(runReport(inputDir, new AnalyserOptions()), readReport(outputDir));
+        } finally {
+            TestUtil.deleteRecursively(inputDir);
+            TestUtil.deleteRecursively(outputDir);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPipelinedFailureIsRethrown() throws IOException {
+        Path inputDir = Files.createTempDirectory("fund-research");
+        try {
+            writeUniverse(inputDir, 30, 3, 4);
+            Files.write(inputDir.resolve("fundReturnSeries.csv"), "fund1,31/June/2016,1.5\n".getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.APPEND);
+
+            AnalyserOptions options = new AnalyserOptions();
+            options.setPipelined(true);
+            runReport(inputDir, options);
+        } finally {
+            TestUtil.deleteRecursively(inputDir);
+        }
+    }
+
+    @Test
+    public void testMetricsCountRowsAndDrops() throws IOException {
+        Path inputDir = Files.createTempDirectory("fund-research");
+        Path outputDir = Files.createTempDirectory("fund-research");
+        try {
+            writeUniverse(inputDir, 30, 3, 4);
+            Files.write(inputDir.resolve("fund.csv"), "broken\n".getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.APPEND);
+            Files.write(inputDir.resolve("fundReturnSeries.csv"),
+                    "fund1,28/01/2016\nghost,28/01/2016,1.5\nfund1,28/12/2016,1.5\n".getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.APPEND);
+            Files.write(inputDir.resolve("benchReturnSeries.csv"), "bm0,28/01/2016\n".getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.APPEND);
+
+            AnalyserOptions pipelined = new AnalyserOptions();
+            pipelined.setPipelined(true);
+            AnalyserOptions parallel = new AnalyserOptions();
+            parallel.setParseParallelism(4);
+            AnalyserOptions topN = new AnalyserOptions();
+            topN.setTopN(5);
+
+            for (AnalyserOptions options : new AnalyserOptions[]{new AnalyserOptions(), pipelined, parallel, topN}) {
+                AnalysisMetrics metrics =
+                        newAnalyser(inputDir, options).generateMonthlyOutPerformance(outputDir.toString(), REPORT_FILE);
+                String message = options.toString();
+
+                assertEquals(message, 31L, metrics.getRowsIn(AnalysisMetrics.Input.FUND));
+                assertEquals(message, 3L, metrics.getRowsIn(AnalysisMetrics.Input.BENCHMARK));
+                assertEquals(message, 123L, metrics.getRowsIn(AnalysisMetrics.Input.FUND_RETURN));
+                assertEquals(message, 13L, metrics.getRowsIn(AnalysisMetrics.Input.BENCHMARK_RETURN));
+                assertEquals(message, Files.size(inputDir.resolve("fundReturnSeries.csv")),
+                        metrics.getBytesRead(AnalysisMetrics.Input.FUND_RETURN));
+
+                assertEquals(message, 1L, metrics.getDropped(AnalysisMetrics.DropReason.MALFORMED_FUND));
+                assertEquals(message, 0L, metrics.getDropped(AnalysisMetrics.DropReason.MALFORMED_BENCHMARK));
+                assertEquals(message, 1L, metrics.getDropped(AnalysisMetrics.DropReason.MALFORMED_FUND_RETURN));
+                assertEquals(message, 1L, metrics.getDropped(AnalysisMetrics.DropReason.MALFORMED_BENCHMARK_RETURN));
+                assertEquals(message, 1L, metrics.getDropped(AnalysisMetrics.DropReason.UNKNOWN_FUND));
+                assertEquals(message, 1L, metrics.getDropped(AnalysisMetrics.DropReason.MISSING_BENCHMARK_RETURN));
+
+                long rowsOut = options.getTopN() > 0 ? 40L : 120L;
+                assertEquals(message, 120L - rowsOut, metrics.getDropped(AnalysisMetrics.DropReason.BELOW_TOP_N));
+                assertEquals(message, rowsOut, metrics.getRowsOut());
+                assertEquals(message, Files.size(outputDir.resolve(REPORT_FILE)), metrics.getBytesWritten());
+
+                assertEquals(message, 30L, metrics.getPeak(AnalysisMetrics.Peak.FUNDS));
+                assertEquals(message, 122L, metrics.getPeak(AnalysisMetrics.Peak.FUND_RETURN_ROWS));
+                assertEquals(message, 12L, metrics.getPeak(AnalysisMetrics.Peak.BENCHMARK_RETURN_ROWS));
+                assertTrue(message, metrics.getPeak(AnalysisMetrics.Peak.JOINED_ROWS) > 0);
+                assertTrue(message, metrics.getPeak(AnalysisMetrics.Peak.JOINED_ROWS) <= rowsOut);
+
+                assertTrue(message, metrics.getWallNanos() > 0);
+                assertTrue(message, metrics.getNanos(AnalysisMetrics.Stage.PARSE) > 0);
+                assertTrue(message, metrics.toJson().startsWith("{\"wallNanos\":" + metrics.getWallNanos() + ","));
+                assertTrue(message, metrics.toJson().contains("\"droppedRows\":{\"MALFORMED_FUND\":1,"));
+            }
+        } finally {
+            TestUtil.deleteRecursively(inputDir);
+            TestUtil.deleteRecursively(outputDir);
+        }
+    }
+
+    @Test
+    public void testBinaryReportMatchesReport() throws IOException {
+        Path inputDir = Files.createTempDirectory("fund-research");
+        Path outputDir = Files.createTempDirectory("fund-research");
+        try {
+            writeUniverse(inputDir, 60, 3, 6);
+
+            for (NumericMode numericMode : NumericMode.values()) {
+                for (int topN : new int[]{0, 5}) {
+                    AnalyserOptions options = new AnalyserOptions();
+                    options.setNumericMode(numericMode);
+                    options.setTopN(topN);
+                    String report = runReport(inputDir, options);
+
+                    AnalysisMetrics metrics = newAnalyser(inputDir, options)
+                            .generateBinaryOutPerformance(outputDir.toString(), null);
+                    Path binaryPath = outputDir.resolve("monthlyOutPerformance.frb");
+                    assertEquals(Files.size(binaryPath), metrics.getBytesWritten());
+                    assertTrue(Files.size(binaryPath) * 2 < report.length());
+
+                    try (BinaryReportReader reader = new BinaryReportReader(binaryPath.toString())) {
+                        assertEquals(report.split("\n").length - 2L, reader.size());
+                        assertEquals(6, reader.months().size());
+
+                        ByteArrayOutputStream text = new ByteArrayOutputStream();
+                        try (ReportWriter writer = new ReportWriter(Channels.newChannel(text), 1024,
+                                ReportWriter.Layout.MONTHLY, true)) {
+                            for (Date month : reader.months()) writer.write(reader.read(month));
+                        }
+                        assertEquals(report, new String(text.toByteArray(), StandardCharsets.UTF_8));
+
+                        // one month alone, from the middle of the file
+                        Date march = DateCodec.toDate(DateCodec.key("28/03/2016"));
+                        List<Performance> performances = reader.read(march);
+                        assertEquals(topN == 0 ? 60 : 10, performances.size());
+                        for (Performance performance : performances) assertEquals(march, performance.getDate());
+                        assertEquals(0, reader.read(DateCodec.toDate(DateCodec.key("28/12/2016"))).size());
+                    }
+                }
+            }
+
+            try {
+                new BinaryReportReader(inputDir.resolve("fund.csv").toString());
+                fail("A csv file read as a binary report");
+            } catch (IllegalArgumentException e) {
+                assertTrue(e.getMessage().startsWith("Not a binary report"));
+            }
+        } finally {
+            TestUtil.deleteRecursively(inputDir);
+            TestUtil.deleteRecursively(outputDir);
+        }
+    }
+
+    @Test
+    public void testPartitionedReportMatchesReport() throws IOException {
+        Path inputDir = Files.createTempDirectory("fund-research");
+        Path outputDir = Files.createTempDirectory("fund-research");
+        try {
+            writeUniverse(inputDir, 40, 3, 5);
+            // and a month of the year before
+            StringBuilder fundReturns = new StringBuilder(), benchmarkReturns = new StringBuilder();
+            for (int f = 0; f < 40; f++)
+                fundReturns.append("fund").append(f).append(",28/12/2015,").append(f % 5).append('\n');
+            for (int b = 0; b < 3; b++) benchmarkReturns.append("bm").append(b).append(",28/12/2015,1.5\n");
+            Files.write(inputDir.resolve("fundReturnSeries.csv"),
+                    fundReturns.toString().getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+            Files.write(inputDir.resolve("benchReturnSeries.csv"),
+                    benchmarkReturns.toString().getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+            String report = runReport(inputDir, new AnalyserOptions());
+            String header = report.substring(0, report.indexOf('\n', report.indexOf('\n') + 1) + 1);
+
+            for (Partitioning partitioning : Partitioning.values()) {
+                for (int writeParallelism : new int[]{1, 4}) {
+                    AnalyserOptions options = new AnalyserOptions();
+                    options.setWriteParallelism(writeParallelism);
+                    newAnalyser(inputDir, options)
+                            .generatePartitionedOutPerformance(outputDir.toString(), "report.csv", partitioning);
+
+                    List<String> manifest = Files.readAllLines(outputDir.resolve("report.manifest.csv"));
+                    assertEquals(PartitionWriter.MANIFEST_HEADER, manifest.get(0));
+                    assertEquals(partitioning == Partitioning.MONTH ? 7 : 3, manifest.size());
+                    if (partitioning == Partitioning.MONTH)
+                        assertEquals("report-2016-05.csv,28/05/2016,28/05/2016,40," + (header.length() + 40 * 101),
+                                manifest.get(1));
+                    else
+                        assertEquals("report-2015.csv,28/12/2015,28/12/2015,40," + (header.length() + 40 * 101),
+                                manifest.get(2));
+
+                    // partitions in manifest order are the report
+                    StringBuilder rows = new StringBuilder(header);
+                    for (String partition : manifest.subList(1, manifest.size())) {
+                        String text = new String(Files.readAllBytes(outputDir.resolve(partition.split(",")[0])),
+                                StandardCharsets.UTF_8);
+                        assertTrue(text.startsWith(header));
+                        rows.append(text.substring(header.length()));
+                    }
+                    assertEquals(report, rows.toString());
+                }
+            }
+        } finally {
+            TestUtil.deleteRecursively(inputDir);
+            TestUtil.deleteRecursively(outputDir);
+        }
+    }
+
+    @Test
+    public void testBenchmarkReturnCacheIsUsedByTheAnalyser() throws IOException {
+        Path inputDir = Paths.get(testDataDir);
+        String expected = runReport(inputDir, new AnalyserOptions());
+
+        AnalyserOptions options = new AnalyserOptions();
+        BenchmarkReturnCache cache = new BenchmarkReturnCache(BenchmarkReturnCache.DEFAULT_CAPACITY);
+        options.setBenchmarkReturnCache(cache);
+        assertEquals(expected, runReport(inputDir, options));
+        assertEquals(expected, runReport(inputDir, options));
+        assertEquals(1L, cache.loads());
+        assertEquals(1L, cache.hits());
+    }
+
+    @Test
+    public void testDateRangeSkipsRowsOutsideTheRange() throws IOException {
+        Path inputDir = Files.createTempDirectory("fund-research");
+        Path rangeDir = Files.createTempDirectory("fund-research");
+        Path outputDir = Files.createTempDirectory("fund-research");
+        try {
+            writeUniverse(inputDir, 20, 3, 12);
+            // the months of the range only
+            writeUniverse(rangeDir, 20, 3, 4, 9);
+            Date from = DateCodec.toDate(DateCodec.key("01/04/2016"));
+            Date to = DateCodec.toDate(DateCodec.key("30/09/2016"));
+
+            for (NumericMode numericMode : NumericMode.values()) {
+                AnalyserOptions options = new AnalyserOptions();
+                options.setNumericMode(numericMode);
+                String expected = runReport(rangeDir, options);
+
+                options.setDateRange(from, to);
+                assertEquals(from, options.getFromDate());
+                assertEquals(to, options.getToDate());
+                AnalysisMetrics metrics = newAnalyser(inputDir, options)
+                        .generateMonthlyOutPerformance(outputDir.toString(), REPORT_FILE);
+                assertEquals(expected, readReport(outputDir));
+                assertEquals(20L * 12, metrics.getRowsIn(AnalysisMetrics.Input.FUND_RETURN));
+                assertEquals(3L * 12, metrics.getRowsIn(AnalysisMetrics.Input.BENCHMARK_RETURN));
+                assertEquals(23L * 6, metrics.getDropped(AnalysisMetrics.DropReason.OUT_OF_DATE_RANGE));
+                assertEquals(20L * 6, metrics.getPeak(AnalysisMetrics.Peak.FUND_RETURN_ROWS));
+
+                // parallel, pipelined and snapshot runs skip the same rows
+                options.setParseParallelism(2);
+                options.setPipelined(true);
+                options.setSnapshots(true);
+                assertEquals(expected, runReport(inputDir, options));
+                assertFalse(Files.exists(SnapshotFile.pathOf(inputDir.resolve("fundReturnSeries.csv").toString())));
+                assertFalse(Files.exists(SnapshotFile.pathOf(inputDir.resolve("benchReturnSeries.csv").toString())));
+
+                // benchmark returns of a cache are parsed whole, the report is the same
+                options = new AnalyserOptions();
+                options.setNumericMode(numericMode);
+                options.setDateRange(from, to);
+                options.setBenchmarkReturnCache(new BenchmarkReturnCache(BenchmarkReturnCache.DEFAULT_CAPACITY));
+                metrics = newAnalyser(inputDir, options).generateMonthlyOutPerformance(outputDir.toString(), REPORT_FILE);
+                assertEquals(expected, readReport(outputDir));
+                assertEquals(20L * 6, metrics.getDropped(AnalysisMetrics.DropReason.OUT_OF_DATE_RANGE));
+            }
+
+            // open ended ranges
+            int fullLines = runReport(inputDir, new AnalyserOptions()).split("\n").length;
+            AnalyserOptions options = new AnalyserOptions();
+            options.setDateRange(null, to);
+            assertEquals(null, options.getFromDate());
+            assertEquals(fullLines - 20 * 3, runReport(inputDir, options).split("\n").length);
+            options.setDateRange(from, null);
+            assertEquals(null, options.getToDate());
+            assertEquals(fullLines - 20 * 3, runReport(inputDir, options).split("\n").length);
+
+            try {
+                options.setDateRange(to, from);
+                fail("Expected an invalid date range");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+
+            options.setIncremental(true);
+            try {
+                runReport(inputDir, options);
+                fail("Expected a date range in incremental mode to be rejected");
+            } catch (IllegalStateException e) {
+                // expected
+            }
+        } finally {
+            TestUtil.deleteRecursively(inputDir);
+            TestUtil.deleteRecursively(rangeDir);
+            TestUtil.deleteRecursively(outputDir);
+        }
+    }
+
+    @Test
+    public void testTopNReportKeepsBestAndWorstRanks() throws IOException {
+        Path inputDir = Files.createTempDirectory("fund-research");
+        try {
+            writeUniverse(inputDir, 60, 3, 6);
+            for (NumericMode numericMode : NumericMode.values()) {
+                AnalyserOptions options = new AnalyserOptions();
+                options.setNumericMode(numericMode);
+                String[] full = runReport(inputDir, options).split("\n");
+
+                for (int topN : new int[]{1, 5, 40}) {
+                    options.setTopN(topN);
+                    assertEquals(numericMode + " top " + topN, keepTopAndBottom(full, topN),
+                            runReport(inputDir, options));
+                }
+                options.setTopN(0);
+            }
+        } finally {
+            TestUtil.deleteRecursively(inputDir);
+        }
+    }
+
+    @Test
+    public void testTopNRanksReturnsEqualOnceRoundedLikeTheFullReport() throws IOException {
+        Path inputDir = Files.createTempDirectory("fund-research");
+        try {
+            // fundA and fundB both return 1.23 once rounded, fundA comes first in the file
+            Files.write(inputDir.resolve("fund.csv"),
+                    "F1,fundA,bm0\nF2,fundB,bm0\nF3,fundC,bm0\n".getBytes(StandardCharsets.UTF_8));
+            Files.write(inputDir.resolve("benchmark.csv"), "bm0,bench0name\n".getBytes(StandardCharsets.UTF_8));
+            Files.write(inputDir.resolve("fundReturnSeries.csv"),
+                    "F1,31/07/2016,1.231\nF2,31/07/2016,1.234\nF3,31/07/2016,0.5\n".getBytes(StandardCharsets.UTF_8));
+            Files.write(inputDir.resolve("benchReturnSeries.csv"),
+                    "bm0,31/07/2016,1.0\n".getBytes(StandardCharsets.UTF_8));
+            for (NumericMode numericMode : NumericMode.values()) {
+                AnalyserOptions options = new AnalyserOptions();
+                options.setNumericMode(numericMode);
+                String[] full = runReport(inputDir, options).split("\n");
+                assertTrue(full[2].startsWith(String.format("%15s", "fundA")));
+
+                options.setTopN(1);
+                assertEquals(numericMode.name(), keepTopAndBottom(full, 1), runReport(inputDir, options));
+            }
+        } finally {
+            TestUtil.deleteRecursively(inputDir);
+        }
+    }
+
+    /**
+     * Lines of a full report whose rank is within the best or worst N of their month.
+     */
+    private static String keepTopAndBottom(String[] report, int topN) {
+        Map<String, Integer> monthSizes = new HashMap<>();
+        for (int i = 2; i < report.length; i++) monthSizes.merge(report[i].substring(16, 31), 1, Integer::sum);
+
+        StringBuilder sb = new StringBuilder(report[0]).append('\n').append(report[1]).append('\n');
+        for (int i = 2; i < report.length; i++) {
+            int rank = Integer.parseInt(report[i].substring(report[i].lastIndexOf(' ') + 1));
+            if (rank <= topN || rank > monthSizes.get(report[i].substring(16, 31)) - topN)
+                sb.append(report[i]).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Rolling report recomputed from scratch for every month and window, from the
+     * excess column of the monthly report. Funds of writeUniverse are in fundXname order.
+     */
+    private static String expectedRollingReport(String monthlyReport, int[] windows) {
+        String format = "%15s %15s %10s %15s %15s %15s %15s\n";
+        SortedMap<Date, Map<Integer, Long>> excessByMonth = new TreeMap<>(Comparator.reverseOrder());
+        String[] lines = monthlyReport.split("\n");
+        for (int i = 2; i < lines.length; i++) {
+            String name = lines[i].substring(0, 15).trim();
+            int fund = Integer.parseInt(name.substring(4, name.length() - 4));
+            long excess = new BigDecimal(lines[i].substring(32, 47).trim()).movePointRight(2).longValueExact();
+            excessByMonth.computeIfAbsent(AppUtil.toDate(lines[i].substring(16, 31).trim()), date -> new TreeMap<>())
+                    .put(fund, excess);
+        }
+
+        StringBuilder report = new StringBuilder()
+                .append(String.format(format, "FundName", "Date", "Window", "Excess", "OutPerformed",
+                        "UnderPerformed", "Rank"))
+                .append(String.format(format, "------------", "-----------", "------", "----------", "------------",
+                        "--------------", "--------"));
+        List<Date> months = new ArrayList<>(excessByMonth.keySet());
+        for (int m = 0; m < months.size(); m++) {
+            for (int window : windows) {
+                if (m + window > months.size()) continue;
+
+                List<long[]> ranked = new ArrayList<>();
+                for (int fund : excessByMonth.get(months.get(m)).keySet()) {
+                    long sum = 0, out = 0, under = 0;
+                    int present = 0;
+                    for (int w = m; w < m + window; w++) {
+                        Long excess = excessByMonth.get(months.get(w)).get(fund);
+                        if (excess == null) continue;
+                        present++;
+                        sum += excess;
+                        if (excess / 100 >= 1) out++;
+                        if (excess / 100 <= -1) under++;
+                    }
+                    if (present == window) ranked.add(new long[]{fund, sum, out, under});
+                }
+                ranked.sort((a, b) -> a[1] != b[1] ? Long.compare(b[1], a[1]) : Long.compare(a[0], b[0]));
+
+                for (int r = 0; r < ranked.size(); r++) {
+                    long[] fund = ranked.get(r);
+                    report.append(String.format(format, "fund" + fund[0] + "name", AppUtil.getDefaultFormattedDate(months.get(m)),
+                            window, BigDecimal.valueOf(fund[1], 2), fund[2], fund[3], r + 1));
+                }
+            }
+        }
+        return report.toString();
+    }
+
 }
@@ -0,0 +1,89 @@
+package org.fundresearch.analyser;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Month block cache test class.
+ */
+public class MonthBlockCacheTest {
+
+    private static final int CHARGE = 100 + MonthBlockCache.ENTRY_OVERHEAD;
+
+    @Test
+    public void testLeastRecentlyUsedBlocksAreEvicted() {
+        MonthBlockCache cache = new MonthBlockCache(3 * CHARGE);
+        cache.put("a", new byte[100]);
+        cache.put("b", new byte[100]);
+        cache.put("c", new byte[100]);
+        // a is now more recently used than b
+        assertNotNull(cache.get("a"));
+
+        cache.put("d", new byte[100]);
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("a"));
+        assertNotNull(cache.get("c"));
+        assertNotNull(cache.get("d"));
+        assertEquals(1L, cache.evictions());
+        assertEquals(3L * CHARGE, cache.size());
+
+        // one large block evicts as many blocks as it needs
+        cache.put("e", new byte[100 + CHARGE]);
+        assertNull(cache.get("a"));
+        assertNull(cache.get("c"));
+        assertNotNull(cache.get("d"));
+        assertNotNull(cache.get("e"));
+        assertEquals(3L, cache.evictions());
+        assertEquals(3L * CHARGE, cache.size());
+    }
+
+    @Test
+    public void testOversizeBlocksAreNotCached() {
+        MonthBlockCache cache = new MonthBlockCache(CHARGE);
+        cache.put("a", new byte[100]);
+        cache.put("b", new byte[101]);
+
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("a"));
+        assertEquals(0L, cache.evictions());
+        assertEquals((long) CHARGE, cache.size());
+
+        // empty blocks are charged the overhead, so a cache of no capacity holds nothing
+        MonthBlockCache empty = new MonthBlockCache(0);
+        empty.put("a", new byte[0]);
+        assertNull(empty.get("a"));
+        assertEquals(0L, empty.size());
+    }
+
+    @Test
+    public void testReplacedBlockIsChargedOnce() {
+        MonthBlockCache cache = new MonthBlockCache(3 * CHARGE);
+        cache.put("a", new byte[100]);
+        cache.put("a", new byte[50]);
+
+        assertEquals(50L + MonthBlockCache.ENTRY_OVERHEAD, cache.size());
+        assertEquals(50, cache.get("a").length);
+        assertEquals(0L, cache.evictions());
+    }
+
+    @Test
+    public void testHitsAndMissesAreCounted() {
+        MonthBlockCache cache = new MonthBlockCache(3 * CHARGE);
+        assertNull(cache.get("a"));
+        cache.put("a", new byte[100]);
+        assertNotNull(cache.get("a"));
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+
+        assertEquals(2L, cache.hits());
+        assertEquals(2L, cache.misses());
+        assertEquals("MonthBlockCache{capacity=" + 3 * CHARGE + ", size=" + CHARGE
+                + ", blocks=1, hits=2, misses=2, evictions=0}", cache.toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCapacity() {
+        new MonthBlockCache(-1);
+    }
+}
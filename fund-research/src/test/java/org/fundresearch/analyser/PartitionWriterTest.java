@@ -0,0 +1,194 @@
+package org.fundresearch.analyser;
+
+import org.fundresearch.enums.Partitioning;
+import org.fundresearch.models.Performance;
+import org.fundresearch.util.DateCodec;
+import org.fundresearch.util.ReportWriter;
+import org.fundresearch.util.TestUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Partition writer test class.<br>
+ * Months are handed over newest first, from March 2016 back to November 2015,
+ * month m with m + 1 rows.
+ */
+public class PartitionWriterTest {
+
+    private static final int[] MONTHS = {20160331, 20160229, 20160131, 20151231, 20151130};
+
+    private Path dir;
+
+    @Before
+    public void init() throws IOException {
+        dir = Files.createTempDirectory("fund-research");
+    }
+
+    @After
+    public void cleanUp() throws IOException {
+        TestUtil.deleteRecursively(dir);
+    }
+
+    @Test
+    public void testMonthPartitions() throws IOException {
+        List<String> manifest = writeAll(Partitioning.MONTH, null);
+
+        assertEquals(5, manifest.size());
+        for (int m = 0; m < MONTHS.length; m++) {
+            String name = String.format("report-%04d-%02d.csv", DateCodec.year(MONTHS[m]), DateCodec.month(MONTHS[m]));
+            String expected = report(Collections.singletonList(month(m)));
+            assertEquals(expected, read(name));
+            assertEquals(name + "," + DateCodec.format(MONTHS[m]) + "," + DateCodec.format(MONTHS[m]) + ","
+                    + (m + 1) + "," + expected.length(), manifest.get(m));
+        }
+    }
+
+    @Test
+    public void testYearPartitions() throws IOException {
+        List<String> manifest = writeAll(Partitioning.YEAR, null);
+
+        String year2016 = report(Arrays.asList(month(0), month(1), month(2)));
+        String year2015 = report(Arrays.asList(month(3), month(4)));
+        assertEquals(Arrays.asList("report-2016.csv,31/01/2016,31/03/2016,6," + year2016.length(),
+                "report-2015.csv,30/11/2015,31/12/2015,9," + year2015.length()), manifest);
+        assertEquals(year2016, read("report-2016.csv"));
+        assertEquals(year2015, read("report-2015.csv"));
+    }
+
+    @Test
+    public void testExecutorWritesTheSameFiles() throws IOException {
+        for (Partitioning partitioning : Partitioning.values()) {
+            List<String> expected = writeAll(partitioning, null);
+            List<String> contents = new ArrayList<>();
+            for (String line : expected) contents.add(read(line.split(",")[0]));
+
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            try {
+                assertEquals(expected, writeAll(partitioning, executor));
+            } finally {
+                executor.shutdownNow();
+            }
+            for (int i = 0; i < expected.size(); i++)
+                assertEquals(contents.get(i), read(expected.get(i).split(",")[0]));
+        }
+    }
+
+    @Test
+    public void testEmptyMonthsAreSkipped() {
+        PartitionWriter writer = new PartitionWriter(dir, "report", Partitioning.MONTH, null);
+        writer.accept(Collections.emptyList());
+        assertTrue(writer.finish().isEmpty());
+        assertEquals(0L, writer.bytesWritten());
+
+        writer = new PartitionWriter(dir, "report", Partitioning.MONTH, null);
+        writer.accept(month(0));
+        writer.accept(Collections.emptyList());
+        writer.accept(month(1));
+        assertEquals(2, writer.finish().size());
+    }
+
+    @Test
+    public void testBytesWrittenSumsThePartitions() throws IOException {
+        PartitionWriter writer = new PartitionWriter(dir, "report", Partitioning.YEAR, null);
+        for (int m = 0; m < MONTHS.length; m++) writer.accept(month(m));
+        writer.finish();
+
+        assertEquals(Files.size(dir.resolve("report-2016.csv")) + Files.size(dir.resolve("report-2015.csv")),
+                writer.bytesWritten());
+    }
+
+    @Test
+    public void testFailedPartitionIsRethrown() {
+        Path missing = dir.resolve("missing");
+
+        PartitionWriter writer = new PartitionWriter(missing, "report", Partitioning.MONTH, null);
+        writer.accept(month(0));
+        try {
+            writer.accept(month(1));
+            fail("Partition written on the calling thread");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().startsWith("Unable to write file"));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            writer = new PartitionWriter(missing, "report", Partitioning.MONTH, executor);
+            for (int m = 0; m < MONTHS.length; m++) writer.accept(month(m));
+            writer.finish();
+            fail("Partition written on the executor");
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testManifestIsReplaced() throws IOException {
+        Path manifestPath = dir.resolve("report.manifest.csv");
+        PartitionWriter.writeManifest(manifestPath, Arrays.asList("a", "b"));
+        PartitionWriter.writeManifest(manifestPath, Collections.singletonList("c"));
+
+        assertEquals(Arrays.asList(PartitionWriter.MANIFEST_HEADER, "c"),
+                Files.readAllLines(manifestPath, StandardCharsets.UTF_8));
+        // no temporary file is left behind
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(1L, files.count());
+        }
+    }
+
+    /**
+     * Writes every month, newest first.
+     *
+     * @return manifest lines
+     */
+    private List<String> writeAll(Partitioning partitioning, ExecutorService executor) {
+        PartitionWriter writer = new PartitionWriter(dir, "report", partitioning, executor);
+        for (int m = 0; m < MONTHS.length; m++) writer.accept(month(m));
+        return writer.finish();
+    }
+
+    /**
+     * @return m + 1 ranked fixed-point performances of month m
+     */
+    private static List<Performance> month(int m) {
+        List<Performance> performances = new ArrayList<>();
+        for (int rank = 1; rank <= m + 1; rank++)
+            performances.add(new Performance("fund" + rank + "name", DateCodec.toDate(MONTHS[m]), 100L * m - rank,
+                    rank == 1 ? "Out Performed" : " ", 50L * rank, rank));
+        return performances;
+    }
+
+    /**
+     * @return the report file of the months
+     */
+    private String report(List<List<Performance>> months) throws IOException {
+        Path path = Files.createTempFile(dir, "expected", ".csv");
+        try (ReportWriter writer = new ReportWriter(path.toString())) {
+            for (List<Performance> month : months) writer.write(month);
+        }
+        String report = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+        Files.delete(path);
+        return report;
+    }
+
+    private String read(String fileName) throws IOException {
+        return new String(Files.readAllBytes(dir.resolve(fileName)), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,165 @@
+package org.fundresearch.analyser;
+
+import org.fundresearch.util.DateCodec;
+import org.fundresearch.util.TestUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.fundresearch.analyser.TestUniverse.newAnalyser;
+import static org.fundresearch.analyser.TestUniverse.runReport;
+import static org.fundresearch.analyser.TestUniverse.writeUniverse;
+import static org.junit.Assert.*;
+
+/**
+ * Report server test class.<br>
+ * The universe has 60 funds over 3 benchmarks and 6 months, served from one engine.
+ */
+public class ReportServerTest {
+
+    private Path inputDir;
+    private String report;
+    private ResearchEngine engine;
+
+    @Before
+    public void init() throws IOException {
+        inputDir = Files.createTempDirectory("fund-research");
+        writeUniverse(inputDir, 60, 3, 6);
+        report = runReport(inputDir, new AnalyserOptions());
+        engine = newAnalyser(inputDir, new AnalyserOptions()).loadResearchEngine();
+    }
+
+    @After
+    public void cleanUp() throws IOException {
+        TestUtil.deleteRecursively(inputDir);
+    }
+
+    @Test
+    public void testWholeReportIsStreamedFromTheCache() throws IOException {
+        try (ReportServer server = new ReportServer(engine, 0, 1 << 20, 2)) {
+            server.start();
+
+            HttpURLConnection connection = open(server.getPort(), "");
+            assertEquals(200, connection.getResponseCode());
+            assertEquals("chunked", connection.getHeaderField("Transfer-Encoding"));
+            assertEquals(report, body(connection));
+            assertEquals(6L, server.getCacheMisses());
+            assertEquals(0L, server.getCacheHits());
+
+            assertEquals(report, body(open(server.getPort(), "")));
+            assertEquals(6L, server.getCacheMisses());
+            assertEquals(6L, server.getCacheHits());
+        }
+    }
+
+    @Test
+    public void testFiltersMatchTheReportLines() throws IOException {
+        String[] lines = report.split("\n");
+        String header = lines[0] + "\n" + lines[1] + "\n";
+        StringBuilder quarter = new StringBuilder(header), fund = new StringBuilder(header);
+        StringBuilder benchmark = new StringBuilder(header);
+        for (int i = 2; i < lines.length; i++) {
+            String fundName = lines[i].substring(0, 15).trim();
+            int f = Integer.parseInt(fundName.substring(4, fundName.length() - 4));
+            int month = DateCodec.month(DateCodec.key(lines[i].substring(16, 31).trim()));
+            if (month >= 4 && month <= 6) quarter.append(lines[i]).append('\n');
+            if (f == 7) fund.append(lines[i]).append('\n');
+            if (f % 3 == 1) benchmark.append(lines[i]).append('\n');
+        }
+
+        try (ReportServer server = new ReportServer(engine, 0, 1 << 20, 2)) {
+            server.start();
+            int port = server.getPort();
+
+            assertEquals(quarter.toString(), body(open(port, "?from=01/04/2016&to=30/06/2016")));
+            assertEquals(fund.toString(), body(open(port, "?fund=fund7")));
+            assertEquals(benchmark.toString(), body(open(port, "?benchmark=bm1")));
+            assertEquals(header, body(open(port, "?fund=ghost")));
+            assertEquals(header, body(open(port, "?from=01/01/2017")));
+            // a filter does not answer from the blocks of another
+            assertEquals(fund.toString(), body(open(port, "?fund=fund7")));
+            assertEquals(report, body(open(port, "")));
+        }
+    }
+
+    @Test
+    public void testInvalidRequestsAreRejected() throws IOException {
+        try (ReportServer server = new ReportServer(engine, 0, 1 << 20, 1)) {
+            server.start();
+            int port = server.getPort();
+
+            assertEquals(400, open(port, "?from=June").getResponseCode());
+            assertEquals(400, open(port, "?from=30/06/2016&to=01/04/2016").getResponseCode());
+            assertEquals(400, open(port, "?fund=fund7&benchmark=bm1").getResponseCode());
+            assertEquals(400, open(port, "?fund=fund7&fund=fund8").getResponseCode());
+            assertEquals(400, open(port, "?month=06/2016").getResponseCode());
+            assertEquals(404, open(port, "/fund7").getResponseCode());
+
+            HttpURLConnection post = open(port, "");
+            post.setRequestMethod("POST");
+            assertEquals(405, post.getResponseCode());
+            assertEquals(0L, server.getCacheMisses());
+        }
+    }
+
+    @Test
+    public void testSmallCacheStillAnswersTheWholeReport() throws IOException {
+        // about one block, every request renders every month again
+        try (ReportServer server = new ReportServer(engine, 0, 2048, 1)) {
+            server.start();
+            assertEquals(report, body(open(server.getPort(), "")));
+            assertEquals(report, body(open(server.getPort(), "")));
+            assertEquals(12L, server.getCacheMisses());
+        }
+    }
+
+    @Test
+    public void testConcurrentRequestsGetTheWholeReport() throws Exception {
+        try (ReportServer server = new ReportServer(engine, 0, 1 << 20, 4)) {
+            server.start();
+            Callable<String> request = () -> body(open(server.getPort(), ""));
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            try {
+                for (Future<String> answer : executor.invokeAll(Collections.nCopies(16, request)))
+                    assertEquals(report, answer.get());
+            } finally {
+                executor.shutdownNow();
+            }
+            assertEquals(16L * 6, server.getCacheHits() + server.getCacheMisses());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidNumberOfThreads() {
+        new ReportServer(engine, 0, 1 << 20, 0);
+    }
+
+    private static HttpURLConnection open(int port, String query) throws IOException {
+        return (HttpURLConnection) new URL("http://localhost:" + port + ReportServer.CONTEXT + query).openConnection();
+    }
+
+    private static String body(HttpURLConnection connection) throws IOException {
+        try (InputStream in = connection.getInputStream()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            for (int n; (n = in.read(buffer)) > 0; ) out.write(buffer, 0, n);
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        } finally {
+            connection.disconnect();
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package org.fundresearch.analyser;
+
+import org.fundresearch.enums.NumericMode;
+import org.fundresearch.models.Performance;
+import org.fundresearch.util.DateCodec;
+import org.fundresearch.util.FixedPoint;
+import org.fundresearch.util.TestUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.fundresearch.analyser.TestUniverse.newAnalyser;
+import static org.fundresearch.analyser.TestUniverse.runReport;
+import static org.fundresearch.analyser.TestUniverse.writeUniverse;
+import static org.junit.Assert.*;
+
+/**
+ * Research engine test class.<br>
+ * The universe has 60 funds over 3 benchmarks and 6 months, plus a return of a fund
+ * missing from the fund file and a return without a benchmark return, neither joined.
+ */
+public class ResearchEngineTest {
+
+    private Path inputDir;
+
+    @Before
+    public void init() throws IOException {
+        inputDir = Files.createTempDirectory("fund-research");
+        writeUniverse(inputDir, 60, 3, 6);
+        Files.write(inputDir.resolve("fundReturnSeries.csv"),
+                "ghost,28/01/2016,1.5\nfund1,28/12/2016,1.5\n".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+    }
+
+    @After
+    public void cleanUp() throws IOException {
+        TestUtil.deleteRecursively(inputDir);
+    }
+
+    @Test
+    public void testEveryReportLineIsAnswered() throws IOException {
+        for (NumericMode numericMode : NumericMode.values()) {
+            AnalyserOptions options = new AnalyserOptions();
+            options.setNumericMode(numericMode);
+            String[] report = runReport(inputDir, options).split("\n");
+            ResearchEngine engine = newAnalyser(inputDir, options).loadResearchEngine();
+
+            assertEquals(report.length - 2, engine.size());
+            assertEquals(6, engine.months().size());
+            assertEquals("28/06/2016", DateCodec.format(engine.months().get(0)));
+
+            for (int i = 2; i < report.length; i++) {
+                String line = report[i];
+                String fundName = line.substring(0, 15).trim();
+                String fundCode = fundName.substring(0, fundName.length() - "name".length());
+                Date date = DateCodec.toDate(DateCodec.key(line.substring(16, 31).trim()));
+
+                Performance performance = engine.performanceOf(fundCode, date);
+                assertEquals(line, String.format("%1$15s %2$15s %3$15s %4$20s %5$15s %6$15s",
+                        performance.getFundName(), DateCodec.format(performance.getDate()),
+                        numericMode == NumericMode.FIXED_POINT
+                                ? FixedPoint.toString(performance.getScaledExcess(), FixedPoint.TWO_SCALE)
+                                : performance.getExcess().toPlainString(),
+                        performance.getOutPerformanceText(),
+                        numericMode == NumericMode.FIXED_POINT
+                                ? FixedPoint.toString(performance.getScaledReturns(), FixedPoint.TWO_SCALE)
+                                : performance.getReturns().toPlainString(),
+                        performance.getRank()));
+                assertEquals(line, (int) performance.getRank(), engine.rankOf(fundCode, date));
+            }
+        }
+    }
+
+    @Test
+    public void testOutAndUnderPerformersOfADateRange() throws IOException {
+        String[] report = runReport(inputDir, new AnalyserOptions()).split("\n");
+        ResearchEngine engine = newAnalyser(inputDir, new AnalyserOptions()).loadResearchEngine();
+
+        int outPerformed = 0, underPerformed = 0, outPerformedInQ2 = 0;
+        for (int i = 2; i < report.length; i++) {
+            int month = DateCodec.month(DateCodec.key(report[i].substring(16, 31).trim()));
+            if (report[i].contains("Out Performed")) outPerformed++;
+            if (report[i].contains("Under Performed")) underPerformed++;
+            if (report[i].contains("Out Performed") && month >= 4) outPerformedInQ2++;
+        }
+
+        Date first = engine.months().get(5), last = engine.months().get(0);
+        assertEquals(outPerformed, engine.outPerformers(first, last).size());
+        assertEquals(underPerformed, engine.underPerformers(first, last).size());
+        assertEquals(outPerformedInQ2, engine.outPerformers(DateCodec.toDate(DateCodec.key("01/04/2016")),
+                DateCodec.toDate(DateCodec.key("30/06/2016"))).size());
+        for (Performance performance : engine.outPerformers(first, last))
+            assertEquals("Out Performed", performance.getOutPerformanceText());
+        for (Performance performance : engine.underPerformers(first, last))
+            assertEquals("Under Performed", performance.getOutPerformanceText());
+    }
+
+    @Test
+    public void testTopOfAMonthAndOfABenchmark() throws IOException {
+        String[] report = runReport(inputDir, new AnalyserOptions()).split("\n");
+        ResearchEngine engine = newAnalyser(inputDir, new AnalyserOptions()).loadResearchEngine();
+        Date last = engine.months().get(0);
+
+        List<Performance> top = engine.top(last, 3);
+        assertEquals(3, top.size());
+        for (int i = 0; i < 3; i++) assertEquals(report[2 + i].substring(0, 15).trim(), top.get(i).getFundName());
+
+        // funds 1, 4, 7, ... are benchmarked against bm1, ranks are those among all funds
+        List<Performance> benchmarkTop = engine.top("bm1", last, 4);
+        assertEquals(4, benchmarkTop.size());
+        for (int i = 0; i < benchmarkTop.size(); i++) {
+            String fundName = benchmarkTop.get(i).getFundName();
+            assertEquals(1, Integer.parseInt(fundName.substring(4, fundName.length() - 4)) % 3);
+            if (i > 0) assertTrue(benchmarkTop.get(i - 1).getRank() < benchmarkTop.get(i).getRank());
+        }
+        assertEquals(20, engine.top("bm1", last, 100).size());
+        assertEquals(0, engine.top("bm9", last, 3).size());
+        assertEquals(0, engine.top(last, 0).size());
+    }
+
+    @Test
+    public void testTopOfMoreFundsThanTheMonthHas() throws IOException {
+        ResearchEngine engine = newAnalyser(inputDir, new AnalyserOptions()).loadResearchEngine();
+
+        // the month start plus n must not overflow
+        for (Date date : engine.months()) {
+            assertEquals(60, engine.top(date, Integer.MAX_VALUE).size());
+            assertEquals(20, engine.top("bm1", date, Integer.MAX_VALUE).size());
+        }
+        List<Performance> top = engine.top(engine.months().get(5), Integer.MAX_VALUE);
+        assertEquals(1L, (long) top.get(0).getRank());
+        assertEquals(60L, (long) top.get(59).getRank());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeTopIsRejected() throws IOException {
+        ResearchEngine engine = newAnalyser(inputDir, new AnalyserOptions()).loadResearchEngine();
+        engine.top(engine.months().get(0), -1);
+    }
+
+    @Test
+    public void testFundsAndMonthsWithoutJoinedReturns() throws IOException {
+        ResearchEngine engine = newAnalyser(inputDir, new AnalyserOptions()).loadResearchEngine();
+
+        assertEquals(6, engine.performancesOf("fund7").size());
+        assertEquals(engine.months().get(0), engine.performancesOf("fund7").get(0).getDate());
+        assertEquals(null, engine.performanceOf("ghost", DateCodec.toDate(DateCodec.key("28/01/2016"))));
+        assertEquals(0, engine.performancesOf("ghost").size());
+        assertEquals(-1, engine.rankOf("fund1", DateCodec.toDate(DateCodec.key("28/12/2016"))));
+        assertEquals(0, engine.top(DateCodec.toDate(DateCodec.key("28/12/2016")), 3).size());
+    }
+
+    @Test
+    public void testConcurrentQueriesGetTheSameAnswers() throws Exception {
+        ResearchEngine engine = newAnalyser(inputDir, new AnalyserOptions()).loadResearchEngine();
+        Date first = engine.months().get(5), last = engine.months().get(0);
+
+        Callable<String> queries = () -> {
+            StringBuilder answers = new StringBuilder();
+            for (Date date : engine.months())
+                for (int f = 0; f < 60; f++) answers.append(engine.rankOf("fund" + f, date)).append(',');
+            return answers.append(engine.outPerformers(first, last).size()).toString();
+        };
+        String expected = queries.call();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            for (Future<String> answers : executor.invokeAll(Collections.nCopies(16, queries)))
+                assertEquals(expected, answers.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testLoadIsRecordedInMetrics() {
+        AnalysisMetrics metrics = new AnalysisMetrics();
+        ResearchEngine engine = newAnalyser(inputDir, new AnalyserOptions()).loadResearchEngine(metrics);
+
+        assertEquals(60L * 6 + 2, metrics.getRowsIn(AnalysisMetrics.Input.FUND_RETURN));
+        assertEquals(1L, metrics.getDropped(AnalysisMetrics.DropReason.UNKNOWN_FUND));
+        assertEquals(1L, metrics.getDropped(AnalysisMetrics.DropReason.MISSING_BENCHMARK_RETURN));
+        assertEquals(60L * 6, (long) engine.size());
+    }
+}
@@ -0,0 +1,158 @@
+package org.fundresearch.analyser;
+
+import org.fundresearch.enums.NumericMode;
+import org.fundresearch.models.ReturnSeriesStore;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Rolling window excess test class.<br>
+ * Store values are the monthly excess in hundredths, except {@link RollingExcess.MonthlyExcess#NONE}
+ * marking a row without a benchmark return.
+ */
+public class RollingExcessTest {
+
+    private static final long NONE = RollingExcess.MonthlyExcess.NONE;
+
+    @Test
+    public void testWindowsLongerThanTheHistory() {
+        ReturnSeriesStore store = new ReturnSeriesStore(NumericMode.FIXED_POINT);
+        for (int m = 0; m < 3; m++)
+            for (int f = 0; f < 4; f++) store.add("fund" + f, dateKey(m), 100L * f + m);
+        store.seal();
+
+        RollingExcess rolling = new RollingExcess(store, new int[]{2, 5}, store::value);
+        int months = 0;
+        while (rolling.next()) {
+            assertEquals(rolling.month() < 2 ? 4 : 0, rolling.rank(0));
+            assertEquals(0, rolling.rank(1));
+            months++;
+        }
+        assertEquals(3, months);
+        assertEquals(expected(store, new int[]{2, 5}), actual(store, new int[]{2, 5}));
+    }
+
+    @Test
+    public void testLastRowOfAFundInAMonthWins() {
+        ReturnSeriesStore store = new ReturnSeriesStore(NumericMode.FIXED_POINT);
+        store.add("fund0", dateKey(1), 100L);
+        store.add("fund1", dateKey(1), 50L);
+        store.add("fund0", dateKey(1), -300L);
+        store.add("fund0", dateKey(0), 20L);
+        store.add("fund1", dateKey(0), 10L);
+        store.seal();
+
+        RollingExcess rolling = new RollingExcess(store, new int[]{1, 2}, store::value);
+        // the newest month has two fund0 rows
+        assertTrue(rolling.next());
+        assertEquals(2, rolling.rank(0));
+        int fund0 = store.codeIdOf("fund0"), fund1 = store.codeIdOf("fund1");
+        assertEquals(fund1, rolling.rankedCodeId(0));
+        assertEquals(fund0, rolling.rankedCodeId(1));
+        assertEquals(-300L, rolling.excess(0, fund0));
+        assertEquals(1, rolling.underPerformedMonths(0, fund0));
+        assertEquals(0, rolling.outPerformedMonths(0, fund0));
+        assertEquals(2, rolling.rank(1));
+        assertEquals(-280L, rolling.excess(1, fund0));
+        assertTrue(rolling.next());
+        assertFalse(rolling.next());
+
+        assertEquals(expected(store, new int[]{1, 2}), actual(store, new int[]{1, 2}));
+    }
+
+    @Test
+    public void testRingSlotsAreReused() {
+        int[] windows = {1, 3, 4};
+        ReturnSeriesStore store = new ReturnSeriesStore(NumericMode.FIXED_POINT);
+        Random random = new Random(11);
+        // 40 months through a ring of 5 slots, with holes, unjoined rows and duplicates
+        for (int m = 0; m < 40; m++) {
+            for (int f = 0; f < 30; f++) {
+                int kind = random.nextInt(20);
+                if (kind == 0) continue;
+                store.add("fund" + f, dateKey(m), kind == 1 ? NONE : random.nextInt(600) - 300);
+                if (kind == 2) store.add("fund" + f, dateKey(m), random.nextInt(600) - 300);
+            }
+        }
+        store.seal();
+
+        assertEquals(expected(store, windows), actual(store, windows));
+    }
+
+    private static int dateKey(int month) {
+        return (2000 + month / 12) * 10000 + (month % 12 + 1) * 100 + 28;
+    }
+
+    /**
+     * @return "month window: code excess out under, ..." lines of the rolling excess
+     */
+    private static String actual(ReturnSeriesStore store, int[] windows) {
+        RollingExcess rolling = new RollingExcess(store, windows, store::value);
+        StringBuilder sb = new StringBuilder();
+        while (rolling.next()) {
+            for (int w = 0; w < windows.length; w++) {
+                sb.append(rolling.month()).append(' ').append(windows[w]).append(':');
+                int ranked = rolling.rank(w);
+                for (int i = 0; i < ranked; i++) {
+                    int codeId = rolling.rankedCodeId(i);
+                    sb.append(' ').append(store.code(codeId)).append(' ').append(rolling.excess(w, codeId))
+                            .append(' ').append(rolling.outPerformedMonths(w, codeId))
+                            .append(' ').append(rolling.underPerformedMonths(w, codeId)).append(',');
+                }
+                sb.append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Same as {@link #actual(ReturnSeriesStore, int[])}, every window summed from scratch.
+     */
+    private static String expected(ReturnSeriesStore store, int[] windows) {
+        List<Map<Integer, Long>> months = new ArrayList<>();
+        for (int m = 0; m < store.monthCount(); m++) {
+            // code ids in the order of their first row, the excess of their last row
+            Map<Integer, Long> excess = new LinkedHashMap<>();
+            for (int row = store.monthStart(m); row < store.monthEnd(m); row++)
+                if (store.value(row) != NONE) excess.put(store.codeId(row), store.value(row));
+            months.add(excess);
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (int m = 0; m < months.size(); m++) {
+            for (int window : windows) {
+                sb.append(m).append(' ').append(window).append(':');
+                List<long[]> ranked = new ArrayList<>();
+                if (m + window <= months.size()) {
+                    for (int codeId : months.get(m).keySet()) {
+                        long sum = 0, out = 0, under = 0;
+                        boolean present = true;
+                        for (int w = m; w < m + window && present; w++) {
+                            Long excess = months.get(w).get(codeId);
+                            present = excess != null;
+                            if (!present) break;
+                            sum += excess;
+                            if (excess / 100 >= 1) out++;
+                            if (excess / 100 <= -1) under++;
+                        }
+                        if (present) ranked.add(new long[]{codeId, sum, out, under});
+                    }
+                }
+                // stable, equal sums keep the row order of the month
+                ranked.sort((a, b) -> Long.compare(b[1], a[1]));
+                for (long[] fund : ranked)
+                    sb.append(' ').append(store.code((int) fund[0])).append(' ').append(fund[1])
+                            .append(' ').append(fund[2]).append(' ').append(fund[3]).append(',');
+                sb.append('\n');
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,88 @@
+package org.fundresearch.analyser;
+
+import org.fundresearch.util.TestUtil;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+/**
+ * Generated input files and report runs shared by the analyser tests.<br>
+ * Fund fundN is named fundNname and is benchmarked against bm(N % benchmarks),
+ * its returns are dated the 28th of the months of 2016.
+ */
+final class TestUniverse {
+
+    static final String REPORT_FILE = "monthlyOutPerformance.csv";
+
+    private TestUniverse() {
+    }
+
+    /**
+     * Writes the 4 input files of funds spread over benchmarks, with returns
+     * of 2 decimals so a month has many equal returns.
+     */
+    static void writeUniverse(Path dir, int funds, int benchmarks, int months) throws IOException {
+        writeUniverse(dir, funds, benchmarks, 1, months);
+    }
+
+    /**
+     * Writes the fund and benchmark files, and appends the returns of months
+     * firstMonth to lastMonth of 2016 to the return files.
+     */
+    static void writeUniverse(Path dir, int funds, int benchmarks, int firstMonth, int lastMonth)
+            throws IOException {
+        StringBuilder fundCsv = new StringBuilder(), benchmarkCsv = new StringBuilder();
+        StringBuilder fundReturnCsv = new StringBuilder(), benchmarkReturnCsv = new StringBuilder();
+
+        for (int b = 0; b < benchmarks; b++) {
+            benchmarkCsv.append("bm").append(b).append(",bench").append(b).append("name\n");
+            for (int m = firstMonth; m <= lastMonth; m++)
+                benchmarkReturnCsv.append("bm").append(b).append(String.format(",28/%02d/2016,", m))
+                        .append(new Random(b * 100 + m).nextInt(400) / 100.0).append('\n');
+        }
+        for (int f = 0; f < funds; f++) {
+            fundCsv.append("fund").append(f).append(",fund").append(f).append("name,bm").append(f % benchmarks)
+                    .append('\n');
+            for (int m = firstMonth; m <= lastMonth; m++)
+                fundReturnCsv.append("fund").append(f).append(String.format(",28/%02d/2016,", m))
+                        .append((new Random(-f * 100 - m).nextInt(400) - 200) / 100.0).append('\n');
+        }
+
+        Files.write(dir.resolve("fund.csv"), fundCsv.toString().getBytes(StandardCharsets.UTF_8));
+        Files.write(dir.resolve("benchmark.csv"), benchmarkCsv.toString().getBytes(StandardCharsets.UTF_8));
+        Files.write(dir.resolve("fundReturnSeries.csv"), fundReturnCsv.toString().getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        Files.write(dir.resolve("benchReturnSeries.csv"),
+                benchmarkReturnCsv.toString().getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * @return the monthly report of the input files, generated in a temporary directory
+     */
+    static String runReport(Path inputDir, AnalyserOptions options) throws IOException {
+        Path outputDir = Files.createTempDirectory("fund-research");
+        try {
+            newAnalyser(inputDir, options).generateMonthlyOutPerformance(outputDir.toString(), REPORT_FILE);
+            return readReport(outputDir);
+        } finally {
+            TestUtil.deleteRecursively(outputDir);
+        }
+    }
+
+    static String readReport(Path outputDir) throws IOException {
+        return new String(Files.readAllBytes(outputDir.resolve(REPORT_FILE)), StandardCharsets.UTF_8);
+    }
+
+    static FundAnalyser newAnalyser(Path inputDir, AnalyserOptions options) {
+        return new FundAnalyser(inputDir.resolve("fund.csv").toString(),
+                inputDir.resolve("benchmark.csv").toString(),
+                inputDir.resolve("fundReturnSeries.csv").toString(),
+                inputDir.resolve("benchReturnSeries.csv").toString(),
+                options);
+    }
+}
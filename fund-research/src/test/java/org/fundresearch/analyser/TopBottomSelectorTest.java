@@ -0,0 +1,159 @@
+package org.fundresearch.analyser;
+
+import org.fundresearch.enums.NumericMode;
+import org.fundresearch.models.ReturnSeriesStore;
+import org.fundresearch.util.AppUtil;
+import org.fundresearch.util.FixedPoint;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Top and bottom N selector test class.
+ */
+public class TopBottomSelectorTest {
+
+    /**
+     * One hundredth at {@link FixedPoint#SCALE}.
+     */
+    private static final long HUNDREDTH = 1000000L;
+
+    @Test
+    public void testTiesKeepFileOrder() {
+        ReturnSeriesStore store = month(5, 3, 5, 1, 3, 5, 1);
+
+        // ranks 1 to 3 are the 5s in file order, 6 and 7 the 1s
+        assertEquals("0:1 2:2 3:6 6:7", select(store, 2));
+        assertEquals("0:1 2:2 5:3 4:5 3:6 6:7", select(store, 3));
+    }
+
+    @Test
+    public void testNAtLeastMonthSizeSelectsEveryRowOnce() {
+        ReturnSeriesStore store = month(1, 4, 2, 3);
+
+        assertEquals("1:1 3:2 2:3 0:4", select(store, 4));
+        assertEquals("1:1 3:2 2:3 0:4", select(store, 10));
+    }
+
+    @Test
+    public void testOverlappingTopAndBottomAreSelectedOnce() {
+        ReturnSeriesStore store = month(10, 20, 30, 40, 50);
+
+        // rank 3 is both among the best and the worst 3
+        assertEquals("4:1 3:2 2:3 1:4 0:5", select(store, 3));
+        assertEquals("4:1 0:5", select(store, 1));
+    }
+
+    @Test
+    public void testMatchesFullRankingMonthAfterMonth() {
+        for (NumericMode numericMode : NumericMode.values()) {
+            ReturnSeriesStore store = new ReturnSeriesStore(numericMode);
+            Random random = new Random(7);
+            for (int m = 1; m <= 3; m++) {
+                for (int f = 0; f < 200; f++) {
+                    // few distinct values once rounded to 2 scale, so many ties the raw values do not have
+                    long value = (random.nextInt(20) - 10) * HUNDREDTH
+                            + random.nextInt((int) HUNDREDTH) - HUNDREDTH / 2;
+                    if (numericMode == NumericMode.FIXED_POINT)
+                        store.add("fund" + f, 20160100 + m, value);
+                    else
+                        store.add("fund" + f, 20160100 + m, BigDecimal.valueOf(value, FixedPoint.SCALE));
+                }
+            }
+            store.seal();
+
+            for (int n : new int[]{1, 7, 100, 150}) {
+                // one selector reused for every month
+                TopBottomSelector selector = new TopBottomSelector(store, n);
+                for (int month = 0; month < store.monthCount(); month++) {
+                    selector.reset();
+                    for (int row = store.monthStart(month); row < store.monthEnd(month); row++) selector.offer(row);
+                    assertEquals(200, selector.count());
+
+                    List<Integer> ranked = rank(store, store.monthStart(month), store.monthEnd(month));
+                    StringBuilder expected = new StringBuilder();
+                    for (int i = 0; i < ranked.size(); i++)
+                        if (i < n || i >= ranked.size() - n)
+                            expected.append(ranked.get(i)).append(':').append(i + 1).append(' ');
+                    assertEquals(numericMode + " top " + n, expected.toString().trim(), selected(selector));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testReturnsEqualOnceRoundedKeepFileOrder() {
+        for (NumericMode numericMode : NumericMode.values()) {
+            // 1.231 and 1.234 both round to 1.23, as in the report
+            ReturnSeriesStore store = new ReturnSeriesStore(numericMode);
+            String[] returns = {"1.231", "1.234", "0.5", "1.2349", "0.495", "0.504"};
+            for (int i = 0; i < returns.length; i++) {
+                BigDecimal value = new BigDecimal(returns[i]);
+                if (numericMode == NumericMode.FIXED_POINT)
+                    store.add("fund" + i, 20160731, value.movePointRight(FixedPoint.SCALE).longValueExact());
+                else
+                    store.add("fund" + i, 20160731, value);
+            }
+            store.seal();
+
+            // 0.495 rounds half down to 0.49, below 0.5 and 0.504
+            assertEquals(numericMode.name(), "0:1 4:6", select(store, 1));
+            assertEquals(numericMode.name(), "0:1 1:2 3:3 2:4 5:5 4:6", select(store, 3));
+            assertEquals(numericMode.name(), "0:1 1:2 3:3 2:4 5:5 4:6", select(store, 6));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidN() {
+        new TopBottomSelector(month(1), 0);
+    }
+
+    /**
+     * Fixed-point returns of one month in hundredths, in file order.
+     */
+    private static ReturnSeriesStore month(long... values) {
+        ReturnSeriesStore store = new ReturnSeriesStore(NumericMode.FIXED_POINT);
+        for (int i = 0; i < values.length; i++) store.add("fund" + i, 20160131, values[i] * HUNDREDTH);
+        return store.seal();
+    }
+
+    private static String select(ReturnSeriesStore store, int n) {
+        TopBottomSelector selector = new TopBottomSelector(store, n);
+        for (int row = 0; row < store.size(); row++) selector.offer(row);
+        return selected(selector);
+    }
+
+    /**
+     * @return "row:rank" of the selected rows, in rank order
+     */
+    private static String selected(TopBottomSelector selector) {
+        int selected = selector.select();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < selected; i++) {
+            if (i > 0) sb.append(' ');
+            sb.append(selector.row(i)).append(':').append(selector.rank(i));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return rows of a month by return rounded to 2 scale in descending order, then by row number
+     */
+    private static List<Integer> rank(ReturnSeriesStore store, int start, int end) {
+        List<Integer> rows = new ArrayList<>();
+        for (int row = start; row < end; row++) rows.add(row);
+        rows.sort((a, b) -> {
+            int byReturn = store.isFixedPoint()
+                    ? Long.compare(FixedPoint.roundToTwoScale(store.value(b)),
+                    FixedPoint.roundToTwoScale(store.value(a)))
+                    : AppUtil.roundToTwoScale(store.decimal(b)).compareTo(AppUtil.roundToTwoScale(store.decimal(a)));
+            return byReturn != 0 ? byReturn : Integer.compare(a, b);
+        });
+        return rows;
+    }
+}
@@ -0,0 +1,64 @@
+package org.fundresearch.models;
+
+import org.fundresearch.enums.NumericMode;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.Assert.*;
+
+/**
+ * Columnar return series store test class.
+ */
+public class ReturnSeriesStoreTest {
+
+    @Test
+    public void testMonthAndCodeIndexes() {
+        ReturnSeriesStore store = new ReturnSeriesStore(NumericMode.FIXED_POINT, 2);
+        store.add("fund1", 20160630, 1L);
+        store.add("fund1", 20160731, 2L);
+        store.add("fund2", 20160630, 3L);
+        store.add("fund2", 20140831, 4L);
+        store.add("fund1", 20160630, 5L);
+        store.seal();
+
+        assertEquals(5, store.size());
+        assertEquals(2, store.codeCount());
+        assertEquals(3, store.monthCount());
+
+        // newest month first, file order kept within a month
+        assertEquals(20160731, store.monthKey(0));
+        assertEquals(20160630, store.monthKey(1));
+        assertEquals(1, store.monthStart(1));
+        assertEquals(4, store.monthEnd(1));
+        assertEquals(1L, store.value(1));
+        assertEquals(3L, store.value(2));
+        assertEquals(5L, store.value(3));
+
+        assertEquals(2, store.monthOf(20140831));
+        assertEquals(-1, store.monthOf(20150101));
+
+        int fund2 = store.codeId(2);
+        assertEquals("fund2", store.code(fund2));
+        assertEquals(2, store.codeEnd(fund2) - store.codeStart(fund2));
+        assertEquals(20160630, store.dateKey(store.codeRow(store.codeStart(fund2))));
+        assertEquals(20140831, store.dateKey(store.codeRow(store.codeStart(fund2) + 1)));
+    }
+
+    @Test
+    public void testDecimalValues() {
+        ReturnSeriesStore store = new ReturnSeriesStore(NumericMode.DECIMAL);
+        store.add("fund1", 20160630, new BigDecimal("1.107845"));
+        store.seal();
+
+        assertFalse(store.isFixedPoint());
+        assertEquals(new BigDecimal("1.107845"), store.decimal(0));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testSealedStoreIsReadOnly() {
+        ReturnSeriesStore store = new ReturnSeriesStore(NumericMode.FIXED_POINT);
+        store.seal();
+        store.add("fund1", 20160630, 1L);
+    }
+}
@@ -2,7 +2,13 @@ package org.fundresearch.util;
 
 import org.junit.Test;
 
+import java.io.File;
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
@@ -33,6 +39,47 @@ public class AppUtilTest {
         assertTrue(fileLines.size() > 0);
     }
 
+    @Test
+    public void testStreamFileLines() {
+        String filePath = AppUtil.buildPath(testDataDir, "fund.csv");
+        final int[] count = {0};
+        AppUtil.readFileLines(filePath, line -> {
+            assertTrue(line.trim().length() > 0);
+            count[0]++;
+        });
+        assertEquals(AppUtil.readFileLines(filePath).size(), count[0]);
+    }
+
+    @Test
+    public void testReadFileChunks() throws IOException {
+        Path file = Files.createTempFile("fund-research", ".csv");
+        try {
+            StringBuilder csv = new StringBuilder();
+            for (int i = 0; i < 1000; i++) csv.append("fund").append(i).append(",28/02/2016,").append(i % 7).append('\n');
+            // blank line and a last row without new line
+            csv.append("\nlast,29/02/2016,1");
+            Files.write(file, csv.toString().getBytes(StandardCharsets.UTF_8));
+
+            List<String> expected = new ArrayList<>();
+            AppUtil.readFileRows(file.toString(), row -> expected.add(row.code(0) + row.text(2)));
+
+            for (int chunks : new int[]{1, 7, 5000}) {
+                List<List<String>> parts = AppUtil.readFileChunks(file.toString(), chunks, 3,
+                        ArrayList::new, (part, row) -> part.add(row.code(0) + row.text(2)));
+                assertTrue(parts.size() <= chunks);
+
+                List<String> rows = new ArrayList<>();
+                parts.forEach(rows::addAll);
+                assertEquals(1001, rows.size());
+                assertEquals(expected, rows);
+            }
+            assertTrue(AppUtil.readFileChunks(AppUtil.buildPath(testDataDir, "notExists.csv"), 2, 2,
+                    ArrayList::new, (part, row) -> part.add(row)).isEmpty());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void testRoundingInputNull() {
         AppUtil.roundToTwoScale(null);
@@ -134,6 +181,12 @@ public class AppUtilTest {
         assertEquals("Invalid date", "02/Oct/2016", ddmmmyyyy);
     }
 
+    @Test
+    public void testReportPathUsesFileName() {
+        assertEquals(testDataDir + File.separator + "monthlyOutPerformance.csv", AppUtil.getReportPath(testDataDir, null));
+        assertEquals(testDataDir + File.separator + "report.csv", AppUtil.getReportPath(testDataDir, "report.csv"));
+    }
+
     private String datePartToString(int datePart) {
 
         return (datePart + "").length() == 1 ? ("0" + datePart) : (datePart + "");
@@ -0,0 +1,266 @@
+package org.fundresearch.util;
+
+import org.fundresearch.models.Performance;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Binary report writer and reader test class.
+ */
+public class BinaryReportTest {
+
+    private static final int JUNE = 20160630;
+    private static final int JULY = 20160731;
+
+    private Path dir;
+    private String reportPath;
+
+    @Before
+    public void init() throws IOException {
+        dir = Files.createTempDirectory("fund-research");
+        reportPath = dir.resolve("report.frb").toString();
+    }
+
+    @After
+    public void cleanUp() throws IOException {
+        TestUtil.deleteRecursively(dir);
+    }
+
+    @Test
+    public void testRoundTrip() {
+        List<Performance> july = Arrays.asList(
+                new Performance("fund2name", DateCodec.toDate(JULY), 215L, "Out Performed", 300L, 1),
+                new Performance("fondé", DateCodec.toDate(JULY), -3L, " ", -1L, 2),
+                new Performance("fund1name", DateCodec.toDate(JULY), -150L, "Under Performed", -275L, 3));
+        List<Performance> june = Arrays.asList(
+                new Performance("fund1name", DateCodec.toDate(JUNE), new BigDecimal("1.005"), "Out Performed",
+                        new BigDecimal("2.499"), 1),
+                new Performance("fund3name", DateCodec.toDate(JUNE), new BigDecimal("-0.004"), " ",
+                        new BigDecimal("-12E+2"), 2));
+        // a buffer smaller than a month, so blocks are flushed in pieces
+        try (BinaryReportWriter writer = new BinaryReportWriter(reportPath, 256)) {
+            for (int i = 0; i < 6; i++) writer.write(Collections.emptyList());
+            writer.write(july);
+            writer.write(june);
+            assertEquals(5L, writer.getRows());
+        }
+
+        try (BinaryReportReader reader = new BinaryReportReader(reportPath)) {
+            assertEquals(5L, reader.size());
+            assertEquals(Arrays.asList(DateCodec.toDate(JULY), DateCodec.toDate(JUNE)), reader.months());
+            assertEquals("fund2name 31/07/2016 215 Out Performed 300 1\n"
+                    + "fondé 31/07/2016 -3   -1 2\n"
+                    + "fund1name 31/07/2016 -150 Under Performed -275 3\n", lines(reader.read(DateCodec.toDate(JULY))));
+            // decimals are rounded as in the text report
+            assertEquals("fund1name 30/06/2016 100 Out Performed 250 1\n"
+                    + "fund3name 30/06/2016 0   -120000 2\n", lines(reader.read(DateCodec.toDate(JUNE))));
+        }
+    }
+
+    @Test
+    public void testManyMonthsRoundTrip() {
+        try (BinaryReportWriter writer = new BinaryReportWriter(reportPath, 256)) {
+            for (int month = 1; month <= 120; month++) {
+                Date date = DateCodec.toDate((2000 + (month - 1) / 12) * 10000 + ((month - 1) % 12 + 1) * 100 + 28);
+                List<Performance> performances = new ArrayList<>();
+                for (int rank = 1; rank <= month % 7; rank++)
+                    performances.add(new Performance("fund" + (rank * month % 11) + "name", date, month - rank,
+                            " ", rank, rank));
+                writer.write(performances);
+            }
+        }
+
+        try (BinaryReportReader reader = new BinaryReportReader(reportPath)) {
+            // months without rows are not written
+            assertEquals(103, reader.months().size());
+            long rows = 0;
+            for (Date date : reader.months()) {
+                int month = (DateCodec.year(DateCodec.key(date)) - 2000) * 12 + DateCodec.month(DateCodec.key(date));
+                List<Performance> performances = reader.read(date);
+                assertEquals(month % 7, performances.size());
+                for (int i = 0; i < performances.size(); i++) {
+                    int rank = i + 1;
+                    assertEquals("fund" + (rank * month % 11) + "name", performances.get(i).getFundName());
+                    assertEquals((long) month - rank, performances.get(i).getScaledExcess());
+                    assertEquals(rank, (int) performances.get(i).getRank());
+                }
+                rows += performances.size();
+            }
+            assertEquals(rows, reader.size());
+        }
+    }
+
+    @Test
+    public void testMissingMonthReadsEmpty() {
+        write(performance("fund1name", JUNE, 1));
+
+        try (BinaryReportReader reader = new BinaryReportReader(reportPath)) {
+            assertTrue(reader.read(DateCodec.toDate(JULY)).isEmpty());
+            assertEquals(1, reader.read(DateCodec.toDate(JUNE)).size());
+        }
+    }
+
+    @Test
+    public void testDuplicateMonthIsRejected() {
+        try (BinaryReportWriter writer = new BinaryReportWriter(reportPath)) {
+            writer.write(Collections.singletonList(performance("fund1name", JUNE, 1)));
+            try {
+                writer.write(Collections.singletonList(performance("fund2name", JUNE, 1)));
+                fail("Month written twice");
+            } catch (IllegalArgumentException e) {
+                assertEquals("Month written twice: 30/06/2016", e.getMessage());
+            }
+            try {
+                writer.write(Arrays.asList(performance("fund1name", JULY, 1), performance("fund2name", JUNE, 2)));
+                fail("Not one month");
+            } catch (IllegalArgumentException e) {
+                assertTrue(e.getMessage().startsWith("Not one month"));
+            }
+        }
+
+        // the month written first is kept
+        try (BinaryReportReader reader = new BinaryReportReader(reportPath)) {
+            assertEquals(1L, reader.size());
+            assertEquals("fund1name", reader.read(DateCodec.toDate(JUNE)).get(0).getFundName());
+        }
+    }
+
+    @Test
+    public void testDatesAreCopies() {
+        write(performance("fund1name", JUNE, 1), performance("fund2name", JUNE, 2));
+
+        try (BinaryReportReader reader = new BinaryReportReader(reportPath)) {
+            reader.months().get(0).setTime(0);
+            List<Performance> performances = reader.read(DateCodec.toDate(JUNE));
+            performances.get(0).getDate().setTime(0);
+
+            assertEquals(JUNE, DateCodec.key(performances.get(1).getDate()));
+            assertEquals(JUNE, DateCodec.key(reader.months().get(0)));
+            assertEquals(JUNE, DateCodec.key(reader.read(DateCodec.toDate(JUNE)).get(0).getDate()));
+            // the shared date of the codec is untouched
+            assertEquals(JUNE, DateCodec.key(DateCodec.toDate(JUNE)));
+        }
+    }
+
+    @Test
+    public void testTruncatedFileIsRejected() throws IOException {
+        write(performance("fund1name", JUNE, 1), performance("fund2name", JUNE, 2));
+        byte[] bytes = Files.readAllBytes(dir.resolve("report.frb"));
+
+        for (int length = 0; length < bytes.length; length++) {
+            Files.write(dir.resolve("report.frb"), Arrays.copyOf(bytes, length));
+            assertRejected("length " + length);
+        }
+    }
+
+    @Test
+    public void testGarbledFooterAndTrailerAreRejected() throws IOException {
+        write(performance("fund1name", JUNE, 1), performance("fund2name", JUNE, 2));
+        byte[] bytes = Files.readAllBytes(dir.resolve("report.frb"));
+        int trailer = bytes.length - BinaryReportWriter.TRAILER_BYTES;
+        int footer = (int) ByteBuffer.wrap(bytes, trailer, 8).getLong();
+        // footer: name count, 2 names of 9 bytes, month count, date key, offset and rows of the month
+        int monthCount = footer + 4 + 2 * (4 + 9);
+        int monthOffset = monthCount + 4 + 4;
+        int monthRows = monthOffset + 8;
+
+        garble(bytes, "magic of the trailer", trailer + 8, 4, 0);
+        garble(bytes, "footer offset beyond the trailer", trailer, 8, trailer + 1);
+        garble(bytes, "footer offset inside the header", trailer, 8, 4);
+        garble(bytes, "magic of the header", 0, 4, 0x52424246);
+        garble(bytes, "version", 4, 4, 2);
+        garble(bytes, "negative name count", footer, 4, -1);
+        garble(bytes, "name count beyond the footer", footer, 4, Integer.MAX_VALUE);
+        garble(bytes, "name length beyond the footer", footer + 4, 4, 1000);
+        garble(bytes, "month count beyond the footer", monthCount, 4, 2);
+        garble(bytes, "month offset inside the header", monthOffset, 8, 0);
+        garble(bytes, "month beyond the footer", monthOffset, 8, footer - 1);
+        garble(bytes, "negative month rows", monthRows, 4, -1);
+        garble(bytes, "month rows beyond the footer", monthRows, 4, 3);
+    }
+
+    @Test
+    public void testGarbledBlockIsRejectedWhenRead() throws IOException {
+        write(performance("fund1name", JUNE, 1), performance("fund2name", JUNE, 2));
+        Path path = dir.resolve("report.frb");
+        byte[] bytes = Files.readAllBytes(path);
+
+        // row count of the block differs from the month index
+        ByteBuffer.wrap(bytes).putInt(BinaryReportWriter.HEADER_BYTES, 1);
+        Files.write(path, bytes);
+        try (BinaryReportReader reader = new BinaryReportReader(reportPath)) {
+            reader.read(DateCodec.toDate(JUNE));
+            fail("Row count of the block");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Not a binary report: " + reportPath, e.getMessage());
+        }
+
+        // fund name id beyond the names
+        ByteBuffer.wrap(bytes).putInt(BinaryReportWriter.HEADER_BYTES, 2)
+                .putInt(BinaryReportWriter.HEADER_BYTES + 4, 2);
+        Files.write(path, bytes);
+        try (BinaryReportReader reader = new BinaryReportReader(reportPath)) {
+            reader.read(DateCodec.toDate(JUNE));
+            fail("Fund name id");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Not a binary report: " + reportPath, e.getMessage());
+        }
+    }
+
+    private static Performance performance(String fundName, int dateKey, int rank) {
+        return new Performance(fundName, DateCodec.toDate(dateKey), -rank, " ", -rank, rank);
+    }
+
+    private void write(Performance... performances) {
+        try (BinaryReportWriter writer = new BinaryReportWriter(reportPath)) {
+            writer.write(Arrays.asList(performances));
+        }
+    }
+
+    /**
+     * Overwrites an int or a long of a copy of the report and checks it is rejected.
+     */
+    private void garble(byte[] bytes, String message, int position, int length, long value) throws IOException {
+        ByteBuffer garbled = ByteBuffer.wrap(bytes.clone());
+        if (length == 4) garbled.putInt(position, (int) value);
+        else garbled.putLong(position, value);
+        Files.write(dir.resolve("report.frb"), garbled.array());
+        assertRejected(message);
+    }
+
+    private void assertRejected(String message) {
+        try {
+            new BinaryReportReader(reportPath).close();
+            fail(message);
+        } catch (IllegalArgumentException e) {
+            assertTrue(message + ": " + e.getMessage(), e.getMessage().endsWith(reportPath));
+        }
+    }
+
+    /**
+     * @return "name date excess text return rank" lines, fixed-point values in hundredths
+     */
+    private static String lines(List<Performance> performances) {
+        StringBuilder sb = new StringBuilder();
+        for (Performance performance : performances)
+            sb.append(performance.getFundName()).append(' ').append(DateCodec.format(performance.getDate()))
+                    .append(' ').append(performance.getScaledExcess()).append(' ')
+                    .append(performance.getOutPerformanceText()).append(' ').append(performance.getScaledReturns())
+                    .append(' ').append(performance.getRank()).append('\n');
+        return sb.toString();
+    }
+}
@@ -0,0 +1,47 @@
+package org.fundresearch.util;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ * Code dictionary test class.
+ */
+public class CodeDictionaryTest {
+
+    @Test
+    public void testDenseIdsInInsertionOrder() {
+        CodeDictionary codes = new CodeDictionary(0);
+        for (int i = 0; i < 1000; i++) assertEquals(i, codes.add("fund" + i));
+
+        assertEquals(1000, codes.size());
+        assertEquals(17, codes.add("fund17"));
+        assertEquals(1000, codes.size());
+        assertEquals("fund999", codes.code(999));
+        assertEquals(-1, codes.idOf("fund1000"));
+        assertEquals(-1, codes.idOf((String) null));
+    }
+
+    @Test
+    public void testByteRangeLookup() {
+        CodeDictionary codes = new CodeDictionary();
+        codes.add("bm1");
+        codes.add("f\u00fcnd");
+
+        byte[] row = "xx,f\u00fcnd,bm1,bm2".getBytes(StandardCharsets.UTF_8);
+        assertEquals(1, codes.idOf(row, 3, 8));
+        assertEquals(0, codes.idOf(row, 9, 12));
+        assertEquals(-1, codes.idOf(row, 13, 16));
+
+        assertEquals(2, codes.add(row, 13, 16));
+        assertEquals("bm2", codes.code(2));
+        assertEquals(2, codes.idOf("bm2"));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testUnknownId() {
+        new CodeDictionary().code(0);
+    }
+}
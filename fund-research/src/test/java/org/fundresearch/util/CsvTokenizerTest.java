@@ -0,0 +1,65 @@
+package org.fundresearch.util;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ * CSV tokenizer test class.
+ */
+public class CsvTokenizerTest {
+
+    private static CsvTokenizer tokenizer(String content, int bufferSize) {
+        return new CsvTokenizer(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)), bufferSize);
+    }
+
+    @Test
+    public void testRowsAndFields() throws IOException {
+        CsvTokenizer tokenizer = tokenizer("fund1, fund1name ,bm1\r\n\n   \nfund2,30/06/2016,-1.107845", 8);
+
+        assertTrue(tokenizer.nextRow());
+        assertEquals(3, tokenizer.fieldCount());
+        assertEquals("fund1", tokenizer.code(0));
+        assertEquals("fund1name", tokenizer.text(1));
+        assertEquals("bm1", tokenizer.code(2));
+
+        assertTrue(tokenizer.nextRow());
+        assertEquals(3, tokenizer.fieldCount());
+        assertEquals(AppUtil.toDate("30/06/2016"), tokenizer.date(1));
+        assertEquals(new BigDecimal("-1.107845"), tokenizer.decimal(2));
+
+        assertFalse(tokenizer.nextRow());
+        tokenizer.close();
+    }
+
+    @Test
+    public void testFieldCountMatchesSplit() throws IOException {
+        String[] lines = {"a,b,c", "a,b,c,", "a,,c", "a,b", "a,b,c,d", ",b,c"};
+        for (String line : lines) {
+            CsvTokenizer tokenizer = tokenizer(line, 4);
+            assertTrue(tokenizer.nextRow());
+            assertEquals(line, line.split(AppUtil.LINE_SEPARATOR).length, tokenizer.fieldCount());
+        }
+    }
+
+    @Test
+    public void testCodesAreShared() throws IOException {
+        CsvTokenizer tokenizer = tokenizer("fund1,x\nfund1,y\n", 16);
+        assertTrue(tokenizer.nextRow());
+        String first = tokenizer.code(0);
+        assertTrue(tokenizer.nextRow());
+        assertSame(first, tokenizer.code(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidDate() throws IOException {
+        CsvTokenizer tokenizer = tokenizer("fund1,02/June/2016,1.0", 16);
+        assertTrue(tokenizer.nextRow());
+        tokenizer.date(1);
+    }
+}
@@ -0,0 +1,69 @@
+package org.fundresearch.util;
+
+import org.junit.Test;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+/**
+ * Date codec test class.
+ */
+public class DateCodecTest {
+
+    @Test
+    public void testKeyAndFormat() {
+        int key = DateCodec.key("31/05/2016");
+        assertEquals(20160531, key);
+        assertEquals("31/05/2016", DateCodec.format(key));
+        assertSame(DateCodec.toDate(key), DateCodec.toDate(DateCodec.key("31/05/2016")));
+        assertEquals(key, DateCodec.key(DateCodec.toDate(key)));
+    }
+
+    @Test
+    public void testMatchesLenientSimpleDateFormat() throws Exception {
+        SimpleDateFormat sdf = new SimpleDateFormat("dd/MM/yyyy");
+        String[] inputs = {"31/06/2016", "29/02/2015", "00/01/2016", "1/2/2016", "31/12/1999", "15/13/2016"};
+        for (String input : inputs) {
+            Date expected = sdf.parse(input);
+            assertEquals(input, expected, AppUtil.toDate(input));
+            assertEquals(input, sdf.format(expected), DateCodec.format(DateCodec.key(input)));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidText() {
+        DateCodec.key("2016-05-31");
+    }
+
+    @Test
+    public void testConcurrentUse() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(() -> {
+                    SimpleDateFormat sdf = new SimpleDateFormat("dd/MM/yyyy");
+                    for (int year = 1990; year < 2020; year++)
+                        for (int month = 1; month <= 12; month++) {
+                            String text = String.format("28/%02d/%d", month, year);
+                            Date date = AppUtil.toDate(text);
+                            if (!sdf.parse(text).equals(date)) return false;
+                            if (!text.equals(AppUtil.getDefaultFormattedDate(date))) return false;
+                        }
+                    return true;
+                }));
+            }
+            for (Future<Boolean> future : futures)
+                assertTrue(future.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
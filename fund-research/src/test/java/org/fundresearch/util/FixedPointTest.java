@@ -0,0 +1,60 @@
+package org.fundresearch.util;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Fixed-point arithmetic test class.
+ */
+public class FixedPointTest {
+
+    @Test
+    public void testParse() {
+        assertEquals(110784500L, FixedPoint.parse("1.107845"));
+        assertEquals(-4215000L, FixedPoint.parse("-0.04215"));
+        assertEquals(500000000L, FixedPoint.parse("5"));
+        assertEquals(150000000L, FixedPoint.parse("1.5e0"));
+        assertEquals(12000000L, FixedPoint.parse("12E-2"));
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testParseTooPrecise() {
+        FixedPoint.parse("0.123456789");
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testParseInvalid() {
+        FixedPoint.parse("1.2.3");
+    }
+
+    @Test
+    public void testRoundingMatchesDecimal() {
+        Random random = new Random(42);
+        for (int i = 0; i < 100000; i++) {
+            long fund = random.nextInt(2000000000) - 1000000000L;
+            long benchmark = i % 3 == 0 ? fund - (random.nextInt(2000) - 1000) * 500000L : random.nextInt(2000000000) - 1000000000L;
+
+            BigDecimal expected = AppUtil.roundToTwoScale(BigDecimal.valueOf(fund, FixedPoint.SCALE)
+                    .subtract(BigDecimal.valueOf(benchmark, FixedPoint.SCALE)));
+            long actual = FixedPoint.roundToTwoScale(fund - benchmark);
+
+            assertEquals(expected, FixedPoint.toBigDecimal(actual, FixedPoint.TWO_SCALE));
+            assertEquals(expected.toString(), FixedPoint.toString(actual, FixedPoint.TWO_SCALE));
+            assertEquals((long) expected.intValue(), FixedPoint.integerPart(actual, FixedPoint.TWO_SCALE));
+        }
+    }
+
+    @Test
+    public void testHalfDown() {
+        assertEquals(1L, FixedPoint.roundHalfDown(15, 1, 0));
+        assertEquals(-1L, FixedPoint.roundHalfDown(-15, 1, 0));
+        assertEquals(2L, FixedPoint.roundHalfDown(151, 2, 0));
+        assertEquals(-2L, FixedPoint.roundHalfDown(-151, 2, 0));
+        assertEquals("-0.01", FixedPoint.toString(-1, 2));
+        assertEquals("0.00", FixedPoint.toString(0, 2));
+    }
+}
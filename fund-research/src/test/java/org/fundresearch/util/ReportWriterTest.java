@@ -0,0 +1,93 @@
+package org.fundresearch.util;
+
+import org.fundresearch.models.Performance;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Report writer test class.
+ */
+public class ReportWriterTest {
+
+    private static final String OUTPUT_FORMAT = "%1$15s %2$15s %3$15s %4$20s %5$15s %6$15s";
+
+    @Test
+    public void testMatchesStringFormat() throws IOException {
+        Date date = AppUtil.toDate("31/05/2016");
+        List<Performance> performances = new ArrayList<>();
+        performances.add(new Performance("fund1name", date, new BigDecimal("1.1078"), "Out Performed",
+                new BigDecimal("-0.045"), 1));
+        performances.add(new Performance("a fund name longer than its column", date, new BigDecimal("-0.005"), " ",
+                new BigDecimal("123456789012345678901234.567"), 2));
+        performances.add(new Performance("f\u00fcnd \u00fcnicode", date, -105L, "Under Performed", 0L, 3));
+        performances.add(new Performance("fund4name", date, Long.MIN_VALUE, " ", 7L, 40));
+
+        Path dir = Files.createTempDirectory("fund-research");
+        try {
+            Path report = dir.resolve("report.csv");
+            // small buffer, so rows span several flushes
+            try (ReportWriter writer = new ReportWriter(report.toString(), 256)) {
+                for (int i = 0; i < 5; i++) writer.write(performances);
+                assertEquals(20L, writer.getRows());
+            }
+
+            StringBuilder expected = new StringBuilder()
+                    .append(String.format(OUTPUT_FORMAT, "FundName", "Date", "Excess", "OutPerformance", "Return", "Rank")).append('\n')
+                    .append(String.format(OUTPUT_FORMAT, "------------", "-----------", "----------",
+                            "---------------", "----------", "--------")).append('\n');
+            for (int i = 0; i < 5; i++)
+                for (Performance p : performances)
+                    expected.append(String.format(OUTPUT_FORMAT, p.getFundName(), "31/05/2016",
+                            p.getExcess() != null ? AppUtil.roundToTwoScale(p.getExcess()).toString()
+                                    : FixedPoint.toString(p.getScaledExcess(), FixedPoint.TWO_SCALE),
+                            p.getOutPerformanceText(),
+                            p.getReturns() != null ? AppUtil.roundToTwoScale(p.getReturns()).toString()
+                                    : FixedPoint.toString(p.getScaledReturns(), FixedPoint.TWO_SCALE),
+                            p.getRank().toString())).append('\n');
+
+            assertEquals(expected.toString(), new String(Files.readAllBytes(report), StandardCharsets.UTF_8));
+        } finally {
+            TestUtil.deleteRecursively(dir);
+        }
+    }
+
+    @Test
+    public void testNonAsciiNamesAcrossBufferBoundaries() throws IOException {
+        Date date = AppUtil.toDate("31/05/2016");
+        Path dir = Files.createTempDirectory("fund-research");
+        try {
+            // every buffer size puts the end of the buffer at another byte of the rows
+            for (int bufferSize = 256; bufferSize < 512; bufferSize++) {
+                List<Performance> performances = new ArrayList<>();
+                StringBuilder expected = new StringBuilder();
+                for (int i = 0; i < 5; i++) {
+                    String name = "\u4e2d\u56fd\u57fa\u91d1" + "\u4e00\u4e8c\u4e09\u56db\u4e94".charAt(i);
+                    performances.add(new Performance(name, date, 10L * i, " ", 5L, i + 1));
+                    expected.append(String.format(OUTPUT_FORMAT, name, "31/05/2016",
+                            FixedPoint.toString(10L * i, FixedPoint.TWO_SCALE), " ",
+                            FixedPoint.toString(5L, FixedPoint.TWO_SCALE), i + 1)).append('\n');
+                }
+
+                Path report = dir.resolve("report.csv");
+                try (ReportWriter writer = new ReportWriter(report.toString(), bufferSize)) {
+                    writer.write(performances);
+                }
+                String text = new String(Files.readAllBytes(report), StandardCharsets.UTF_8);
+                assertEquals("buffer size " + bufferSize, expected.toString(),
+                        text.substring(text.indexOf('\n', text.indexOf('\n') + 1) + 1));
+            }
+        } finally {
+            TestUtil.deleteRecursively(dir);
+        }
+    }
+}
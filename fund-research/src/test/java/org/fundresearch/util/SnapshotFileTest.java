@@ -0,0 +1,110 @@
+package org.fundresearch.util;
+
+import org.fundresearch.enums.NumericMode;
+import org.fundresearch.models.Fund;
+import org.fundresearch.models.ReturnSeriesStore;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Binary snapshot test class.
+ */
+public class SnapshotFileTest {
+
+    private Path dir;
+    private String csvPath;
+
+    @Before
+    public void init() throws IOException {
+        dir = Files.createTempDirectory("fund-research");
+        csvPath = dir.resolve("fundReturnSeries.csv").toString();
+        Files.write(dir.resolve("fundReturnSeries.csv"), "fund1,30/06/2016,1.5\n".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @After
+    public void cleanUp() throws IOException {
+        TestUtil.deleteRecursively(dir);
+    }
+
+    @Test
+    public void testFixedPointRoundTrip() {
+        ReturnSeriesStore store = new ReturnSeriesStore(NumericMode.FIXED_POINT);
+        store.add("fund1", 20160630, 150000000L);
+        store.add("fund2", 20160731, -7L);
+        store.add("fund1", 20160731, Long.MAX_VALUE);
+        FileFingerprint fingerprint = FileFingerprint.of(csvPath);
+
+        assertTrue(SnapshotFile.writeReturnSeries(csvPath, fingerprint, store));
+        assertNull(SnapshotFile.readReturnSeries(csvPath, fingerprint, NumericMode.DECIMAL));
+        assertSameRows(store, SnapshotFile.readReturnSeries(csvPath, fingerprint, NumericMode.FIXED_POINT));
+    }
+
+    @Test
+    public void testDecimalRoundTrip() {
+        ReturnSeriesStore store = new ReturnSeriesStore(NumericMode.DECIMAL);
+        store.add("fund1", 20160630, new BigDecimal("-1.107845"));
+        store.add("fund2", 20160630, new BigDecimal("12E+3"));
+        store.add("fund2", 20150531, new BigDecimal("0.10"));
+        FileFingerprint fingerprint = FileFingerprint.of(csvPath);
+
+        assertTrue(SnapshotFile.writeReturnSeries(csvPath, fingerprint, store));
+        assertSameRows(store, SnapshotFile.readReturnSeries(csvPath, fingerprint, NumericMode.DECIMAL));
+
+        // the unscaled value of a decimal has to fit a long
+        store = new ReturnSeriesStore(NumericMode.DECIMAL);
+        store.add("fund1", 20160630, new BigDecimal("123456789012345678901.5"));
+        assertFalse(SnapshotFile.writeReturnSeries(csvPath, fingerprint, store));
+    }
+
+    @Test
+    public void testStaleSnapshotIsIgnored() throws IOException {
+        ReturnSeriesStore store = new ReturnSeriesStore(NumericMode.FIXED_POINT);
+        store.add("fund1", 20160630, 150000000L);
+        assertTrue(SnapshotFile.writeReturnSeries(csvPath, FileFingerprint.of(csvPath), store));
+
+        Files.write(dir.resolve("fundReturnSeries.csv"), "fund1,31/07/2016,2\n".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+        assertNull(SnapshotFile.readReturnSeries(csvPath, FileFingerprint.of(csvPath), NumericMode.FIXED_POINT));
+
+        // damaged snapshot
+        Files.write(SnapshotFile.pathOf(csvPath), new byte[]{0x46, 0x52});
+        assertNull(SnapshotFile.readReturnSeries(csvPath, FileFingerprint.of(csvPath), NumericMode.FIXED_POINT));
+    }
+
+    @Test
+    public void testFundsRoundTrip() {
+        Map<String, Fund> funds = new LinkedHashMap<>();
+        funds.put("fund1", new Fund("fund1", "f\u00fcnd one", "bm1"));
+        funds.put("fund2", new Fund("fund2", "fund two", null));
+        FileFingerprint fingerprint = FileFingerprint.of(csvPath);
+
+        assertTrue(SnapshotFile.writeFunds(csvPath, fingerprint, funds));
+        Map<String, Fund> loaded = SnapshotFile.readFunds(csvPath, fingerprint);
+        assertEquals(funds, loaded);
+        assertEquals("fund2", loaded.keySet().toArray()[1]);
+    }
+
+    private static void assertSameRows(ReturnSeriesStore expected, ReturnSeriesStore actual) {
+        assertNotNull(actual);
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected.monthCount(), actual.monthCount());
+        for (int row = 0; row < expected.size(); row++) {
+            assertEquals(expected.code(expected.codeId(row)), actual.code(actual.codeId(row)));
+            assertEquals(expected.dateKey(row), actual.dateKey(row));
+            if (expected.isFixedPoint()) assertEquals(expected.value(row), actual.value(row));
+            else assertEquals(expected.decimal(row), actual.decimal(row));
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package org.fundresearch.util;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 
 /**
@@ -28,5 +30,7 @@ public class TestUtil {
         return sb.toString();
     }
 
-
+    public static void deleteRecursively(Path path) throws IOException {
+        IOUtil.deleteRecursively(path);
+    }
 }